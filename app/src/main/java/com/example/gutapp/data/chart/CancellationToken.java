@@ -0,0 +1,50 @@
+package com.example.gutapp.data.chart;
+
+import com.example.gutapp.engine.Cancellation;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+//cooperative cancellation for long running chart work
+//a token belongs to a generation of the scheduler, once a newer generation starts the token reads as cancelled
+//and kernel loops stop at their next check (throwIfCancelled comes from the engine's Cancellation)
+public class CancellationToken implements Cancellation {
+    //token that is never cancelled, used for synchronous drawing
+    public static final CancellationToken NONE = new CancellationToken(null, Integer.MAX_VALUE);
+    //generation of work that is never superseded (prefetch)
+    static final int NO_GENERATION = Integer.MAX_VALUE;
+    private static final int CANCELLED = Integer.MIN_VALUE;
+
+    private final AtomicInteger currentGeneration;
+    private final AtomicInteger generation;
+
+    CancellationToken(AtomicInteger currentGeneration, int generation) {
+        this.currentGeneration = currentGeneration;
+        this.generation = new AtomicInteger(generation);
+    }
+
+    @Override
+    public boolean isCancelled() {
+        while (true) {
+            int g = generation.get();
+            if (g == CANCELLED) return true;
+            if (currentGeneration == null || g >= currentGeneration.get()) return false;
+            //superseded, make it final so a late renew can't bring the work back
+            if (generation.compareAndSet(g, CANCELLED)) return true;
+        }
+    }
+
+    public void cancel() {
+        if (currentGeneration != null) generation.set(CANCELLED);
+    }
+
+    //moves the token to a newer generation when another caller joins the work
+    //returns false when the work already saw its cancellation and can't be joined anymore
+    boolean renew(int newGeneration) {
+        while (true) {
+            int g = generation.get();
+            if (g == CANCELLED) return false;
+            if (newGeneration <= g) return true;
+            if (generation.compareAndSet(g, newGeneration)) return true;
+        }
+    }
+}
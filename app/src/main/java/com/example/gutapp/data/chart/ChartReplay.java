@@ -0,0 +1,103 @@
+package com.example.gutapp.data.chart;
+
+import com.example.gutapp.data.metrics.Metrics;
+import com.example.gutapp.engine.BarReplay;
+import com.example.gutapp.engine.BarSink;
+import com.example.gutapp.engine.CandleSeries;
+import com.github.mikephil.charting.charts.CombinedChart;
+import com.github.mikephil.charting.data.CandleDataSet;
+import com.github.mikephil.charting.data.CandleEntry;
+
+import java.util.ArrayList;
+import java.util.List;
+
+//replays the candles on the chart from a chosen bar at a fixed speed, for strategy review
+//the chart is cut back to the bars before the start, then every frame appends the bars that became due and the
+//indicators advance through their streaming state (Indicator.updateLive), nothing is recomputed or rebuilt
+public class ChartReplay {
+    //a stalled frame catches up at most this many bars, the rest of the backlog is skipped in time
+    private static final int MAX_BARS_PER_FRAME = 64;
+
+    private final CombinedChart combinedChart;
+    private final IndicatorManager indicatorManager;
+    private final CandleDataSet candles;
+    private final BarReplay replay;
+    private final Runnable onFinished;
+    private final Runnable frame = this::frame;
+    private final BarSink append;
+    private boolean running;
+
+    //from is the index of the first candle to replay, onFinished runs on the main thread after the last one
+    public ChartReplay(CombinedChart combinedChart, IndicatorManager indicatorManager, CandleDataSet candles,
+                       int from, double barsPerSecond, Runnable onFinished) {
+        this.combinedChart = combinedChart;
+        this.indicatorManager = indicatorManager;
+        this.candles = candles;
+        this.onFinished = onFinished;
+
+        //the series on the chart becomes the replay source
+        List<CandleEntry> entries = candles.getValues();
+        CandleSeries series = new CandleSeries(entries.size());
+        for (CandleEntry entry : entries) {
+            series.add((long) entry.getData(), entry.getOpen(), entry.getHigh(), entry.getLow(), entry.getClose(), 0);
+        }
+        this.replay = new BarReplay(series, from, barsPerSecond);
+        this.append = (timestamp, open, high, low, close, volume) -> {
+            CandleEntry entry = new CandleEntry(this.candles.getEntryCount(), high, low, open, close);
+            entry.setData(timestamp);
+            this.candles.addEntry(entry);
+        };
+    }
+
+    //must be called on the main thread
+    public void start() {
+        if (running) return;
+        running = true;
+        int from = replay.getPosition();
+        candles.setValues(new ArrayList<>(candles.getValues().subList(0, from)));
+        indicatorManager.truncateLive(from - 1);
+        combinedChart.getData().notifyDataChanged();
+        combinedChart.notifyDataSetChanged();
+        combinedChart.invalidate();
+        replay.start(System.nanoTime());
+        combinedChart.postOnAnimation(frame);
+    }
+
+    //leaves the chart at the bar the replay reached
+    public void stop() {
+        running = false;
+        combinedChart.removeCallbacks(frame);
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void frame() {
+        if (!running) return;
+        long start = Metrics.begin(Metrics.CHART_REPLAY_FRAME);
+        try {
+            float lastX = candles.getEntryCount() - 1;
+            //follow the newest candle while it is on screen, a user panning back in time is left alone
+            boolean following = combinedChart.getHighestVisibleX() >= lastX - 1;
+            if (replay.advance(System.nanoTime(), MAX_BARS_PER_FRAME, append) > 0) {
+                indicatorManager.updateLive(candles);
+                combinedChart.getData().notifyDataChanged();
+                combinedChart.notifyDataSetChanged();
+                if (following) {
+                    float range = combinedChart.getHighestVisibleX() - combinedChart.getLowestVisibleX();
+                    combinedChart.moveViewToX(candles.getEntryCount() - 1 - range);
+                }
+                combinedChart.invalidate();
+            }
+        } finally {
+            Metrics.end(Metrics.CHART_REPLAY_FRAME, start);
+        }
+        if (replay.isFinished()) {
+            running = false;
+            onFinished.run();
+        } else {
+            combinedChart.postOnAnimation(frame);
+        }
+    }
+}
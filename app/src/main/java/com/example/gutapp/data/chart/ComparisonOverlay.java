@@ -0,0 +1,171 @@
+package com.example.gutapp.data.chart;
+
+import android.graphics.Color;
+
+import com.example.gutapp.database.StockDataHelper;
+import com.example.gutapp.engine.CandleSeries;
+import com.example.gutapp.engine.TimeAlignment;
+import com.github.mikephil.charting.charts.CombinedChart;
+import com.github.mikephil.charting.components.YAxis;
+import com.github.mikephil.charting.data.CombinedData;
+import com.github.mikephil.charting.data.Entry;
+import com.github.mikephil.charting.data.LineData;
+import com.github.mikephil.charting.data.LineDataSet;
+import com.github.mikephil.charting.formatter.ValueFormatter;
+import com.github.mikephil.charting.interfaces.datasets.ILineDataSet;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+//compared symbols drawn over the chart's candles as percent change from a start bar, on the right axis
+//x values are the chart's bar indices, so every compared symbol is put onto the shown symbol's bars by timestamp
+//with TimeAlignment (one merge join per symbol) and read with one query per symbol, nothing is looked up per point
+//the shown symbol gets a line too, it is the reference the others are read against
+public class ComparisonOverlay {
+    private static final String LABEL_PREFIX = "compare:";
+    //a weekend and a holiday, the most a session close keeps a symbol from printing
+    private static final long SESSION_GAP_MS = 4 * 86_400_000L;
+    //bars a compared symbol may miss before its last value counts as a gap in its data and isn't carried over it
+    private static final int MAX_STALE_BARS = 3;
+    private static final int[] COLORS = {Color.WHITE, Color.CYAN, Color.MAGENTA, Color.YELLOW, Color.parseColor("#FF8800"),
+            Color.parseColor("#88AAFF")};
+    public static final int MAX_SYMBOLS = COLORS.length - 1;
+
+    private final StockDataHelper stockDataHelper;
+    private final List<String> symbols = new ArrayList<>();
+    //labels of the lines on the chart, removed before new ones are put on
+    private final List<String> shownLabels = new ArrayList<>();
+
+    public ComparisonOverlay(StockDataHelper stockDataHelper) {
+        this.stockDataHelper = stockDataHelper;
+    }
+
+    //false when the symbol is already compared or there are MAX_SYMBOLS
+    public boolean add(String symbol) {
+        if (symbols.contains(symbol) || symbols.size() >= MAX_SYMBOLS) return false;
+        symbols.add(symbol);
+        return true;
+    }
+
+    public void clear() {
+        symbols.clear();
+    }
+
+    public boolean isEmpty() {
+        return symbols.isEmpty();
+    }
+
+    public List<String> getSymbols() {
+        return new ArrayList<>(symbols);
+    }
+
+    //what the computed lines depend on, for the scheduler to join equal requests
+    public static String getSpec(List<String> compared, int start) {
+        return "compare " + String.join(",", compared) + " from " + start;
+    }
+
+    //a task that computes one line per compared symbol after the shown one's, off the main thread
+    //timestamps and closes are the shown candles', start the bar all lines start at 0% from
+    public ComputeScheduler.Task<List<List<Entry>>> computeTask(List<String> compared, StockDataHelper.Timeframe timeframe,
+                                                                long[] timestamps, float[] closes, int start) {
+        return token -> {
+            int count = timestamps.length;
+            float[] percent = new float[count];
+            float[] aligned = new float[count];
+            float[] acrossClose = new float[count];
+            long maxStale = maxStaleMillis(timeframe);
+            List<List<Entry>> lines = new ArrayList<>(compared.size() + 1);
+            TimeAlignment.percentChange(closes, count, start, percent);
+            lines.add(entries(percent, count));
+            for (String symbol : compared) {
+                token.throwIfCancelled();
+                CandleSeries series = stockDataHelper.getRecentBars(symbol, timeframe, Integer.MAX_VALUE);
+                TimeAlignment.asOf(timestamps, count, series.timestamps(), series.closes(), series.size(), maxStale, aligned);
+                if (maxStale < SESSION_GAP_MS) {
+                    //the first bar of a session may carry the compared symbol's value from before the close
+                    TimeAlignment.asOf(timestamps, count, series.timestamps(), series.closes(), series.size(), SESSION_GAP_MS, acrossClose);
+                    for (int i = 0; i < count; i++) {
+                        if (i == 0 || timestamps[i] - timestamps[i - 1] > maxStale) aligned[i] = acrossClose[i];
+                    }
+                }
+                TimeAlignment.percentChange(aligned, count, start, percent);
+                lines.add(entries(percent, count));
+            }
+            return lines;
+        };
+    }
+
+    //how old a compared symbol's last value may be on a bar of the timeframe, daily bars get across a long weekend
+    static long maxStaleMillis(StockDataHelper.Timeframe timeframe) {
+        return Math.max(MAX_STALE_BARS * timeframe.getMinutes() * 60_000L,
+                timeframe == StockDataHelper.Timeframe.DAILY ? SESSION_GAP_MS : 0);
+    }
+
+    //bars without a value are left out, apply breaks the line there
+    private static List<Entry> entries(float[] values, int count) {
+        List<Entry> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            if (!Float.isNaN(values[i])) entries.add(new Entry(i, values[i]));
+        }
+        return entries;
+    }
+
+    //puts the lines computed by computeTask on the chart, must run on the main thread
+    public void apply(String shownSymbol, List<String> compared, List<List<Entry>> lines, CombinedChart combinedChart) {
+        remove(combinedChart);
+        CombinedData data = combinedChart.getData();
+        if (data == null || lines == null) return;
+        LineData lineData = data.getLineData();
+        if (lineData == null) {
+            lineData = new LineData();
+        }
+        for (int i = 0; i < lines.size(); i++) {
+            String label = LABEL_PREFIX + (i == 0 ? shownSymbol : compared.get(i - 1));
+            //a data set draws one connected line, so each run of consecutive bars gets its own and gaps stay open
+            List<Entry> line = lines.get(i);
+            int run = 0;
+            for (int from = 0; from < line.size(); ) {
+                int to = from + 1;
+                while (to < line.size() && line.get(to).getX() == line.get(to - 1).getX() + 1) to++;
+                String runLabel = run == 0 ? label : label + "#" + run;
+                LineDataSet set = new LineDataSet(new ArrayList<>(line.subList(from, to)), runLabel);
+                set.setAxisDependency(YAxis.AxisDependency.RIGHT);
+                set.setColor(COLORS[i]);
+                set.setLineWidth(i == 0 ? 1f : 1.5f);
+                set.setDrawCircles(false);
+                set.setDrawValues(false);
+                set.setHighlightEnabled(false);
+                lineData.addDataSet(set);
+                shownLabels.add(runLabel);
+                run++;
+                from = to;
+            }
+        }
+        data.setData(lineData);
+        combinedChart.setData(data);
+        YAxis right = combinedChart.getAxisRight();
+        right.setEnabled(true);
+        right.setValueFormatter(new ValueFormatter() {
+            @Override
+            public String getFormattedValue(float value) {
+                return String.format(Locale.US, "%+.0f%%", value);
+            }
+        });
+        Indicator.refreshChart(combinedChart);
+    }
+
+    //takes the lines off the chart and hides the right axis again
+    public void remove(CombinedChart combinedChart) {
+        CombinedData data = combinedChart.getData();
+        LineData lineData = data != null ? data.getLineData() : null;
+        if (lineData != null) {
+            for (String label : shownLabels) {
+                ILineDataSet set = lineData.getDataSetByLabel(label, false);
+                if (set != null) lineData.removeDataSet(set);
+            }
+        }
+        shownLabels.clear();
+        combinedChart.getAxisRight().setEnabled(false);
+    }
+}
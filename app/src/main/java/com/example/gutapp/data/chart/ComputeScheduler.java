@@ -0,0 +1,138 @@
+package com.example.gutapp.data.chart;
+
+import com.example.gutapp.data.log.AppLog;
+import com.example.gutapp.database.StockDataHelper;
+import com.example.gutapp.ui.ChartActivity;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+//runs chart work (candle loads, indicator series) off the main thread
+//requests are keyed by (symbol, timeframe, spec): a request that is already running is joined instead of
+//started again, so every caller gets the same future
+//each visible request belongs to the generation it was submitted in, starting a new generation
+//(a timeframe tap) cancels the older ones cooperatively through their CancellationToken
+public class ComputeScheduler {
+
+    //visible chart work always runs before prefetch work
+    public enum Priority {
+        VISIBLE,
+        PREFETCH
+    }
+
+    public interface Task<T> {
+        T compute(CancellationToken token) throws Exception;
+    }
+
+    private static ComputeScheduler instance;
+
+    private final ThreadPoolExecutor executor;
+    private final AtomicInteger generation = new AtomicInteger();
+    private final AtomicLong sequence = new AtomicLong();
+    private final Map<String, Job<?>> inFlight = new HashMap<>(); //guarded by this
+
+    public static synchronized ComputeScheduler getInstance() {
+        if (instance == null) {
+            instance = new ComputeScheduler(2);
+        }
+        return instance;
+    }
+
+    ComputeScheduler(int threads) {
+        this.executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, new PriorityBlockingQueue<>());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    //starts a new generation, everything visible submitted before it is superseded
+    public int newGeneration() {
+        return generation.incrementAndGet();
+    }
+
+    public int currentGeneration() {
+        return generation.get();
+    }
+
+    public boolean isCurrent(int generation) {
+        return this.generation.get() == generation;
+    }
+
+    public <T> CompletableFuture<T> submit(String symbol, StockDataHelper.Timeframe timeframe, String spec,
+                                           Priority priority, Task<T> task) {
+        String key = symbol + "|" + timeframe.getValue() + "|" + spec;
+        int requestGeneration = priority == Priority.VISIBLE ? generation.get() : CancellationToken.NO_GENERATION;
+        synchronized (this) {
+            @SuppressWarnings("unchecked")
+            Job<T> existing = (Job<T>) inFlight.get(key);
+            if (existing != null && existing.token.renew(requestGeneration)) {
+                //a visible caller joining queued prefetch work moves it to the front
+                if (priority.ordinal() < existing.priority.ordinal() && executor.getQueue().remove(existing)) {
+                    existing.priority = priority;
+                    executor.execute(existing);
+                }
+                if (AppLog.isLoggable(AppLog.DEBUG)) {
+                    AppLog.d(ChartActivity.CHART_LOG_TAG, "Joined in-flight request " + key);
+                }
+                return existing.future;
+            }
+            Job<T> job = new Job<>(key, priority, new CancellationToken(generation, requestGeneration), task);
+            inFlight.put(key, job);
+            executor.execute(job);
+            return job.future;
+        }
+    }
+
+    private synchronized void finished(Job<?> job) {
+        if (inFlight.get(job.key) == job) {
+            inFlight.remove(job.key);
+        }
+    }
+
+    private class Job<T> implements Runnable, Comparable<Job<?>> {
+        final String key;
+        final CancellationToken token;
+        final Task<T> task;
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        final long order = sequence.getAndIncrement();
+        volatile Priority priority;
+
+        Job(String key, Priority priority, CancellationToken token, Task<T> task) {
+            this.key = key;
+            this.priority = priority;
+            this.token = token;
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            T result;
+            try {
+                token.throwIfCancelled();
+                result = task.compute(token);
+            } catch (Throwable e) {
+                finished(this);
+                if (!(e instanceof CancellationException)) {
+                    AppLog.e(ChartActivity.CHART_LOG_TAG, "Request " + key + " failed", e);
+                }
+                future.completeExceptionally(e);
+                return;
+            }
+            finished(this);
+            future.complete(result);
+        }
+
+        @Override
+        public int compareTo(Job<?> other) {
+            if (priority != other.priority) {
+                return priority.compareTo(other.priority);
+            }
+            return Long.compare(order, other.order);
+        }
+    }
+}
@@ -1,7 +1,19 @@
 package com.example.gutapp.data.chart;
 
+import com.example.gutapp.data.metrics.Metrics;
 import com.example.gutapp.database.StockDataHelper;
 import com.github.mikephil.charting.charts.CombinedChart;
+import com.github.mikephil.charting.data.CandleEntry;
+import com.github.mikephil.charting.data.CombinedData;
+import com.github.mikephil.charting.data.Entry;
+import com.github.mikephil.charting.data.LineData;
+import com.github.mikephil.charting.data.LineDataSet;
+import com.github.mikephil.charting.interfaces.datasets.ICandleDataSet;
+import com.github.mikephil.charting.interfaces.datasets.ILineDataSet;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public abstract class Indicator {
 
@@ -13,6 +25,16 @@ public abstract class Indicator {
     // num 0 parameter
     protected int color;
     protected String symbol;
+    //timeframe the lines are computed on, null for the chart's own. a higher one is projected onto the chart's bars
+    private StockDataHelper.Timeframe sourceTimeframe;
+    private TimeframeMapper timeframeMapper;
+    //the projected lines last put on the chart (one point per chart bar), the live feed and a replay extend the
+    //lines from them instead of a streaming state
+    private List<List<Entry>> projectedLines;
+
+    //live feed state, the candles the streaming values were built from and how many of them are closed
+    private ICandleDataSet liveCandles;
+    private int liveClosed;
 
 
     //constructor
@@ -34,6 +56,23 @@ public abstract class Indicator {
         this.timeframe = timeframe;
     }
 
+    public StockDataHelper.Timeframe getSourceTimeframe() {
+        return sourceTimeframe;
+    }
+
+    //computes the lines on sourceTimeframe whatever the chart shows, null to follow the chart again
+    public void setSourceTimeframe(StockDataHelper.Timeframe sourceTimeframe, TimeframeMapper timeframeMapper) {
+        this.sourceTimeframe = sourceTimeframe;
+        this.timeframeMapper = timeframeMapper;
+        invalidateLive();
+    }
+
+    //true while the lines come from a higher timeframe than the chart's and are drawn as steps
+    public boolean isProjected() {
+        return sourceTimeframe != null && timeframeMapper != null
+                && sourceTimeframe.getMinutes() > timeframe.getMinutes();
+    }
+
     public void setVisible(boolean visible){
         this.isVisible = visible;
     }
@@ -42,8 +81,65 @@ public abstract class Indicator {
         this.color = color;
     }
 
-    //draws the indicator
-    public abstract void draw(CombinedChart combinedChart);
+    //what the computed lines depend on (not color or width), indicators with the same spec share one computation
+    public abstract String getSpec();
+
+    //captures the current settings into a task that computes the lines for a timeframe off the main thread
+    public abstract ComputeScheduler.Task<List<List<Entry>>> computeTask(StockDataHelper.Timeframe timeframe);
+
+    //spec of what submitDraw computes for the chart, the source timeframe is part of it while the lines are projected
+    //a source at or below the chart's timeframe is ignored, the lines are the chart timeframe's own
+    public String getDrawSpec() {
+        return isProjected() ? getSpec() + "@" + sourceTimeframe.getValue() : getSpec();
+    }
+
+    //submits the lines to draw on the chart: computeTask's on the chart's timeframe, or on the source one and put on
+    //the chart's bars through the cached bar index map. the source lines are submitted under the same key as their
+    //prefetch (and any indicator drawn on that timeframe) so the scheduler runs them once, the projection is a job of
+    //its own started when they are done, no compute thread waits on another
+    public CompletableFuture<List<List<Entry>>> submitDraw(ComputeScheduler scheduler, ComputeScheduler.Priority priority) {
+        final StockDataHelper.Timeframe chartTimeframe = this.timeframe;
+        final String drawSpec = getDrawSpec();
+        if (!isProjected()) {
+            return scheduler.submit(symbol, chartTimeframe, drawSpec, priority, computeTask(chartTimeframe));
+        }
+        final StockDataHelper.Timeframe source = this.sourceTimeframe;
+        final TimeframeMapper mapper = this.timeframeMapper;
+        final String symbol = this.symbol;
+        return scheduler.submit(symbol, source, getSpec(), priority, computeTask(source))
+                .thenCompose(lines -> scheduler.submit(symbol, chartTimeframe, drawSpec, priority, token -> {
+                    int[] indices = mapper.map(symbol, chartTimeframe, source, token);
+                    List<List<Entry>> projected = new ArrayList<>(lines.size());
+                    for (List<Entry> line : lines) {
+                        token.throwIfCancelled();
+                        projected.add(TimeframeMapper.project(line, indices));
+                    }
+                    return projected;
+                }));
+    }
+
+    //projected lines hold one value per higher timeframe bar, drawn as steps instead of ramps between bars
+    protected void stepIfProjected(LineDataSet set) {
+        if (isProjected()) set.setMode(LineDataSet.Mode.STEPPED);
+    }
+
+    //puts lines computed by submitDraw on the chart, must run on the main thread
+    public void show(List<List<Entry>> lines, CombinedChart combinedChart) {
+        projectedLines = isProjected() ? lines : null;
+        //the new lines may end before bars the chart got since they were read, the next live update refills them
+        invalidateLive();
+        apply(lines, combinedChart);
+    }
+
+    //labels of the chart data sets of the lines, in the order computeTask returns them
+    protected String[] getLineLabels() {
+        return new String[]{getID()};
+    }
+
+    //puts computed lines on the chart, must run on the main thread
+    //the lists are shared by every request the scheduler joined onto the same computation, a chart data set gets a
+    //copy of its list so live points and truncation only change this chart
+    public abstract void apply(List<List<Entry>> lines, CombinedChart combinedChart);
 
     public String getID(){
         return id;
@@ -53,6 +149,7 @@ public abstract class Indicator {
         return this.isOverlay;
     }
 
+    //takes the old lines off the chart and keeps the new settings, the caller schedules the redraw
     public abstract void changeSettings(float[] params, CombinedChart combinedChart);
 
     public abstract void remove(CombinedChart combinedChart);
@@ -62,4 +159,115 @@ public abstract class Indicator {
     }
 
     public abstract String getParams();
+
+    //moves the last point of the indicator to the forming candle (the last one of candles)
+    //candles closed since the previous call are pushed into the streaming state first, the state is rebuilt from the
+    //chart only when the series or the settings changed, so a tick costs O(1) instead of a full recompute and redraw
+    public void updateLive(CombinedChart combinedChart, ICandleDataSet candles) {
+        int forming = candles.getEntryCount() - 1;
+        if (forming < 0 || !isVisible) return;
+        if (candles != liveCandles || forming < liveClosed) {
+            resetLive();
+            liveCandles = candles;
+            liveClosed = 0;
+        }
+        while (liveClosed < forming) {
+            CandleEntry closed = candles.getEntryForIndex(liveClosed++);
+            liveBar(combinedChart, closed.getX(), closed.getClose(), true);
+        }
+        CandleEntry last = candles.getEntryForIndex(forming);
+        liveBar(combinedChart, last.getX(), last.getClose(), false);
+    }
+
+    private void liveBar(CombinedChart combinedChart, float x, float close, boolean closed) {
+        if (isProjected()) {
+            projectedBar(combinedChart, x);
+        } else {
+            onLiveBar(combinedChart, x, close, closed);
+        }
+    }
+
+    //a projected line is set at x to its projection there, a replay shows it bar by bar again. a bar newer than the
+    //projection (the live feed) keeps the step of the last higher timeframe bar until the next one closes and the
+    //lines are drawn again (IndicatorManager.redrawProjected)
+    private void projectedBar(CombinedChart combinedChart, float x) {
+        List<List<Entry>> lines = projectedLines;
+        if (lines == null) return;
+        String[] labels = getLineLabels();
+        for (int i = 0; i < lines.size() && i < labels.length; i++) {
+            List<Entry> line = lines.get(i);
+            if (line.isEmpty()) continue;
+            //the projection has one point per bar from its first one on
+            int at = (int) (x - line.get(0).getX());
+            if (at < 0) continue;
+            setLastPoint(combinedChart, labels[i], x, line.get(Math.min(at, line.size() - 1)).getY());
+        }
+    }
+
+    //drops the streaming state, the next live update rebuilds it from the chart
+    protected void invalidateLive() {
+        liveCandles = null;
+    }
+
+    //cuts the lines back to the points up to lastX so a replay can extend them again, indicators without live
+    //support keep their lines
+    public void truncateLive(CombinedChart combinedChart, float lastX) {
+    }
+
+    //clears the streaming state before it is rebuilt, indicators without live support ignore the feed
+    protected void resetLive() {
+    }
+
+    //a closed bar is pushed into the streaming state, a forming one only previewed. either way the point at x is set
+    protected void onLiveBar(CombinedChart combinedChart, float x, float close, boolean closed) {
+    }
+
+    //sets the point of a line at x if it is the last one or appends it after the last one, older points are left alone
+    //the y range of the line is only recomputed when the point leaves it
+    protected static void setLastPoint(CombinedChart combinedChart, String label, float x, float y) {
+        CombinedData data = combinedChart.getData();
+        if (Float.isNaN(y) || data == null) return;
+        LineData lineData = data.getLineData();
+        if (lineData == null) return;
+        ILineDataSet set = lineData.getDataSetByLabel(label, false);
+        if (!(set instanceof LineDataSet)) return;
+        LineDataSet line = (LineDataSet) set;
+        int count = line.getEntryCount();
+        Entry last = count > 0 ? line.getEntryForIndex(count - 1) : null;
+        if (last != null && last.getX() == x) {
+            //the point is replaced, not changed, entries can be shared with the computed lines of other charts
+            line.getValues().set(count - 1, new Entry(x, y));
+            if (y > line.getYMax() || y < line.getYMin()) {
+                line.calcMinMax();
+            }
+        } else if (last == null || last.getX() < x) {
+            line.addEntry(new Entry(x, y));
+        }
+    }
+
+    protected static void truncateLine(CombinedChart combinedChart, String label, float lastX) {
+        CombinedData data = combinedChart.getData();
+        LineData lineData = data != null ? data.getLineData() : null;
+        if (lineData == null) return;
+        ILineDataSet set = lineData.getDataSetByLabel(label, false);
+        if (!(set instanceof LineDataSet)) return;
+        LineDataSet line = (LineDataSet) set;
+        List<Entry> values = line.getValues();
+        int keep = values.size();
+        while (keep > 0 && values.get(keep - 1).getX() > lastX) keep--;
+        if (keep < values.size()) {
+            line.setValues(new ArrayList<>(values.subList(0, keep)));
+        }
+    }
+
+    //tells the chart its data changed and redraws it, traced because it re-measures every data set
+    protected static void refreshChart(CombinedChart combinedChart) {
+        long start = Metrics.begin(Metrics.CHART_NOTIFY);
+        try {
+            combinedChart.notifyDataSetChanged();
+        } finally {
+            Metrics.end(Metrics.CHART_NOTIFY, start);
+        }
+        combinedChart.invalidate();
+    }
 }
@@ -1,61 +1,119 @@
 package com.example.gutapp.data.chart;
 
-import android.util.Log;
 import android.widget.Toast;
 
+import com.example.gutapp.data.log.AppLog;
 import com.example.gutapp.database.DB_Helper;
+import com.example.gutapp.database.DB_Index;
 import com.example.gutapp.database.StockDataHelper;
 import com.example.gutapp.ui.ChartActivity;
 import com.github.mikephil.charting.charts.CombinedChart;
+import com.github.mikephil.charting.data.Entry;
+import com.github.mikephil.charting.interfaces.datasets.ICandleDataSet;
 
+import java.util.ArrayList;
 import java.util.HashMap; // Switched to HashMap
+import java.util.List;
 import java.util.Map;     // Switched to Map
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
 
 public class IndicatorManager {
     private CombinedChart combinedChart;
-    private Map<String, Indicator> indicators; // Using Map<String, Indicator>
+    //copy-on-write, compute threads read snapshots of it while the ui thread changes it
+    private final IndicatorRegistry indicators = new IndicatorRegistry();
     private DB_Helper db_helper;
     private String symbol; //symbol of the stock indicators will be drawn for
 
     private StockDataHelper.Timeframe currentTimeframe;
     private int autoincrementID; //works like the PRIMARY KEY AUTOINCREMENT in sql
     private PresetManager presetManager;
+    private final ComputeScheduler scheduler = ComputeScheduler.getInstance();
+    //bar index maps of the indicators drawn from a higher timeframe than the chart's
+    private final TimeframeMapper timeframeMapper;
 
-    private int currentPresetID = 1;
+    //0 means no preset has been activated yet
+    private int currentPresetID = 0;
+    //maps the id of each active indicator to the id of its row in the current preset
+    private Map<String, String> presetIndicatorIds = new HashMap<>();
 
     public IndicatorManager(CombinedChart combinedChart, DB_Helper db_helper, String symbol) {
         this.symbol = symbol;
         this.combinedChart = combinedChart;
-        this.indicators = new HashMap<>(); // Initialize as a HashMap
         this.db_helper = db_helper;
         this.autoincrementID = 0;
         this.currentTimeframe = StockDataHelper.Timeframe.DAILY;
-        Log.i(ChartActivity.CHART_LOG_TAG, currentTimeframe.name());// Initialize with DAILY
+        this.timeframeMapper = new TimeframeMapper((StockDataHelper) db_helper.getHelper(DB_Index.STOCK_TABLE));
+        AppLog.i(ChartActivity.CHART_LOG_TAG, currentTimeframe.name());// Initialize with DAILY
         this.presetManager = new PresetManager(db_helper, symbol);
-        this.presetManager.loadPresets();
-        //loads default preset to graph on creation
-        this.loadPreset(currentPresetID);
+        //loads default preset to graph once the presets are read
+        this.presetManager.loadPresets(combinedChart::post, () -> this.loadPreset(1));
 
-        Log.i(ChartActivity.CHART_LOG_TAG, "IndicatorManager initialized for symbol: " + symbol);
+        AppLog.i(ChartActivity.CHART_LOG_TAG, "IndicatorManager initialized for symbol: " + symbol);
     }
 
-    //load preset by preset_id
+    //activates a preset by preset_id
+    //indicators that appear in both the current and the new preset stay on the chart untouched,
+    //only the difference is removed from or created on the chart
     public void loadPreset(int preset_id){
-        //loads the preset from preset manager
-        this.indicators = presetManager.getPreset(preset_id);
-        Log.i(ChartActivity.CHART_LOG_TAG, "Preset loaded successfully to indicator manager" + indicators.toString());
-        this.autoincrementID = indicators.size();
-        //draws the indicators
-        for(Indicator indicator : this.indicators.values()){
-            this.addIndicator2Graph(indicator);
-            Log.i(ChartActivity.CHART_LOG_TAG, "Indicator loaded successfully" + indicator.toString());
+        //indicators added before the presets were read aren't in any preset yet, the first one loaded takes them
+        if (currentPresetID == 0) {
+            for (Indicator indicator : this.indicators.snapshot().asList()) {
+                presetManager.addEntry(preset_id, PresetEntry.of(indicator));
+            }
+        }
+        Map<String, PresetEntry> preset = presetManager.getPreset(preset_id);
+
+        //group the rows of the new preset by what they draw
+        Map<String, List<String>> pending = new HashMap<>();
+        for (Map.Entry<String, PresetEntry> row : preset.entrySet()) {
+            List<String> sameKey = pending.get(row.getValue().getKey());
+            if (sameKey == null) {
+                sameKey = new ArrayList<>();
+                pending.put(row.getValue().getKey(), sameKey);
+            }
+            sameKey.add(row.getKey());
+        }
+
+        //remove the active indicators the new preset doesn't have, keep the ones it does
+        Map<String, String> newPresetIndicatorIds = new HashMap<>();
+        for (Indicator indicator : this.indicators.snapshot().asList()) {
+            List<String> sameKey = pending.get(PresetEntry.keyOf(indicator));
+            if (sameKey != null && !sameKey.isEmpty()) {
+                newPresetIndicatorIds.put(indicator.getID(), sameKey.remove(sameKey.size() - 1));
+            } else {
+                indicator.remove(combinedChart);
+                this.indicators.remove(indicator.getID());
+            }
+        }
+
+        //create and draw only the indicators that are missing
+        for (List<String> sameKey : pending.values()) {
+            for (String presetIndicatorId : sameKey) {
+                PresetEntry entry = preset.get(presetIndicatorId);
+                Indicator indicator = IndicatorFactory.createIndicator(entry.getType(), Integer.toString(this.autoincrementID++),
+                        this.symbol, this.currentTimeframe, entry.getParamsArray(), this.db_helper);
+                if (indicator == null) continue;
+                if (entry.getSourceTimeframe() != null) {
+                    indicator.setSourceTimeframe(entry.getSourceTimeframe(), this.timeframeMapper);
+                }
+                this.indicators.put(indicator);
+                newPresetIndicatorIds.put(indicator.getID(), presetIndicatorId);
+                this.addIndicator2Graph(indicator);
+            }
         }
-        Log.i(ChartActivity.CHART_LOG_TAG, "Preset loaded successfully to indicator manager");
+        this.presetIndicatorIds = newPresetIndicatorIds;
+        this.currentPresetID = preset_id;
+        AppLog.i(ChartActivity.CHART_LOG_TAG, "Preset " + preset_id + " loaded to indicator manager");
+    }
+
+    public int getCurrentPresetID() {
+        return currentPresetID;
     }
 
 
     public void storePresets(){
-        Log.i(DB_Helper.DB_LOG_TAG, "Storing presets" + this.indicators.toString());
+        AppLog.i(DB_Helper.DB_LOG_TAG, "Storing presets for " + symbol);
         presetManager.storePresets();
     }
 
@@ -65,25 +123,62 @@ public class IndicatorManager {
         this.currentTimeframe = timeframe;
 
         // 2. Iterate through all active indicators to update and redraw them
-        if (indicators.isEmpty()) {
+        IndicatorRegistry.Snapshot active = indicators.snapshot();
+        if (active.isEmpty()) {
             return; // Nothing to do if there are no indicators
         }
 
-        Log.d(ChartActivity.CHART_LOG_TAG, "Timeframe changed. Redrawing all active indicators for: " + timeframe.name());
+        AppLog.d(ChartActivity.CHART_LOG_TAG, "Timeframe changed. Redrawing all active indicators for: " + timeframe.name());
 
-        for (Indicator indicator : indicators.values()) {
-            try {
-                // 3. Update the timeframe of each individual indicator
+        // 3. Update the timeframe of each individual indicator
+        indicators.updateAll(() -> {
+            for (Indicator indicator : active.asList()) {
                 indicator.setTimeframe(timeframe);
-                // 4. Redraw the indicator, which will now use the new timeframe to recalculate
-                indicator.draw(combinedChart);
-            } catch (Exception e) {
-                Log.e(ChartActivity.CHART_LOG_TAG, "Failed to redraw indicator " + indicator.getID() + " for new timeframe.", e);
             }
+        });
+        for (Indicator indicator : active.asList()) {
+            // 4. Recalculate off the main thread, the indicator is redrawn when its lines are ready
+            scheduleDraw(indicator);
         }
+    }
 
-        // 5. Invalidate the chart once after all indicators are redrawn
-        combinedChart.invalidate();
+    /**
+     * Moves the last point of every active indicator to the forming candle of the live feed.
+     */
+    public void updateLive(ICandleDataSet candles) {
+        for (Indicator indicator : indicators.snapshot().asList()) {
+            indicator.updateLive(combinedChart, candles);
+        }
+    }
+
+    /**
+     * Cuts every indicator line back to the points up to lastX, before a replay extends them again.
+     */
+    public void truncateLive(float lastX) {
+        for (Indicator indicator : indicators.snapshot().asList()) {
+            indicator.truncateLive(combinedChart, lastX);
+        }
+    }
+
+    /**
+     * True when an active indicator is projected onto the chart from sourceTimeframe.
+     */
+    public boolean hasProjected(StockDataHelper.Timeframe sourceTimeframe) {
+        for (Indicator indicator : indicators.snapshot().asList()) {
+            if (indicator.isProjected() && indicator.getSourceTimeframe() == sourceTimeframe) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Recomputes the indicators projected from sourceTimeframe, once a bar of it was written.
+     */
+    public void redrawProjected(StockDataHelper.Timeframe sourceTimeframe) {
+        for (Indicator indicator : indicators.snapshot().asList()) {
+            if (indicator.isProjected() && indicator.getSourceTimeframe() == sourceTimeframe) {
+                scheduleDraw(indicator);
+            }
+        }
     }
 
     /**
@@ -97,34 +192,89 @@ public class IndicatorManager {
      * Creates a new indicator and adds it to the manager and chart.
      */
     public void createIndicator(Indicators type, float[] params){
+        createIndicator(type, params, null);
+    }
+
+    /**
+     * Creates a new indicator computed on sourceTimeframe (null for the chart's timeframe) and adds it to the chart.
+     */
+    public void createIndicator(Indicators type, float[] params, StockDataHelper.Timeframe sourceTimeframe){
         Indicator indicator = IndicatorFactory.createIndicator(type, Integer.toString(this.autoincrementID++), this.symbol, this.currentTimeframe ,params, this.db_helper);
         if (indicator != null) {
-            indicators.put(indicator.getID(), indicator); //add to map
-            Log.d(ChartActivity.CHART_LOG_TAG, "Successfully created indicator with ID: " + indicator.getID());
+            if (sourceTimeframe != null) {
+                indicator.setSourceTimeframe(sourceTimeframe, this.timeframeMapper);
+            }
+            indicators.put(indicator); //add to the registry
+            //before the presets are loaded there is no preset to add it to, loadPreset adds it to the first one
+            if (currentPresetID != 0) {
+                presetIndicatorIds.put(indicator.getID(), presetManager.addEntry(currentPresetID, PresetEntry.of(indicator)));
+            }
+            AppLog.d(ChartActivity.CHART_LOG_TAG, "Successfully created indicator with ID: " + indicator.getID());
             addIndicator2Graph(indicator);
         } else {
-            Log.e(ChartActivity.CHART_LOG_TAG, "IndicatorFactory returned null for type: " + type);
+            AppLog.e(ChartActivity.CHART_LOG_TAG, "IndicatorFactory returned null for type: " + type);
         }
     }
 
     /**
-     * Adds an indicator to the internal map and draws it on the chart.
+     * Draws an indicator on the chart once its lines are computed and prefetches its other timeframes.
      */
     public void addIndicator2Graph(Indicator indicator) {
 
         if (indicator == null) return;
-        try{
-            indicator.draw(combinedChart);
-            Log.d(ChartActivity.CHART_LOG_TAG, "Successfully added indicator with ID: " + indicator.getID());
+        scheduleDraw(indicator);
+        //an indicator with its own timeframe draws from that one on every chart timeframe, only it is warmed
+        if (indicator.getSourceTimeframe() != null) {
+            scheduler.submit(symbol, indicator.getSourceTimeframe(), indicator.getSpec(), ComputeScheduler.Priority.PREFETCH,
+                    indicator.computeTask(indicator.getSourceTimeframe()));
+            return;
         }
-        catch (Exception e){
-            Log.e(ChartActivity.CHART_LOG_TAG, "Error drawing indicator: " + indicator.getID(), e);
-            // if drawing fails set visibily of indicator to false
-            indicator.setVisible(false);
-            Toast.makeText(this.combinedChart.getContext(), "Error drawing indicator: " + indicator.getID(), Toast.LENGTH_SHORT).show();
+        //warm the indicator cache of the other timeframes so switching to them is a cache hit
+        for (StockDataHelper.Timeframe timeframe : StockDataHelper.Timeframe.values()) {
+            if (timeframe == indicator.getTimeframe()) continue;
+            scheduler.submit(symbol, timeframe, indicator.getSpec(), ComputeScheduler.Priority.PREFETCH, indicator.computeTask(timeframe));
         }
     }
 
+    //computes the lines of an indicator on the scheduler and applies them on the main thread,
+    //results that are superseded (newer timeframe, changed settings, deleted indicator) are dropped
+    private void scheduleDraw(Indicator indicator) {
+        final int generation = scheduler.currentGeneration();
+        final StockDataHelper.Timeframe timeframe = indicator.getTimeframe();
+        final String spec = indicator.getDrawSpec();
+        indicator.submitDraw(scheduler, ComputeScheduler.Priority.VISIBLE)
+                .whenComplete((lines, error) -> combinedChart.post(
+                        () -> onIndicatorComputed(indicator, generation, timeframe, spec, lines, error)));
+    }
+
+    private void onIndicatorComputed(Indicator indicator, int generation, StockDataHelper.Timeframe timeframe,
+                                      String spec, List<List<Entry>> lines, Throwable error) {
+        if (!scheduler.isCurrent(generation) || indicators.get(indicator.getID()) != indicator
+                || indicator.getTimeframe() != timeframe || !indicator.getDrawSpec().equals(spec)) {
+            return;
+        }
+        if (error == null) {
+            try {
+                indicator.show(lines, combinedChart);
+                if (AppLog.isLoggable(AppLog.DEBUG)) {
+                    AppLog.d(ChartActivity.CHART_LOG_TAG, "Successfully drew indicator with ID: " + indicator.getID());
+                }
+                return;
+            } catch (Exception e) {
+                error = e;
+            }
+        }
+        if (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        if (error instanceof CancellationException) return;
+        AppLog.e(ChartActivity.CHART_LOG_TAG, "Error drawing indicator: " + indicator.getID(), error);
+        AppLog.dumpToLogcat(ChartActivity.CHART_LOG_TAG);
+        // if drawing fails set visibily of indicator to false
+        indicator.setVisible(false);
+        Toast.makeText(this.combinedChart.getContext(), "Error drawing indicator: " + indicator.getID(), Toast.LENGTH_SHORT).show();
+    }
+
     /**
      * Deletes an indicator from the chart and the manager using its ID.
      */
@@ -137,15 +287,19 @@ public class IndicatorManager {
                 // 2. Tell the indicator to remove its visual representation
                 indicator.remove(combinedChart);
 
-                // 3. Remove the indicator from the map
+                // 3. Remove the indicator from the map and its row from the preset
                 indicators.remove(id);
+                String presetIndicatorId = presetIndicatorIds.remove(id);
+                if (presetIndicatorId != null) {
+                    presetManager.removeEntry(currentPresetID, presetIndicatorId);
+                }
 
-                Log.d(ChartActivity.CHART_LOG_TAG, "Successfully deleted indicator with ID: " + id);
+                AppLog.d(ChartActivity.CHART_LOG_TAG, "Successfully deleted indicator with ID: " + id);
             } catch (Exception e) {
-                Log.e(ChartActivity.CHART_LOG_TAG, "Error while deleting indicator with ID: " + id, e);
+                AppLog.e(ChartActivity.CHART_LOG_TAG, "Error while deleting indicator with ID: " + id, e);
             }
         } else {
-            Log.w(ChartActivity.CHART_LOG_TAG, "Could not find an indicator with ID '" + id + "' to delete.");
+            AppLog.w(ChartActivity.CHART_LOG_TAG, "Could not find an indicator with ID '" + id + "' to delete.");
         }
     }
 
@@ -157,19 +311,30 @@ public class IndicatorManager {
         Indicator indicator = indicators.get(id);
         if (indicator != null) {
             try{
-                indicator.changeSettings(params, this.combinedChart);
+                indicators.update(id, () -> indicator.changeSettings(params, this.combinedChart));
+                //the lines of the new settings are computed off the main thread like a new indicator's
+                scheduleDraw(indicator);
+                String presetIndicatorId = presetIndicatorIds.get(id);
+                if (presetIndicatorId != null) {
+                    presetManager.putEntry(currentPresetID, presetIndicatorId, PresetEntry.of(indicator));
+                }
             }
             catch (Exception e) {
-                Log.e(ChartActivity.CHART_LOG_TAG, "Error changing settings for indicator " + id, e);
+                AppLog.e(ChartActivity.CHART_LOG_TAG, "Error changing settings for indicator " + id, e);
                 throw e;
             }
         } else {
-            Log.w(ChartActivity.CHART_LOG_TAG, "Could not find an indicator with ID '" + id + "' to change settings.");
+            AppLog.w(ChartActivity.CHART_LOG_TAG, "Could not find an indicator with ID '" + id + "' to change settings.");
         }
     }
 
-    //returns a map of all the indicators
+    //returns an immutable map of all the indicators as they are right now
     public Map<String, Indicator> getAllIndicators() {
-        return this.indicators;
+        return this.indicators.snapshot().asMap();
+    }
+
+    //returns an immutable list of all the indicators, safe to hand to adapters and compute threads
+    public List<Indicator> getIndicatorList() {
+        return this.indicators.snapshot().asList();
     }
 }
@@ -0,0 +1,101 @@
+package com.example.gutapp.data.chart;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+//copy-on-write registry of the active indicators
+//every change publishes a new immutable Snapshot, so compute threads can hold a consistent set of indicators
+//while the ui keeps adding, removing or changing settings
+public class IndicatorRegistry {
+
+    //immutable view of the registry at one point in time
+    public static final class Snapshot {
+        static final Snapshot EMPTY = new Snapshot(new LinkedHashMap<>(), 0);
+
+        private final Map<String, Indicator> byId;
+        private final List<Indicator> list;
+        private final long version;
+
+        private Snapshot(LinkedHashMap<String, Indicator> byId, long version) {
+            this.byId = Collections.unmodifiableMap(byId);
+            this.list = Collections.unmodifiableList(new ArrayList<>(byId.values()));
+            this.version = version;
+        }
+
+        public Map<String, Indicator> asMap() {
+            return byId;
+        }
+
+        public List<Indicator> asList() {
+            return list;
+        }
+
+        public Indicator get(String id) {
+            return byId.get(id);
+        }
+
+        public int size() {
+            return list.size();
+        }
+
+        public boolean isEmpty() {
+            return list.isEmpty();
+        }
+
+        //increases with every published change, including settings changes
+        public long getVersion() {
+            return version;
+        }
+    }
+
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+    //lock free read of the current state
+    public Snapshot snapshot() {
+        return snapshot;
+    }
+
+    public Indicator get(String id) {
+        return snapshot.get(id);
+    }
+
+    public synchronized void put(Indicator indicator) {
+        LinkedHashMap<String, Indicator> copy = new LinkedHashMap<>(snapshot.byId);
+        copy.put(indicator.getID(), indicator);
+        publish(copy);
+    }
+
+    public synchronized Indicator remove(String id) {
+        if (!snapshot.byId.containsKey(id)) return null;
+        LinkedHashMap<String, Indicator> copy = new LinkedHashMap<>(snapshot.byId);
+        Indicator removed = copy.remove(id);
+        publish(copy);
+        return removed;
+    }
+
+    //applies a settings change to a registered indicator and publishes it,
+    //readers that take a snapshot afterwards are guaranteed to see the new settings
+    public synchronized boolean update(String id, Runnable change) {
+        if (!snapshot.byId.containsKey(id)) return false;
+        change.run();
+        publish(new LinkedHashMap<>(snapshot.byId));
+        return true;
+    }
+
+    //same as update but for changes that touch every indicator, published once
+    public synchronized void updateAll(Runnable change) {
+        change.run();
+        publish(new LinkedHashMap<>(snapshot.byId));
+    }
+
+    public synchronized void clear() {
+        publish(new LinkedHashMap<>());
+    }
+
+    private void publish(LinkedHashMap<String, Indicator> indicators) {
+        snapshot = new Snapshot(indicators, snapshot.version + 1);
+    }
+}
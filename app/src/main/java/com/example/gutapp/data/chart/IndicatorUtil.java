@@ -1,128 +1,141 @@
 package com.example.gutapp.data.chart;
 
 import android.database.sqlite.SQLiteDatabase;
-import android.util.Log;
 
+import com.example.gutapp.data.log.AppLog;
+import com.example.gutapp.data.metrics.Metrics;
 import com.example.gutapp.database.DB_Helper;
 import com.example.gutapp.database.StockDataHelper;
 import com.example.gutapp.database.IndicatorDBHelper;
 import com.example.gutapp.database.indicatorHelpers.BollingerBands_DBHelper;
+import com.example.gutapp.engine.Cancellation;
+import com.example.gutapp.engine.IndicatorKernels;
 import com.github.mikephil.charting.data.Entry;
-import com.github.mikephil.charting.data.LineDataSet;
 
 import java.util.ArrayList;
 import java.util.List;
 
+//glue between the engine kernels and the app, runs on the compute threads of ComputeScheduler
+//the maths lives in IndicatorKernels (:engine), this class feeds it the close prices, caches the result
+//and turns it into chart entries. the token is checked every Cancellation.CHECK_MASK + 1 bars so a superseded computation
+//stops early (its cache transaction is rolled back)
 public class IndicatorUtil {
 
-    public static LineDataSet movingAverageDataSet(SQLiteDatabase db, List<float[]> prices, int period, String symbol, String id, StockDataHelper.Timeframe timeframe, String indicatorName) {
+    public static List<Entry> movingAverage(SQLiteDatabase db, List<float[]> prices, int period, String symbol, StockDataHelper.Timeframe timeframe, String indicatorName, CancellationToken token) {
         List<Entry> entries = new ArrayList<>();
-        if (prices == null || prices.size() < period) return new LineDataSet(entries, symbol);
+        if (prices == null || prices.size() < period) return entries;
 
-        // --- PERFORMANCE FIX: WRAP LOOP IN A TRANSACTION ---
-        db.beginTransaction(); // <-- 1. Begin the transaction
+        float[] closes = closes(prices);
+        float[] averages = new float[closes.length];
+        int first;
+        long start = Metrics.begin(Metrics.INDICATOR_COMPUTE);
         try {
-            for (int i = period - 1; i < prices.size(); i++) {
-                float sum = 0f;
-                for (int j = i - period + 1; j <= i; j++) {
-                    sum += prices.get(j)[1]; // sum y-values
-                }
-                float avg = sum / period;
-
-                // Pass timeframe when caching data (this is now extremely fast)
-                IndicatorDBHelper.insertIndicatorData(db, symbol, i, avg, period, timeframe, indicatorName);
-                entries.add(new Entry(prices.get(i)[0], avg));
-            }
-            db.setTransactionSuccessful(); // <-- 2. Mark transaction as successful
+            first = IndicatorKernels.sma(closes, closes.length, period, averages, token);
         } finally {
-            db.endTransaction(); // <-- 3. End the transaction (commits if successful, rolls back otherwise)
+            Metrics.end(Metrics.INDICATOR_COMPUTE, start);
         }
-        // ----------------------------------------------------
-
-        LineDataSet set = new LineDataSet(entries, id);
-        return set;
+        cacheLine(db, prices, averages, first, period, symbol, timeframe, indicatorName, entries, token);
+        return entries;
     }
 
-    public static LineDataSet exponentialMovingAverageDataSet(SQLiteDatabase db, List<float[]> prices, int period, String symbol, String id, StockDataHelper.Timeframe timeframe, String indicatorName) {
+    public static List<Entry> exponentialMovingAverage(SQLiteDatabase db, List<float[]> prices, int period, String symbol, StockDataHelper.Timeframe timeframe, String indicatorName, CancellationToken token) {
         List<Entry> entries = new ArrayList<>();
-        if (prices == null || prices.isEmpty()) return new LineDataSet(entries, symbol);
+        if (prices == null || prices.size() < period) return entries;
 
-        float multiplier = 2.0f / (period + 1);
-        float ema = prices.get(0)[1]; // Start with the first price
-
-        db.beginTransaction();
+        float[] closes = closes(prices);
+        float[] averages = new float[closes.length];
+        int first;
+        long start = Metrics.begin(Metrics.INDICATOR_COMPUTE);
         try {
-            // Insert the first EMA value
-            IndicatorDBHelper.insertIndicatorData(db, symbol, 0, ema, period, timeframe, indicatorName);
-            entries.add(new Entry(prices.get(0)[0], ema));
-
-            for (int i = period - 1; i < prices.size(); i++) {
-                ema = (prices.get(i)[1] - ema) * multiplier + ema;
-                IndicatorDBHelper.insertIndicatorData(db, symbol, i, ema, period, timeframe, indicatorName);
-                entries.add(new Entry(prices.get(i)[0], ema));
-            }
-            db.setTransactionSuccessful();
+            first = IndicatorKernels.ema(closes, closes.length, period, averages, token);
         } finally {
-            db.endTransaction();
+            Metrics.end(Metrics.INDICATOR_COMPUTE, start);
         }
-
-        LineDataSet set = new LineDataSet(entries, id);
-        return set;
+        cacheLine(db, prices, averages, first, period, symbol, timeframe, indicatorName, entries, token);
+        return entries;
     }
 
-    public static List<LineDataSet> bollingerBandsDataSet(SQLiteDatabase db, List<float[]> prices, int period, float stdDevMultiplier, String symbol, String id, StockDataHelper.Timeframe timeframe) {
+    //returns the middle, upper and lower band in this order
+    public static List<List<Entry>> bollingerBands(SQLiteDatabase db, List<float[]> prices, int period, float stdDevMultiplier, String symbol, StockDataHelper.Timeframe timeframe, CancellationToken token) {
         List<Entry> middleBandEntries = new ArrayList<>();
         List<Entry> upperBandEntries = new ArrayList<>();
         List<Entry> lowerBandEntries = new ArrayList<>();
-        List<LineDataSet> allBandsDataSets = new ArrayList<>();
+        List<List<Entry>> allBands = new ArrayList<>();
+        allBands.add(middleBandEntries);
+        allBands.add(upperBandEntries);
+        allBands.add(lowerBandEntries);
 
         if (prices == null || prices.size() < period) {
-            allBandsDataSets.add(new LineDataSet(middleBandEntries, id + "_middle"));
-            allBandsDataSets.add(new LineDataSet(upperBandEntries, id + "_upper"));
-            allBandsDataSets.add(new LineDataSet(lowerBandEntries, id + "_lower"));
-            return allBandsDataSets;
+            return allBands;
         }
 
-        db.beginTransaction();
+        float[] closes = closes(prices);
+        float[] middle = new float[closes.length];
+        float[] upper = new float[closes.length];
+        float[] lower = new float[closes.length];
+        int first;
+        long start = Metrics.begin(Metrics.INDICATOR_COMPUTE);
         try {
-            for (int i = period - 1; i < prices.size(); i++) {
-                // Calculate SMA (Middle Band)
-                float sum = 0f;
-                for (int j = i - period + 1; j <= i; j++) {
-                    sum += prices.get(j)[1];
-                }
-                float middleBand = sum / period;
-
-                // Calculate Standard Deviation
-                float varianceSum = 0f;
-                for (int j = i - period + 1; j <= i; j++) {
-                    varianceSum += Math.pow(prices.get(j)[1] - middleBand, 2);
-                }
-                float standardDeviation = (float) Math.sqrt(varianceSum / period);
-
-                // Calculate Upper and Lower Bands
-                float upperBand = middleBand + (standardDeviation * stdDevMultiplier);
-                float lowerBand = middleBand - (standardDeviation * stdDevMultiplier);
+            first = IndicatorKernels.bollingerBands(closes, closes.length, period, stdDevMultiplier, middle, upper, lower, token);
+        } finally {
+            Metrics.end(Metrics.INDICATOR_COMPUTE, start);
+        }
 
+        start = Metrics.begin(Metrics.DB_INDICATOR_WRITE);
+        db.beginTransaction();
+        try {
+            for (int i = first; i < closes.length; i++) {
+                if ((i & Cancellation.CHECK_MASK) == 0) token.throwIfCancelled();
                 // Cache the result (using sequential index 'i' as x-value)
                 BollingerBands_DBHelper.insertBollingerBands(
-                        db, symbol, i, middleBand, upperBand, lowerBand,
+                        db, symbol, i, middle[i], upper[i], lower[i],
                         period, stdDevMultiplier, timeframe
                 );
 
                 // Add to entries list (using sequential index 'i' as x-value)
-                middleBandEntries.add(new Entry(i, middleBand));
-                upperBandEntries.add(new Entry(i, upperBand));
-                lowerBandEntries.add(new Entry(i, lowerBand));
+                middleBandEntries.add(new Entry(i, middle[i]));
+                upperBandEntries.add(new Entry(i, upper[i]));
+                lowerBandEntries.add(new Entry(i, lower[i]));
             }
             db.setTransactionSuccessful();
         } finally {
             db.endTransaction();
+            Metrics.end(Metrics.DB_INDICATOR_WRITE, start);
+        }
+        if (AppLog.isLoggable(AppLog.DEBUG)) {
+            AppLog.d(DB_Helper.DB_LOG_TAG, "Cached " + middleBandEntries.size() + " Bollinger Bands values for " + symbol + " " + timeframe.name());
         }
 
-        allBandsDataSets.add(new LineDataSet(middleBandEntries, id + "_middle"));
-        allBandsDataSets.add(new LineDataSet(upperBandEntries, id + "_upper"));
-        allBandsDataSets.add(new LineDataSet(lowerBandEntries, id + "_lower"));
-        return allBandsDataSets;
+        return allBands;
+    }
+
+    //prices hold {x, close} pairs
+    private static float[] closes(List<float[]> prices) {
+        float[] closes = new float[prices.size()];
+        for (int i = 0; i < closes.length; i++) {
+            closes[i] = prices.get(i)[1];
+        }
+        return closes;
+    }
+
+    //writes a computed line to the indicator cache in one transaction and collects its chart entries
+    private static void cacheLine(SQLiteDatabase db, List<float[]> prices, float[] values, int first, int period, String symbol,
+                                  StockDataHelper.Timeframe timeframe, String indicatorName, List<Entry> entries, CancellationToken token) {
+        long start = Metrics.begin(Metrics.DB_INDICATOR_WRITE);
+        db.beginTransaction();
+        try {
+            for (int i = first; i < values.length; i++) {
+                if ((i & Cancellation.CHECK_MASK) == 0) token.throwIfCancelled();
+                IndicatorDBHelper.insertIndicatorData(db, symbol, i, values[i], period, timeframe, indicatorName);
+                entries.add(new Entry(prices.get(i)[0], values[i]));
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            Metrics.end(Metrics.DB_INDICATOR_WRITE, start);
+        }
+        if (AppLog.isLoggable(AppLog.DEBUG)) {
+            AppLog.d(DB_Helper.DB_LOG_TAG, "Cached " + entries.size() + " " + indicatorName + " values for " + symbol + " " + timeframe.name());
+        }
     }
 }
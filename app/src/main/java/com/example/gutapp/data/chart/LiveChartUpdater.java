@@ -0,0 +1,122 @@
+package com.example.gutapp.data.chart;
+
+import com.example.gutapp.data.live.AlertMonitor;
+import com.example.gutapp.data.live.LiveFeed;
+import com.example.gutapp.data.metrics.Metrics;
+import com.example.gutapp.database.LiveBarWriter;
+import com.example.gutapp.database.StockDataHelper;
+import com.example.gutapp.engine.BarBuilder;
+import com.example.gutapp.ui.TimeAxisFormatter;
+import com.github.mikephil.charting.charts.CombinedChart;
+import com.github.mikephil.charting.data.CandleData;
+import com.github.mikephil.charting.data.CandleEntry;
+import com.github.mikephil.charting.data.CombinedData;
+import com.github.mikephil.charting.interfaces.datasets.ICandleDataSet;
+
+//applies the live feed to the chart on the main thread
+//the forming candle of the shown timeframe is updated in place (or appended when a new bar starts) and the indicators
+//only move their last point, the chart data sets are never rebuilt. closed bars of every timeframe go to the writer
+//and to the alert monitor, indicators projected from a higher timeframe are recomputed when a bar of it closes
+public class LiveChartUpdater implements LiveFeed.Listener {
+    private final CombinedChart combinedChart;
+    private final IndicatorManager indicatorManager;
+    private final LiveBarWriter writer;
+    private final AlertMonitor alertMonitor;
+
+    private StockDataHelper.Timeframe timeframe;
+    private TimeAxisFormatter axisFormatter;
+
+    //alertMonitor may be null
+    public LiveChartUpdater(CombinedChart combinedChart, IndicatorManager indicatorManager, LiveBarWriter writer,
+                            AlertMonitor alertMonitor) {
+        this.combinedChart = combinedChart;
+        this.indicatorManager = indicatorManager;
+        this.writer = writer;
+        this.alertMonitor = alertMonitor;
+        if (alertMonitor != null) {
+            //the monitor's reads wait for the bars buffered here
+            alertMonitor.setWriter(writer);
+        }
+    }
+
+    //the series now on the chart, called whenever the candles are redrawn from the database
+    public void setSeries(StockDataHelper.Timeframe timeframe, TimeAxisFormatter axisFormatter) {
+        this.timeframe = timeframe;
+        this.axisFormatter = axisFormatter;
+    }
+
+    @Override
+    public void onBarClosed(StockDataHelper.Timeframe timeframe, long timestamp, float open, float high, float low, float close, long volume) {
+        writer.add(timeframe, timestamp, open, high, low, close, volume);
+        //lines projected from this timeframe get its new bar once it is written, the chart's own bars that closed
+        //with it were added before and go in the same flush
+        if (indicatorManager.hasProjected(timeframe)) {
+            writer.flush(() -> combinedChart.post(() -> indicatorManager.redrawProjected(timeframe)));
+        }
+        if (alertMonitor != null) {
+            alertMonitor.onBarClosed(writer.getSymbol(), timeframe, timestamp, close);
+        }
+        //the final ticks of the bar may have arrived in the same frame as the close, the chart gets them in onFrame
+        if (timeframe == this.timeframe) {
+            upsertCandle(timestamp, open, high, low, close);
+        }
+    }
+
+    @Override
+    public void onFrame(BarBuilder bars) {
+        if (timeframe == null) return;
+        long start = Metrics.begin(Metrics.CHART_LIVE_FRAME);
+        try {
+            int interval = timeframe.ordinal();
+            if (bars.isForming(interval)) {
+                upsertCandle(bars.getTimestamp(interval), bars.getOpen(interval), bars.getHigh(interval),
+                        bars.getLow(interval), bars.getClose(interval));
+            }
+            ICandleDataSet candles = candles();
+            if (candles == null) return;
+            indicatorManager.updateLive(candles);
+            //only the data set bounds are merged here, the entries were updated in place
+            combinedChart.getData().notifyDataChanged();
+            combinedChart.notifyDataSetChanged();
+            combinedChart.invalidate();
+        } finally {
+            Metrics.end(Metrics.CHART_LIVE_FRAME, start);
+        }
+    }
+
+    public void flush() {
+        writer.flush();
+    }
+
+    private ICandleDataSet candles() {
+        CombinedData data = combinedChart.getData();
+        CandleData candleData = data != null ? data.getCandleData() : null;
+        if (candleData == null || candleData.getDataSetCount() == 0) return null;
+        return candleData.getDataSetByIndex(0);
+    }
+
+    //updates the last candle when it is the same bar, appends a candle for a newer bar, ignores older bars
+    private void upsertCandle(long timestamp, float open, float high, float low, float close) {
+        ICandleDataSet candles = candles();
+        if (candles == null) return;
+        int count = candles.getEntryCount();
+        CandleEntry last = count > 0 ? candles.getEntryForIndex(count - 1) : null;
+        long lastTimestamp = last != null && last.getData() instanceof Long ? (Long) last.getData() : Long.MIN_VALUE;
+        if (timestamp == lastTimestamp) {
+            last.setOpen(open);
+            last.setHigh(high);
+            last.setLow(low);
+            last.setClose(close);
+            if (high > candles.getYMax() || low < candles.getYMin()) {
+                candles.calcMinMax();
+            }
+        } else if (timestamp > lastTimestamp) {
+            CandleEntry entry = new CandleEntry(count, high, low, open, close);
+            entry.setData(timestamp);
+            candles.addEntry(entry);
+            if (axisFormatter != null) {
+                axisFormatter.addTimestamp(timestamp);
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.gutapp.data.chart;
+
+import com.example.gutapp.database.StockDataHelper;
+
+//compact description of one indicator stored inside a preset
+//only turned into a real Indicator (through IndicatorFactory) when its preset is activated
+public class PresetEntry {
+    private static final String SOURCE_SEPARATOR = "@";
+
+    private final Indicators type;
+    private final String params;
+
+    public PresetEntry(Indicators type, String params) {
+        this.type = type;
+        this.params = params;
+    }
+
+    //snapshots a live indicator back into its compact form
+    public static PresetEntry of(Indicator indicator) {
+        return new PresetEntry(indicator.getType(), paramsOf(indicator));
+    }
+
+    //the indicator's params, followed by "@" and its source timeframe when it has its own ("color:period:width@1d")
+    private static String paramsOf(Indicator indicator) {
+        StockDataHelper.Timeframe source = indicator.getSourceTimeframe();
+        return source == null ? indicator.getParams() : indicator.getParams() + SOURCE_SEPARATOR + source.getValue();
+    }
+
+    public Indicators getType() {
+        return type;
+    }
+
+    public String getParams() {
+        return params;
+    }
+
+    //timeframe the indicator is computed on, null when it follows the chart (and for rows stored before there was one)
+    public StockDataHelper.Timeframe getSourceTimeframe() {
+        int separator = params.indexOf(SOURCE_SEPARATOR);
+        return separator < 0 ? null : StockDataHelper.Timeframe.fromValue(params.substring(separator + 1));
+    }
+
+    //parses the colon separated params string into the array IndicatorFactory expects
+    public float[] getParamsArray() {
+        int separator = params.indexOf(SOURCE_SEPARATOR);
+        String[] paramsArray = (separator < 0 ? params : params.substring(0, separator)).split(":");
+        float[] paramsArrayF = new float[paramsArray.length];
+        for (int i = 0; i < paramsArray.length; i++) {
+            paramsArrayF[i] = Float.parseFloat(paramsArray[i]);
+        }
+        return paramsArrayF;
+    }
+
+    //two entries (or an entry and a live indicator) with the same key draw exactly the same thing
+    public String getKey() {
+        return keyOf(type, params);
+    }
+
+    public static String keyOf(Indicator indicator) {
+        return keyOf(indicator.getType(), paramsOf(indicator));
+    }
+
+    private static String keyOf(Indicators type, String params) {
+        return type.ordinal() + "|" + params;
+    }
+
+    @Override
+    public String toString() {
+        return type.name() + "(" + params + ")";
+    }
+}
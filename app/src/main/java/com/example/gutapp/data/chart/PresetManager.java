@@ -1,21 +1,28 @@
 package com.example.gutapp.data.chart;
 
 import android.database.Cursor;
-import android.database.sqlite.SQLiteDatabase;
-import android.util.Log;
 
 import com.example.gutapp.data.UserGlobals;
+import com.example.gutapp.data.log.AppLog;
 import com.example.gutapp.database.ChartPresetHelper;
 import com.example.gutapp.database.DB_Helper;
 import com.example.gutapp.database.DB_Index;
-import com.example.gutapp.database.StockDataHelper;
 import com.example.gutapp.ui.ChartActivity;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
 
 public class PresetManager {
-    private final Map<String, Indicator>[] presets;
+    //presets only hold the compact rows from the db keyed by indicator id,
+    //indicators are created when a preset is activated
+    private final Map<String, PresetEntry>[] presets;
+    private final int[] nextIndicatorIds;
+    //rows changed since the last store, keyed by preset and indicator id so repeated edits collapse into one write
+    private final Map<String, ChartPresetHelper.Change> dirty;
     private DB_Helper db_helper;
     private String symbol;
     private String user_id;
@@ -26,55 +33,118 @@ public class PresetManager {
         this.symbol = symbol;
         presets = new Map[5]; //maximum 5 presets per user
         for (int i = 0; i < presets.length; i++) {
-            presets[i] = new HashMap<String, Indicator>();
+            presets[i] = new HashMap<String, PresetEntry>();
         } //maximum 5 presets per user
+        this.nextIndicatorIds = new int[presets.length];
+        this.dirty = new LinkedHashMap<>();
         this.user_id = UserGlobals.ID;
     }
 
-    //loads presets from the data base
-    public void loadPresets() {
-        ChartPresetHelper presetHelper = new ChartPresetHelper(db_helper);
-        int j;
-        for (int i = 0; i < presets.length; i++) {
-            Cursor cursor = presetHelper.fetchPresets(user_id, i+1, symbol);
-            if (cursor != null && cursor.getCount() != 0) {
-                if (cursor.moveToFirst()) {
-                    j = 0;
-                    do {
-                        int type = cursor.getInt(cursor.getColumnIndexOrThrow("type"));
-                        String params = cursor.getString(cursor.getColumnIndexOrThrow("params"));
-                        float[] paramsArray = parseParams(params);
-                        Indicator indicator = IndicatorFactory.createIndicator(Indicators.fromInt(type),
-                                Integer.toString(j), this.symbol, StockDataHelper.Timeframe.DAILY, paramsArray, this.db_helper);
-                        presets[i].put(Integer.toString(j), indicator);
-                        j++;
-                    } while (cursor.moveToNext());
+    //one stored row of a preset
+    private static final class Row {
+        final int preset_id;
+        final String indicator_id;
+        final PresetEntry entry;
+
+        Row(int preset_id, String indicator_id, PresetEntry entry) {
+            this.preset_id = preset_id;
+            this.indicator_id = indicator_id;
+            this.entry = entry;
+        }
+    }
+
+    //loads the rows of all presets from the data base with a single query
+    //the query runs on the write thread after the preset writes still queued there (the previous chart's), the rows are
+    //then handed to mainThread where the presets are filled and onLoaded runs
+    public void loadPresets(Executor mainThread, Runnable onLoaded) {
+        ChartPresetHelper presetHelper = (ChartPresetHelper)db_helper.getHelper(DB_Index.CHART_PRESET_TABLE);
+        DB_Helper.getWriteExecutor().execute(() -> {
+            List<Row> rows = readRows(presetHelper);
+            mainThread.execute(() -> {
+                for (Row row : rows) {
+                    presets[row.preset_id - 1].put(row.indicator_id, row.entry);
+                    reserveIndicatorId(row.preset_id, row.indicator_id);
                 }
-                cursor.close();
+                AppLog.i(ChartActivity.CHART_LOG_TAG, "All presets loaded for " + symbol);
+                onLoaded.run();
+            });
+        });
+    }
+
+    private List<Row> readRows(ChartPresetHelper presetHelper) {
+        List<Row> rows = new ArrayList<>();
+        Cursor cursor = presetHelper.fetchAllPresets(user_id, symbol);
+        if (cursor == null) {
+            return rows;
+        }
+        try {
+            if (cursor.moveToFirst()) {
+                int presetCol = cursor.getColumnIndexOrThrow("preset_id");
+                int idCol = cursor.getColumnIndexOrThrow("indicator_id");
+                int typeCol = cursor.getColumnIndexOrThrow("type");
+                int paramsCol = cursor.getColumnIndexOrThrow("params");
+                do {
+                    int preset_id = cursor.getInt(presetCol);
+                    if (preset_id < 1 || preset_id > presets.length) continue;
+                    PresetEntry entry = new PresetEntry(Indicators.fromInt(cursor.getInt(typeCol)), cursor.getString(paramsCol));
+                    rows.add(new Row(preset_id, cursor.getString(idCol), entry));
+                } while (cursor.moveToNext());
             }
+        } finally {
+            cursor.close();
         }
-        Log.i(ChartActivity.CHART_LOG_TAG, "All presets loaded" + presets.toString());
+        return rows;
     }
 
-    //stores all presets into the db
+    //stores the changed rows into the db off the main thread, nothing is written if nothing changed
     public void storePresets(){
+        if (dirty.isEmpty()) {
+            AppLog.i(ChartActivity.CHART_LOG_TAG, "No preset changes to save");
+            return;
+        }
         ChartPresetHelper presetHelper = (ChartPresetHelper)db_helper.getHelper(DB_Index.CHART_PRESET_TABLE);
-        presetHelper.storePresets(this.user_id,  this.symbol ,this.presets);
-        Log.i(ChartActivity.CHART_LOG_TAG, "All presets saved");
+        presetHelper.storeChangesAsync(this.user_id, this.symbol, new ArrayList<>(dirty.values()));
+        dirty.clear();
+        AppLog.i(ChartActivity.CHART_LOG_TAG, "Preset changes handed to the write thread");
     }
 
-    private float[] parseParams(String params) {
-        String[] paramsArray = params.split(":");
-        float[] paramsArrayF = new float[paramsArray.length];
-        for(int i = 0; i < paramsArray.length; i++){
-            paramsArrayF[i] = Float.parseFloat(paramsArray[i]);
-        }
-        return paramsArrayF;
+    //returns the compact rows of a preset, the caller decides which indicators to create from them
+    public Map<String, PresetEntry> getPreset(int preset_id) {
+        return presets[preset_id-1];
     }
 
-    public Map<String, Indicator> getPreset(int preset_id) {
-        Log.i(ChartActivity.CHART_LOG_TAG, "Preset loaded successfully to indicator manager" + presets[preset_id-1].toString());
-        return presets[preset_id-1];
+    //adds a new row to a preset and returns the indicator id it was stored under
+    public String addEntry(int preset_id, PresetEntry entry) {
+        String indicator_id = Integer.toString(nextIndicatorIds[preset_id-1]++);
+        putEntry(preset_id, indicator_id, entry);
+        return indicator_id;
+    }
+
+    //replaces the row of a preset and marks it for saving
+    public void putEntry(int preset_id, String indicator_id, PresetEntry entry) {
+        presets[preset_id-1].put(indicator_id, entry);
+        dirty.put(preset_id + "/" + indicator_id, new ChartPresetHelper.Change(preset_id, indicator_id, entry));
+    }
+
+    //removes the row of a preset and marks the delete for saving
+    public void removeEntry(int preset_id, String indicator_id) {
+        if (presets[preset_id-1].remove(indicator_id) == null) return;
+        dirty.put(preset_id + "/" + indicator_id, new ChartPresetHelper.Change(preset_id, indicator_id, null));
     }
-}
 
+    public boolean hasChanges() {
+        return !dirty.isEmpty();
+    }
+
+    //keeps new indicator ids above every id already stored for the preset
+    private void reserveIndicatorId(int preset_id, String indicator_id) {
+        try {
+            int id = Integer.parseInt(indicator_id);
+            if (id >= nextIndicatorIds[preset_id-1]) {
+                nextIndicatorIds[preset_id-1] = id + 1;
+            }
+        } catch (NumberFormatException e) {
+            AppLog.w(ChartActivity.CHART_LOG_TAG, "Non numeric indicator id in preset " + preset_id + ": " + indicator_id);
+        }
+    }
+}
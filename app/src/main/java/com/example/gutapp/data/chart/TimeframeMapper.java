@@ -0,0 +1,91 @@
+package com.example.gutapp.data.chart;
+
+import com.example.gutapp.database.StockDataHelper;
+import com.example.gutapp.engine.TimeAlignment;
+import com.github.mikephil.charting.data.Entry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+//maps every bar of a symbol's chart timeframe to the bar of a higher timeframe it falls in, so a line computed on
+//the higher timeframe is drawn on the chart's bars by reading one index per bar
+//a map is built once per symbol and pair of timeframes with TimeAlignment (one merge join over both timestamp columns)
+//and kept, it is checked against the bar count and last date of both series before use so new bars rebuild it
+//safe to call from several compute threads
+public class TimeframeMapper {
+    private static final int MAX_MAPS = 8;
+
+    private static final class Mapping {
+        final String lowerVersion;
+        final String higherVersion;
+        final int[] indices;
+
+        Mapping(String lowerVersion, String higherVersion, int[] indices) {
+            this.lowerVersion = lowerVersion;
+            this.higherVersion = higherVersion;
+            this.indices = indices;
+        }
+    }
+
+    private final StockDataHelper stockDataHelper;
+    //least recently used first
+    private final Map<String, Mapping> maps = new LinkedHashMap<String, Mapping>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Mapping> eldest) {
+            return size() > MAX_MAPS;
+        }
+    };
+
+    public TimeframeMapper(StockDataHelper stockDataHelper) {
+        this.stockDataHelper = stockDataHelper;
+    }
+
+    //index of the higher timeframe bar of every lower timeframe bar in chart order, -1 before the higher series starts
+    //the returned array is shared, callers only read it
+    public int[] map(String symbol, StockDataHelper.Timeframe lower, StockDataHelper.Timeframe higher, CancellationToken token) {
+        String key = symbol + "|" + lower.getValue() + "|" + higher.getValue();
+        String lowerVersion = stockDataHelper.getSeriesVersion(symbol, lower);
+        String higherVersion = stockDataHelper.getSeriesVersion(symbol, higher);
+        synchronized (maps) {
+            Mapping cached = maps.get(key);
+            if (cached != null && cached.lowerVersion.equals(lowerVersion) && cached.higherVersion.equals(higherVersion)) {
+                return cached.indices;
+            }
+        }
+        //two threads missing together both build it, the maps are equal and the last one stays
+        long[] lowerTimestamps = stockDataHelper.getTimestamps(symbol, lower, token);
+        long[] higherTimestamps = stockDataHelper.getTimestamps(symbol, higher, token);
+        token.throwIfCancelled();
+        int[] indices = new int[lowerTimestamps.length];
+        TimeAlignment.barIndices(lowerTimestamps, lowerTimestamps.length, higherTimestamps, higherTimestamps.length, indices);
+        synchronized (maps) {
+            maps.put(key, new Mapping(lowerVersion, higherVersion, indices));
+        }
+        return indices;
+    }
+
+    //a higher timeframe line (x = its bar index) as steps on the lower timeframe's bars: the i-th bar gets the value
+    //of the higher bar indices[i] points at, bars before the line starts are left out
+    public static List<Entry> project(List<Entry> line, int[] indices) {
+        int higherBars = 0;
+        for (Entry entry : line) {
+            higherBars = Math.max(higherBars, (int) entry.getX() + 1);
+        }
+        float[] values = new float[higherBars];
+        Arrays.fill(values, Float.NaN);
+        for (Entry entry : line) {
+            if (entry.getX() >= 0) values[(int) entry.getX()] = entry.getY();
+        }
+        List<Entry> projected = new ArrayList<>(indices.length);
+        for (int i = 0; i < indices.length; i++) {
+            int j = indices[i];
+            if (j >= 0 && j < higherBars && !Float.isNaN(values[j])) {
+                projected.add(new Entry(i, values[j]));
+            }
+        }
+        return projected;
+    }
+}
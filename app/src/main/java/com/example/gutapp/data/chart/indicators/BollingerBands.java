@@ -3,13 +3,18 @@ package com.example.gutapp.data.chart.indicators;
 import android.database.Cursor;
 import android.graphics.Color;
 
+import com.example.gutapp.data.chart.CancellationToken;
+import com.example.gutapp.data.chart.ComputeScheduler;
 import com.example.gutapp.data.chart.Indicator;
 import com.example.gutapp.data.chart.IndicatorUtil;
 import com.example.gutapp.data.chart.Indicators;
+import com.example.gutapp.data.metrics.Metrics;
 import com.example.gutapp.database.DB_Helper;
 import com.example.gutapp.database.DB_Index;
 import com.example.gutapp.database.StockDataHelper;
 import com.example.gutapp.database.indicatorHelpers.BollingerBands_DBHelper;
+import com.example.gutapp.engine.Cancellation;
+import com.example.gutapp.engine.StreamingBollingerBands;
 import com.example.gutapp.ui.ChartActivity;
 import com.github.mikephil.charting.charts.CombinedChart;
 import com.github.mikephil.charting.data.CombinedData;
@@ -20,6 +25,7 @@ import com.github.mikephil.charting.interfaces.datasets.ILineDataSet;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CancellationException;
 
 public class BollingerBands extends Indicator {
 
@@ -32,6 +38,8 @@ public class BollingerBands extends Indicator {
     private String middleBandId;
     private String upperBandId;
     private String lowerBandId;
+    //live feed state, built from the candles on the chart
+    private StreamingBollingerBands live;
 
     public BollingerBands(DB_Helper db_helper, int color, int period,
                           float stdDevMultiplier, float width, String id, Indicators type,
@@ -48,18 +56,18 @@ public class BollingerBands extends Indicator {
         this.lowerBandId = id + "_lower";
     }
 
-    private List<LineDataSet> calculateBollingerBands(String symbol, int period,
+    //returns the middle, upper and lower band in this order
+    private List<List<Entry>> calculateBollingerBands(String symbol, int period,
                                                     float stdDevMultiplier,
-                                                    StockDataHelper.Timeframe timeframe) {
+                                                    StockDataHelper.Timeframe timeframe,
+                                                    CancellationToken token) {
         List<List<Entry>> cachedData = dbHelper.fetchBollingerBands(symbol, period, stdDevMultiplier, timeframe);
 
         if (!cachedData.get(0).isEmpty()) {
-            List<LineDataSet> dataSets = new ArrayList<>();
-            dataSets.add(new LineDataSet(cachedData.get(0), middleBandId));
-            dataSets.add(new LineDataSet(cachedData.get(1), upperBandId));
-            dataSets.add(new LineDataSet(cachedData.get(2), lowerBandId));
-            return dataSets;
+            Metrics.get().increment(Metrics.INDICATOR_CACHE_HIT);
+            return cachedData;
         } else {
+            Metrics.get().increment(Metrics.INDICATOR_CACHE_MISS);
             List<float[]> prices = new ArrayList<>();
 
             try (Cursor cursor = ((StockDataHelper) db_helper.getHelper(DB_Index.STOCK_TABLE))
@@ -72,45 +80,59 @@ public class BollingerBands extends Indicator {
 
                 if (cursor != null && cursor.moveToFirst()) {
                     while (!cursor.isAfterLast()) {
+                        if ((prices.size() & Cancellation.CHECK_MASK) == 0) token.throwIfCancelled();
                         float date = cursor.getFloat(0);
                         float close = cursor.getFloat(1);
                         prices.add(new float[]{date, close});
                         cursor.moveToNext();
                     }
-                    return IndicatorUtil.bollingerBandsDataSet(
+                    return IndicatorUtil.bollingerBands(
                             db_helper.getWritableDatabase(),
                             prices,
                             period,
                             stdDevMultiplier,
                             symbol,
-                            getID(),
-                            timeframe
+                            timeframe,
+                            token
                     );
                 }
+            } catch (CancellationException e) {
+                throw e;
             } catch (Exception e) {
             }
-            List<LineDataSet> emptyDataSets = new ArrayList<>();
-            emptyDataSets.add(new LineDataSet(new ArrayList<>(), middleBandId + "_error"));
-            emptyDataSets.add(new LineDataSet(new ArrayList<>(), upperBandId + "_error"));
-            emptyDataSets.add(new LineDataSet(new ArrayList<>(), lowerBandId + "_error"));
-            return emptyDataSets;
+            List<List<Entry>> emptyBands = new ArrayList<>();
+            emptyBands.add(new ArrayList<>());
+            emptyBands.add(new ArrayList<>());
+            emptyBands.add(new ArrayList<>());
+            return emptyBands;
         }
     }
 
     @Override
-    public void draw(CombinedChart combinedChart) {
-        remove(combinedChart);
+    public String getSpec() {
+        return "BOLLINGER_BANDS:" + this.period + ":" + this.stdDevMultiplier;
+    }
+
+    @Override
+    public ComputeScheduler.Task<List<List<Entry>>> computeTask(StockDataHelper.Timeframe timeframe) {
+        //capture the settings now, the task runs on a compute thread
+        final String symbol = this.symbol;
+        final int period = this.period;
+        final float stdDevMultiplier = this.stdDevMultiplier;
+        return token -> calculateBollingerBands(symbol, period, stdDevMultiplier, timeframe, token);
+    }
 
-        List<LineDataSet> bollingerBandsDataSets = calculateBollingerBands(
-                this.symbol,
-                this.period,
-                this.stdDevMultiplier,
-                this.timeframe
-        );
+    @Override
+    public void apply(List<List<Entry>> bands, CombinedChart combinedChart) {
+        remove(combinedChart);
 
-        if (bollingerBandsDataSets == null || bollingerBandsDataSets.isEmpty() || bollingerBandsDataSets.get(0).getEntryCount() == 0) {
+        if (bands == null || bands.size() < 3 || bands.get(0).isEmpty()) {
             return;
         }
+        List<LineDataSet> bollingerBandsDataSets = new ArrayList<>();
+        bollingerBandsDataSets.add(new LineDataSet(new ArrayList<>(bands.get(0)), middleBandId));
+        bollingerBandsDataSets.add(new LineDataSet(new ArrayList<>(bands.get(1)), upperBandId));
+        bollingerBandsDataSets.add(new LineDataSet(new ArrayList<>(bands.get(2)), lowerBandId));
 
         // Configure visual properties for Middle Band
         LineDataSet middleBandDataSet = bollingerBandsDataSets.get(0);
@@ -119,6 +141,7 @@ public class BollingerBands extends Indicator {
         middleBandDataSet.setDrawCircles(false);
         middleBandDataSet.setDrawValues(false);
         middleBandDataSet.setHighlightEnabled(false);
+        stepIfProjected(middleBandDataSet);
 
         // Configure visual properties for Upper Band
         LineDataSet upperBandDataSet = bollingerBandsDataSets.get(1);
@@ -127,6 +150,7 @@ public class BollingerBands extends Indicator {
         upperBandDataSet.setDrawCircles(false);
         upperBandDataSet.setDrawValues(false);
         upperBandDataSet.setHighlightEnabled(false);
+        stepIfProjected(upperBandDataSet);
 
         // Configure visual properties for Lower Band
         LineDataSet lowerBandDataSet = bollingerBandsDataSets.get(2);
@@ -135,6 +159,7 @@ public class BollingerBands extends Indicator {
         lowerBandDataSet.setDrawCircles(false);
         lowerBandDataSet.setDrawValues(false);
         lowerBandDataSet.setHighlightEnabled(false);
+        stepIfProjected(lowerBandDataSet);
 
         CombinedData combinedData = combinedChart.getData();
         if (combinedData == null) {
@@ -153,8 +178,12 @@ public class BollingerBands extends Indicator {
         combinedData.setData(lineData);
         combinedChart.setData(combinedData);
 
-        combinedChart.notifyDataSetChanged();
-        combinedChart.invalidate();
+        refreshChart(combinedChart);
+    }
+
+    @Override
+    protected String[] getLineLabels() {
+        return new String[]{middleBandId, upperBandId, lowerBandId};
     }
 
     @Override
@@ -183,8 +212,7 @@ public class BollingerBands extends Indicator {
             lineData.removeDataSet(lowerSet);
         }
 
-        combinedChart.notifyDataSetChanged();
-        combinedChart.invalidate();
+        refreshChart(combinedChart);
     }
 
     @Override
@@ -196,7 +224,28 @@ public class BollingerBands extends Indicator {
         this.stdDevMultiplier = params[2];
         this.width = params[3];
 
-        this.draw(combinedChart);
+        this.invalidateLive();
+    }
+
+    @Override
+    public void truncateLive(CombinedChart combinedChart, float lastX) {
+        truncateLine(combinedChart, middleBandId, lastX);
+        truncateLine(combinedChart, upperBandId, lastX);
+        truncateLine(combinedChart, lowerBandId, lastX);
+        invalidateLive();
+    }
+
+    @Override
+    protected void resetLive() {
+        live = new StreamingBollingerBands(period, stdDevMultiplier);
+    }
+
+    @Override
+    protected void onLiveBar(CombinedChart combinedChart, float x, float close, boolean closed) {
+        if (closed ? !live.push(close) : !live.peek(close)) return;
+        setLastPoint(combinedChart, middleBandId, x, live.getMiddle());
+        setLastPoint(combinedChart, upperBandId, x, live.getUpper());
+        setLastPoint(combinedChart, lowerBandId, x, live.getLower());
     }
 
     @Override
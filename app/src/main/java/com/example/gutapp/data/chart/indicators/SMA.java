@@ -2,15 +2,20 @@ package com.example.gutapp.data.chart.indicators;
 
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
-import android.util.Log;
 
+import com.example.gutapp.data.chart.CancellationToken;
+import com.example.gutapp.data.chart.ComputeScheduler;
 import com.example.gutapp.data.chart.Indicator;
 import com.example.gutapp.data.chart.IndicatorUtil;
 import com.example.gutapp.data.chart.Indicators;
+import com.example.gutapp.data.log.AppLog;
+import com.example.gutapp.data.metrics.Metrics;
 import com.example.gutapp.database.DB_Helper;
 import com.example.gutapp.database.DB_Index;
 import com.example.gutapp.database.StockDataHelper;
 import com.example.gutapp.database.IndicatorDBHelper;
+import com.example.gutapp.engine.Cancellation;
+import com.example.gutapp.engine.StreamingSma;
 import com.example.gutapp.ui.ChartActivity;
 import com.github.mikephil.charting.charts.CombinedChart;
 import com.github.mikephil.charting.data.CombinedData;
@@ -20,7 +25,9 @@ import com.github.mikephil.charting.data.LineDataSet;
 import com.github.mikephil.charting.interfaces.datasets.ILineDataSet;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CancellationException;
 
 public class SMA extends Indicator {
 
@@ -29,6 +36,8 @@ public class SMA extends Indicator {
     //num 2 parameter
     private float width;
     private IndicatorDBHelper indicatorDBHelper;
+    //live feed state, built from the candles on the chart
+    private StreamingSma live;
     private DB_Helper db_helper;
 
     public SMA(DB_Helper db_helper,int color,int period, float width,String id, Indicators type, String symbol, StockDataHelper.Timeframe timeframe) {
@@ -65,11 +74,12 @@ public class SMA extends Indicator {
 //    }
 //
 //    // In SMA.java
-public LineDataSet calculateSMA(String symbol, int period, StockDataHelper.Timeframe timeframe) {
+public List<Entry> calculateSMA(String symbol, int period, StockDataHelper.Timeframe timeframe, CancellationToken token) {
     // Pass timeframe to the database helper
     List<Entry> entries = indicatorDBHelper.fetchIndicatorData(symbol, period, timeframe, "SMA");
     if (entries.isEmpty()) {
-        Log.i(ChartActivity.CHART_LOG_TAG, "Calculating SMA for" + symbol + " " + timeframe.name());
+        Metrics.get().increment(Metrics.INDICATOR_CACHE_MISS);
+        AppLog.i(ChartActivity.CHART_LOG_TAG, "Calculating SMA for" + symbol + " " + timeframe.name());
         List<float[]> prices = new ArrayList<>();
         // Use try-with-resources to automatically close the cursor
         try (Cursor cursor = ((StockDataHelper) db_helper.getHelper(DB_Index.STOCK_TABLE)).readFromDB(
@@ -79,48 +89,66 @@ public LineDataSet calculateSMA(String symbol, int period, StockDataHelper.Timef
                 new String[]{symbol, timeframe.getValue()}, // Use timeframe in query args
                 "date ASC",
                 null)) {
-            Log.i(DB_Helper.DB_LOG_TAG, "Fetched " + prices.size() + " entries for symbol " + symbol);
             int i = 0;
             if (cursor != null && cursor.moveToFirst()) {
                 while (!cursor.isAfterLast()) {
+                    if ((i & Cancellation.CHECK_MASK) == 0) token.throwIfCancelled();
                     float date = i++;
                     float close = cursor.getFloat(0);
                     prices.add(new float[]{date, close});
                     cursor.moveToNext();
                 }
-                Log.i(DB_Helper.DB_LOG_TAG, "Fetched " + prices.size() + " entries for symbol " + symbol);
+                AppLog.d(DB_Helper.DB_LOG_TAG, () -> "Fetched " + prices.size() + " entries for symbol " + symbol);
                 // Pass timeframe to the calculation utility
-                return IndicatorUtil.movingAverageDataSet(db_helper.getWritableDatabase(), prices, period, symbol, getID(), timeframe, "SMA");
+                return IndicatorUtil.movingAverage(db_helper.getWritableDatabase(), prices, period, symbol, timeframe, "SMA", token);
             }
+        } catch (CancellationException e) {
+            throw e;
         } catch (Exception e) {
-            Log.e(DB_Helper.DB_LOG_TAG, "Error fetching stock data for SMA: " + e.getMessage(), e);
-            return new LineDataSet(new ArrayList<>(), getID() + "_error");
+            AppLog.e(DB_Helper.DB_LOG_TAG, "Error fetching stock data for SMA: " + e.getMessage(), e);
+            return new ArrayList<>();
         }
     }
-        LineDataSet data= new LineDataSet(entries, getID());
-        Log.i(ChartActivity.CHART_LOG_TAG, "Returning cached SMA for " + symbol + " "  + timeframe.name() + " " + period + " size: " + data.getEntryCount());
-    return data ;
+        Metrics.get().increment(Metrics.INDICATOR_CACHE_HIT);
+        if (AppLog.isLoggable(AppLog.DEBUG)) {
+            AppLog.d(ChartActivity.CHART_LOG_TAG, "Returning cached SMA for " + symbol + " " + timeframe.name() + " " + period + " size: " + entries.size());
+        }
+    return entries;
 }
 
 
 
     @Override
-    public void draw(CombinedChart combinedChart) {
+    public String getSpec() {
+        return "SMA:" + this.period;
+    }
+
+    @Override
+    public ComputeScheduler.Task<List<List<Entry>>> computeTask(StockDataHelper.Timeframe timeframe) {
+        //capture the settings now, the task runs on a compute thread
+        final String symbol = this.symbol;
+        final int period = this.period;
+        return token -> Collections.singletonList(calculateSMA(symbol, period, timeframe, token));
+    }
+
+    @Override
+    public void apply(List<List<Entry>> lines, CombinedChart combinedChart) {
         // --- FIX: Always remove the old line before drawing a new one ---
         remove(combinedChart);
 
-        LineDataSet indicatorDataSet = calculateSMA(this.symbol, this.period, this.timeframe);
+        LineDataSet indicatorDataSet = new LineDataSet(new ArrayList<>(lines.get(0)), getID());
 
         indicatorDataSet.setColor(this.color);
         indicatorDataSet.setLineWidth(this.width);
         // Essential for performance and to avoid label clutter
         indicatorDataSet.setDrawCircles(false);
         indicatorDataSet.setDrawValues(false);
+        stepIfProjected(indicatorDataSet);
 
         CombinedData combinedData = combinedChart.getData();
         if (combinedData == null) {
             // This case should not happen if the chart already has stock data, but it's a good safeguard
-            Log.e(ChartActivity.CHART_LOG_TAG, "CombinedData is null. Cannot draw indicator.");
+            AppLog.e(ChartActivity.CHART_LOG_TAG, "CombinedData is null. Cannot draw indicator.");
             return;
         }
         LineData lineData = combinedData.getLineData();
@@ -133,8 +161,7 @@ public LineDataSet calculateSMA(String symbol, int period, StockDataHelper.Timef
 
 
         // No need to call combinedChart.setData() again, just notify of the change
-        combinedChart.notifyDataSetChanged();
-        combinedChart.invalidate();
+        refreshChart(combinedChart);
     }
 
 
@@ -144,7 +171,23 @@ public LineDataSet calculateSMA(String symbol, int period, StockDataHelper.Timef
         this.color = (int)params[0];
         this.period = (int) params[1];
         this.width = params[2];
-        this.draw(combinedChart);
+        this.invalidateLive();
+    }
+
+    @Override
+    public void truncateLive(CombinedChart combinedChart, float lastX) {
+        truncateLine(combinedChart, getID(), lastX);
+        invalidateLive();
+    }
+
+    @Override
+    protected void resetLive() {
+        live = new StreamingSma(period);
+    }
+
+    @Override
+    protected void onLiveBar(CombinedChart combinedChart, float x, float close, boolean closed) {
+        setLastPoint(combinedChart, getID(), x, closed ? live.push(close) : live.peek(close));
     }
 
     @Override
@@ -168,8 +211,7 @@ public LineDataSet calculateSMA(String symbol, int period, StockDataHelper.Timef
             // Remove the dataset from the line data
             lineData.removeDataSet(set);
             // Refresh the chart to reflect the change
-            combinedChart.notifyDataSetChanged();
-            combinedChart.invalidate();
+            refreshChart(combinedChart);
         }
     }
     @Override
@@ -0,0 +1,163 @@
+package com.example.gutapp.data.live;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.example.gutapp.data.log.AppLog;
+import com.example.gutapp.database.AlertsTableHelper;
+import com.example.gutapp.database.DB_Helper;
+import com.example.gutapp.database.LiveBarWriter;
+import com.example.gutapp.database.StockDataHelper;
+import com.example.gutapp.engine.Alert;
+import com.example.gutapp.engine.AlertBook;
+import com.example.gutapp.engine.CandleSeries;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+//evaluates the user's alerts on the bars the live feed closes, one AlertBook per timeframe
+//watching a symbol loads its active alerts and warms their lines up from the stored bars, after that a closed bar
+//costs a push per line and a compare per alert. a fired alert is marked in the alerts table and handed to the listener
+//the alerts table and the stored bars are read on the database write thread, after the bars the live writer still
+//buffers, and the books are changed back on the main thread. bars that close while a read is out are kept and
+//replayed after the stored ones when the lines warm up
+//main thread only, one live symbol
+public class AlertMonitor {
+
+    public interface Listener {
+        void onAlertFired(AlertsTableHelper.StoredAlert alert, long timestamp, float close);
+    }
+
+    public interface AddListener {
+        void onAdded(boolean added);
+    }
+
+    private final AlertsTableHelper alertsHelper;
+    private final StockDataHelper stockDataHelper;
+    private final String user_id;
+    private final Listener listener;
+    private final AlertBook[] books;
+    private final Map<Long, AlertsTableHelper.StoredAlert> active = new HashMap<>();
+    private final AlertBook.Listener fired = this::onFired;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    //bars of each timeframe that closed while a read was out, only the closes are used
+    private final CandleSeries[] missed;
+    private int reading;
+    private LiveBarWriter writer;
+
+    public AlertMonitor(AlertsTableHelper alertsHelper, StockDataHelper stockDataHelper, String user_id, Listener listener) {
+        this.alertsHelper = alertsHelper;
+        this.stockDataHelper = stockDataHelper;
+        this.user_id = user_id;
+        this.listener = listener;
+        this.books = new AlertBook[StockDataHelper.Timeframe.values().length];
+        this.missed = new CandleSeries[books.length];
+        for (int i = 0; i < books.length; i++) {
+            books[i] = new AlertBook();
+            missed[i] = new CandleSeries(16);
+        }
+    }
+
+    //the live feed's writer, the bars it buffers are written before the next read
+    public void setWriter(LiveBarWriter writer) {
+        this.writer = writer;
+    }
+
+    //loads the active alerts of the symbol in the background
+    public void watch(String symbol) {
+        read(() -> alertsHelper.getActiveAlerts(user_id, symbol), alerts -> {
+            if (alerts == null) return;
+            int count = 0;
+            boolean[] added = new boolean[books.length];
+            for (AlertsTableHelper.StoredAlert alert : alerts) {
+                if (active.containsKey(alert.alert.getId())) continue;
+                active.put(alert.alert.getId(), alert);
+                books[alert.timeframe.ordinal()].add(alert.alert);
+                added[alert.timeframe.ordinal()] = true;
+                count++;
+            }
+            for (StockDataHelper.Timeframe timeframe : StockDataHelper.Timeframe.values()) {
+                if (added[timeframe.ordinal()]) warmUp(symbol, timeframe);
+            }
+            AppLog.i(DB_Helper.DB_LOG_TAG, "Watching " + count + " alerts of " + symbol);
+        });
+    }
+
+    //stores a new alert in the background and starts evaluating it, added hears whether it could be stored
+    public void add(String symbol, StockDataHelper.Timeframe timeframe, int type, Alert.Line first, Alert.Line second,
+                    AddListener added) {
+        read(() -> alertsHelper.addAlert(user_id, symbol, timeframe, type, first, second), alert -> {
+            if (alert != null) {
+                active.put(alert.alert.getId(), alert);
+                books[timeframe.ordinal()].add(alert.alert);
+                //the new lines start cold, every line of the symbol restarts from the stored bars
+                warmUp(symbol, timeframe);
+            }
+            if (added != null) added.onAdded(alert != null);
+        });
+    }
+
+    public void onBarClosed(String symbol, StockDataHelper.Timeframe timeframe, long timestamp, float close) {
+        if (reading > 0) {
+            missed[timeframe.ordinal()].add(timestamp, close, close, close, close, 0);
+        }
+        books[timeframe.ordinal()].onBar(symbol, timestamp, close, fired);
+    }
+
+    //the bars are counted when the read is sent, an alert added after it sends its own
+    private void warmUp(String symbol, StockDataHelper.Timeframe timeframe) {
+        AlertBook book = books[timeframe.ordinal()];
+        int bars = book.barsNeeded(symbol);
+        if (bars == 0) return;
+        read(() -> stockDataHelper.getRecentBars(symbol, timeframe, bars), series -> {
+            //the alerts still warm up from the live bars
+            if (series == null) return;
+            CandleSeries late = missed[timeframe.ordinal()];
+            long last = series.size() > 0 ? series.getTimestamp(series.size() - 1) : Long.MIN_VALUE;
+            for (int i = 0; i < late.size(); i++) {
+                if (late.getTimestamp(i) > last) {
+                    series.add(late.getTimestamp(i), late.getClose(i), late.getClose(i), late.getClose(i), late.getClose(i), 0);
+                }
+            }
+            book.warmUp(symbol, series.closes(), series.size());
+        });
+    }
+
+    //runs work on the database write thread behind the live writer's buffered bars, then done with its result
+    //(null when it threw) on the main thread. reads run and finish in the order they are sent
+    private <T> void read(Supplier<T> work, Consumer<T> done) {
+        reading++;
+        Runnable task = () -> {
+            T result = null;
+            try {
+                result = work.get();
+            } catch (RuntimeException e) {
+                AppLog.e(DB_Helper.DB_LOG_TAG, "Error reading alerts: " + e.getMessage());
+            }
+            T value = result;
+            mainHandler.post(() -> {
+                done.accept(value);
+                //a read sent by done keeps the missed bars
+                if (--reading == 0) {
+                    for (CandleSeries bars : missed) {
+                        bars.clear();
+                    }
+                }
+            });
+        };
+        if (writer != null) {
+            writer.flush(task);
+        } else {
+            DB_Helper.getWriteExecutor().execute(task);
+        }
+    }
+
+    private void onFired(Alert alert, long timestamp, float close) {
+        AlertsTableHelper.StoredAlert stored = active.remove(alert.getId());
+        alertsHelper.markFiredAsync(alert.getId(), timestamp, close);
+        AppLog.i(DB_Helper.DB_LOG_TAG, "Alert fired: " + alert.getDescription() + " at " + close);
+        if (stored != null && listener != null) listener.onAlertFired(stored, timestamp, close);
+    }
+}
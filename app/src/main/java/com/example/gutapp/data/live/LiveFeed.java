@@ -0,0 +1,82 @@
+package com.example.gutapp.data.live;
+
+import android.view.View;
+
+import com.example.gutapp.database.StockDataHelper;
+import com.example.gutapp.engine.BarBuilder;
+import com.example.gutapp.engine.BarSink;
+import com.example.gutapp.engine.TickRingBuffer;
+import com.example.gutapp.engine.TickSource;
+
+//runs a tick source into the forming bars of every timeframe
+//the source thread only writes ticks into a lock free ring buffer, once per frame the main thread drains it into a
+//BarBuilder, so the chart is updated at most once per frame however fast ticks arrive
+public class LiveFeed {
+    private static final int RING_CAPACITY = 8192;
+    private static final long MINUTE_MS = 60_000L;
+
+    public interface Listener {
+        //a bar closed, called on the main thread before the bar after it starts forming
+        void onBarClosed(StockDataHelper.Timeframe timeframe, long timestamp, float open, float high, float low, float close, long volume);
+
+        //ticks arrived since the last frame, the forming bar of a timeframe is at index timeframe.ordinal() of bars
+        void onFrame(BarBuilder bars);
+    }
+
+    private final TickSource source;
+    private final View view;
+    private final Listener listener;
+    private final TickRingBuffer ring = new TickRingBuffer(RING_CAPACITY);
+    private final BarBuilder bars;
+    private final Runnable frame = this::frame;
+    private boolean running;
+
+    public LiveFeed(TickSource source, View view, Listener listener) {
+        this.source = source;
+        this.view = view;
+        this.listener = listener;
+        StockDataHelper.Timeframe[] timeframes = StockDataHelper.Timeframe.values();
+        long[] intervals = new long[timeframes.length];
+        BarSink[] sinks = new BarSink[timeframes.length];
+        for (StockDataHelper.Timeframe timeframe : timeframes) {
+            intervals[timeframe.ordinal()] = timeframe.getMinutes() * MINUTE_MS;
+            sinks[timeframe.ordinal()] = (timestamp, open, high, low, close, volume) ->
+                    listener.onBarClosed(timeframe, timestamp, open, high, low, close, volume);
+        }
+        //bars are aligned to utc, a daily bar starts at midnight
+        this.bars = new BarBuilder(intervals, 0, sinks);
+    }
+
+    //must be called on the main thread
+    public void start() {
+        if (running) return;
+        running = true;
+        source.start(ring::offer);
+        view.postOnAnimation(frame);
+    }
+
+    //stops the source and drops the ticks that weren't drained yet, the forming bars stay open
+    public void stop() {
+        if (!running) return;
+        running = false;
+        view.removeCallbacks(frame);
+        source.stop();
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    //ticks the feed had to drop because the main thread fell a whole ring behind
+    public long getDroppedTicks() {
+        return ring.getDropped();
+    }
+
+    private void frame() {
+        if (!running) return;
+        if (ring.drain(bars, RING_CAPACITY) > 0) {
+            listener.onFrame(bars);
+        }
+        view.postOnAnimation(frame);
+    }
+}
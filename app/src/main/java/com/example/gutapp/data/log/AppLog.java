@@ -0,0 +1,147 @@
+package com.example.gutapp.data.log;
+
+import android.util.Log;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+//logging facade for the data and database layers
+//every message at or above the ring level is kept in an in memory ring buffer that can be dumped when something
+//fails, messages at or above the logcat level are also forwarded to logcat.
+//isLoggable is a single volatile read, so hot paths guard their messages with it (or pass a supplier)
+//and allocate nothing while their level is off
+public final class AppLog {
+    public static final int VERBOSE = Log.VERBOSE;
+    public static final int DEBUG = Log.DEBUG;
+    public static final int INFO = Log.INFO;
+    public static final int WARN = Log.WARN;
+    public static final int ERROR = Log.ERROR;
+
+    private static final int RING_SIZE = 512; //power of two
+    private static final String[] LEVEL_NAMES = {"", "", "V", "D", "I", "W", "E", "A"};
+
+    private static volatile int logcatLevel = INFO;
+    //debug messages come from the chart's compute and draw paths, setLevels lowers this to keep them
+    private static volatile int ringLevel = INFO;
+    //lowest of the two, anything below it is dropped before a message is built
+    private static volatile int minLevel = INFO;
+
+    private static final AtomicReferenceArray<Record> RING = new AtomicReferenceArray<>(RING_SIZE);
+    private static final AtomicLong NEXT = new AtomicLong();
+
+    private static final class Record {
+        final long time;
+        final int level;
+        final String tag;
+        final String message;
+        final Throwable error;
+
+        Record(long time, int level, String tag, String message, Throwable error) {
+            this.time = time;
+            this.level = level;
+            this.tag = tag;
+            this.message = message;
+            this.error = error;
+        }
+    }
+
+    private AppLog() {
+    }
+
+    public static synchronized void setLevels(int logcatLevel, int ringLevel) {
+        AppLog.logcatLevel = logcatLevel;
+        AppLog.ringLevel = ringLevel;
+        AppLog.minLevel = Math.min(logcatLevel, ringLevel);
+    }
+
+    public static boolean isLoggable(int level) {
+        return level >= minLevel;
+    }
+
+    public static void v(String tag, String message) {
+        log(VERBOSE, tag, message, null);
+    }
+
+    public static void d(String tag, String message) {
+        log(DEBUG, tag, message, null);
+    }
+
+    public static void d(String tag, Supplier<String> message) {
+        if (isLoggable(DEBUG)) log(DEBUG, tag, message.get(), null);
+    }
+
+    public static void i(String tag, String message) {
+        log(INFO, tag, message, null);
+    }
+
+    public static void i(String tag, Supplier<String> message) {
+        if (isLoggable(INFO)) log(INFO, tag, message.get(), null);
+    }
+
+    public static void w(String tag, String message) {
+        log(WARN, tag, message, null);
+    }
+
+    public static void e(String tag, String message) {
+        log(ERROR, tag, message, null);
+    }
+
+    public static void e(String tag, String message, Throwable error) {
+        log(ERROR, tag, message, error);
+    }
+
+    private static void log(int level, String tag, String message, Throwable error) {
+        if (level < minLevel) return;
+        if (level >= ringLevel) {
+            long slot = NEXT.getAndIncrement();
+            RING.set((int) (slot & (RING_SIZE - 1)), new Record(System.currentTimeMillis(), level, tag, message, error));
+        }
+        if (level >= logcatLevel) {
+            if (error != null) {
+                Log.println(level, tag, message + '\n' + Log.getStackTraceString(error));
+            } else {
+                Log.println(level, tag, message);
+            }
+        }
+    }
+
+    //the buffered messages, oldest first
+    public static String dump() {
+        SimpleDateFormat format = new SimpleDateFormat("HH:mm:ss.SSS", Locale.US);
+        StringBuilder out = new StringBuilder();
+        long end = NEXT.get();
+        for (long slot = Math.max(0, end - RING_SIZE); slot < end; slot++) {
+            Record record = RING.get((int) (slot & (RING_SIZE - 1)));
+            if (record == null) continue;
+            out.append(format.format(new Date(record.time))).append(' ')
+                    .append(LEVEL_NAMES[record.level]).append('/').append(record.tag).append(": ")
+                    .append(record.message);
+            if (record.error != null) {
+                out.append(" (").append(record.error).append(')');
+            }
+            out.append('\n');
+        }
+        return out.toString();
+    }
+
+    //writes the buffer to logcat, called when something failed to see what led up to it
+    public static void dumpToLogcat(String tag) {
+        String dump = dump();
+        Log.println(ERROR, tag, "---- last " + RING_SIZE + " log records ----");
+        //logcat truncates long entries, print line by line
+        for (String line : dump.split("\n")) {
+            if (!line.isEmpty()) Log.println(ERROR, tag, line);
+        }
+    }
+
+    //drops the buffered messages
+    public static void clear() {
+        for (int i = 0; i < RING_SIZE; i++) {
+            RING.set(i, null);
+        }
+    }
+}
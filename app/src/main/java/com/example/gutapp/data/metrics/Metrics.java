@@ -0,0 +1,131 @@
+package com.example.gutapp.data.metrics;
+
+import android.os.Trace;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+//in process counters and latency histograms for the hot paths of the app
+//sections are also emitted as android.os.Trace sections so they show up in systrace / perfetto
+//usage: long start = Metrics.begin(Metrics.DB_CANDLES); try { ... } finally { Metrics.end(Metrics.DB_CANDLES, start); }
+public final class Metrics {
+    //latencies
+    public static final String CHART_OPEN = "chart.open";
+    public static final String CHART_SHOW_CANDLES = "chart.show_candles";
+    public static final String CHART_NOTIFY = "chart.notify";
+    public static final String CHART_LIVE_FRAME = "chart.live_frame";
+    public static final String CHART_REPLAY_FRAME = "chart.replay_frame";
+    public static final String DB_CANDLES = "db.candles";
+    public static final String STORE_CANDLES = "store.candles";
+    public static final String DB_INDICATOR_FETCH = "db.indicator_fetch";
+    public static final String DB_INDICATOR_WRITE = "db.indicator_write";
+    public static final String INDICATOR_COMPUTE = "indicator.compute";
+    //counters
+    public static final String DB_ROWS_READ = "db.rows_read";
+    public static final String INDICATOR_CACHE_HIT = "indicator.cache_hit";
+    public static final String INDICATOR_CACHE_MISS = "indicator.cache_miss";
+    public static final String LIVE_TICKS_DROPPED = "live.ticks_dropped";
+
+    private static final Metrics INSTANCE = new Metrics();
+
+    private final ConcurrentHashMap<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+
+    private Metrics() {
+    }
+
+    public static Metrics get() {
+        return INSTANCE;
+    }
+
+    //opens a trace section and returns its start time, close it on the same thread with end()
+    public static long begin(String name) {
+        Trace.beginSection(name);
+        return System.nanoTime();
+    }
+
+    public static void end(String name, long startNanos) {
+        long nanos = System.nanoTime() - startNanos;
+        Trace.endSection();
+        INSTANCE.recordNanos(name, nanos);
+    }
+
+    public void increment(String name) {
+        counter(name).increment();
+    }
+
+    public void add(String name, long amount) {
+        counter(name).add(amount);
+    }
+
+    public void recordNanos(String name, long nanos) {
+        histogram(name).record(nanos);
+    }
+
+    public long getCount(String name) {
+        LongAdder counter = counters.get(name);
+        return counter == null ? 0 : counter.sum();
+    }
+
+    public LatencyHistogram histogram(String name) {
+        LatencyHistogram histogram = histograms.get(name);
+        return histogram != null ? histogram : histograms.computeIfAbsent(name, key -> new LatencyHistogram());
+    }
+
+    private LongAdder counter(String name) {
+        LongAdder counter = counters.get(name);
+        return counter != null ? counter : counters.computeIfAbsent(name, key -> new LongAdder());
+    }
+
+    public void reset() {
+        for (LongAdder counter : counters.values()) {
+            counter.reset();
+        }
+        for (LatencyHistogram histogram : histograms.values()) {
+            histogram.reset();
+        }
+    }
+
+    //snapshot of every metric as json, names sorted so snapshots diff cleanly
+    public String toJson() {
+        StringBuilder json = new StringBuilder("{\"counters\":{");
+        boolean first = true;
+        for (Map.Entry<String, LongAdder> counter : new TreeMap<>(counters).entrySet()) {
+            if (!first) json.append(',');
+            first = false;
+            json.append('"').append(counter.getKey()).append("\":").append(counter.getValue().sum());
+        }
+        json.append("},\"latencies\":{");
+        first = true;
+        for (Map.Entry<String, LatencyHistogram> entry : new TreeMap<>(histograms).entrySet()) {
+            if (!first) json.append(',');
+            first = false;
+            LatencyHistogram histogram = entry.getValue();
+            json.append('"').append(entry.getKey()).append("\":{")
+                    .append("\"count\":").append(histogram.getCount())
+                    .append(",\"mean_ms\":").append(format(histogram.getMeanMillis()))
+                    .append(",\"p50_ms\":").append(format(histogram.getPercentileMillis(50)))
+                    .append(",\"p95_ms\":").append(format(histogram.getPercentileMillis(95)))
+                    .append(",\"p99_ms\":").append(format(histogram.getPercentileMillis(99)))
+                    .append(",\"max_ms\":").append(format(histogram.getMaxMillis()))
+                    .append('}');
+        }
+        return json.append("}}").toString();
+    }
+
+    public void writeSnapshot(File file) throws IOException {
+        try (FileWriter writer = new FileWriter(file)) {
+            writer.write(toJson());
+        }
+    }
+
+    private static String format(double millis) {
+        return String.format(Locale.US, "%.3f", millis);
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.gutapp.database;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import com.example.gutapp.data.log.AppLog;
+import com.example.gutapp.engine.Alert;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+//user alerts, one row per alert. an alert is active until it fires, then the row keeps when and at what close it did
+//the lines are stored as their Alert.Line keys
+public class AlertsTableHelper implements Table {
+    private static final String TABLE_NAME = "alerts";
+    private static final String COLUMN_ALERT_ID = "alert_id";
+    private static final String COLUMN_USER_ID = "user_id";
+    private static final String COLUMN_SYMBOL = "symbol";
+    private static final String COLUMN_TIMEFRAME = "timeframe";
+    private static final String COLUMN_TYPE = "type";
+    private static final String COLUMN_FIRST = "first_line";
+    private static final String COLUMN_SECOND = "second_line";
+    //null while the alert is active
+    private static final String COLUMN_FIRED_AT = "fired_at";
+    private static final String COLUMN_FIRED_CLOSE = "fired_close";
+    private static final String COLUMNS = COLUMN_ALERT_ID + ", " + COLUMN_SYMBOL + ", " + COLUMN_TIMEFRAME + ", " +
+            COLUMN_TYPE + ", " + COLUMN_FIRST + ", " + COLUMN_SECOND + ", " + COLUMN_FIRED_AT + ", " + COLUMN_FIRED_CLOSE;
+    //active alerts of a user on a symbol, walks the partial index of active alerts
+    static final String ACTIVE_ALERTS_QUERY = "SELECT " + COLUMNS + " FROM " + TABLE_NAME +
+            " WHERE " + COLUMN_USER_ID + " = ? AND " + COLUMN_SYMBOL + " = ? AND " + COLUMN_FIRED_AT + " IS NULL";
+    //latest fired alerts of a user, newest first
+    static final String FIRED_ALERTS_QUERY = "SELECT " + COLUMNS + " FROM " + TABLE_NAME +
+            " WHERE " + COLUMN_USER_ID + " = ? AND " + COLUMN_FIRED_AT + " IS NOT NULL" +
+            " ORDER BY " + COLUMN_FIRED_AT + " DESC LIMIT ?";
+
+    private DB_Helper db_helper;
+
+    //an alert with the timeframe it is evaluated on, firedAt is null while it is active
+    public static class StoredAlert {
+        public final Alert alert;
+        public final StockDataHelper.Timeframe timeframe;
+        public final String firedAt;
+        public final float firedClose;
+
+        StoredAlert(Alert alert, StockDataHelper.Timeframe timeframe, String firedAt, float firedClose) {
+            this.alert = alert;
+            this.timeframe = timeframe;
+            this.firedAt = firedAt;
+            this.firedClose = firedClose;
+        }
+    }
+
+    public AlertsTableHelper(DB_Helper db_helper) {
+        this.db_helper = db_helper;
+    }
+
+    //stores a new active alert, null when it couldn't be stored
+    public StoredAlert addAlert(String user_id, String symbol, StockDataHelper.Timeframe timeframe, int type,
+                                Alert.Line first, Alert.Line second) {
+        SQLiteDatabase db = db_helper.getWritableDatabase();
+        try (SQLiteStatement insert = db.compileStatement("INSERT INTO " + TABLE_NAME + " (" + COLUMN_USER_ID + ", " +
+                COLUMN_SYMBOL + ", " + COLUMN_TIMEFRAME + ", " + COLUMN_TYPE + ", " + COLUMN_FIRST + ", " + COLUMN_SECOND +
+                ") VALUES (?, ?, ?, ?, ?, ?)")) {
+            insert.bindString(1, user_id);
+            insert.bindString(2, symbol);
+            insert.bindString(3, timeframe.getValue());
+            insert.bindLong(4, type);
+            insert.bindString(5, first.getKey());
+            insert.bindString(6, second.getKey());
+            long id = insert.executeInsert();
+            if (id < 0) return null;
+            StoredAlert stored = new StoredAlert(new Alert(id, symbol, type, first, second), timeframe, null, Float.NaN);
+            AppLog.i(DB_Helper.DB_LOG_TAG, "Added alert " + stored.alert);
+            return stored;
+        } catch (Exception e) {
+            AppLog.e(DB_Helper.DB_LOG_TAG, "Error adding an alert for " + symbol + " error:" + e.getMessage());
+            return null;
+        }
+    }
+
+    public List<StoredAlert> getActiveAlerts(String user_id, String symbol) {
+        return fetch(ACTIVE_ALERTS_QUERY, new String[]{user_id, symbol});
+    }
+
+    public List<StoredAlert> getFiredAlerts(String user_id, int limit) {
+        return fetch(FIRED_ALERTS_QUERY, new String[]{user_id, String.valueOf(limit)});
+    }
+
+    private List<StoredAlert> fetch(String query, String[] args) {
+        List<StoredAlert> alerts = new ArrayList<>();
+        try (Cursor cursor = db_helper.getReadableDatabase().rawQuery(query, args)) {
+            while (cursor.moveToNext()) {
+                try {
+                    StockDataHelper.Timeframe timeframe = StockDataHelper.Timeframe.fromValue(cursor.getString(2));
+                    if (timeframe == null) throw new IllegalArgumentException("unknown timeframe " + cursor.getString(2));
+                    Alert alert = new Alert(cursor.getLong(0), cursor.getString(1), cursor.getInt(3),
+                            Alert.Line.parse(cursor.getString(4)), Alert.Line.parse(cursor.getString(5)));
+                    alerts.add(new StoredAlert(alert, timeframe, cursor.getString(6),
+                            cursor.isNull(7) ? Float.NaN : cursor.getFloat(7)));
+                } catch (IllegalArgumentException e) {
+                    AppLog.e(DB_Helper.DB_LOG_TAG, "Skipping alert " + cursor.getLong(0) + ": " + e.getMessage());
+                }
+            }
+        } catch (RuntimeException e) {
+            AppLog.e(DB_Helper.DB_LOG_TAG, "Error fetching alerts error:" + e.getMessage());
+        }
+        return alerts;
+    }
+
+    //records the firing on the background write thread, the alert stops being active
+    public void markFiredAsync(long alert_id, long timestamp, float close) {
+        DB_Helper.getWriteExecutor().execute(() -> {
+            //same format the bars are stored in
+            String firedAt = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.US).format(new Date(timestamp));
+            try (SQLiteStatement update = db_helper.getWritableDatabase().compileStatement("UPDATE " + TABLE_NAME +
+                    " SET " + COLUMN_FIRED_AT + " = ?, " + COLUMN_FIRED_CLOSE + " = ? WHERE " + COLUMN_ALERT_ID + " = ?")) {
+                update.bindString(1, firedAt);
+                update.bindDouble(2, close);
+                update.bindLong(3, alert_id);
+                update.executeUpdateDelete();
+            } catch (Exception e) {
+                AppLog.e(DB_Helper.DB_LOG_TAG, "Error marking alert " + alert_id + " fired error:" + e.getMessage());
+            }
+        });
+    }
+
+    @Override
+    public String createTable() {
+        return "CREATE TABLE " + TABLE_NAME + " (" +
+                COLUMN_ALERT_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                COLUMN_USER_ID + " TEXT NOT NULL, " +
+                COLUMN_SYMBOL + " TEXT NOT NULL, " +
+                COLUMN_TIMEFRAME + " TEXT NOT NULL, " +
+                COLUMN_TYPE + " INTEGER NOT NULL, " +
+                COLUMN_FIRST + " TEXT NOT NULL, " +
+                COLUMN_SECOND + " TEXT NOT NULL, " +
+                COLUMN_FIRED_AT + " TEXT, " +
+                COLUMN_FIRED_CLOSE + " REAL" +
+                ");";
+    }
+
+    @Override
+    public String[] createIndexes() {
+        //partial indexes, active alerts are read by symbol and fired ones by date
+        return new String[]{
+                "CREATE INDEX IF NOT EXISTS idx_alerts_active ON " + TABLE_NAME +
+                        " (" + COLUMN_USER_ID + ", " + COLUMN_SYMBOL + ") WHERE " + COLUMN_FIRED_AT + " IS NULL",
+                "CREATE INDEX IF NOT EXISTS idx_alerts_fired ON " + TABLE_NAME +
+                        " (" + COLUMN_USER_ID + ", " + COLUMN_FIRED_AT + ") WHERE " + COLUMN_FIRED_AT + " IS NOT NULL"
+        };
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        if (oldVersion < 5) {
+            //version 5 added the table
+            db.execSQL(createTable());
+        }
+    }
+
+    @Override
+    public String getName() {
+        return TABLE_NAME;
+    }
+}
@@ -0,0 +1,13 @@
+package com.example.gutapp.database;
+
+import com.example.gutapp.data.chart.CancellationToken;
+import com.github.mikephil.charting.data.CandleEntry;
+
+import java.util.ArrayList;
+
+//where the chart loads its candles from, the stock_data rows (StockDataHelper) or the mapped column files
+//(MappedCandleStore). entries have x = bar index and the epoch millis timestamp as data
+public interface CandleStore {
+    //stops early once the token is cancelled (a newer timeframe was requested)
+    ArrayList<CandleEntry> getCachedStockData(String symbol, StockDataHelper.Timeframe timeframe, CancellationToken token) throws Exception;
+}
@@ -1,108 +1,132 @@
 package com.example.gutapp.database;
 
-import android.content.ContentValues;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
-import android.util.Log;
+import android.database.sqlite.SQLiteStatement;
 
-import com.example.gutapp.data.UserGlobals;
-import com.example.gutapp.data.chart.Indicator;
-import com.example.gutapp.data.chart.Indicators;
+import com.example.gutapp.data.chart.PresetEntry;
+import com.example.gutapp.data.log.AppLog;
 
-import java.util.Map;
+import java.util.List;
 
 public class ChartPresetHelper implements Table {
     private static final String TABLE_NAME = "chart_presets";
     private static final String COLUMN_USER_ID = "user_id";
     private static final String COLUMN_PRESET_ID = "preset_id";
     private static final String COLUMN_SYMBOL = "symbol";
+    private static final String COLUMN_INDICATOR_ID = "indicator_id";
     private static final String COLUMN_TYPE = "type";
     private static final String COLUMN_PARAMS = "params";
+    //every preset row of a user and symbol, walks the unique index in preset order
+    static final String FETCH_ALL_QUERY = "SELECT " + COLUMN_PRESET_ID + ", " + COLUMN_INDICATOR_ID + ", " + COLUMN_TYPE + ", " + COLUMN_PARAMS +
+            " FROM " + TABLE_NAME + " WHERE " + COLUMN_USER_ID + " = ? AND " + COLUMN_SYMBOL + " = ?" +
+            " ORDER BY " + COLUMN_PRESET_ID;
     private DB_Helper db_helper;
 
+    //one changed row of a preset, a null entry means the row was deleted
+    public static class Change {
+        public final int preset_id;
+        public final String indicator_id;
+        public final PresetEntry entry;
+
+        public Change(int preset_id, String indicator_id, PresetEntry entry) {
+            this.preset_id = preset_id;
+            this.indicator_id = indicator_id;
+            this.entry = entry;
+        }
+    }
+
 
     public ChartPresetHelper(DB_Helper db_helper) {
         this.db_helper = db_helper;
     }
 
-    public Cursor fetchPresets(String user_id, int preset_id, String symbol){
+    //fetches the rows of every preset of the user for this symbol in a single query, ordered by preset
+    //run it on the write thread (DB_Helper.getWriteExecutor()) to read after the writes storeChangesAsync handed over
+    public Cursor fetchAllPresets(String user_id, String symbol){
         SQLiteDatabase db = db_helper.getReadableDatabase();
-        Cursor cursor;
-        String sql = "SELECT " + COLUMN_SYMBOL + ", " + COLUMN_TYPE + ", " + COLUMN_PARAMS +
-            " FROM " + TABLE_NAME + " WHERE " + COLUMN_USER_ID + " = ? AND " + COLUMN_PRESET_ID + " = ? AND " + COLUMN_SYMBOL + " = ?";
         try{
-            cursor = db.rawQuery(sql, new String[]{user_id, Integer.toString(preset_id), symbol});
-            Log.i(DB_Helper.DB_LOG_TAG, "fetched presets for " + symbol);
+            Cursor cursor = db.rawQuery(FETCH_ALL_QUERY, new String[]{user_id, symbol});
+            AppLog.i(DB_Helper.DB_LOG_TAG, "fetched all presets for " + symbol);
             return cursor;
         }
         catch (Exception e){
-            Log.e(DB_Helper.DB_LOG_TAG, "Error fetching presets for " + symbol +" error:"+ e.getMessage());
+            AppLog.e(DB_Helper.DB_LOG_TAG, "Error fetching presets for " + symbol +" error:"+ e.getMessage());
         }
         return null;
     }
 
-    public boolean storePresets(String user_id, String symbol, Map<String, Indicator>[] presets){
+    //writes only the changed rows on the background write thread
+    public void storeChangesAsync(String user_id, String symbol, List<Change> changes){
+        DB_Helper.getWriteExecutor().execute(() -> storeChanges(user_id, symbol, changes));
+    }
+
+    //upserts and deletes the changed rows in a single transaction
+    public boolean storeChanges(String user_id, String symbol, List<Change> changes){
         SQLiteDatabase db = db_helper.getWritableDatabase();
-        //delete old data
-        String delClause = COLUMN_USER_ID + " = ? AND " +
-                COLUMN_SYMBOL + " = ?";
-        String[] delArgs = {user_id, symbol};
-        db.delete(TABLE_NAME, delClause, delArgs);
-        //this is where the insertion is happening
+        SQLiteStatement upsert = db.compileStatement("INSERT OR REPLACE INTO " + TABLE_NAME + " (" +
+                COLUMN_USER_ID + ", " + COLUMN_PRESET_ID + ", " + COLUMN_SYMBOL + ", " +
+                COLUMN_INDICATOR_ID + ", " + COLUMN_TYPE + ", " + COLUMN_PARAMS + ") VALUES (?, ?, ?, ?, ?, ?)");
+        SQLiteStatement delete = db.compileStatement("DELETE FROM " + TABLE_NAME + " WHERE " +
+                COLUMN_USER_ID + " = ? AND " + COLUMN_PRESET_ID + " = ? AND " +
+                COLUMN_SYMBOL + " = ? AND " + COLUMN_INDICATOR_ID + " = ?");
+        db.beginTransaction();
         try{
-            db.beginTransaction();
-            Map<String, Indicator> preset;//pointer for the loop
-            for (int i = 0; i < presets.length; i++) {
-                preset = presets[i];
-                Log.i(DB_Helper.DB_LOG_TAG, "Storing presets for " + preset.toString());
-                if (preset != null) {
-                    this.insertPreset(db,i+1, symbol, preset, user_id);
+            for (Change change : changes) {
+                SQLiteStatement statement = change.entry != null ? upsert : delete;
+                statement.bindString(1, user_id);
+                statement.bindLong(2, change.preset_id);
+                statement.bindString(3, symbol);
+                statement.bindString(4, change.indicator_id);
+                if (change.entry != null) {
+                    statement.bindLong(5, change.entry.getType().ordinal());
+                    statement.bindString(6, change.entry.getParams());
                 }
+                statement.executeUpdateDelete();
+                statement.clearBindings();
             }
             db.setTransactionSuccessful();
         }
         catch(Exception e){
-        Log.e(DB_Helper.DB_LOG_TAG, "Error storing presets for " + symbol + " error:" + e.getMessage());
+            AppLog.e(DB_Helper.DB_LOG_TAG, "Error storing presets for " + symbol + " error:" + e.getMessage());
             return false;
         }
         finally {
             db.endTransaction();
+            upsert.close();
+            delete.close();
         }
-        Log.i(DB_Helper.DB_LOG_TAG, "Stored presets for " + symbol);
+        AppLog.i(DB_Helper.DB_LOG_TAG, "Stored " + changes.size() + " preset changes for " + symbol);
         return true;
     }
 
-
-    public void insertPreset(SQLiteDatabase db, int preset_id, String symbol, Map<String, Indicator> indicators, String user_id){
-        try{
-            for(Map.Entry<String, Indicator> entry : indicators.entrySet()){
-                if(entry.getValue() == null) continue;
-                ContentValues values = new ContentValues();
-                values.put(COLUMN_USER_ID, user_id);
-                values.put(COLUMN_PRESET_ID, preset_id);
-                values.put(COLUMN_SYMBOL, symbol);
-                values.put(COLUMN_TYPE, entry.getValue().getType().ordinal());
-                values.put(COLUMN_PARAMS, entry.getValue().getParams());
-                db.insert(TABLE_NAME, null, values);
-            }
-        }
-        catch (Exception e){
-            Log.e(DB_Helper.DB_LOG_TAG, "Error inserting preset for " + symbol + " error:" + e.getMessage());
-            throw e;
-        }
-    }
-
     @Override
     public String createTable() {
         return "CREATE TABLE " + TABLE_NAME + " (" +
                 COLUMN_USER_ID + " TEXT NOT NULL, " +
                 COLUMN_PRESET_ID + " INTEGER NOT NULL, " +
                 COLUMN_SYMBOL + " TEXT NOT NULL, " +
+                COLUMN_INDICATOR_ID + " TEXT NOT NULL, " +
                 COLUMN_TYPE + " TEXT NOT NULL, " +
-                COLUMN_PARAMS + " TEXT NOT NULL" +
+                COLUMN_PARAMS + " TEXT NOT NULL, " +
+                "UNIQUE (" + COLUMN_USER_ID + ", " + COLUMN_PRESET_ID + ", " + COLUMN_SYMBOL + ", " + COLUMN_INDICATOR_ID + ")" +
                 ");";
     }
 
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        if (oldVersion < 2) {
+            //version 1 had no indicator id, the old rowid becomes the id of every existing row
+            db.execSQL("ALTER TABLE " + TABLE_NAME + " RENAME TO " + TABLE_NAME + "_old");
+            db.execSQL(createTable());
+            db.execSQL("INSERT INTO " + TABLE_NAME + " (" + COLUMN_USER_ID + ", " + COLUMN_PRESET_ID + ", " +
+                    COLUMN_SYMBOL + ", " + COLUMN_INDICATOR_ID + ", " + COLUMN_TYPE + ", " + COLUMN_PARAMS + ") " +
+                    "SELECT " + COLUMN_USER_ID + ", " + COLUMN_PRESET_ID + ", " + COLUMN_SYMBOL + ", rowid, " +
+                    COLUMN_TYPE + ", " + COLUMN_PARAMS + " FROM " + TABLE_NAME + "_old");
+            db.execSQL("DROP TABLE " + TABLE_NAME + "_old");
+        }
+    }
+
     @Override
     public String getName() {
         return TABLE_NAME;
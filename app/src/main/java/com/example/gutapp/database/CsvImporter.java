@@ -0,0 +1,175 @@
+package com.example.gutapp.database;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import com.example.gutapp.data.log.AppLog;
+import com.example.gutapp.database.indicatorHelpers.BollingerBands_DBHelper;
+import com.example.gutapp.engine.CsvBarReader;
+import com.example.gutapp.engine.CsvFormat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+//imports user provided ohlcv csv files into stock_data
+//rows stream from CsvBarReader straight into one compiled INSERT OR REPLACE and are committed every
+//ROWS_PER_TRANSACTION rows. (symbol, timeframe, date) is unique, importing the same file again replaces its rows
+//the indicator caches of a series are dropped with its first row and again once the import ends (or fails), so no
+//chunk is committed next to a cache of the old bars and nothing cached from a half imported series outlives it
+public class CsvImporter {
+    //rows per transaction, same chunking as SyntheticDataWriter
+    private static final int ROWS_PER_TRANSACTION = 50_000;
+
+    public static final class Result {
+        public final long rows;
+        public final long skipped;
+        public final long nanos;
+
+        Result(long rows, long skipped, long nanos) {
+            this.rows = rows;
+            this.skipped = skipped;
+            this.nanos = nanos;
+        }
+
+        public double getRowsPerSecond() {
+            return nanos > 0 ? rows * 1e9 / nanos : 0;
+        }
+    }
+
+    private final DB_Helper db_helper;
+
+    public CsvImporter(DB_Helper db_helper) {
+        this.db_helper = db_helper;
+    }
+
+    //defaultSymbol and defaultTimeframe fill in files without a symbol or timeframe column
+    //rows with a timeframe the app doesn't chart are skipped. must be called off the main thread
+    public Result importCsv(InputStream in, CsvFormat format, String defaultSymbol, StockDataHelper.Timeframe defaultTimeframe) throws IOException {
+        long begin = System.nanoTime();
+        SQLiteDatabase db = db_helper.getWritableDatabase();
+        CsvBarReader reader = new CsvBarReader(format);
+        StoredDate storedDate = new StoredDate();
+        Map<String, String> names = new HashMap<>();
+        //symbol -> first bar written per timeframe (Long.MAX_VALUE for none)
+        Map<String, long[]> written = new HashMap<>();
+        long[] unknownTimeframes = new long[1];
+        long[] rows = new long[1];
+
+        db.beginTransaction();
+        try (SQLiteStatement insert = db.compileStatement("INSERT OR REPLACE INTO " + ((StockDataHelper) db_helper.getHelper(DB_Index.STOCK_TABLE)).getName() + " (" +
+                StockDataHelper.COLUMN_SYMBOL + ", " + StockDataHelper.COLUMN_NAME + ", " + StockDataHelper.COLUMN_DATE + ", " +
+                StockDataHelper.COLUMN_TIMEFRAME + ", " + StockDataHelper.COLUMN_OPEN + ", " + StockDataHelper.COLUMN_HIGH + ", " +
+                StockDataHelper.COLUMN_LOW + ", " + StockDataHelper.COLUMN_CLOSE + ", " + StockDataHelper.COLUMN_VOLUME +
+                ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
+            reader.read(in, new CsvBarReader.RowSink() {
+                //the reader hands back the same String while the column doesn't change, so these are identity checks
+                private String lastSymbol;
+                private String lastTimeframeValue;
+                private StockDataHelper.Timeframe lastTimeframe = defaultTimeframe;
+                private long[] lastWritten;
+
+                @Override
+                public void row(String symbol, String timeframeValue, long timestamp, float open, float high, float low, float close, long volume) {
+                    if (symbol == null) symbol = defaultSymbol;
+                    if (timeframeValue != lastTimeframeValue) {
+                        lastTimeframeValue = timeframeValue;
+                        lastTimeframe = timeframeValue == null ? defaultTimeframe : StockDataHelper.Timeframe.fromValue(timeframeValue);
+                    }
+                    if (lastTimeframe == null) {
+                        unknownTimeframes[0]++;
+                        return;
+                    }
+                    if (symbol != lastSymbol) {
+                        lastSymbol = symbol;
+                        if (!names.containsKey(symbol)) {
+                            names.put(symbol, symbolName(db, symbol));
+                            long[] first = new long[StockDataHelper.Timeframe.values().length];
+                            Arrays.fill(first, Long.MAX_VALUE);
+                            written.put(symbol, first);
+                        }
+                        lastWritten = written.get(symbol);
+                    }
+                    insert.bindString(1, symbol);
+                    insert.bindString(2, names.get(symbol));
+                    insert.bindString(3, storedDate.format(timestamp));
+                    insert.bindString(4, lastTimeframe.getValue());
+                    insert.bindDouble(5, open);
+                    insert.bindDouble(6, high);
+                    insert.bindDouble(7, low);
+                    insert.bindDouble(8, close);
+                    insert.bindLong(9, volume);
+                    insert.executeInsert();
+                    if (lastWritten[lastTimeframe.ordinal()] == Long.MAX_VALUE) {
+                        //in the transaction of the series' first row
+                        clearCaches(db, symbol, lastTimeframe);
+                    }
+                    lastWritten[lastTimeframe.ordinal()] = Math.min(lastWritten[lastTimeframe.ordinal()], timestamp);
+                    if (++rows[0] % ROWS_PER_TRANSACTION == 0) {
+                        db.setTransactionSuccessful();
+                        db.endTransaction();
+                        db.beginTransaction();
+                    }
+                }
+            });
+            db.setTransactionSuccessful();
+        } catch (IOException | RuntimeException e) {
+            AppLog.e(DB_Helper.DB_LOG_TAG, "Error importing csv after " + rows[0] + " rows", e);
+            throw e;
+        } finally {
+            db.endTransaction();
+            //the chunks committed before an error stay, their caches go either way
+            dropCaches(db, written);
+        }
+
+        Result result = new Result(rows[0], reader.getSkipped() + unknownTimeframes[0], System.nanoTime() - begin);
+        AppLog.i(DB_Helper.DB_LOG_TAG, String.format(Locale.US, "Imported %d csv rows of %d symbols (%d skipped) in %d ms, %.0f rows/s",
+                result.rows, names.size(), result.skipped, result.nanos / 1_000_000, result.getRowsPerSecond()));
+        return result;
+    }
+
+    //drops what was cached from the series while they were imported, and the column store series they rewrote
+    //rows may have replaced bars on the same dates, so the series versions change too
+    private void dropCaches(SQLiteDatabase db, Map<String, long[]> written) {
+        db.beginTransaction();
+        try {
+            for (Map.Entry<String, long[]> entry : written.entrySet()) {
+                for (StockDataHelper.Timeframe timeframe : StockDataHelper.Timeframe.values()) {
+                    if (entry.getValue()[timeframe.ordinal()] == Long.MAX_VALUE) continue;
+                    clearCaches(db, entry.getKey(), timeframe);
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        for (Map.Entry<String, long[]> entry : written.entrySet()) {
+            for (StockDataHelper.Timeframe timeframe : StockDataHelper.Timeframe.values()) {
+                if (entry.getValue()[timeframe.ordinal()] == Long.MAX_VALUE) continue;
+                MappedCandleStore.invalidate(db_helper, entry.getKey(), timeframe, entry.getValue()[timeframe.ordinal()]);
+            }
+        }
+        if (!written.isEmpty()) StockDataHelper.onBarsRewritten();
+    }
+
+    private static void clearCaches(SQLiteDatabase db, String symbol, StockDataHelper.Timeframe timeframe) {
+        IndicatorDBHelper.clearIndicatorData(db, symbol, timeframe);
+        BollingerBands_DBHelper.clearBollingerBands(db, symbol, timeframe);
+    }
+
+    //name of a known symbol, an unknown one is added to the symbols table under its own name
+    private String symbolName(SQLiteDatabase db, String symbol) {
+        try (Cursor cursor = db.rawQuery(SymbolsTableHelper.NAME_QUERY, new String[]{symbol})) {
+            if (cursor.moveToFirst()) {
+                String name = cursor.getString(0);
+                return name != null ? name : symbol;
+            }
+        }
+        ((SymbolsTableHelper) db_helper.getHelper(DB_Index.SYMBOL_TABLE)).insertSymbol(symbol, symbol, db);
+        return symbol;
+    }
+}
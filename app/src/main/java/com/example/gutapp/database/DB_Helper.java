@@ -3,24 +3,36 @@ package com.example.gutapp.database;
 import android.content.Context;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
-import android.util.Log;
 
 import androidx.annotation.Nullable;
 
+import com.example.gutapp.data.log.AppLog;
 import com.example.gutapp.database.indicatorHelpers.BollingerBands_DBHelper;
 
+import java.io.File;
 import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class DB_Helper extends SQLiteOpenHelper {
     private static final String DB_NAME = "Gut";
-    private static final int DB_VERSION = 1;
+    private static final int DB_VERSION = 7;
 
     private ArrayList<Table> tables = new ArrayList<>();
+    //directory of the MappedCandleStore column files
+    private final File candleRoot;
     public static final String DB_LOG_TAG = "GutDB";
+    //the chart loads candles from the mapped column files (MappedCandleStore) instead of the stock_data rows
+    public static final boolean USE_COLUMN_STORE = false;
+    //single background thread for writes the ui doesn't have to wait for
+    private static final ExecutorService WRITE_EXECUTOR = Executors.newSingleThreadExecutor();
 
 
     public DB_Helper(@Nullable Context context) {
         super(context, DB_NAME, null, DB_VERSION);
+        //wal lets reads run on several connections at once (the screener) and alongside the write thread
+        setWriteAheadLoggingEnabled(true);
+        candleRoot = new File(context.getFilesDir(), "candles");
         //instatciate table helpers and store them inside he object
         //context is needed for a temporary loading method because of database content erased when switching emulators
         StockDataHelper stockDataHelper = new StockDataHelper(context, this);
@@ -35,36 +47,80 @@ public class DB_Helper extends SQLiteOpenHelper {
         tables.add(indicatorDBHelper);
         BollingerBands_DBHelper bollingerBandsDBHelper = new BollingerBands_DBHelper(this);
         tables.add(bollingerBandsDBHelper);
-        Log.i(DB_LOG_TAG, "db helper created " + tables.toString());
+        AlertsTableHelper alertsTableHelper = new AlertsTableHelper(this);
+        tables.add(alertsTableHelper);
+        AppLog.i(DB_LOG_TAG, "db helper created " + tables.toString());
     }
 
     public Table getHelper(DB_Index index){
         return tables.get(index.ordinal());
     }
 
+    public File getCandleRoot(){
+        return candleRoot;
+    }
+
+    public static ExecutorService getWriteExecutor(){
+        return WRITE_EXECUTOR;
+    }
+
 
     @Override
     public void onCreate(SQLiteDatabase sqLiteDatabase) {
 
-        Log.i(DB_LOG_TAG, "start create db " + tables.toString());
+        AppLog.i(DB_LOG_TAG, "start create db " + tables.toString());
         for(Table table: tables){
             try {
                 String createStockTable = table.createTable();
                 sqLiteDatabase.execSQL(createStockTable);
-                Log.i(DB_LOG_TAG, "finished create table " + table.getName());
+                AppLog.i(DB_LOG_TAG, "finished create table " + table.getName());
             }
             catch (Exception e){
-                Log.e(DB_LOG_TAG, "error create table " + table.getName() + e.getMessage());
+                AppLog.e(DB_LOG_TAG, "error create table " + table.getName() + e.getMessage());
                 throw e;
             }
         }
-        Log.i(DB_LOG_TAG, "end create db");
-        ((StockDataHelper) this.getHelper(DB_Index.STOCK_TABLE)).loadStockDataFromAssets(sqLiteDatabase);
+        StockDataHelper stockDataHelper = (StockDataHelper) this.getHelper(DB_Index.STOCK_TABLE);
+        stockDataHelper.loadStockDataFromAssets(sqLiteDatabase);
         ((SymbolsTableHelper) this.getHelper(DB_Index.SYMBOL_TABLE)).loadDefaultSymbols(sqLiteDatabase);
+        //the bundled data is loaded before the unique bar key exists, it may repeat a bar
+        stockDataHelper.removeDuplicates(sqLiteDatabase);
+        createIndexes(sqLiteDatabase);
+        AppLog.i(DB_LOG_TAG, "end create db");
     }
 
     @Override
-    public void onUpgrade(SQLiteDatabase sqLiteDatabase, int i, int i1) {
+    public void onUpgrade(SQLiteDatabase sqLiteDatabase, int oldVersion, int newVersion) {
+        AppLog.i(DB_LOG_TAG, "upgrading db from version " + oldVersion + " to " + newVersion);
+        for(Table table: tables){
+            try {
+                table.onUpgrade(sqLiteDatabase, oldVersion, newVersion);
+            }
+            catch (Exception e){
+                AppLog.e(DB_LOG_TAG, "error upgrading table " + table.getName() + e.getMessage());
+                throw e;
+            }
+        }
+        //version 3 added the lookup indexes of the hot queries, version 4 the unique bar key of stock_data,
+        //version 5 the alerts table (version 6 only migrates indicator_data, version 7 makes the cached line keys
+        //unique in the indicator tables' own upgrades)
+        if (oldVersion < 5) {
+            createIndexes(sqLiteDatabase);
+        }
+    }
 
+    private void createIndexes(SQLiteDatabase sqLiteDatabase) {
+        for(Table table: tables){
+            for (String index : table.createIndexes()) {
+                try {
+                    sqLiteDatabase.execSQL(index);
+                }
+                catch (Exception e){
+                    AppLog.e(DB_LOG_TAG, "error creating index for " + table.getName() + e.getMessage());
+                    throw e;
+                }
+            }
+            AppLog.i(DB_LOG_TAG, "finished indexes of " + table.getName());
+        }
     }
 }
@@ -6,5 +6,6 @@ public enum DB_Index {
     SYMBOL_TABLE,
     CHART_PRESET_TABLE,
     INDICATOR_TABLE,
-    BOLLINGER_BANDS_TABLE;
+    BOLLINGER_BANDS_TABLE,
+    ALERT_TABLE;
 }
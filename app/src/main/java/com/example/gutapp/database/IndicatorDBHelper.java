@@ -3,8 +3,9 @@ package com.example.gutapp.database;
 import android.content.ContentValues;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
-import android.util.Log;
 
+import com.example.gutapp.data.log.AppLog;
+import com.example.gutapp.data.metrics.Metrics;
 import com.example.gutapp.database.DB_Helper;
 import com.example.gutapp.database.StockDataHelper;
 import com.example.gutapp.database.Table;
@@ -23,6 +24,11 @@ public class IndicatorDBHelper implements Table {
     public static final String COLUMN_TIMEFRAME = "timeframe";
     public static final String COLUMN_INDICATOR_NAME = "indicator_name"; // New column
 
+    //cached line of one indicator in bar order, served entirely by the key index
+    static final String FETCH_QUERY = "SELECT " + COLUMN_DATE + ", " + COLUMN_INDICATOR_VALUE + " FROM " + TABLE_NAME +
+            " WHERE " + COLUMN_SYMBOL + " = ? AND " + COLUMN_INDICATOR_PERIOD + " = ? AND " + COLUMN_TIMEFRAME + " = ? AND " +
+            COLUMN_INDICATOR_NAME + " = ? ORDER BY " + COLUMN_DATE;
+
     private DB_Helper db_helper;
 
     //constructor
@@ -40,25 +46,30 @@ public class IndicatorDBHelper implements Table {
         values.put(COLUMN_TIMEFRAME, timeframe.getValue());
         values.put(COLUMN_INDICATOR_NAME, indicatorName);
         try{
-            db.insert(TABLE_NAME, null, values);
-            Log.i(DB_Helper.DB_LOG_TAG, "Inserted " + indicatorName + " data for symbol " + symbol + " and period " + period);
+            //called once per bar, IndicatorUtil logs a summary per cached line instead
+            //two computations of the same line can race to cache it, the second one's rows are dropped
+            db.insertWithOnConflict(TABLE_NAME, null, values, SQLiteDatabase.CONFLICT_IGNORE);
         }
         catch (Exception e){
-            Log.e(DB_Helper.DB_LOG_TAG, "Error inserting " + indicatorName + " data: " + e.getMessage());
+            AppLog.e(DB_Helper.DB_LOG_TAG, "Error inserting " + indicatorName + " data: " + e.getMessage());
             throw e;
         }
     }
 
+    //drops the cached lines of one series, called when bars are appended to it
+    public static void clearIndicatorData(SQLiteDatabase db, String symbol, StockDataHelper.Timeframe timeframe) {
+        db.delete(TABLE_NAME, COLUMN_SYMBOL + " = ? AND " + COLUMN_TIMEFRAME + " = ?", new String[]{symbol, timeframe.getValue()});
+    }
+
     //returns Indicator data for a given symbol and period and timeframe
     public List<Entry> fetchIndicatorData(String symbol, int period, StockDataHelper.Timeframe timeframe, String indicatorName) {
         SQLiteDatabase db = db_helper.getReadableDatabase();
-        String query = "SELECT " + COLUMN_DATE + ", " + COLUMN_INDICATOR_VALUE + " FROM " + TABLE_NAME +
-                " WHERE " + COLUMN_SYMBOL + " = ? AND " + COLUMN_INDICATOR_PERIOD + " = ? AND " + COLUMN_TIMEFRAME + " = ? AND " + COLUMN_INDICATOR_NAME + " = ?";
         String[] args = {symbol, String.valueOf(period), timeframe.getValue(), indicatorName};
         List<Entry> indicatorData = new ArrayList<>();
 
         // Use try-with-resources to ensure the cursor is always closed.
-        try (Cursor cursor = db.rawQuery(query, args)) {
+        long start = Metrics.begin(Metrics.DB_INDICATOR_FETCH);
+        try (Cursor cursor = db.rawQuery(FETCH_QUERY, args)) {
             if (cursor != null && cursor.moveToFirst()) {
                 int i = period - 1;
                 while (!cursor.isAfterLast()) {
@@ -66,11 +77,14 @@ public class IndicatorDBHelper implements Table {
                     cursor.moveToNext();
                 }
             }
-            Log.i(DB_Helper.DB_LOG_TAG, "Fetched " + indicatorData.size() + " " + indicatorName + " entries for symbol " + symbol);
+            AppLog.d(DB_Helper.DB_LOG_TAG, () -> "Fetched " + indicatorData.size() + " " + indicatorName + " entries for symbol " + symbol);
         } catch (Exception e) {
             // Log the error and return an empty list instead of crashing.
-            Log.e(DB_Helper.DB_LOG_TAG, "Error fetching " + indicatorName + " data: " + e.getMessage(), e);
+            AppLog.e(DB_Helper.DB_LOG_TAG, "Error fetching " + indicatorName + " data: " + e.getMessage(), e);
+        } finally {
+            Metrics.end(Metrics.DB_INDICATOR_FETCH, start);
         }
+        Metrics.get().add(Metrics.DB_ROWS_READ, indicatorData.size());
         return indicatorData;
     }
 
@@ -88,6 +102,32 @@ public class IndicatorDBHelper implements Table {
                 ");";
     }
 
+    @Override
+    public String[] createIndexes() {
+        //one row per bar of a cached line
+        return new String[]{
+                "CREATE UNIQUE INDEX IF NOT EXISTS idx_indicator_data_key ON " + TABLE_NAME +
+                        " (" + COLUMN_SYMBOL + ", " + COLUMN_INDICATOR_NAME + ", " + COLUMN_INDICATOR_PERIOD + ", " +
+                        COLUMN_TIMEFRAME + ", " + COLUMN_DATE + ")"
+        };
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        //version 6 seeds the ema with the sma of its first period bars, lines cached with the old seed are recomputed
+        if (oldVersion < 6) {
+            db.delete(TABLE_NAME, COLUMN_INDICATOR_NAME + " = ?", new String[]{"EMA"});
+        }
+        //version 7 made the line key unique, the plain lookup index on the same columns is replaced by it
+        if (oldVersion < 7) {
+            db.execSQL("DELETE FROM " + TABLE_NAME + " WHERE " + COLUMN_ID + " NOT IN (SELECT MIN(" + COLUMN_ID + ") FROM " +
+                    TABLE_NAME + " GROUP BY " + COLUMN_SYMBOL + ", " + COLUMN_INDICATOR_NAME + ", " +
+                    COLUMN_INDICATOR_PERIOD + ", " + COLUMN_TIMEFRAME + ", " + COLUMN_DATE + ")");
+            db.execSQL("DROP INDEX IF EXISTS idx_indicator_data_lookup");
+            db.execSQL(createIndexes()[0]);
+        }
+    }
+
     @Override
     public String getName() {
         return TABLE_NAME;
@@ -0,0 +1,136 @@
+package com.example.gutapp.database;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import com.example.gutapp.data.log.AppLog;
+import com.example.gutapp.database.indicatorHelpers.BollingerBands_DBHelper;
+
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Locale;
+
+//persists the bars the live feed closes into stock_data
+//bars are buffered on the calling (main) thread and written in one transaction per batch on the database write thread,
+//the indicator caches of the written timeframes are dropped because they no longer cover the whole series,
+//the column store is told about the written bars once they are committed
+public class LiveBarWriter {
+    public static final int BATCH_SIZE = 32;
+
+    private final DB_Helper db_helper;
+    private final String symbol;
+    private final String name;
+    private Batch pending = new Batch();
+
+    //closed bars of one flush in primitive arrays
+    private static final class Batch {
+        final int[] timeframes = new int[BATCH_SIZE];
+        final long[] timestamps = new long[BATCH_SIZE];
+        final float[] opens = new float[BATCH_SIZE];
+        final float[] highs = new float[BATCH_SIZE];
+        final float[] lows = new float[BATCH_SIZE];
+        final float[] closes = new float[BATCH_SIZE];
+        final long[] volumes = new long[BATCH_SIZE];
+        int size;
+    }
+
+    public LiveBarWriter(DB_Helper db_helper, String symbol, String name) {
+        this.db_helper = db_helper;
+        this.symbol = symbol;
+        this.name = name;
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public void add(StockDataHelper.Timeframe timeframe, long timestamp, float open, float high, float low, float close, long volume) {
+        Batch batch = pending;
+        int i = batch.size++;
+        batch.timeframes[i] = timeframe.ordinal();
+        batch.timestamps[i] = timestamp;
+        batch.opens[i] = open;
+        batch.highs[i] = high;
+        batch.lows[i] = low;
+        batch.closes[i] = close;
+        batch.volumes[i] = volume;
+        if (batch.size == BATCH_SIZE) {
+            flush();
+        }
+    }
+
+    //hands the buffered bars to the write thread
+    public void flush() {
+        Batch batch = pending;
+        if (batch.size == 0) return;
+        pending = new Batch();
+        DB_Helper.getWriteExecutor().execute(() -> write(batch));
+    }
+
+    //hands the buffered bars to the write thread, afterWrite runs on it once they are in the database
+    public void flush(Runnable afterWrite) {
+        Batch batch = pending;
+        if (batch.size > 0) {
+            pending = new Batch();
+        }
+        DB_Helper.getWriteExecutor().execute(() -> {
+            if (batch.size > 0) write(batch);
+            afterWrite.run();
+        });
+    }
+
+    private void write(Batch batch) {
+        SQLiteDatabase db = db_helper.getWritableDatabase();
+        StockDataHelper.Timeframe[] timeframes = StockDataHelper.Timeframe.values();
+        //first bar written per timeframe, Long.MAX_VALUE for none
+        long[] written = new long[timeframes.length];
+        Arrays.fill(written, Long.MAX_VALUE);
+        boolean committed = false;
+        //same format StockDataHelper parses
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.US);
+        Date date = new Date();
+
+        db.beginTransaction();
+        try (SQLiteStatement insert = db.compileStatement("INSERT OR REPLACE INTO " + ((StockDataHelper) db_helper.getHelper(DB_Index.STOCK_TABLE)).getName() + " (" +
+                StockDataHelper.COLUMN_SYMBOL + ", " + StockDataHelper.COLUMN_NAME + ", " + StockDataHelper.COLUMN_DATE + ", " +
+                StockDataHelper.COLUMN_TIMEFRAME + ", " + StockDataHelper.COLUMN_OPEN + ", " + StockDataHelper.COLUMN_HIGH + ", " +
+                StockDataHelper.COLUMN_LOW + ", " + StockDataHelper.COLUMN_CLOSE + ", " + StockDataHelper.COLUMN_VOLUME +
+                ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
+            for (int i = 0; i < batch.size; i++) {
+                StockDataHelper.Timeframe timeframe = timeframes[batch.timeframes[i]];
+                date.setTime(batch.timestamps[i]);
+                insert.bindString(1, symbol);
+                insert.bindString(2, name != null ? name : symbol);
+                insert.bindString(3, format.format(date));
+                insert.bindString(4, timeframe.getValue());
+                insert.bindDouble(5, batch.opens[i]);
+                insert.bindDouble(6, batch.highs[i]);
+                insert.bindDouble(7, batch.lows[i]);
+                insert.bindDouble(8, batch.closes[i]);
+                insert.bindLong(9, batch.volumes[i]);
+                insert.executeInsert();
+                written[timeframe.ordinal()] = Math.min(written[timeframe.ordinal()], batch.timestamps[i]);
+            }
+            for (StockDataHelper.Timeframe timeframe : timeframes) {
+                if (written[timeframe.ordinal()] == Long.MAX_VALUE) continue;
+                IndicatorDBHelper.clearIndicatorData(db, symbol, timeframe);
+                BollingerBands_DBHelper.clearBollingerBands(db, symbol, timeframe);
+            }
+            db.setTransactionSuccessful();
+            committed = true;
+        } catch (Exception e) {
+            AppLog.e(DB_Helper.DB_LOG_TAG, "Error writing live bars for " + symbol, e);
+        } finally {
+            db.endTransaction();
+        }
+        if (!committed) return;
+        for (StockDataHelper.Timeframe timeframe : timeframes) {
+            if (written[timeframe.ordinal()] == Long.MAX_VALUE) continue;
+            MappedCandleStore.invalidate(db_helper, symbol, timeframe, written[timeframe.ordinal()]);
+        }
+        if (AppLog.isLoggable(AppLog.DEBUG)) {
+            AppLog.d(DB_Helper.DB_LOG_TAG, "Wrote " + batch.size + " live bars for " + symbol);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.gutapp.database;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.example.gutapp.data.chart.CancellationToken;
+import com.example.gutapp.data.log.AppLog;
+import com.example.gutapp.data.metrics.Metrics;
+import com.example.gutapp.engine.Cancellation;
+import com.example.gutapp.engine.CandleColumns;
+import com.example.gutapp.engine.ColumnarCandleFile;
+import com.github.mikephil.charting.data.CandleEntry;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Locale;
+
+//optional candle backend for deep intraday history, one ColumnarCandleFile per (symbol, timeframe) under root
+//a load maps the column files instead of walking a cursor and parsing a date string per row, and a bar takes 32 bytes
+//on disk instead of a stock_data row with its symbol, name and timeframe text
+//stock_data stays the source of truth: before a load, the bars stock_data has past the last stored one are appended.
+//the files are append-only, so the writers of stock_data call invalidate() after committing and a series they wrote
+//at or before its last stored bar (a csv re-import, a backfill) is dropped and copied again by the next load
+public class MappedCandleStore implements CandleStore {
+    //one writer per directory across stores, two activities may load the same series
+    private static final Object LOCK = new Object();
+
+    private final DB_Helper db_helper;
+    private final File root;
+
+    public MappedCandleStore(DB_Helper db_helper) {
+        this(db_helper, db_helper.getCandleRoot());
+    }
+
+    public MappedCandleStore(DB_Helper db_helper, File root) {
+        this.db_helper = db_helper;
+        this.root = root;
+    }
+
+    @Override
+    public ArrayList<CandleEntry> getCachedStockData(String symbol, StockDataHelper.Timeframe timeframe, CancellationToken token) throws Exception {
+        CandleColumns columns = getRange(symbol, timeframe, Long.MIN_VALUE, Long.MAX_VALUE, token);
+        long start = Metrics.begin(Metrics.STORE_CANDLES);
+        ArrayList<CandleEntry> stockData = new ArrayList<>(columns.size());
+        try {
+            for (int i = 0; i < columns.size(); i++) {
+                if ((i & Cancellation.CHECK_MASK) == 0) token.throwIfCancelled();
+                CandleEntry entry = new CandleEntry(i, columns.getHigh(i), columns.getLow(i), columns.getOpen(i), columns.getClose(i));
+                entry.setData(columns.getTimestamp(i));
+                stockData.add(entry);
+            }
+        } finally {
+            Metrics.end(Metrics.STORE_CANDLES, start);
+        }
+        AppLog.d(DB_Helper.DB_LOG_TAG, () -> "Mapped " + stockData.size() + " " + timeframe.getValue() + " bars of " + symbol);
+        return stockData;
+    }
+
+    //bars with fromMillis <= timestamp < toMillis as a zero copy view, for callers that don't need chart entries
+    public CandleColumns getRange(String symbol, StockDataHelper.Timeframe timeframe, long fromMillis, long toMillis,
+                                  CancellationToken token) throws Exception {
+        synchronized (LOCK) {
+            try (ColumnarCandleFile file = ColumnarCandleFile.open(directory(root, symbol, timeframe))) {
+                sync(file, symbol, timeframe, token);
+                //the mapped views stay readable after the file is closed
+                return file.readRange(fromMillis, toMillis);
+            }
+        }
+    }
+
+    //appends the stock_data bars after the last stored one
+    private void sync(ColumnarCandleFile file, String symbol, StockDataHelper.Timeframe timeframe, CancellationToken token) throws Exception {
+        StockDataHelper stockDataHelper = (StockDataHelper) db_helper.getHelper(DB_Index.STOCK_TABLE);
+        SQLiteDatabase db = db_helper.getReadableDatabase();
+        long last = file.getLastTimestamp();
+        //stored dates sort as text, every date is after ""
+        String after = last == Long.MIN_VALUE ? "" : new StoredDate().format(last);
+        String sql = "SELECT " + StockDataHelper.COLUMN_DATE + ", " + StockDataHelper.COLUMN_OPEN + ", " +
+                StockDataHelper.COLUMN_HIGH + ", " + StockDataHelper.COLUMN_LOW + ", " + StockDataHelper.COLUMN_CLOSE + ", " +
+                StockDataHelper.COLUMN_VOLUME + " FROM " + stockDataHelper.getName() + " WHERE " +
+                StockDataHelper.COLUMN_SYMBOL + " = ? AND " + StockDataHelper.COLUMN_TIMEFRAME + " = ? AND " +
+                StockDataHelper.COLUMN_DATE + " > ? ORDER BY " + StockDataHelper.COLUMN_DATE + " ASC";
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.US);
+        int appended = 0;
+        try (Cursor cursor = db.rawQuery(sql, new String[]{symbol, timeframe.getValue(), after})) {
+            while (cursor.moveToNext()) {
+                if ((appended & Cancellation.CHECK_MASK) == 0) token.throwIfCancelled();
+                long timestamp = format.parse(cursor.getString(0)).getTime();
+                //local times repeat in the hour the clocks go back, those bars can't be appended in order
+                if (timestamp <= file.getLastTimestamp()) continue;
+                file.append(timestamp, cursor.getFloat(1), cursor.getFloat(2), cursor.getFloat(3), cursor.getFloat(4), cursor.getLong(5));
+                appended++;
+            }
+        } finally {
+            //whatever was appended before a cancel is kept, the next load continues from there
+            file.flush();
+        }
+        if (appended > 0) {
+            AppLog.i(DB_Helper.DB_LOG_TAG, "Appended " + appended + " " + timeframe.getValue() + " bars of " + symbol + " to the column store");
+        }
+    }
+
+    //drops the stored bars of a series, the next load copies it again from stock_data
+    public void rebuild(String symbol, StockDataHelper.Timeframe timeframe) throws IOException {
+        synchronized (LOCK) {
+            delete(directory(root, symbol, timeframe));
+        }
+    }
+
+    //called by the writers of stock_data once bars from fromMillis on are committed. bars past the last stored one
+    //are appended by the next load, anything earlier may have replaced a stored bar and drops the series
+    //never throws, a series that can't be dropped is logged and keeps serving its old bars
+    public static void invalidate(DB_Helper db_helper, String symbol, StockDataHelper.Timeframe timeframe, long fromMillis) {
+        synchronized (LOCK) {
+            try {
+                File dir = directory(db_helper.getCandleRoot(), symbol, timeframe);
+                if (!dir.isDirectory()) return;
+                long last;
+                try (ColumnarCandleFile file = ColumnarCandleFile.open(dir)) {
+                    last = file.getLastTimestamp();
+                }
+                if (fromMillis > last) return;
+                //views mapped before stay readable, the files are only unlinked
+                delete(dir);
+                AppLog.i(DB_Helper.DB_LOG_TAG, "Dropped the " + timeframe.getValue() + " column store of " + symbol + ", rewritten bars");
+            } catch (IOException e) {
+                AppLog.e(DB_Helper.DB_LOG_TAG, "Error dropping the " + timeframe.getValue() + " column store of " + symbol, e);
+            }
+        }
+    }
+
+    private static void delete(File dir) throws IOException {
+        File[] files = dir.listFiles();
+        if (files == null) return;
+        for (File file : files) {
+            if (!file.delete()) throw new IOException("can't delete " + file);
+        }
+    }
+
+    //symbols like ^GSPC aren't safe file names as they are
+    private static File directory(File root, String symbol, StockDataHelper.Timeframe timeframe) throws UnsupportedEncodingException {
+        return new File(new File(root, URLEncoder.encode(symbol, "UTF-8")), timeframe.getValue());
+    }
+}
@@ -4,8 +4,12 @@ import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.text.TextUtils;
-import android.util.Log;
 
+import com.example.gutapp.data.chart.CancellationToken;
+import com.example.gutapp.data.log.AppLog;
+import com.example.gutapp.data.metrics.Metrics;
+import com.example.gutapp.engine.Cancellation;
+import com.example.gutapp.engine.CandleSeries;
 import com.github.mikephil.charting.data.CandleEntry;
 
 import java.io.BufferedReader;
@@ -14,10 +18,15 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
-public class StockDataHelper implements Table {
+public class StockDataHelper implements Table, CandleStore {
     private static final String TABLE_NAME = "stock_data";
     public static final String COLUMN_ID = "_id";
     public static final String COLUMN_SYMBOL = "symbol";
@@ -33,24 +42,44 @@ public class StockDataHelper implements Table {
     public static final String COLUMN_CLOSE = "close";
     public static final String COLUMN_VOLUME = "volume";
 
+    //hot query of the chart, the key index serves both the filter and the order
+    static final String CANDLES_QUERY = "SELECT " + COLUMN_DATE + ", " + COLUMN_OPEN + ", " + COLUMN_HIGH + ", " +
+            COLUMN_LOW + ", " + COLUMN_CLOSE + " FROM " + TABLE_NAME +
+            " WHERE " + COLUMN_SYMBOL + " = ? AND " + COLUMN_TIMEFRAME + " = ? ORDER BY " + COLUMN_DATE + " ASC";
+
     private DB_Helper DB_HELPER;
     private Context context;
 
     public enum Timeframe {
-        FIVE_MIN("5m"),
-        FIFTEEN_MIN("15m"),
-        HOURLY("1h"),
-        DAILY("1d");
+        FIVE_MIN("5m", 5),
+        FIFTEEN_MIN("15m", 15),
+        HOURLY("1h", 60),
+        DAILY("1d", 24 * 60);
 
         private final String value;
+        private final int minutes;
 
-        Timeframe(String value) {
+        Timeframe(String value, int minutes) {
             this.value = value;
+            this.minutes = minutes;
         }
 
         public String getValue() {
             return value;
         }
+
+        //length of one bar, a daily bar covers one trading session
+        public int getMinutes() {
+            return minutes;
+        }
+
+        //timeframe stored as value ("5m", "1d"), null when there is none
+        public static Timeframe fromValue(String value) {
+            for (Timeframe timeframe : values()) {
+                if (timeframe.value.equals(value)) return timeframe;
+            }
+            return null;
+        }
     }
 
     public StockDataHelper(Context context, DB_Helper db_helper) {
@@ -69,24 +98,29 @@ public class StockDataHelper implements Table {
             }
             db.setTransactionSuccessful();
             db.endTransaction();
-            Log.i(DB_HELPER.DB_LOG_TAG, "Successfully loaded stock data from assets.");
+            AppLog.i(DB_HELPER.DB_LOG_TAG, "Successfully loaded stock data from assets.");
         } catch (IOException e) {
-            Log.e(DB_HELPER.DB_LOG_TAG, "Error loading stock data from assets: " + e.getMessage());
+            AppLog.e(DB_HELPER.DB_LOG_TAG, "Error loading stock data from assets: " + e.getMessage());
         }
     }
 
     public ArrayList<CandleEntry> getCachedStockData(String symbol, Timeframe timeframe) throws Exception {
+        return getCachedStockData(symbol, timeframe, CancellationToken.NONE);
+    }
+
+    @Override
+    public ArrayList<CandleEntry> getCachedStockData(String symbol, Timeframe timeframe, CancellationToken token) throws Exception {
         ArrayList<CandleEntry> stockData = new ArrayList<>();
-        Log.i(DB_HELPER.DB_LOG_TAG, "Fetching data for timeframe: " + timeframe.getValue());
+        AppLog.d(DB_HELPER.DB_LOG_TAG, () -> "Fetching data for timeframe: " + timeframe.getValue());
         SQLiteDatabase db = DB_HELPER.getReadableDatabase();
-        String[] columns = {COLUMN_DATE, COLUMN_OPEN, COLUMN_HIGH, COLUMN_LOW, COLUMN_CLOSE};
-        String selection = COLUMN_SYMBOL + " = ? AND " + COLUMN_TIMEFRAME + " = ?";
         String[] selectionArgs = {symbol, timeframe.getValue()};
 
-        try (Cursor cursor = db.query(TABLE_NAME, columns, selection, selectionArgs, null, null, COLUMN_DATE + " ASC")) {
+        long start = Metrics.begin(Metrics.DB_CANDLES);
+        try (Cursor cursor = db.rawQuery(CANDLES_QUERY, selectionArgs)) {
             int i = 0;
             if (cursor.moveToFirst()) {
                 do {
+                    if ((i & Cancellation.CHECK_MASK) == 0) token.throwIfCancelled();
                     String dateStr = cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_DATE));
                     float open = cursor.getFloat(cursor.getColumnIndexOrThrow(COLUMN_OPEN));
                     float high = cursor.getFloat(cursor.getColumnIndexOrThrow(COLUMN_HIGH));
@@ -103,8 +137,11 @@ public class StockDataHelper implements Table {
                     i++;
                 } while (cursor.moveToNext());
             }
+        } finally {
+            Metrics.end(Metrics.DB_CANDLES, start);
         }
-        Log.i(DB_HELPER.DB_LOG_TAG, "Finished fetching data. Found " + stockData.size() + " entries.");
+        Metrics.get().add(Metrics.DB_ROWS_READ, stockData.size());
+        AppLog.d(DB_HELPER.DB_LOG_TAG, () -> "Finished fetching data. Found " + stockData.size() + " entries.");
         return stockData;
     }
 
@@ -123,6 +160,30 @@ public class StockDataHelper implements Table {
                 COLUMN_VOLUME + " INTEGER)";
     }
 
+    @Override
+    public String[] createIndexes() {
+        //one row per bar, writers use INSERT OR REPLACE so writing a bar again (re-importing a file) replaces it
+        return new String[]{
+                "CREATE UNIQUE INDEX IF NOT EXISTS idx_stock_data_key ON " + TABLE_NAME +
+                        " (" + COLUMN_SYMBOL + ", " + COLUMN_TIMEFRAME + ", " + COLUMN_DATE + ")"
+        };
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        //version 4 made the bar key unique, the plain lookup index on the same columns is replaced by it
+        if (oldVersion < 4) {
+            removeDuplicates(db);
+            db.execSQL("DROP INDEX IF EXISTS idx_stock_data_lookup");
+        }
+    }
+
+    //keeps the first row of every (symbol, timeframe, date), the unique index can't be created over duplicates
+    void removeDuplicates(SQLiteDatabase db) {
+        db.execSQL("DELETE FROM " + TABLE_NAME + " WHERE " + COLUMN_ID + " NOT IN (SELECT MIN(" + COLUMN_ID + ") FROM " +
+                TABLE_NAME + " GROUP BY " + COLUMN_SYMBOL + ", " + COLUMN_TIMEFRAME + ", " + COLUMN_DATE + ")");
+    }
+
     @Override
     public String getName() {
         return TABLE_NAME;
@@ -186,23 +247,183 @@ public class StockDataHelper implements Table {
 
 
 
-    //logic problem please fix when you have the time
+    //symbols per latest price query, two bind args each
+    public static final int LATEST_PRICES_BATCH = 50;
+
+    //the last two closes of one symbol, newest first. walks the key index backwards
+    static final String LATEST_PRICE_QUERY = "SELECT * FROM (SELECT " + COLUMN_SYMBOL + ", " + COLUMN_DATE + ", " + COLUMN_CLOSE +
+            " FROM " + TABLE_NAME + " WHERE " + COLUMN_SYMBOL + " = ? AND " + COLUMN_TIMEFRAME + " = ? ORDER BY " +
+            COLUMN_DATE + " DESC LIMIT 2)";
+
+    //latest close of a symbol's daily bars, negative when it closed lower than the bar before
     public double getLatestPrice(String symbol) {
-        try {
-            Cursor cursor = readFromDB(new String[]{StockDataHelper.COLUMN_CLOSE}, "symbol = ?",
-                    new String[]{symbol}, "date DESC", 2);
-            cursor.moveToFirst();
-            int current = cursor.getInt(0);
-            cursor.moveToNext();
-            int before = cursor.getInt(0);
-            return (current > before) ? current : -1 * current;
-        }
-        catch (Exception e){
-            Log.e(DB_Helper.DB_LOG_TAG, "Error getting latest price: " + e.getMessage());
+        float[] price = getLatestPrices(Collections.singletonList(symbol), Timeframe.DAILY).get(symbol);
+        if (price == null) return 0;
+        return price[0] > price[1] ? price[0] : -price[0];
+    }
+
+    //{close, previous close} of the last two bars per symbol, previous is NaN when there is only one bar
+    //symbols without bars are left out. one UNION ALL query per LATEST_PRICES_BATCH symbols
+    public Map<String, float[]> getLatestPrices(List<String> symbols, Timeframe timeframe) {
+        Map<String, float[]> prices = new HashMap<>(symbols.size() * 2);
+        SQLiteDatabase db = DB_HELPER.getReadableDatabase();
+        for (int from = 0; from < symbols.size(); from += LATEST_PRICES_BATCH) {
+            int to = Math.min(symbols.size(), from + LATEST_PRICES_BATCH);
+            StringBuilder query = new StringBuilder(LATEST_PRICE_QUERY.length() * (to - from) + 16 * (to - from));
+            String[] args = new String[(to - from) * 2];
+            for (int i = from; i < to; i++) {
+                if (i > from) query.append(" UNION ALL ");
+                query.append(LATEST_PRICE_QUERY);
+                args[(i - from) * 2] = symbols.get(i);
+                args[(i - from) * 2 + 1] = timeframe.getValue();
+            }
+            try (Cursor cursor = db.rawQuery(query.toString(), args)) {
+                //the union keeps no order across its parts, the dates decide which close is the newer one
+                Map<String, String> newestDates = new HashMap<>();
+                while (cursor.moveToNext()) {
+                    String symbol = cursor.getString(0);
+                    String date = cursor.getString(1);
+                    float close = cursor.getFloat(2);
+                    float[] price = prices.get(symbol);
+                    if (price == null) {
+                        prices.put(symbol, new float[]{close, Float.NaN});
+                        newestDates.put(symbol, date);
+                    } else if (date.compareTo(newestDates.get(symbol)) > 0) {
+                        price[1] = price[0];
+                        price[0] = close;
+                    } else {
+                        price[1] = close;
+                    }
+                }
+            } catch (RuntimeException e) {
+                AppLog.e(DB_Helper.DB_LOG_TAG, "Error getting latest prices: " + e.getMessage());
+                throw e;
+            }
+        }
+        return prices;
+    }
+
+    //newest bars of one symbol and timeframe, for the closes of the last session
+    static final String RECENT_CLOSES_QUERY = "SELECT " + COLUMN_DATE + ", " + COLUMN_CLOSE + " FROM " + TABLE_NAME +
+            " WHERE " + COLUMN_SYMBOL + " = ? AND " + COLUMN_TIMEFRAME + " = ? ORDER BY " + COLUMN_DATE + " DESC LIMIT ?";
+
+    //closes of the bars on the day of a symbol's last bar, oldest first
+    public static final class Session {
+        //stored date of the last bar, "yyyy-MM-dd HH:mm:ss"
+        public final String lastDate;
+        public final float[] closes;
+
+        Session(String lastDate, float[] closes) {
+            this.lastDate = lastDate;
+            this.closes = closes;
+        }
+    }
+
+    //the last day of bars of an intraday timeframe, null when the symbol has none
+    public Session getLastSession(String symbol, Timeframe timeframe) {
+        int limit = 24 * 60 / timeframe.getMinutes();
+        try (Cursor cursor = DB_HELPER.getReadableDatabase().rawQuery(RECENT_CLOSES_QUERY,
+                new String[]{symbol, timeframe.getValue(), String.valueOf(limit)})) {
+            if (!cursor.moveToFirst()) return null;
+            String lastDate = cursor.getString(0);
+            //stored dates start with yyyy-MM-dd, the rows of the same day share those 10 characters
+            String day = lastDate.substring(0, Math.min(10, lastDate.length()));
+            float[] closes = new float[cursor.getCount()];
+            int count = 0;
+            do {
+                if (!cursor.getString(0).startsWith(day)) break;
+                closes[count++] = cursor.getFloat(1);
+            } while (cursor.moveToNext());
+            float[] session = new float[count];
+            for (int i = 0; i < count; i++) {
+                session[i] = closes[count - 1 - i];
+            }
+            return new Session(lastDate, session);
+        } catch (RuntimeException e) {
+            AppLog.e(DB_Helper.DB_LOG_TAG, "Error getting the last session of " + symbol + ": " + e.getMessage());
+            throw e;
+        }
+    }
+
+    //newest bars of one symbol and timeframe, read back to front
+    static final String RECENT_BARS_QUERY = "SELECT " + COLUMN_DATE + ", " + COLUMN_OPEN + ", " + COLUMN_HIGH + ", " +
+            COLUMN_LOW + ", " + COLUMN_CLOSE + ", " + COLUMN_VOLUME + " FROM " + TABLE_NAME +
+            " WHERE " + COLUMN_SYMBOL + " = ? AND " + COLUMN_TIMEFRAME + " = ? ORDER BY " + COLUMN_DATE + " DESC LIMIT ?";
+
+    //the last limit bars oldest first, for work that only looks at the end of a series. safe to call from several threads
+    public CandleSeries getRecentBars(String symbol, Timeframe timeframe, int limit) {
+        try (Cursor cursor = DB_HELPER.getReadableDatabase().rawQuery(RECENT_BARS_QUERY,
+                new String[]{symbol, timeframe.getValue(), String.valueOf(limit)})) {
+            int count = cursor.getCount();
+            long[] timestamps = new long[count];
+            float[][] prices = new float[4][count];
+            long[] volumes = new long[count];
+            StoredDate storedDate = new StoredDate();
+            for (int i = count - 1; cursor.moveToNext(); i--) {
+                timestamps[i] = storedDate.parse(cursor.getString(0));
+                for (int field = 0; field < 4; field++) {
+                    prices[field][i] = cursor.getFloat(field + 1);
+                }
+                volumes[i] = cursor.getLong(5);
+            }
+            CandleSeries series = new CandleSeries(count);
+            for (int i = 0; i < count; i++) {
+                series.add(timestamps[i], prices[0][i], prices[1][i], prices[2][i], prices[3][i], volumes[i]);
+            }
+            Metrics.get().add(Metrics.DB_ROWS_READ, count);
+            return series;
+        } catch (RuntimeException e) {
+            AppLog.e(DB_Helper.DB_LOG_TAG, "Error getting recent bars of " + symbol + ": " + e.getMessage());
             throw e;
         }
     }
 
+    //dates of one symbol and timeframe oldest first, read from the key index alone
+    static final String TIMESTAMPS_QUERY = "SELECT " + COLUMN_DATE + " FROM " + TABLE_NAME +
+            " WHERE " + COLUMN_SYMBOL + " = ? AND " + COLUMN_TIMEFRAME + " = ? ORDER BY " + COLUMN_DATE + " ASC";
+
+    //timestamps of every bar of a series in chart order, the i-th one belongs to the bar at x = i
+    public long[] getTimestamps(String symbol, Timeframe timeframe, CancellationToken token) {
+        try (Cursor cursor = DB_HELPER.getReadableDatabase().rawQuery(TIMESTAMPS_QUERY,
+                new String[]{symbol, timeframe.getValue()})) {
+            long[] timestamps = new long[cursor.getCount()];
+            StoredDate storedDate = new StoredDate();
+            for (int i = 0; cursor.moveToNext(); i++) {
+                if ((i & Cancellation.CHECK_MASK) == 0) token.throwIfCancelled();
+                timestamps[i] = storedDate.parse(cursor.getString(0));
+            }
+            Metrics.get().add(Metrics.DB_ROWS_READ, timestamps.length);
+            return timestamps;
+        } catch (RuntimeException e) {
+            AppLog.e(DB_Helper.DB_LOG_TAG, "Error getting timestamps of " + symbol + ": " + e.getMessage());
+            throw e;
+        }
+    }
 
+    //bar count and last date of one series, answered from the key index without reading the rows
+    static final String SERIES_VERSION_QUERY = "SELECT COUNT(*), MAX(" + COLUMN_DATE + ") FROM " + TABLE_NAME +
+            " WHERE " + COLUMN_SYMBOL + " = ? AND " + COLUMN_TIMEFRAME + " = ?";
 
+    //bumped by the writers that can replace stored bars on the same dates (an import), the count and last date
+    //don't see new prices
+    private static final AtomicInteger rewrites = new AtomicInteger();
+
+    //called after bars were written over stored ones, every series version changes
+    public static void onBarsRewritten() {
+        rewrites.incrementAndGet();
+    }
+
+    //changes whenever bars are added to the series or stored bars may have been rewritten, for caches of anything
+    //derived from its bars
+    public String getSeriesVersion(String symbol, Timeframe timeframe) {
+        int rewritten = rewrites.get();
+        try (Cursor cursor = DB_HELPER.getReadableDatabase().rawQuery(SERIES_VERSION_QUERY,
+                new String[]{symbol, timeframe.getValue()})) {
+            if (!cursor.moveToFirst()) return rewritten + "|0";
+            return rewritten + "|" + cursor.getInt(0) + "|" + cursor.getString(1);
+        } catch (RuntimeException e) {
+            AppLog.e(DB_Helper.DB_LOG_TAG, "Error getting the version of " + symbol + ": " + e.getMessage());
+            throw e;
+        }
+    }
 }
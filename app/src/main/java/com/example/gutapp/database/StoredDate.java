@@ -0,0 +1,63 @@
+package com.example.gutapp.database;
+
+import com.example.gutapp.engine.CivilDate;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+//"yyyy-MM-dd HH:mm:ss" in the device time zone, the format StockDataHelper parses
+//rows of one day share the date part, only the time is written (or read) per row instead of a SimpleDateFormat call
+final class StoredDate {
+    private static final long DAY_MS = 24 * 60 * 60 * 1000L;
+
+    private final TimeZone timeZone = TimeZone.getDefault();
+    private final SimpleDateFormat dayFormat = new SimpleDateFormat("yyyy-MM-dd ", Locale.US);
+    private final char[] text = new char[19];
+    private long day = Long.MIN_VALUE;
+
+    StoredDate() {
+        //the local day is formatted from its utc midnight
+        dayFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+    }
+
+    String format(long timestamp) {
+        long local = timestamp + timeZone.getOffset(timestamp);
+        long localDay = Math.floorDiv(local, DAY_MS);
+        if (localDay != day) {
+            day = localDay;
+            dayFormat.format(new Date(localDay * DAY_MS)).getChars(0, 11, text, 0);
+        }
+        int seconds = (int) (Math.floorMod(local, DAY_MS) / 1000);
+        twoDigits(seconds / 3600, 11);
+        text[13] = ':';
+        twoDigits(seconds / 60 % 60, 14);
+        text[16] = ':';
+        twoDigits(seconds % 60, 17);
+        return new String(text);
+    }
+
+    //inverse of format, a local time repeated by a dst change is read as standard time like SimpleDateFormat does
+    long parse(String date) {
+        long day = CivilDate.daysFromCivil(digits(date, 0, 4), digits(date, 5, 2), digits(date, 8, 2));
+        long seconds = digits(date, 11, 2) * 3600L + digits(date, 14, 2) * 60L + digits(date, 17, 2);
+        long local = day * DAY_MS + seconds * 1000L;
+        long standard = local - timeZone.getRawOffset();
+        int offset = timeZone.getOffset(standard);
+        return offset == timeZone.getRawOffset() ? standard : local - offset;
+    }
+
+    private static int digits(String text, int at, int count) {
+        int value = 0;
+        for (int i = at; i < at + count; i++) {
+            value = value * 10 + (text.charAt(i) - '0');
+        }
+        return value;
+    }
+
+    private void twoDigits(int value, int at) {
+        text[at] = (char) ('0' + value / 10);
+        text[at + 1] = (char) ('0' + value % 10);
+    }
+}
@@ -1,15 +1,39 @@
 package com.example.gutapp.database;
 
 import android.database.Cursor;
-import android.util.Log;
 import android.database.sqlite.SQLiteDatabase;
 
+import com.example.gutapp.data.log.AppLog;
+import com.example.gutapp.engine.SymbolIndex;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
 public class SymbolsTableHelper implements Table{
     private static final String TABLE_NAME = "symbols";
     private static final String COLUMN_ID = "_id";
     private static final String COLUMN_SYMBOL = "symbol";
     private static final String COLUMN_NAME = "name";
 
+    static final String NAME_QUERY = "SELECT " + COLUMN_NAME + " FROM " + TABLE_NAME + " WHERE " + COLUMN_SYMBOL + " = ?";
+
+    //every symbol with its name, read once per process and dropped whenever a symbol is added
+    private static Universe universe;
+    private static int universeVersion;
+
+    private static final class Universe {
+        final HashMap<String, String> names;
+        final SymbolIndex index;
+
+        Universe(String[] symbols, String[] names) {
+            this.names = new HashMap<>(symbols.length * 2);
+            for (int i = 0; i < symbols.length; i++) {
+                this.names.put(symbols[i], names[i]);
+            }
+            this.index = new SymbolIndex(symbols, names);
+        }
+    }
+
     private DB_Helper db_helper;
 
     public SymbolsTableHelper(DB_Helper db_helper) {
@@ -23,23 +47,54 @@ public class SymbolsTableHelper implements Table{
         try {
             db.execSQL(sql, new String[]{symbol, name});
         } catch (Exception e) {
-            Log.e(DB_Helper.DB_LOG_TAG, "Error inserting symbol", e);
+            AppLog.e(DB_Helper.DB_LOG_TAG, "Error inserting symbol", e);
         }
+        invalidateUniverse();
     }
 
+    //served from the cached universe, no query per lookup
     public String getSymbolName(String symbol) {
-        SQLiteDatabase db = db_helper.getReadableDatabase();
-        String sql = "SELECT " + COLUMN_NAME + " FROM " + TABLE_NAME + " WHERE " + COLUMN_SYMBOL + " = ?";
-        String[] selectionArgs = {symbol};
-        try (Cursor cursor = db.rawQuery(sql, selectionArgs)) {
-            if (cursor.moveToFirst()) {
-                return cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_NAME));
+        return universe().names.get(symbol);
+    }
+
+    //prefix and fuzzy search over every symbol and name, ids index the index's own arrays
+    //the first call reads and indexes the whole table, call it off the main thread
+    //the index isn't thread safe, search it on the main thread only
+    public SymbolIndex getSymbolIndex() {
+        return universe().index;
+    }
+
+    private static synchronized void invalidateUniverse() {
+        universe = null;
+        universeVersion++;
+    }
+
+    private Universe universe() {
+        int version;
+        synchronized (SymbolsTableHelper.class) {
+            if (universe != null) return universe;
+            version = universeVersion;
+        }
+        //loaded outside the lock, a symbol added meanwhile makes this copy stale and it isn't kept
+        ArrayList<String> symbols = new ArrayList<>();
+        ArrayList<String> names = new ArrayList<>();
+        try (Cursor cursor = getStocks()) {
+            int symbolColumn = cursor.getColumnIndexOrThrow(COLUMN_SYMBOL);
+            int nameColumn = cursor.getColumnIndexOrThrow(COLUMN_NAME);
+            while (cursor.moveToNext()) {
+                String name = cursor.getString(nameColumn);
+                symbols.add(cursor.getString(symbolColumn));
+                names.add(name != null ? name : "");
+            }
+        }
+        Universe loaded = new Universe(symbols.toArray(new String[0]), names.toArray(new String[0]));
+        AppLog.i(DB_Helper.DB_LOG_TAG, "Indexed " + symbols.size() + " symbols");
+        synchronized (SymbolsTableHelper.class) {
+            if (universeVersion == version) {
+                universe = loaded;
             }
-        } catch (Exception e) {
-            Log.e("SymbolsTableHelper", "Error getting symbol name", e);
-            throw e;
         }
-        return null;
+        return loaded;
     }
 
     public void loadDefaultSymbols(SQLiteDatabase db) {
@@ -61,23 +116,30 @@ public class SymbolsTableHelper implements Table{
                 ")";
     }
 
+    @Override
+    public String[] createIndexes() {
+        return new String[]{
+                "CREATE INDEX IF NOT EXISTS idx_symbols_symbol ON " + TABLE_NAME + " (" + COLUMN_SYMBOL + ")"
+        };
+    }
+
     @Override
     public String getName() {
         return TABLE_NAME;
     }
 
 
-    //loading all the symbol and name data mainly used for home activity
+    //loading all the symbol and name data, ordered by symbol
     public Cursor getStocks(){
         SQLiteDatabase db = db_helper.getReadableDatabase();
-        String sql = "SELECT " + COLUMN_SYMBOL + ", " + COLUMN_NAME + " FROM " + TABLE_NAME + " LIMIT 50";
+        String sql = "SELECT " + COLUMN_SYMBOL + ", " + COLUMN_NAME + " FROM " + TABLE_NAME + " ORDER BY " + COLUMN_SYMBOL;
         try{
             Cursor cursor = db.rawQuery(sql, null);
-            Log.i(DB_Helper.DB_LOG_TAG, "Successfully fetched symbols and names");
+            AppLog.i(DB_Helper.DB_LOG_TAG, "Successfully fetched symbols and names");
             return cursor;
         }
         catch (Exception e){
-            Log.e(DB_Helper.DB_LOG_TAG, "Error getting symbols and names", e);
+            AppLog.e(DB_Helper.DB_LOG_TAG, "Error getting symbols and names", e);
             throw e;
         }
 
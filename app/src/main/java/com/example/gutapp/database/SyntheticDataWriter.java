@@ -0,0 +1,106 @@
+package com.example.gutapp.database;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import com.example.gutapp.data.log.AppLog;
+import com.example.gutapp.engine.BarSink;
+import com.example.gutapp.engine.SyntheticMarket;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+//fills stock_data (and symbols) with deterministic synthetic candles for scale and load testing
+//every symbol gets 5 minute bars generated once and rolled up into all four timeframes, so the timeframes agree
+public class SyntheticDataWriter {
+    //2020-01-01 00:00 utc
+    public static final long DEFAULT_START = 1577836800000L;
+    public static final long DEFAULT_SEED = 42L;
+    //rows per transaction, keeps the journal small on 10M bar loads
+    private static final int ROWS_PER_TRANSACTION = 50_000;
+
+    private final DB_Helper db_helper;
+    private long start = DEFAULT_START;
+
+    public SyntheticDataWriter(DB_Helper db_helper) {
+        this.db_helper = db_helper;
+    }
+
+    public SyntheticDataWriter withStart(long startMillis) {
+        this.start = startMillis;
+        return this;
+    }
+
+    //writes symbolCount symbols named SYN00001, SYN00002... each with fiveMinuteBars base bars
+    public void writeSymbols(int symbolCount, int fiveMinuteBars, long seed) {
+        SQLiteDatabase db = db_helper.getWritableDatabase();
+        SymbolsTableHelper symbolsTableHelper = (SymbolsTableHelper) db_helper.getHelper(DB_Index.SYMBOL_TABLE);
+        for (int i = 1; i <= symbolCount; i++) {
+            String symbol = String.format(Locale.US, "SYN%05d", i);
+            symbolsTableHelper.insertSymbol(symbol, "Synthetic " + i, db);
+            writeSymbol(db, symbol, "Synthetic " + i, SyntheticMarket.forSymbol(seed, symbol), fiveMinuteBars);
+        }
+        AppLog.i(DB_Helper.DB_LOG_TAG, "Wrote " + symbolCount + " synthetic symbols with " + fiveMinuteBars + " bars each");
+    }
+
+    //writes one symbol into stock_data for every timeframe, returns the number of rows inserted
+    public long writeSymbol(SQLiteDatabase db, String symbol, String name, SyntheticMarket market, int fiveMinuteBars) {
+        StockDataHelper.Timeframe[] timeframes = StockDataHelper.Timeframe.values();
+        int[] intervals = new int[timeframes.length];
+        BarSink[] sinks = new BarSink[timeframes.length];
+
+        SQLiteStatement insert = db.compileStatement("INSERT OR REPLACE INTO " + ((StockDataHelper) db_helper.getHelper(DB_Index.STOCK_TABLE)).getName() + " (" +
+                StockDataHelper.COLUMN_SYMBOL + ", " + StockDataHelper.COLUMN_NAME + ", " + StockDataHelper.COLUMN_DATE + ", " +
+                StockDataHelper.COLUMN_TIMEFRAME + ", " + StockDataHelper.COLUMN_OPEN + ", " + StockDataHelper.COLUMN_HIGH + ", " +
+                StockDataHelper.COLUMN_LOW + ", " + StockDataHelper.COLUMN_CLOSE + ", " + StockDataHelper.COLUMN_VOLUME +
+                ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)");
+        //same format StockDataHelper parses, one instance reused for every row
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.US);
+        Date date = new Date();
+        long[] rows = new long[1];
+
+        for (int i = 0; i < timeframes.length; i++) {
+            StockDataHelper.Timeframe timeframe = timeframes[i];
+            intervals[i] = timeframe == StockDataHelper.Timeframe.DAILY ? SyntheticMarket.SESSION : timeframe.getMinutes();
+            sinks[i] = (timestamp, open, high, low, close, volume) -> {
+                date.setTime(timestamp);
+                insert.bindString(1, symbol);
+                insert.bindString(2, name);
+                insert.bindString(3, format.format(date));
+                insert.bindString(4, timeframe.getValue());
+                insert.bindDouble(5, open);
+                insert.bindDouble(6, high);
+                insert.bindDouble(7, low);
+                insert.bindDouble(8, close);
+                insert.bindLong(9, volume);
+                insert.executeInsert();
+                //commit in chunks so a huge load doesn't sit in one transaction
+                if (++rows[0] % ROWS_PER_TRANSACTION == 0) {
+                    db.setTransactionSuccessful();
+                    db.endTransaction();
+                    db.beginTransaction();
+                }
+            };
+        }
+
+        db.beginTransaction();
+        try {
+            market.generate(start, StockDataHelper.Timeframe.FIVE_MIN.getMinutes(), fiveMinuteBars, intervals, sinks);
+            db.setTransactionSuccessful();
+        } catch (Exception e) {
+            AppLog.e(DB_Helper.DB_LOG_TAG, "Error writing synthetic data for " + symbol, e);
+            throw e;
+        } finally {
+            db.endTransaction();
+            insert.close();
+        }
+        for (StockDataHelper.Timeframe timeframe : timeframes) {
+            MappedCandleStore.invalidate(db_helper, symbol, timeframe, start);
+        }
+        //the generated bars may have replaced stored ones on the same dates
+        StockDataHelper.onBarsRewritten();
+        AppLog.i(DB_Helper.DB_LOG_TAG, "Wrote " + rows[0] + " synthetic rows for " + symbol);
+        return rows[0];
+    }
+}
@@ -1,6 +1,17 @@
 package com.example.gutapp.database;
 
+import android.database.sqlite.SQLiteDatabase;
+
 public interface Table {
     public String createTable();
     public String getName();
+
+    //migrates the table from an older database version, tables that didn't change keep the default
+    public default void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+    }
+
+    //indexes of the table, created with IF NOT EXISTS on create and when upgrading from a version without them
+    public default String[] createIndexes() {
+        return new String[0];
+    }
 }
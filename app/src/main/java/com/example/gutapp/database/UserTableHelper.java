@@ -2,9 +2,9 @@ package com.example.gutapp.database;
 
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
-import android.util.Log;
 
 import com.example.gutapp.data.UserGlobals;
+import com.example.gutapp.data.log.AppLog;
 
 public class UserTableHelper implements Table{
 
@@ -34,7 +34,7 @@ public class UserTableHelper implements Table{
         try {
             cursor = db.rawQuery(query, args);
         } catch (Exception e) {
-            Log.e(DB_HELPER.DB_LOG_TAG, "error " + e.getMessage());
+            AppLog.e(DB_HELPER.DB_LOG_TAG, "error " + e.getMessage());
             throw e;
         }
         //returns false if an account with the same username already exist in the database
@@ -50,7 +50,7 @@ public class UserTableHelper implements Table{
         try {
             db.execSQL(insertQuery, args);
         } catch (Exception e) {
-            Log.e(DB_HELPER.DB_LOG_TAG, "error" + e.getMessage());
+            AppLog.e(DB_HELPER.DB_LOG_TAG, "error" + e.getMessage());
             throw e;
         }
         //retrieve the newly created user id
@@ -59,10 +59,10 @@ public class UserTableHelper implements Table{
         try{
             cursor = db.rawQuery(query, args);
             cursor.moveToFirst();
-            Log.i(DB_HELPER.DB_LOG_TAG, "id retrieved " + cursor.getString(0));
+            AppLog.i(DB_HELPER.DB_LOG_TAG, "id retrieved " + cursor.getString(0));
         }
         catch (Exception e) {
-            Log.e(DB_HELPER.DB_LOG_TAG, "error fetching id" + e.getMessage());
+            AppLog.e(DB_HELPER.DB_LOG_TAG, "error fetching id" + e.getMessage());
             throw e;
         }
         //inserts the logged in user data to the user globals class
@@ -83,7 +83,7 @@ public class UserTableHelper implements Table{
             cursor = db.rawQuery(query, args);
         }
         catch (Exception e) {
-            Log.e(DB_HELPER.DB_LOG_TAG, "error on validate user " + e.getMessage());
+            AppLog.e(DB_HELPER.DB_LOG_TAG, "error on validate user " + e.getMessage());
             throw e;
         }
         //checks if cursor has arguments, if it has then there is a line in the data base with the
@@ -94,13 +94,13 @@ public class UserTableHelper implements Table{
                 cursor.moveToFirst();
                 UserGlobals.ID = cursor.getString(0);
                 UserGlobals.LOGGED_IN = true;
-                Log.i(DB_HELPER.DB_LOG_TAG, "user validated, user id " + cursor.getString(0));
+                AppLog.i(DB_HELPER.DB_LOG_TAG, "user validated, user id " + cursor.getString(0));
                 cursor.close();
                 return true;
             }
         }
         catch (Exception e){
-            Log.e(DB_HELPER.DB_LOG_TAG, "error on validate user " + e.getMessage());
+            AppLog.e(DB_HELPER.DB_LOG_TAG, "error on validate user " + e.getMessage());
             throw e;
         }
         return false;
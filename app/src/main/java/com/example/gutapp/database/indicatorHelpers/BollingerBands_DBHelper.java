@@ -3,8 +3,9 @@ package com.example.gutapp.database.indicatorHelpers;
 import android.content.ContentValues;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
-import android.util.Log;
 
+import com.example.gutapp.data.log.AppLog;
+import com.example.gutapp.data.metrics.Metrics;
 import com.example.gutapp.database.DB_Helper;
 import com.example.gutapp.database.StockDataHelper;
 import com.example.gutapp.database.Table;
@@ -25,6 +26,15 @@ public class BollingerBands_DBHelper implements Table {
     public static final String COLUMN_STD_DEV_MULTIPLIER = "std_dev_multiplier";
     public static final String COLUMN_TIMEFRAME = "timeframe";
 
+    //cached bands of one setting in bar order, served entirely by the key index
+    public static final String FETCH_QUERY = "SELECT " + COLUMN_DATE + ", " + COLUMN_MIDDLE_BAND_VALUE + ", " +
+            COLUMN_UPPER_BAND_VALUE + ", " + COLUMN_LOWER_BAND_VALUE +
+            " FROM " + TABLE_NAME +
+            " WHERE " + COLUMN_SYMBOL + " = ? AND " +
+            COLUMN_PERIOD + " = ? AND " +
+            COLUMN_STD_DEV_MULTIPLIER + " = ? AND " +
+            COLUMN_TIMEFRAME + " = ? ORDER BY " + COLUMN_DATE;
+
     private DB_Helper db_helper;
 
     public BollingerBands_DBHelper(DB_Helper db_helper) {
@@ -47,10 +57,11 @@ public class BollingerBands_DBHelper implements Table {
         values.put(COLUMN_TIMEFRAME, timeframe.getValue());
 
         try {
-            db.insert(TABLE_NAME, null, values);
-            Log.i(DB_Helper.DB_LOG_TAG, "Inserted Bollinger Bands data for symbol " + symbol + " period " + period + " stdDev " + stdDevMultiplier + " timeframe " + timeframe.name() + " x-value: " + date);
+            //called once per bar, IndicatorUtil logs a summary per cached line instead
+            //two computations of the same bands can race to cache them, the second one's rows are dropped
+            db.insertWithOnConflict(TABLE_NAME, null, values, SQLiteDatabase.CONFLICT_IGNORE);
         } catch (Exception e) {
-            Log.e(DB_Helper.DB_LOG_TAG, "Error inserting Bollinger Bands data: " + e.getMessage());
+            AppLog.e(DB_Helper.DB_LOG_TAG, "Error inserting Bollinger Bands data: " + e.getMessage());
             throw e;
         }
     }
@@ -59,13 +70,6 @@ public class BollingerBands_DBHelper implements Table {
                                                 float stdDevMultiplier,
                                                 StockDataHelper.Timeframe timeframe) {
         SQLiteDatabase db = db_helper.getReadableDatabase();
-        String query = "SELECT " + COLUMN_DATE + ", " + COLUMN_MIDDLE_BAND_VALUE + ", " +
-                      COLUMN_UPPER_BAND_VALUE + ", " + COLUMN_LOWER_BAND_VALUE +
-                      " FROM " + TABLE_NAME +
-                      " WHERE " + COLUMN_SYMBOL + " = ? AND " +
-                      COLUMN_PERIOD + " = ? AND " +
-                      COLUMN_STD_DEV_MULTIPLIER + " = ? AND " +
-                      COLUMN_TIMEFRAME + " = ?";
         String[] args = {symbol, String.valueOf(period), String.valueOf(stdDevMultiplier), timeframe.getValue()};
 
         List<Entry> middleBandData = new ArrayList<>();
@@ -73,7 +77,8 @@ public class BollingerBands_DBHelper implements Table {
         List<Entry> lowerBandData = new ArrayList<>();
         List<List<Entry>> allBandsData = new ArrayList<>();
 
-        try (Cursor cursor = db.rawQuery(query, args)) {
+        long start = Metrics.begin(Metrics.DB_INDICATOR_FETCH);
+        try (Cursor cursor = db.rawQuery(FETCH_QUERY, args)) {
             if (cursor != null && cursor.moveToFirst()) {
                 while (!cursor.isAfterLast()) {
                     float date = cursor.getFloat(0); // This 'date' is now the sequential index
@@ -83,22 +88,30 @@ public class BollingerBands_DBHelper implements Table {
                     cursor.moveToNext();
                 }
             }
-            Log.i(DB_Helper.DB_LOG_TAG, "Fetched " + middleBandData.size() + " Bollinger Bands entries for symbol " + symbol + " period " + period + " stdDev " + stdDevMultiplier + " timeframe " + timeframe.name());
+            AppLog.d(DB_Helper.DB_LOG_TAG, () -> "Fetched " + middleBandData.size() + " Bollinger Bands entries for symbol " + symbol + " period " + period + " stdDev " + stdDevMultiplier + " timeframe " + timeframe.name());
         } catch (Exception e) {
-            Log.e(DB_Helper.DB_LOG_TAG, "Error fetching Bollinger Bands data: " + e.getMessage(), e);
+            AppLog.e(DB_Helper.DB_LOG_TAG, "Error fetching Bollinger Bands data: " + e.getMessage(), e);
+        } finally {
+            Metrics.end(Metrics.DB_INDICATOR_FETCH, start);
         }
+        Metrics.get().add(Metrics.DB_ROWS_READ, middleBandData.size());
         allBandsData.add(middleBandData);
         allBandsData.add(upperBandData);
         allBandsData.add(lowerBandData);
         return allBandsData;
     }
 
+    //drops the cached bands of one series, called when bars are appended to it
+    public static void clearBollingerBands(SQLiteDatabase db, String symbol, StockDataHelper.Timeframe timeframe) {
+        db.delete(TABLE_NAME, COLUMN_SYMBOL + " = ? AND " + COLUMN_TIMEFRAME + " = ?", new String[]{symbol, timeframe.getValue()});
+    }
+
     public static void clearAllBollingerBands(SQLiteDatabase db) {
         try {
             db.delete(TABLE_NAME, null, null);
-            Log.i(DB_Helper.DB_LOG_TAG, "Cleared all data from " + TABLE_NAME);
+            AppLog.i(DB_Helper.DB_LOG_TAG, "Cleared all data from " + TABLE_NAME);
         } catch (Exception e) {
-            Log.e(DB_Helper.DB_LOG_TAG, "Error clearing " + TABLE_NAME + ": " + e.getMessage());
+            AppLog.e(DB_Helper.DB_LOG_TAG, "Error clearing " + TABLE_NAME + ": " + e.getMessage());
         }
     }
 
@@ -114,10 +127,30 @@ public class BollingerBands_DBHelper implements Table {
                 COLUMN_PERIOD + " INTEGER NOT NULL, " +
                 COLUMN_STD_DEV_MULTIPLIER + " REAL NOT NULL, " +
                 COLUMN_TIMEFRAME + " TEXT NOT NULL" +
-                ");" +
-                "CREATE INDEX idx_bollinger_bands_lookup ON " + TABLE_NAME +
-                " (" + COLUMN_SYMBOL + ", " + COLUMN_PERIOD + ", " +
-                COLUMN_STD_DEV_MULTIPLIER + ", " + COLUMN_TIMEFRAME + ");";
+                ");";
+    }
+
+    //execSQL runs a single statement, so the index can't be appended to createTable
+    //one row per bar of a cached setting
+    @Override
+    public String[] createIndexes() {
+        return new String[]{
+                "CREATE UNIQUE INDEX IF NOT EXISTS idx_bollinger_bands_key ON " + TABLE_NAME +
+                        " (" + COLUMN_SYMBOL + ", " + COLUMN_PERIOD + ", " +
+                        COLUMN_STD_DEV_MULTIPLIER + ", " + COLUMN_TIMEFRAME + ", " + COLUMN_DATE + ")"
+        };
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        //version 7 made the bands key unique, the plain lookup index on the same columns is replaced by it
+        if (oldVersion < 7) {
+            db.execSQL("DELETE FROM " + TABLE_NAME + " WHERE " + COLUMN_ID + " NOT IN (SELECT MIN(" + COLUMN_ID + ") FROM " +
+                    TABLE_NAME + " GROUP BY " + COLUMN_SYMBOL + ", " + COLUMN_PERIOD + ", " +
+                    COLUMN_STD_DEV_MULTIPLIER + ", " + COLUMN_TIMEFRAME + ", " + COLUMN_DATE + ")");
+            db.execSQL("DROP INDEX IF EXISTS idx_bollinger_bands_lookup");
+            db.execSQL(createIndexes()[0]);
+        }
     }
 
     @Override
@@ -0,0 +1,60 @@
+package com.example.gutapp.ui;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Path;
+
+import com.example.gutapp.engine.Backtester;
+import com.example.gutapp.engine.Sparkline;
+
+import java.util.Locale;
+
+//summary and equity curve of a finished backtest
+//built on the thread that ran it, before the backtester runs again, so the main thread only shows them
+public class BacktestReport {
+    private static final int BUCKETS = 200;
+    private static final int UP_COLOR = Color.parseColor("#00FF88");
+    private static final int DOWN_COLOR = Color.parseColor("#FF4444");
+
+    public final String summary;
+    public final Bitmap equityCurve;
+
+    private BacktestReport(String summary, Bitmap equityCurve) {
+        this.summary = summary;
+        this.equityCurve = equityCurve;
+    }
+
+    //the curve is min/max downsampled like the watchlist sparklines, so drawdowns survive
+    public static BacktestReport of(Backtester backtester, int width, int height) {
+        int trades = backtester.getTradeCount();
+        String summary = String.format(Locale.US, "Return %+.2f%%, max drawdown %.2f%%\n%d trades, %d winners over %d bars",
+                backtester.getTotalReturn() * 100, backtester.getMaxDrawdown() * 100,
+                trades, backtester.getWinningTrades(), backtester.size());
+        if (trades > 0) {
+            int last = trades - 1;
+            summary += String.format(Locale.US, "\nLast trade: bars %d to %d, %+.2f%%",
+                    backtester.getTradeEntry(last), backtester.getTradeExit(last), backtester.getTradeReturn(last) * 100);
+        }
+        if (backtester.size() < 2) return new BacktestReport(summary, null);
+
+        float[] downsampled = new float[2 * BUCKETS];
+        float[] points = new float[4 * BUCKETS];
+        int count = Sparkline.downsample(backtester.equity(), 0, backtester.size(), BUCKETS, downsampled);
+        float pad = Math.max(1f, height / 40f);
+        Sparkline.toPoints(downsampled, count, width - 2 * pad, height, pad, points);
+        Path path = new Path();
+        path.moveTo(points[0] + pad, points[1]);
+        for (int i = 1; i < count; i++) {
+            path.lineTo(points[2 * i] + pad, points[2 * i + 1]);
+        }
+        Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        paint.setStyle(Paint.Style.STROKE);
+        paint.setStrokeWidth(pad);
+        paint.setColor(backtester.getTotalReturn() >= 0 ? UP_COLOR : DOWN_COLOR);
+        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        new Canvas(bitmap).drawPath(path, paint);
+        return new BacktestReport(summary, bitmap);
+    }
+}
@@ -14,6 +14,7 @@ import android.view.ViewGroup;
 import android.widget.Button;
 import android.widget.EditText;
 import android.widget.ImageButton;
+import android.widget.ImageView;
 import android.widget.PopupWindow;
 import android.widget.TextView;
 import android.widget.Toast;
@@ -29,28 +30,46 @@ import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.gutapp.R;
+import com.example.gutapp.data.UserGlobals;
+import com.example.gutapp.data.chart.ChartReplay;
+import com.example.gutapp.data.chart.ComparisonOverlay;
+import com.example.gutapp.data.chart.ComputeScheduler;
 import com.example.gutapp.data.chart.Indicator;
 import com.example.gutapp.data.chart.IndicatorManager;
 import com.example.gutapp.data.chart.Indicators;
+import com.example.gutapp.data.chart.LiveChartUpdater;
+import com.example.gutapp.data.live.AlertMonitor;
+import com.example.gutapp.data.live.LiveFeed;
+import com.example.gutapp.data.metrics.Metrics;
+import com.example.gutapp.database.AlertsTableHelper;
+import com.example.gutapp.database.CandleStore;
 import com.example.gutapp.database.DB_Helper;
 import com.example.gutapp.database.DB_Index;
+import com.example.gutapp.database.LiveBarWriter;
+import com.example.gutapp.database.MappedCandleStore;
 import com.example.gutapp.database.StockDataHelper;
+import com.example.gutapp.database.SymbolsTableHelper;
+import com.example.gutapp.engine.Alert;
+import com.example.gutapp.engine.Backtester;
+import com.example.gutapp.engine.CandleSeries;
+import com.example.gutapp.engine.ParameterSweep;
+import com.example.gutapp.engine.SimulatedTickSource;
+import com.example.gutapp.engine.Strategy;
 
 import com.github.mikephil.charting.charts.CombinedChart;
-import com.github.mikephil.charting.components.AxisBase;
 import com.github.mikephil.charting.components.XAxis;
 import com.github.mikephil.charting.components.YAxis;
 import com.github.mikephil.charting.data.CandleData;
 import com.github.mikephil.charting.data.CandleDataSet;
 import com.github.mikephil.charting.data.CandleEntry;
 import com.github.mikephil.charting.data.CombinedData;
-import com.github.mikephil.charting.formatter.ValueFormatter;
 
-import java.text.SimpleDateFormat;
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Date;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
 
 public class ChartActivity extends AppCompatActivity implements View.OnClickListener {
 
@@ -58,23 +77,84 @@ public class ChartActivity extends AppCompatActivity implements View.OnClickList
 
     private DB_Helper db_helper;
     private StockDataHelper stockDataHelper;
+    private CandleStore candleStore;
     private CombinedChart chart;
     private String symbol; // Default symbol
+    private String name;
     private boolean isInitialLoad = true;
     private TextView textViewTitle;
     private String timeframe = "1d";
 
 //indicator management
     private IndicatorManager indicatorManager;
+    private final ComputeScheduler scheduler = ComputeScheduler.getInstance();
     private AvailableIndicatorsAdapter availableIndicatorsAdapter;
     private ActiveIndicatorsAdapter activeIndicatorsAdapter;
     private PopupWindow indicatorPopupWindow;
     private PopupWindow settingsPopupWindow; // Declare settings PopupWindow
+    //when onCreate started, chart open time is measured up to the first candles on screen
+    private long openStartNanos;
+
+    private static final long DAY_MS = 86_400_000L;
+
+    //live feed, null while it is off
+    private LiveFeed liveFeed;
+    private LiveChartUpdater liveChartUpdater;
+    private StockDataHelper.Timeframe shownTimeframe;
+    private TimeAxisFormatter axisFormatter;
+    private Button buttonLive;
+
+    //historical replay, null while it is off
+    private static final String[] REPLAY_SPEED_NAMES = {"10 bars/s", "30 bars/s", "60 bars/s", "120 bars/s", "240 bars/s"};
+    private static final int[] REPLAY_SPEEDS = {10, 30, 60, 120, 240};
+    private ChartReplay replay;
+    private Button buttonReplay;
+
+    //alerts, evaluated on the bars the live feed closes
+    private static final String[] ALERT_TEMPLATE_NAMES = {"Close crosses above BB upper 20/2", "Close crosses below BB lower 20/2",
+            "SMA 20 crosses above SMA 50", "SMA 20 crosses below SMA 50"};
+    private static final int FIRED_ALERTS_SHOWN = 50;
+    private AlertsTableHelper alertsHelper;
+    private AlertMonitor alertMonitor;
+
+    //other symbols as percent change over the shown one, empty while comparison is off
+    private ComparisonOverlay comparison;
+
+    //backtests of the shown timeframe
+    private static final Strategy[] STRATEGIES = {
+            new Strategy("SMA 20/50 crossover", Strategy.crossesAbove(Alert.sma(20), Alert.sma(50)),
+                    Strategy.crossesBelow(Alert.sma(20), Alert.sma(50))),
+            new Strategy("EMA 12/26 crossover", Strategy.crossesAbove(Alert.ema(12), Alert.ema(26)),
+                    Strategy.crossesBelow(Alert.ema(12), Alert.ema(26))),
+            new Strategy("BB 20/2 lower to upper band", Strategy.lowTouches(Alert.bollingerLower(20, 2)),
+                    Strategy.highTouches(Alert.bollingerUpper(20, 2))),
+            new Strategy("BB 20/2 lower band to middle", Strategy.lowTouches(Alert.bollingerLower(20, 2)),
+                    Strategy.crossesAbove(Alert.close(), Alert.bollingerMiddle(20, 2)))
+    };
+    //10 basis points a fill and 5 of slippage
+    private final Backtester backtester = new Backtester().withFee(0.001f).withSlippage(0.0005f);
+    //the series of the last backtest and its version, run again while it is unchanged so the backtester keeps its
+    //lines cached between strategies. guarded by backtester
+    private CandleSeries backtestSeries;
+    private StockDataHelper.Timeframe backtestTimeframe;
+    private String backtestVersion;
+    //the last entry of the backtest dialog sweeps the bollinger bounce over this grid
+    private static final String SWEEP_NAME = "Optimize BB period x multiplier";
+    private static final ParameterSweep.Template SWEEP_TEMPLATE = (period, multiplier) -> new Strategy(
+            String.format(Locale.US, "BB %d/%.1f lower to upper band", period, multiplier),
+            Strategy.lowTouches(Alert.bollingerLower(period, multiplier)), Strategy.highTouches(Alert.bollingerUpper(period, multiplier)));
+    private static final int[] SWEEP_PERIODS = new int[200];
+    private static final float[] SWEEP_MULTIPLIERS = new float[20];
+    static {
+        for (int i = 0; i < SWEEP_PERIODS.length; i++) SWEEP_PERIODS[i] = 5 + i;
+        for (int i = 0; i < SWEEP_MULTIPLIERS.length; i++) SWEEP_MULTIPLIERS[i] = 1 + i * 0.1f;
+    }
 
     @SuppressLint("SetTextI11n")
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        openStartNanos = System.nanoTime();
         EdgeToEdge.enable(this);
         setContentView(R.layout.activity_chart);
         ViewCompat.setOnApplyWindowInsetsListener(findViewById(R.id.main), (v, insets) -> {
@@ -85,12 +165,13 @@ public class ChartActivity extends AppCompatActivity implements View.OnClickList
         //loading chart symbol from the caller
         Intent intent = getIntent();
         symbol = intent.getStringExtra("symbol");
-        String name = intent.getStringExtra("name");
+        name = intent.getStringExtra("name");
 
         //initialize important database objects
         db_helper = new DB_Helper(this);
 
         stockDataHelper = (StockDataHelper) db_helper.getHelper(DB_Index.STOCK_TABLE);
+        candleStore = DB_Helper.USE_COLUMN_STORE ? new MappedCandleStore(db_helper) : stockDataHelper;
 
         chart = findViewById(R.id.stockChart);
 
@@ -101,6 +182,13 @@ public class ChartActivity extends AppCompatActivity implements View.OnClickList
         findViewById(R.id.button1h).setOnClickListener(this);
         findViewById(R.id.button1d).setOnClickListener(this);
         findViewById(R.id.indicatorsButton).setOnClickListener(this);
+        buttonLive = findViewById(R.id.buttonLive);
+        buttonLive.setOnClickListener(this);
+        buttonReplay = findViewById(R.id.buttonReplay);
+        buttonReplay.setOnClickListener(this);
+        findViewById(R.id.buttonAlerts).setOnClickListener(this);
+        findViewById(R.id.buttonBacktest).setOnClickListener(this);
+        findViewById(R.id.buttonCompare).setOnClickListener(this);
 
 
         textViewTitle = findViewById(R.id.textViewTitle);
@@ -111,6 +199,12 @@ public class ChartActivity extends AppCompatActivity implements View.OnClickList
         //initialize indicator manager
         indicatorManager = new IndicatorManager(chart, db_helper, symbol);
 
+        alertsHelper = (AlertsTableHelper) db_helper.getHelper(DB_Index.ALERT_TABLE);
+        alertMonitor = new AlertMonitor(alertsHelper, stockDataHelper, UserGlobals.ID, this::onAlertFired);
+        alertMonitor.watch(symbol);
+
+        comparison = new ComparisonOverlay(stockDataHelper);
+
 
         // Set up the chart
         setupChart();
@@ -123,20 +217,49 @@ public class ChartActivity extends AppCompatActivity implements View.OnClickList
     @Override
     protected void onStop(){
         super.onStop();
+        stopLive();
+        stopReplay();
         indicatorManager.storePresets();
-        Toast.makeText(this, "All presets saved", Toast.LENGTH_SHORT).show();
-        Log.i(CHART_LOG_TAG, "All presets saved");
+        Log.i(CHART_LOG_TAG, "Preset changes saved");
+        //metrics snapshot of the session, pulled from the app's files dir to see where chart open time goes
+        File snapshot = new File(getFilesDir(), "metrics.json");
+        DB_Helper.getWriteExecutor().execute(() -> {
+            try {
+                Metrics.get().writeSnapshot(snapshot);
+            } catch (IOException e) {
+                Log.e(CHART_LOG_TAG, "Error writing metrics snapshot: " + e.getMessage());
+            }
+        });
     }
 
+    //loads the candles of a timeframe off the main thread, a newer tap supersedes loads that are still running
     private void updateChartData(StockDataHelper.Timeframe timeframe) {
-        ArrayList<CandleEntry> stockData;
+        stopReplay();
+        final int generation = scheduler.newGeneration();
+        scheduler.submit(symbol, timeframe, "candles", ComputeScheduler.Priority.VISIBLE,
+                        token -> candleStore.getCachedStockData(symbol, timeframe, token))
+                .whenComplete((stockData, error) -> chart.post(() -> {
+                    if (!scheduler.isCurrent(generation) || isDestroyed()) {
+                        return;
+                    }
+                    if (error != null) {
+                        Log.e(db_helper.DB_LOG_TAG, "Error getting stock data: " + error.getMessage());
+                        return;
+                    }
+                    showChartData(stockData, timeframe);
+                }));
+    }
+
+    private void showChartData(ArrayList<CandleEntry> stockData, StockDataHelper.Timeframe timeframe) {
+        long start = Metrics.begin(Metrics.CHART_SHOW_CANDLES);
         try {
-            stockData = stockDataHelper.getCachedStockData(symbol, timeframe);
-        } catch (Exception e) {
-            Log.e(db_helper.DB_LOG_TAG, "Error getting stock data: " + e.getMessage());
-            return;
+            drawCandles(stockData, timeframe);
+        } finally {
+            Metrics.end(Metrics.CHART_SHOW_CANDLES, start);
         }
+    }
 
+    private void drawCandles(ArrayList<CandleEntry> stockData, StockDataHelper.Timeframe timeframe) {
         if (stockData == null || stockData.isEmpty()) {
             Log.e(db_helper.DB_LOG_TAG, "Stock data is empty or null for timeframe: " + timeframe.name());
             chart.clear(); // Clear the chart if there is no data
@@ -159,26 +282,18 @@ public class ChartActivity extends AppCompatActivity implements View.OnClickList
         chart.setData(combinedData);
         setupChart();
 
-        // Dynamic date formatting for the X-axis using the stored timestamp
-        chart.getXAxis().setValueFormatter(new ValueFormatter() {
-            private final SimpleDateFormat dailyFormat = new SimpleDateFormat("MMM dd", Locale.US);
-            private final SimpleDateFormat timeFormat = new SimpleDateFormat("HH:mm", Locale.US);
-
-            @Override
-            public String getAxisLabel(float value, AxisBase axis) {
-                int index = (int) value;
-                if (index >= 0 && index < stockData.size()) {
-                    CandleEntry entry = stockData.get(index);
-                    long timestamp = (long) entry.getData();
-                    if (timeframe == StockDataHelper.Timeframe.DAILY) {
-                        return dailyFormat.format(new Date(timestamp));
-                    } else {
-                        return timeFormat.format(new Date(timestamp));
-                    }
-                }
-                return "";
-            }
-        });
+        //x-axis labels come from a memoized table built over the candle timestamps,
+        //so panning only looks labels up instead of formatting dates on every frame
+        long[] timestamps = new long[stockData.size()];
+        for (int i = 0; i < timestamps.length; i++) {
+            timestamps[i] = (long) stockData.get(i).getData();
+        }
+        axisFormatter = new TimeAxisFormatter(timestamps, timeframe == StockDataHelper.Timeframe.DAILY);
+        chart.getXAxis().setValueFormatter(axisFormatter);
+        shownTimeframe = timeframe;
+        if (liveChartUpdater != null) {
+            liveChartUpdater.setSeries(timeframe, axisFormatter);
+        }
 
         if (isInitialLoad) {
             if (!stockData.isEmpty()) {
@@ -198,9 +313,13 @@ public class ChartActivity extends AppCompatActivity implements View.OnClickList
                     chart.fitScreen(); // If less than 60 entries, just show them all
                 }
             }
+            Metrics.get().recordNanos(Metrics.CHART_OPEN, System.nanoTime() - openStartNanos);
             isInitialLoad = false;
         }
         indicatorManager.setCurrentTimeframe(timeframe);
+        if (!comparison.isEmpty()) {
+            showComparison();
+        }
 
         chart.invalidate(); // Refresh the chart
         Log.i(db_helper.DB_LOG_TAG, "Chart updated for timeframe: " + timeframe.name());
@@ -267,6 +386,350 @@ public class ChartActivity extends AppCompatActivity implements View.OnClickList
             showIndicatorsPopup();
             Log.i(CHART_LOG_TAG, "Indicators button clicked");
         }
+        else if (id == R.id.buttonLive) {
+            if (liveFeed != null) {
+                stopLive();
+            } else {
+                startLive();
+            }
+        }
+        else if (id == R.id.buttonReplay) {
+            if (replay != null) {
+                //back to the whole series
+                updateChartData(shownTimeframe);
+            } else {
+                showReplaySpeedDialog();
+            }
+        }
+        else if (id == R.id.buttonAlerts) {
+            showAlertsDialog();
+        }
+        else if (id == R.id.buttonBacktest) {
+            showBacktestDialog();
+        }
+        else if (id == R.id.buttonCompare) {
+            showCompareDialog();
+        }
+    }
+
+    //candles on the chart, null before the first load or when the timeframe has no data
+    private CandleDataSet candleDataSet() {
+        CombinedData data = chart.getData();
+        CandleData candleData = data != null ? data.getCandleData() : null;
+        if (candleData == null || candleData.getDataSetCount() == 0) return null;
+        Object set = candleData.getDataSetByIndex(0);
+        return set instanceof CandleDataSet && ((CandleDataSet) set).getEntryCount() > 0 ? (CandleDataSet) set : null;
+    }
+
+    //live section
+
+    //starts a simulated feed that continues the stored history from the next utc midnight after the last candle,
+    //at the last close. there is no network feed yet, TickSource is the seam for one
+    private void startLive() {
+        CandleDataSet candles = candleDataSet();
+        if (candles == null) {
+            Toast.makeText(this, "No candles to continue from.", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        stopReplay();
+        CandleEntry last = candles.getEntryForIndex(candles.getEntryCount() - 1);
+        long start = Math.floorDiv((long) last.getData(), DAY_MS) * DAY_MS + DAY_MS;
+
+        liveChartUpdater = new LiveChartUpdater(chart, indicatorManager, new LiveBarWriter(db_helper, symbol, name), alertMonitor);
+        liveChartUpdater.setSeries(shownTimeframe, axisFormatter);
+        liveFeed = new LiveFeed(new SimulatedTickSource(symbol.hashCode(), start, last.getClose()), chart, liveChartUpdater);
+        liveFeed.start();
+        buttonLive.setText("Stop");
+        Log.i(CHART_LOG_TAG, "Live feed started for " + symbol);
+    }
+
+    //stops the feed and writes the bars it closed, the forming bars are dropped
+    private void stopLive() {
+        if (liveFeed == null) return;
+        liveFeed.stop();
+        Metrics.get().add(Metrics.LIVE_TICKS_DROPPED, liveFeed.getDroppedTicks());
+        liveChartUpdater.flush();
+        liveFeed = null;
+        liveChartUpdater = null;
+        buttonLive.setText("Live");
+        Log.i(CHART_LOG_TAG, "Live feed stopped for " + symbol);
+    }
+
+    //alerts section
+
+    //the templates set an alert on the shown timeframe, the last item lists the alerts that fired
+    private void showAlertsDialog() {
+        String[] items = new String[ALERT_TEMPLATE_NAMES.length + 1];
+        System.arraycopy(ALERT_TEMPLATE_NAMES, 0, items, 0, ALERT_TEMPLATE_NAMES.length);
+        items[ALERT_TEMPLATE_NAMES.length] = "Fired alerts";
+        new AlertDialog.Builder(ChartActivity.this)
+                .setTitle("Alerts for " + symbol)
+                .setItems(items, (d, which) -> {
+                    if (which == ALERT_TEMPLATE_NAMES.length) {
+                        showFiredAlerts();
+                    } else {
+                        setAlert(which);
+                    }
+                })
+                .show();
+    }
+
+    private void setAlert(int template) {
+        StockDataHelper.Timeframe alertTimeframe = shownTimeframe != null ? shownTimeframe : StockDataHelper.Timeframe.DAILY;
+        AlertMonitor.AddListener added = set -> Toast.makeText(this, set
+                ? "Alert set on " + alertTimeframe.getValue() + " bars: " + ALERT_TEMPLATE_NAMES[template]
+                : "Couldn't set the alert.", Toast.LENGTH_SHORT).show();
+        switch (template) {
+            case 0:
+                alertMonitor.add(symbol, alertTimeframe, Alert.CROSSES_ABOVE, Alert.close(), Alert.bollingerUpper(20, 2), added);
+                break;
+            case 1:
+                alertMonitor.add(symbol, alertTimeframe, Alert.CROSSES_BELOW, Alert.close(), Alert.bollingerLower(20, 2), added);
+                break;
+            case 2:
+                alertMonitor.add(symbol, alertTimeframe, Alert.CROSSES_ABOVE, Alert.sma(20), Alert.sma(50), added);
+                break;
+            default:
+                alertMonitor.add(symbol, alertTimeframe, Alert.CROSSES_BELOW, Alert.sma(20), Alert.sma(50), added);
+        }
+    }
+
+    //read on the database write thread, after the markFiredAsync of an alert that just fired
+    private void showFiredAlerts() {
+        DB_Helper.getWriteExecutor().execute(() -> {
+            List<AlertsTableHelper.StoredAlert> fired = alertsHelper.getFiredAlerts(UserGlobals.ID, FIRED_ALERTS_SHOWN);
+            chart.post(() -> {
+                if (!isDestroyed()) showFiredAlerts(fired);
+            });
+        });
+    }
+
+    private void showFiredAlerts(List<AlertsTableHelper.StoredAlert> fired) {
+        AlertDialog.Builder builder = new AlertDialog.Builder(ChartActivity.this).setTitle("Fired alerts");
+        if (fired.isEmpty()) {
+            builder.setMessage("No alert fired yet.");
+        } else {
+            String[] items = new String[fired.size()];
+            for (int i = 0; i < items.length; i++) {
+                AlertsTableHelper.StoredAlert alert = fired.get(i);
+                items[i] = alert.firedAt + " " + alert.timeframe.getValue() + ": " + alert.alert.getDescription() + " at " + alert.firedClose;
+            }
+            builder.setItems(items, null);
+        }
+        builder.show();
+    }
+
+    private void onAlertFired(AlertsTableHelper.StoredAlert alert, long timestamp, float close) {
+        Toast.makeText(this, "Alert: " + alert.alert.getDescription() + " at " + close, Toast.LENGTH_LONG).show();
+    }
+
+    //comparison section
+
+    private void showCompareDialog() {
+        EditText input = new EditText(this);
+        input.setHint("Symbol, e.g. ^GSPC");
+        String current = comparison.isEmpty() ? "" : "\nComparing " + String.join(", ", comparison.getSymbols());
+        new AlertDialog.Builder(ChartActivity.this)
+                .setTitle("Compare " + symbol + " with")
+                .setMessage("Percent change from the first shown bar" + current)
+                .setView(input)
+                .setPositiveButton("Add", (d, which) -> addComparison(input.getText().toString().trim().toUpperCase(Locale.US)))
+                .setNegativeButton("Clear", (d, which) -> {
+                    comparison.clear();
+                    comparison.remove(chart);
+                    chart.notifyDataSetChanged();
+                    chart.invalidate();
+                })
+                .show();
+    }
+
+    //the symbol is looked up on the scheduler, the first lookup after an import reads the whole symbols table
+    private void addComparison(String other) {
+        if (other.equals(symbol)) {
+            Toast.makeText(this, "Can't compare " + symbol + " with itself.", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        SymbolsTableHelper symbols = (SymbolsTableHelper) db_helper.getHelper(DB_Index.SYMBOL_TABLE);
+        scheduler.submit(other, StockDataHelper.Timeframe.DAILY, "symbol name", ComputeScheduler.Priority.VISIBLE,
+                        token -> symbols.getSymbolName(other) != null)
+                .whenComplete((known, error) -> chart.post(() -> {
+                    if (isDestroyed()) return;
+                    if (error != null) {
+                        Log.e(CHART_LOG_TAG, "Error looking up " + other + ": " + error.getMessage());
+                        return;
+                    }
+                    if (!known) {
+                        Toast.makeText(this, "Unknown symbol " + other, Toast.LENGTH_SHORT).show();
+                        return;
+                    }
+                    if (!comparison.add(other)) {
+                        Toast.makeText(this, "Compare at most " + ComparisonOverlay.MAX_SYMBOLS + " symbols, each once.", Toast.LENGTH_SHORT).show();
+                        return;
+                    }
+                    showComparison();
+                }));
+    }
+
+    //lines start at the first shown bar, they are put on the candles' timestamps off the main thread
+    private void showComparison() {
+        CandleDataSet candles = candleDataSet();
+        StockDataHelper.Timeframe compareTimeframe = shownTimeframe;
+        if (candles == null || compareTimeframe == null) return;
+        int count = candles.getEntryCount();
+        long[] timestamps = new long[count];
+        float[] closes = new float[count];
+        for (int i = 0; i < count; i++) {
+            CandleEntry entry = candles.getEntryForIndex(i);
+            timestamps[i] = (long) entry.getData();
+            closes[i] = entry.getClose();
+        }
+        int start = Math.max(0, Math.min(count - 1, Math.round(chart.getLowestVisibleX())));
+        List<String> compared = comparison.getSymbols();
+        scheduler.submit(symbol, compareTimeframe, ComparisonOverlay.getSpec(compared, start), ComputeScheduler.Priority.VISIBLE,
+                        comparison.computeTask(compared, compareTimeframe, timestamps, closes, start))
+                .whenComplete((lines, error) -> chart.post(() -> {
+                    if (isDestroyed() || compareTimeframe != shownTimeframe || candleDataSet() != candles) return;
+                    if (error != null) {
+                        Log.e(CHART_LOG_TAG, "Error comparing " + symbol + " with " + compared + ": " + error.getMessage());
+                        return;
+                    }
+                    comparison.apply(symbol, compared, lines, chart);
+                }));
+    }
+
+    //backtest section
+
+    private void showBacktestDialog() {
+        String[] names = new String[STRATEGIES.length + 1];
+        for (int i = 0; i < STRATEGIES.length; i++) {
+            names[i] = STRATEGIES[i].getName();
+        }
+        names[STRATEGIES.length] = SWEEP_NAME;
+        new AlertDialog.Builder(ChartActivity.this)
+                .setTitle("Backtest " + symbol)
+                .setItems(names, (d, which) -> {
+                    if (which == STRATEGIES.length) runSweep();
+                    else runBacktest(STRATEGIES[which]);
+                })
+                .show();
+    }
+
+    //runs over every stored bar of the shown timeframe on the compute threads
+    private void runBacktest(Strategy strategy) {
+        StockDataHelper.Timeframe testTimeframe = shownTimeframe != null ? shownTimeframe : StockDataHelper.Timeframe.DAILY;
+        float density = getResources().getDisplayMetrics().density;
+        int width = Math.round(280 * density);
+        int height = Math.round(120 * density);
+        scheduler.submit(symbol, testTimeframe, "backtest " + strategy.getName(), ComputeScheduler.Priority.VISIBLE, token -> {
+            //the backtester keeps the results of its last run, two runs can't share it at once
+            synchronized (backtester) {
+                String version = stockDataHelper.getSeriesVersion(symbol, testTimeframe);
+                if (backtestSeries == null || testTimeframe != backtestTimeframe || !version.equals(backtestVersion)) {
+                    backtestSeries = stockDataHelper.getRecentBars(symbol, testTimeframe, Integer.MAX_VALUE);
+                    backtestTimeframe = testTimeframe;
+                    backtestVersion = version;
+                }
+                CandleSeries series = backtestSeries;
+                long start = System.nanoTime();
+                backtester.run(series, strategy, token);
+                Log.i(CHART_LOG_TAG, "Backtest " + strategy.getName() + " over " + series.size() + " bars took " +
+                        (System.nanoTime() - start) / 1_000_000 + " ms");
+                return BacktestReport.of(backtester, width, height);
+            }
+        }).whenComplete((report, error) -> chart.post(() -> {
+            if (isDestroyed()) return;
+            if (error != null) {
+                Log.e(CHART_LOG_TAG, "Error running backtest: " + error.getMessage());
+                Toast.makeText(this, "Backtest failed.", Toast.LENGTH_SHORT).show();
+                return;
+            }
+            AlertDialog.Builder builder = new AlertDialog.Builder(ChartActivity.this)
+                    .setTitle(strategy.getName() + " (" + testTimeframe.getValue() + ")")
+                    .setMessage(report.summary);
+            if (report.equityCurve != null) {
+                ImageView curve = new ImageView(this);
+                curve.setImageBitmap(report.equityCurve);
+                builder.setView(curve);
+            }
+            builder.show();
+        }));
+    }
+
+    //the grid is spread over the common fork join pool, the scheduler thread only waits for it
+    private void runSweep() {
+        StockDataHelper.Timeframe testTimeframe = shownTimeframe != null ? shownTimeframe : StockDataHelper.Timeframe.DAILY;
+        scheduler.submit(symbol, testTimeframe, "sweep", ComputeScheduler.Priority.VISIBLE, token -> {
+            CandleSeries series = stockDataHelper.getRecentBars(symbol, testTimeframe, Integer.MAX_VALUE);
+            ParameterSweep.Result result = new ParameterSweep(ForkJoinPool.commonPool()).withFee(0.001f).withSlippage(0.0005f)
+                    .run(series, SWEEP_TEMPLATE, SWEEP_PERIODS, SWEEP_MULTIPLIERS, token);
+            Log.i(CHART_LOG_TAG, "Sweep of " + result.returns.length + " cells over " + series.size() + " bars took " +
+                    result.nanos / 1_000_000 + " ms");
+            return result;
+        }).whenComplete((result, error) -> chart.post(() -> {
+            if (isDestroyed()) return;
+            if (error != null) {
+                Log.e(CHART_LOG_TAG, "Error running sweep: " + error.getMessage());
+                Toast.makeText(this, "Optimization failed.", Toast.LENGTH_SHORT).show();
+                return;
+            }
+            float density = getResources().getDisplayMetrics().density;
+            HeatmapView heatmap = new HeatmapView(this);
+            heatmap.setLayoutParams(new ViewGroup.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, Math.round(160 * density)));
+            heatmap.setValues(result.returns, result.periods.length, result.stdDevMultipliers.length);
+            heatmap.select(result.best);
+            AlertDialog dialog = new AlertDialog.Builder(ChartActivity.this)
+                    .setTitle("BB bounce " + symbol + " (" + testTimeframe.getValue() + ")")
+                    .setMessage(describeCell(result, result.best))
+                    .setView(heatmap)
+                    .setPositiveButton("Backtest", (d, which) ->
+                            runBacktest(SWEEP_TEMPLATE.build(result.getPeriod(heatmap.getSelectedCell()),
+                                    result.getStdDevMultiplier(heatmap.getSelectedCell()))))
+                    .show();
+            heatmap.setOnCellSelectedListener(cell -> dialog.setMessage(describeCell(result, cell)));
+        }));
+    }
+
+    private static String describeCell(ParameterSweep.Result result, int cell) {
+        return String.format(Locale.US, "Period %d, multiplier %.1f: %+.2f%%, max drawdown %.2f%%, %d trades%s",
+                result.getPeriod(cell), result.getStdDevMultiplier(cell), result.returns[cell] * 100,
+                result.maxDrawdowns[cell] * 100, result.trades[cell], cell == result.best ? " (best)" : "");
+    }
+
+    //replay section
+
+    private void showReplaySpeedDialog() {
+        new AlertDialog.Builder(ChartActivity.this)
+                .setTitle("Replay speed")
+                .setItems(REPLAY_SPEED_NAMES, (d, which) -> startReplay(REPLAY_SPEEDS[which]))
+                .show();
+    }
+
+    //replays the shown timeframe from the first candle on screen to the end of the series
+    private void startReplay(int barsPerSecond) {
+        CandleDataSet candles = candleDataSet();
+        if (candles == null || candles.getEntryCount() < 2) {
+            Toast.makeText(this, "No candles to replay.", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        stopLive();
+        int from = Math.max(1, Math.min(candles.getEntryCount() - 1, (int) Math.ceil(chart.getLowestVisibleX())));
+        replay = new ChartReplay(chart, indicatorManager, candles, from, barsPerSecond, this::onReplayFinished);
+        replay.start();
+        buttonReplay.setText("Stop");
+        Log.i(CHART_LOG_TAG, "Replaying " + symbol + " " + shownTimeframe.name() + " from bar " + from + " at " + barsPerSecond + " bars/s");
+    }
+
+    //leaves the chart where the replay got to
+    private void stopReplay() {
+        if (replay == null) return;
+        replay.stop();
+        replay = null;
+        buttonReplay.setText("Replay");
+    }
+
+    private void onReplayFinished() {
+        replay = null;
+        buttonReplay.setText("Replay");
     }
 
     public void formatTile(String timeFrame){
@@ -299,7 +762,7 @@ public class ChartActivity extends AppCompatActivity implements View.OnClickList
         indicatorPopupWindow.showAtLocation(findViewById(R.id.main), Gravity.CENTER, 0, 0);
 
         // Make sure active indicators list is up-to-date when opening
-        activeIndicatorsAdapter.updateData(new ArrayList<>(indicatorManager.getAllIndicators().values()));
+        activeIndicatorsAdapter.updateData(indicatorManager.getIndicatorList());
     }
 
     // --- NEW: RECYCLERVIEW ADAPTERS AND VIEW HOLDERS ---
@@ -330,7 +793,7 @@ public class ChartActivity extends AppCompatActivity implements View.OnClickList
                     defaultParams = new float[]{Color.YELLOW, 20, 1f}; // color, period, width (for SMA, EMA)
                 }
                 indicatorManager.createIndicator(indicatorType, defaultParams);
-                activeIndicatorsAdapter.updateData(new ArrayList<>(indicatorManager.getAllIndicators().values()));
+                activeIndicatorsAdapter.updateData(indicatorManager.getIndicatorList());
                 Toast.makeText(ChartActivity.this, indicatorType.name() + " added.", Toast.LENGTH_SHORT).show();
             });
             holder.buttonAction2.setOnClickListener(v -> showSettingsDialog(indicatorType));
@@ -361,14 +824,16 @@ public class ChartActivity extends AppCompatActivity implements View.OnClickList
         @Override
         public void onBindViewHolder(@NonNull IndicatorViewHolder holder, int position) {
             Indicator indicator = activeList.get(position);
-            holder.indicatorName.setText(indicator.getType().name() + " (" + indicator.getID() + ")");
+            //a source at or below the chart's timeframe isn't used, the lines are the chart's own
+            String source = indicator.isProjected() ? " @" + indicator.getSourceTimeframe().getValue() : "";
+            holder.indicatorName.setText(indicator.getType().name() + source + " (" + indicator.getID() + ")");
             holder.buttonAction1.setText("Settings");
             holder.buttonAction2.setText("Remove");
 
             holder.buttonAction1.setOnClickListener(v -> showSettingsDialog(indicator));
             holder.buttonAction2.setOnClickListener(v -> {
                 indicatorManager.deleteIndicator(indicator.getID());
-                updateData(new ArrayList<>(indicatorManager.getAllIndicators().values())); // Refresh list
+                updateData(indicatorManager.getIndicatorList()); // Refresh list
             });
         }
 
@@ -449,6 +914,31 @@ public class ChartActivity extends AppCompatActivity implements View.OnClickList
                 .show();
         });
 
+        //null computes on the chart's timeframe, a higher one is drawn as steps on the chart's bars
+        //only timeframes above the shown one are offered, a lower one would draw the chart's own lines
+        final Button buttonSourceTimeframe = popupView.findViewById(R.id.button_source_timeframe);
+        final StockDataHelper.Timeframe[] selectedSource = { null };
+        buttonSourceTimeframe.setOnClickListener(v -> {
+            StockDataHelper.Timeframe chartTimeframe = shownTimeframe != null ? shownTimeframe : StockDataHelper.Timeframe.DAILY;
+            final List<StockDataHelper.Timeframe> timeframes = new ArrayList<>();
+            for (StockDataHelper.Timeframe timeframe : StockDataHelper.Timeframe.values()) {
+                if (timeframe.getMinutes() > chartTimeframe.getMinutes()) timeframes.add(timeframe);
+            }
+            final String[] names = new String[timeframes.size() + 1];
+            names[0] = "Chart timeframe";
+            for (int i = 0; i < timeframes.size(); i++) {
+                names[i + 1] = timeframes.get(i).getValue();
+            }
+
+            new AlertDialog.Builder(ChartActivity.this)
+                .setTitle("Compute on")
+                .setItems(names, (d, which) -> {
+                    selectedSource[0] = which == 0 ? null : timeframes.get(which - 1);
+                    buttonSourceTimeframe.setText(names[which]);
+                })
+                .show();
+        });
+
         buttonApply.setOnClickListener(v -> {
             try {
                 String periodText = editTextPeriod.getText().toString();
@@ -475,9 +965,9 @@ public class ChartActivity extends AppCompatActivity implements View.OnClickList
                     newParams = new float[]{(float) selectedColor[0], (float) newPeriod, newWidth};
                 }
 
-                indicatorManager.createIndicator(type, newParams);
+                indicatorManager.createIndicator(type, newParams, selectedSource[0]);
                 
-                activeIndicatorsAdapter.updateData(new ArrayList<>(indicatorManager.getAllIndicators().values()));
+                activeIndicatorsAdapter.updateData(indicatorManager.getIndicatorList());
                 Toast.makeText(ChartActivity.this, type.name() + " added.", Toast.LENGTH_SHORT).show();
                 settingsPopupWindow.dismiss(); // Dismiss the popup
             } catch (NumberFormatException e) {
@@ -512,6 +1002,9 @@ public class ChartActivity extends AppCompatActivity implements View.OnClickList
         final Button buttonColorPicker = popupView.findViewById(R.id.button_color_picker);
         final Button buttonCancel = popupView.findViewById(R.id.button_cancel);
         final Button buttonApply = popupView.findViewById(R.id.button_apply);
+        //the timeframe an indicator is computed on is picked when it is added
+        popupView.findViewById(R.id.text_source_timeframe).setVisibility(View.GONE);
+        popupView.findViewById(R.id.button_source_timeframe).setVisibility(View.GONE);
 
         // Parse current settings
         String[] params = indicator.getParams().split(":");
@@ -584,7 +1077,7 @@ public class ChartActivity extends AppCompatActivity implements View.OnClickList
                     newParams = new float[]{(float) selectedColor[0], (float) newPeriod, newWidth};
                 }
 
-                indicator.changeSettings(newParams, chart);
+                indicatorManager.changeSettings(indicator.getID(), newParams);
                 Toast.makeText(ChartActivity.this, "Indicator updated.", Toast.LENGTH_SHORT).show();
                 settingsPopupWindow.dismiss(); // Dismiss the popup
             } catch (NumberFormatException e) {
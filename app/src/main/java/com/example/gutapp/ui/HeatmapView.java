@@ -0,0 +1,130 @@
+package com.example.gutapp.ui;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.view.MotionEvent;
+import android.view.View;
+
+//grid of values, cell column * rows + row is drawn in that column with row 0 at the bottom
+//cells go from red (the low end) over black at 0 to green (the high end) and NaN cells are gray, the selected cell is
+//outlined and dragging over the map selects the cell under the finger. colors are worked out once per set of
+//values, onDraw only fills
+public class HeatmapView extends View {
+    public interface OnCellSelectedListener {
+        void onCellSelected(int cell);
+    }
+
+    private static final int SELECTED_COLOR = Color.WHITE;
+    private static final int MISSING_COLOR = Color.DKGRAY;
+
+    private int[] colors = new int[0];
+    private int columns;
+    private int rows;
+    private int selected = -1;
+    private OnCellSelectedListener listener;
+    private final Paint cellPaint = new Paint();
+    private final Paint selectedPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+
+    public HeatmapView(Context context) {
+        super(context);
+        selectedPaint.setStyle(Paint.Style.STROKE);
+        selectedPaint.setColor(SELECTED_COLOR);
+        selectedPaint.setStrokeWidth(2 * getResources().getDisplayMetrics().density);
+    }
+
+    //scaled from the lowest to the highest of the values
+    public void setValues(float[] values, int columns, int rows) {
+        float low = 0;
+        float high = 0;
+        for (float value : values) {
+            if (value < low) low = value;
+            if (value > high) high = value;
+        }
+        setValues(values, columns, rows, low, high);
+    }
+
+    //low is drawn full red and high full green, clears the selection
+    public void setValues(float[] values, int columns, int rows, float low, float high) {
+        this.columns = columns;
+        this.rows = rows;
+        colors = new int[columns * rows];
+        for (int cell = 0; cell < colors.length; cell++) {
+            float value = values[cell];
+            if (Float.isNaN(value)) {
+                colors[cell] = MISSING_COLOR;
+            } else if (value >= 0) {
+                colors[cell] = Color.rgb(0, high > 0 ? Math.round(255 * Math.min(value / high, 1)) : 0, 0);
+            } else {
+                colors[cell] = Color.rgb(low < 0 ? Math.round(255 * Math.min(value / low, 1)) : 0, 0, 0);
+            }
+        }
+        selected = -1;
+        invalidate();
+    }
+
+    public void setOnCellSelectedListener(OnCellSelectedListener listener) {
+        this.listener = listener;
+    }
+
+    public int getSelectedCell() {
+        return selected;
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        if (colors.length == 0) return;
+        float cellWidth = (float) getWidth() / columns;
+        float cellHeight = (float) getHeight() / rows;
+        for (int column = 0; column < columns; column++) {
+            float left = column * cellWidth;
+            for (int row = 0; row < rows; row++) {
+                float top = (rows - 1 - row) * cellHeight;
+                cellPaint.setColor(colors[column * rows + row]);
+                canvas.drawRect(left, top, left + cellWidth, top + cellHeight, cellPaint);
+            }
+        }
+        if (selected >= 0) {
+            float left = (selected / rows) * cellWidth;
+            float top = (rows - 1 - selected % rows) * cellHeight;
+            canvas.drawRect(left, top, left + cellWidth, top + cellHeight, selectedPaint);
+        }
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        if (colors.length == 0 || getWidth() == 0 || getHeight() == 0) return false;
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+            case MotionEvent.ACTION_MOVE:
+                int column = clamp((int) (event.getX() * columns / getWidth()), columns);
+                int row = rows - 1 - clamp((int) (event.getY() * rows / getHeight()), rows);
+                select(column * rows + row);
+                return true;
+            case MotionEvent.ACTION_UP:
+                performClick();
+                return true;
+            default:
+                return true;
+        }
+    }
+
+    @Override
+    public boolean performClick() {
+        return super.performClick();
+    }
+
+    //outlines the cell and tells the listener, -1 clears the selection
+    public void select(int cell) {
+        if (cell == selected) return;
+        selected = cell;
+        invalidate();
+        if (listener != null && cell >= 0) listener.onCellSelected(cell);
+    }
+
+    private static int clamp(int index, int count) {
+        return Math.max(0, Math.min(count - 1, index));
+    }
+}
@@ -1,39 +1,101 @@
 package com.example.gutapp.ui;
 
-import android.annotation.SuppressLint;
-import android.content.Intent;
-import android.database.Cursor;
-import android.graphics.Color;
-import android.graphics.Typeface;
+import android.net.Uri;
 import android.os.Bundle;
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.util.Log;
-import android.util.TypedValue;
-import android.view.Gravity;
-import android.view.View;
 import android.view.ViewGroup;
-import android.widget.LinearLayout;
+import android.widget.EditText;
 import android.widget.TextView;
+import android.widget.Toast;
 
 import androidx.activity.EdgeToEdge;
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.graphics.Insets;
 import androidx.core.view.ViewCompat;
 import androidx.core.view.WindowInsetsCompat;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.gutapp.R;
 import com.example.gutapp.data.UserGlobals;
+import com.example.gutapp.database.CsvImporter;
 import com.example.gutapp.database.DB_Helper;
 import com.example.gutapp.database.DB_Index;
 import com.example.gutapp.database.StockDataHelper;
 import com.example.gutapp.database.SymbolsTableHelper;
+import com.example.gutapp.engine.CandleSeries;
+import com.example.gutapp.engine.CorrelationMatrix;
+import com.example.gutapp.engine.CsvFormat;
+import com.example.gutapp.engine.Screen;
+import com.example.gutapp.engine.Screener;
+import com.example.gutapp.engine.SymbolIndex;
 
+import java.io.File;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
 
 public class HomeActivity extends AppCompatActivity {
 
+    //rows shown for a search, the empty search lists every symbol
+    private static final int SEARCH_RESULTS = 50;
+    //screens offered by the screen button, run over the daily bars of every symbol
+    private static final Screen[] SCREENS = {
+            new Screen("Close crossed above SMA-50 today", Screen.crossedAbove(Screen.close(), Screen.sma(50))),
+            new Screen("Close crossed below SMA-50 today", Screen.crossedBelow(Screen.close(), Screen.sma(50))),
+            new Screen("Golden cross today", Screen.crossedAbove(Screen.sma(50), Screen.sma(200))),
+            new Screen("BB width at a 6-month low", Screen.atLowest(Screen.bollingerWidth(20, 2), 126)),
+            new Screen("Close at a 52-week high", Screen.atHighest(Screen.close(), 252))
+    };
+    //correlations offered by the correlations button, between the listed symbols
+    private static final String[] CORRELATION_NAMES = {"Daily returns, 60 days", "Daily returns, 20 days",
+            "Hourly returns, 120 hours", "15 min returns, 120 bars"};
+    private static final StockDataHelper.Timeframe[] CORRELATION_TIMEFRAMES = {StockDataHelper.Timeframe.DAILY,
+            StockDataHelper.Timeframe.DAILY, StockDataHelper.Timeframe.HOURLY, StockDataHelper.Timeframe.FIFTEEN_MIN};
+    private static final int[] CORRELATION_WINDOWS = {60, 20, 120, 120};
+    //pairs grow with the square of the symbols, and past this the cells are too small to tap
+    private static final int MAX_CORRELATION_SYMBOLS = 100;
+    //bars read per symbol when the matrix is brought up to date, a symbol with more new bars is loaded again
+    private static final int CORRELATION_UPDATE_BARS = 32;
+
     //load global pointers
-    LinearLayout stockContainer;
+    RecyclerView stockList;
     DB_Helper db_helper;
+    EditText editTextSearch;
+    private WatchlistAdapter watchlistAdapter;
+    private SparklineLoader sparklineLoader;
+    private SymbolIndex symbolIndex;
+    private List<WatchlistAdapter.Item> allStocks;
+    private final int[] searchResults = new int[SEARCH_RESULTS];
+    private TextView stocksTitle;
+    private CharSequence defaultStocksTitle;
+    //screens run one at a time, the symbols are spread over the common fork join pool
+    private final ExecutorService screenExecutor = Executors.newSingleThreadExecutor();
+    //reads and indexes the symbol universe, loads finish in the order they were asked for
+    private final ExecutorService indexExecutor = Executors.newSingleThreadExecutor();
+    private Screener screener;
+    private AtomicBoolean screenCancelled = new AtomicBoolean();
+    //the last correlation matrix, only touched on the screen executor. asking for the same symbols, timeframe and
+    //window again reads just the newest bars and moves it forward
+    private CorrelationMatrix correlations;
+    private List<String> correlationSymbols;
+    private StockDataHelper.Timeframe correlationTimeframe;
+    private StockDataHelper stockDataHelper;
+    //the picked csv file is imported on the database write thread
+    private final ActivityResultLauncher<String[]> csvPicker =
+            registerForActivityResult(new ActivityResultContracts.OpenDocument(), this::importCsv);
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -47,96 +109,328 @@ public class HomeActivity extends AppCompatActivity {
         });
         db_helper = new DB_Helper(this);
 
-        stockContainer = findViewById(R.id.stockContainer);
+        stockList = findViewById(R.id.stockList);
+        stockList.setLayoutManager(new LinearLayoutManager(this));
+        stockList.setHasFixedSize(true);
+        stockDataHelper = (StockDataHelper)db_helper.getHelper(DB_Index.STOCK_TABLE);
+        //sized like the row's 64x24dp image view
+        float density = getResources().getDisplayMetrics().density;
+        sparklineLoader = new SparklineLoader(stockDataHelper, new File(getCacheDir(), "sparklines"),
+                Math.round(64 * density), Math.round(24 * density));
+        watchlistAdapter = new WatchlistAdapter(stockDataHelper, sparklineLoader);
+        stockList.setAdapter(watchlistAdapter);
+        screener = new Screener(ForkJoinPool.commonPool(),
+                (symbol, bars) -> stockDataHelper.getRecentBars(symbol, StockDataHelper.Timeframe.DAILY, bars));
+        stocksTitle = findViewById(R.id.textViewStocksTitle);
+        defaultStocksTitle = stocksTitle.getText();
+        editTextSearch = findViewById(R.id.editTextSearch);
+        editTextSearch.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                showStocks(s.toString());
+            }
+        });
+        findViewById(R.id.buttonImportCsv).setOnClickListener(v ->
+                csvPicker.launch(new String[]{"text/csv", "text/comma-separated-values", "text/plain"}));
+        findViewById(R.id.buttonScreen).setOnClickListener(v -> showScreenDialog());
+        findViewById(R.id.buttonCorrelations).setOnClickListener(v -> showCorrelationDialog());
 
         //ready the home page for presentation
         setUserTitle();
         loadStockList();
     }
 
+    @Override
+    protected void onResume() {
+        super.onResume();
+        //a chart's live feed may have added bars while it was open
+        sparklineLoader.refresh();
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        watchlistAdapter.release();
+        sparklineLoader.release();
+        screenCancelled.set(true);
+        screenExecutor.shutdownNow();
+        indexExecutor.shutdownNow();
+    }
+
     private void setUserTitle(){
         TextView userTitle = findViewById(R.id.textViewUserTitle);
         if(UserGlobals.LOGGED_IN)
             userTitle.setText("Hello " + UserGlobals.USER_NAME + "!");
     }
 
+    //the symbol universe is read and indexed once in the background, searches after that don't touch the database
+    //the list stays empty (and searches do nothing) until the first load is posted back
     private void loadStockList() {
-        Cursor cursor = ((SymbolsTableHelper)db_helper.getHelper(DB_Index.SYMBOL_TABLE)).getStocks();
-        LinearLayout container = findViewById(R.id.stockContainer);
-        container.removeAllViews();
-
-        if (cursor.moveToFirst()) {
-            do {
-                String symbol = cursor.getString(cursor.getColumnIndexOrThrow("symbol"));
-                String name = cursor.getString(cursor.getColumnIndexOrThrow("name"));
-                float close = (float)((StockDataHelper)db_helper.getHelper(DB_Index.STOCK_TABLE)).getLatestPrice(symbol);
-                boolean isUp = close > 0;
-                close = Math.abs(close);
-
-                container.addView(createStockRow(name, symbol, close, isUp));
-            } while (cursor.moveToNext());
+        SymbolsTableHelper symbolsTableHelper = (SymbolsTableHelper) db_helper.getHelper(DB_Index.SYMBOL_TABLE);
+        indexExecutor.execute(() -> {
+            SymbolIndex index = symbolsTableHelper.getSymbolIndex();
+            //one item per symbol, in index id order so a search result id is its position here
+            List<WatchlistAdapter.Item> stocks = new ArrayList<>(index.size());
+            for (int id = 0; id < index.size(); id++) {
+                stocks.add(new WatchlistAdapter.Item(index.getSymbol(id), index.getName(id)));
+            }
+            runOnUiThread(() -> {
+                if (isDestroyed()) return;
+                symbolIndex = index;
+                allStocks = stocks;
+                showStocks(editTextSearch.getText().toString());
+            });
+        });
+    }
+
+    private void showStocks(String query) {
+        if (symbolIndex == null) return;
+        stocksTitle.setText(defaultStocksTitle);
+        if (query.trim().isEmpty()) {
+            watchlistAdapter.submitItems(allStocks);
+            return;
+        }
+        int count = symbolIndex.search(query, SEARCH_RESULTS, searchResults);
+        List<WatchlistAdapter.Item> items = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            items.add(allStocks.get(searchResults[i]));
+        }
+        watchlistAdapter.submitItems(items);
+    }
+
+    //screen section
+
+    private void showScreenDialog() {
+        String[] names = new String[SCREENS.length];
+        for (int i = 0; i < SCREENS.length; i++) {
+            names[i] = SCREENS[i].getName();
+        }
+        new AlertDialog.Builder(this)
+                .setTitle("Screen all symbols")
+                .setItems(names, (d, which) -> runScreen(SCREENS[which]))
+                .show();
+    }
+
+    //the progress dialog's cancel stops the run at the next symbol, the list then shows the matches
+    private void runScreen(Screen screen) {
+        if (symbolIndex == null) return;
+        //index id order, a match index is a position in allStocks
+        String[] symbols = new String[symbolIndex.size()];
+        for (int id = 0; id < symbols.length; id++) {
+            symbols[id] = symbolIndex.getSymbol(id);
+        }
+        List<WatchlistAdapter.Item> stocks = allStocks;
+        AtomicBoolean cancelled = new AtomicBoolean();
+        screenCancelled.set(true);
+        screenCancelled = cancelled;
+        AlertDialog progress = new AlertDialog.Builder(this)
+                .setTitle(screen.getName())
+                .setMessage("Screening " + symbols.length + " symbols...")
+                .setNegativeButton("Cancel", (d, which) -> cancelled.set(true))
+                .setOnCancelListener(d -> cancelled.set(true))
+                .show();
+        screenExecutor.execute(() -> {
+            try {
+                Screener.Result result = screener.run(symbols, screen, (done, total, matches) -> runOnUiThread(() -> {
+                    if (!cancelled.get()) progress.setMessage(String.format(Locale.US, "%d of %d symbols, %d matches", done, total, matches));
+                }), cancelled::get);
+                Log.i(DB_Helper.DB_LOG_TAG, String.format(Locale.US, "Screen \"%s\" matched %d of %d symbols in %d ms (%d failed)",
+                        screen.getName(), result.matches.length, result.screened, result.nanos / 1_000_000, result.failed));
+                runOnUiThread(() -> {
+                    if (isDestroyed()) return;
+                    progress.dismiss();
+                    showScreenResult(screen, stocks, result);
+                });
+            } catch (CancellationException e) {
+                runOnUiThread(() -> {
+                    if (isDestroyed()) return;
+                    progress.dismiss();
+                    Toast.makeText(this, "Screen cancelled", Toast.LENGTH_SHORT).show();
+                });
+            } catch (RuntimeException e) {
+                Log.e(DB_Helper.DB_LOG_TAG, "Error running screen " + screen.getName() + ": " + e.getMessage());
+                runOnUiThread(() -> {
+                    if (isDestroyed()) return;
+                    progress.dismiss();
+                    Toast.makeText(this, "Screen failed: " + e.getMessage(), Toast.LENGTH_LONG).show();
+                });
+            }
+        });
+    }
+
+    private void showScreenResult(Screen screen, List<WatchlistAdapter.Item> stocks, Screener.Result result) {
+        List<WatchlistAdapter.Item> items = new ArrayList<>(result.matches.length);
+        for (int index : result.matches) {
+            items.add(stocks.get(index));
         }
-        cursor.close();
-    }
-
-    private View createStockRow(String name, String symbol, float price, boolean isUp) {
-        LinearLayout row = new LinearLayout(this);
-        row.setOrientation(LinearLayout.HORIZONTAL);
-        row.setPadding(20, 24, 20, 24);
-        row.setGravity(Gravity.CENTER_VERTICAL);
-        row.setClickable(true);
-
-        // Add a modern ripple effect for clicks
-        TypedValue outValue = new TypedValue();
-        getTheme().resolveAttribute(android.R.attr.selectableItemBackground, outValue, true);
-        row.setBackgroundResource(outValue.resourceId);
-
-        // Stock name + symbol
-        LinearLayout textGroup = new LinearLayout(this);
-        textGroup.setOrientation(LinearLayout.VERTICAL);
-        textGroup.setLayoutParams(new LinearLayout.LayoutParams(0, LinearLayout.LayoutParams.WRAP_CONTENT, 1));
-
-        TextView nameView = new TextView(this);
-        nameView.setText(name);
-        nameView.setTextColor(Color.WHITE);
-        nameView.setTextSize(16);
-
-        TextView symbolView = new TextView(this);
-        symbolView.setText(symbol);
-        symbolView.setTextColor(Color.GRAY);
-        symbolView.setTextSize(13);
-
-        textGroup.addView(nameView);
-        textGroup.addView(symbolView);
-
-        // Price
-        TextView priceView = new TextView(this);
-        priceView.setText(String.format(Locale.US, "%.2f", price));
-        priceView.setTextSize(17);
-        priceView.setTypeface(Typeface.MONOSPACE, Typeface.BOLD);
-        priceView.setTextColor(isUp ? Color.parseColor("#00FF88") : Color.parseColor("#FF4444"));
-
-        row.addView(textGroup);
-        row.addView(priceView);
-
-        // 🔹 Handle click → go to ChartActivity
-        row.setOnClickListener(v -> {
-            Intent intent = new Intent(this, ChartActivity.class);
-            intent.putExtra("symbol", symbol);
-            intent.putExtra("name", name);
-            startActivity(intent);
+        watchlistAdapter.submitItems(items);
+        stocksTitle.setText(result.matches.length + " matches: " + screen.getName());
+    }
+
+    //correlation section
+
+    private void showCorrelationDialog() {
+        new AlertDialog.Builder(this)
+                .setTitle("Correlate listed symbols")
+                .setItems(CORRELATION_NAMES, (d, which) ->
+                        runCorrelations(CORRELATION_NAMES[which], CORRELATION_TIMEFRAMES[which], CORRELATION_WINDOWS[which]))
+                .show();
+    }
+
+    private void runCorrelations(String title, StockDataHelper.Timeframe timeframe, int window) {
+        List<WatchlistAdapter.Item> listed = watchlistAdapter.getCurrentList();
+        List<String> symbols = new ArrayList<>(Math.min(listed.size(), MAX_CORRELATION_SYMBOLS));
+        for (int i = 0; i < listed.size() && symbols.size() < MAX_CORRELATION_SYMBOLS; i++) {
+            symbols.add(listed.get(i).symbol);
+        }
+        if (symbols.size() < 2) {
+            Toast.makeText(this, "List at least two symbols to correlate", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        AtomicBoolean cancelled = new AtomicBoolean();
+        screenCancelled.set(true);
+        screenCancelled = cancelled;
+        AlertDialog progress = new AlertDialog.Builder(this)
+                .setTitle(title)
+                .setMessage("Correlating " + symbols.size() + " symbols...")
+                .setNegativeButton("Cancel", (d, which) -> cancelled.set(true))
+                .setOnCancelListener(d -> cancelled.set(true))
+                .show();
+        screenExecutor.execute(() -> {
+            try {
+                long start = System.nanoTime();
+                boolean updated = symbols.equals(correlationSymbols) && timeframe == correlationTimeframe
+                        && correlations.getWindow() == window && updateCorrelations(timeframe, cancelled);
+                if (!updated) loadCorrelations(symbols, timeframe, window, cancelled);
+                int count = symbols.size();
+                float[] values = new float[count * count];
+                int[] returns = new int[count * count];
+                correlations.copyTo(values);
+                for (int a = 0; a < count; a++) {
+                    for (int b = 0; b < count; b++) {
+                        returns[a * count + b] = correlations.getCount(a, b);
+                    }
+                }
+                Log.i(DB_Helper.DB_LOG_TAG, String.format(Locale.US, "%s %s of %d symbols in %d ms", updated ? "Updated" : "Loaded",
+                        title, count, (System.nanoTime() - start) / 1_000_000));
+                runOnUiThread(() -> {
+                    if (isDestroyed()) return;
+                    progress.dismiss();
+                    showCorrelations(title, symbols, values, returns);
+                });
+            } catch (CancellationException e) {
+                //a half loaded matrix is loaded again next time
+                correlationSymbols = null;
+                runOnUiThread(() -> {
+                    if (isDestroyed()) return;
+                    progress.dismiss();
+                    Toast.makeText(this, "Correlation cancelled", Toast.LENGTH_SHORT).show();
+                });
+            } catch (RuntimeException e) {
+                correlationSymbols = null;
+                Log.e(DB_Helper.DB_LOG_TAG, "Error correlating " + title + ": " + e.getMessage());
+                runOnUiThread(() -> {
+                    if (isDestroyed()) return;
+                    progress.dismiss();
+                    Toast.makeText(this, "Correlation failed: " + e.getMessage(), Toast.LENGTH_LONG).show();
+                });
+            }
+        });
+    }
+
+    //twice the window of bars, so pairs missing some of each other's bars still fill it. read on the pool threads
+    private void loadCorrelations(List<String> symbols, StockDataHelper.Timeframe timeframe, int window, AtomicBoolean cancelled) {
+        CandleSeries[] series = new CandleSeries[symbols.size()];
+        IntStream.range(0, series.length).parallel().forEach(i -> {
+            if (cancelled.get()) throw new CancellationException();
+            series[i] = stockDataHelper.getRecentBars(symbols.get(i), timeframe, 2 * window + 1);
         });
+        correlationSymbols = null;
+        correlations = new CorrelationMatrix(ForkJoinPool.commonPool(), window);
+        correlations.load(series, cancelled::get);
+        correlationSymbols = symbols;
+        correlationTimeframe = timeframe;
+    }
 
-        // Divider
-        View divider = new View(this);
-        divider.setLayoutParams(new LinearLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, 1));
-        divider.setBackgroundColor(Color.parseColor("#222222"));
+    //adds the bars stored since the matrix was loaded or last updated, false when a symbol has more new bars than
+    //one read returns and the matrix has to be loaded again
+    private boolean updateCorrelations(StockDataHelper.Timeframe timeframe, AtomicBoolean cancelled) {
+        CandleSeries[] recent = new CandleSeries[correlationSymbols.size()];
+        IntStream.range(0, recent.length).parallel().forEach(i -> {
+            if (cancelled.get()) throw new CancellationException();
+            recent[i] = stockDataHelper.getRecentBars(correlationSymbols.get(i), timeframe, CORRELATION_UPDATE_BARS);
+        });
+        for (int i = 0; i < recent.length; i++) {
+            long last = correlations.getLastTimestamp(i);
+            if (recent[i].size() == CORRELATION_UPDATE_BARS && recent[i].getTimestamp(0) > last) return false;
+        }
+        for (int i = 0; i < recent.length; i++) {
+            for (int bar = 0; bar < recent[i].size(); bar++) {
+                correlations.addBar(i, recent[i].getTimestamp(bar), recent[i].getClose(bar));
+            }
+        }
+        correlations.update(cancelled::get);
+        return true;
+    }
+
+    private void showCorrelations(String title, List<String> symbols, float[] values, int[] returns) {
+        int count = symbols.size();
+        float density = getResources().getDisplayMetrics().density;
+        HeatmapView heatmap = new HeatmapView(this);
+        heatmap.setLayoutParams(new ViewGroup.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, Math.round(280 * density)));
+        heatmap.setValues(values, count, count, -1, 1);
+        AlertDialog dialog = new AlertDialog.Builder(this)
+                .setTitle(title)
+                .setMessage("Tap a cell, green moves together and red against each other")
+                .setView(heatmap)
+                .show();
+        //cell column * rows + row, the column's symbol against the row's
+        heatmap.setOnCellSelectedListener(cell -> dialog.setMessage(String.format(Locale.US, "%s / %s: %.2f over %d returns",
+                symbols.get(cell / count), symbols.get(cell % count), values[cell], returns[cell])));
+    }
 
-        LinearLayout wrapper = new LinearLayout(this);
-        wrapper.setOrientation(LinearLayout.VERTICAL);
-        wrapper.addView(row);
-        wrapper.addView(divider);
+    //columns are found by the file's header, a file without a symbol column is imported under its file name
+    //and a file without a timeframe column as daily bars
+    private void importCsv(Uri uri) {
+        if (uri == null) return;
+        String symbol = symbolFromFileName(uri.getLastPathSegment());
+        Toast.makeText(this, "Importing " + symbol + "...", Toast.LENGTH_SHORT).show();
+        DB_Helper.getWriteExecutor().execute(() -> {
+            String message;
+            try (InputStream in = getContentResolver().openInputStream(uri)) {
+                CsvImporter.Result result = new CsvImporter(db_helper).importCsv(in, new CsvFormat(), symbol, StockDataHelper.Timeframe.DAILY);
+                message = String.format(Locale.US, "Imported %d rows (%d skipped), %.0f rows/s",
+                        result.rows, result.skipped, result.getRowsPerSecond());
+            } catch (Exception e) {
+                Log.e(DB_Helper.DB_LOG_TAG, "Error importing " + uri + ": " + e.getMessage());
+                message = "Import failed: " + e.getMessage();
+            }
+            String shown = message;
+            runOnUiThread(() -> {
+                if (isDestroyed()) return;
+                Toast.makeText(this, shown, Toast.LENGTH_LONG).show();
+                watchlistAdapter.clearPrices();
+                sparklineLoader.clear();
+                screener.clearCache();
+                loadStockList();
+            });
+        });
+    }
 
-        return wrapper;
+    //"primary:Download/AAPL.csv" -> "AAPL"
+    private static String symbolFromFileName(String path) {
+        String name = path != null ? path : "IMPORTED";
+        name = name.substring(Math.max(name.lastIndexOf('/'), name.lastIndexOf(':')) + 1);
+        int extension = name.lastIndexOf('.');
+        if (extension > 0) name = name.substring(0, extension);
+        return name.toUpperCase(Locale.US);
     }
 }
@@ -0,0 +1,306 @@
+package com.example.gutapp.ui;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.LruCache;
+import android.widget.ImageView;
+
+import com.example.gutapp.data.log.AppLog;
+import com.example.gutapp.database.DB_Helper;
+import com.example.gutapp.database.StockDataHelper;
+import com.example.gutapp.engine.Sparkline;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+//intraday sparklines of the watchlist rows
+//a bound view shows the symbol's bitmap from the memory cache or nothing, it never touches the database or draws.
+//misses go to a background thread in small batches: the last session's 5m closes are read, and the bitmap of
+//(symbol, last bar date) comes from the disk cache or is drawn from a min/max downsampled line into a bitmap
+//taken from the pool. bitmaps pushed out of the memory cache go back to the pool once no view shows them
+//the memory cache is keyed by (symbol, last bar date) too, refresh has the bound symbols read their last bar date
+//again and only a new date loads a new bitmap
+//disk layout: dir/<symbol>/<last bar date digits>.png, older dates of a symbol are deleted when a new one is drawn
+public class SparklineLoader {
+    private static final StockDataHelper.Timeframe TIMEFRAME = StockDataHelper.Timeframe.FIVE_MIN;
+    private static final int BUCKETS = 24;
+    private static final int MEMORY_ENTRIES = 96;
+    private static final int POOL_SIZE = 16;
+    private static final int BATCH = 8;
+    private static final int UP_COLOR = Color.parseColor("#00FF88");
+    private static final int DOWN_COLOR = Color.parseColor("#FF4444");
+
+    private final StockDataHelper stockDataHelper;
+    private final File dir;
+    private final int width;
+    private final int height;
+    //draws the sparklines, the canvas, path and buffers below belong to its thread
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "sparklines");
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+    private final Canvas canvas = new Canvas();
+    private final Path path = new Path();
+    private final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final float[] downsampled = new float[2 * BUCKETS];
+    private final float[] points = new float[4 * BUCKETS];
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ArrayDeque<Bitmap> pool = new ArrayDeque<>(); //guarded by itself
+
+    //main thread only
+    private final Map<ImageView, String> bound = new HashMap<>();
+    private final Map<ImageView, Bitmap> shown = new HashMap<>();
+    private final Set<String> pending = new LinkedHashSet<>();
+    //last bar date of the newest bitmap loaded per symbol
+    private final Map<String, String> lastDates = new HashMap<>();
+    private final LruCache<String, Bitmap> memory = new LruCache<String, Bitmap>(MEMORY_ENTRIES) {
+        @Override
+        protected void entryRemoved(boolean evicted, String key, Bitmap oldBitmap, Bitmap newBitmap) {
+            if (!shown.containsValue(oldBitmap)) release(oldBitmap);
+        }
+    };
+    private boolean loading;
+    //bumped by clear, a batch that was out at the time is thrown away
+    private int generation;
+    private boolean released;
+
+    //width and height of the bitmaps in pixels
+    public SparklineLoader(StockDataHelper stockDataHelper, File dir, int width, int height) {
+        this.stockDataHelper = stockDataHelper;
+        this.dir = dir;
+        this.width = width;
+        this.height = height;
+        paint.setStyle(Paint.Style.STROKE);
+        paint.setStrokeWidth(Math.max(1f, height / 16f));
+        paint.setStrokeJoin(Paint.Join.ROUND);
+        paint.setStrokeCap(Paint.Cap.ROUND);
+    }
+
+    //shows the sparkline of symbol in view, loading it if it isn't in memory
+    public void bind(ImageView view, String symbol) {
+        bound.put(view, symbol);
+        Bitmap bitmap = cached(symbol);
+        show(view, bitmap);
+        if (bitmap == null && !released && pending.add(symbol) && !loading) {
+            loadNextBatch();
+        }
+    }
+
+    //the view's row was recycled, a load nobody else waits for is dropped
+    public void unbind(ImageView view) {
+        String symbol = bound.remove(view);
+        show(view, null);
+        if (symbol != null && !bound.containsValue(symbol)) pending.remove(symbol);
+    }
+
+    //the live feed may have added bars, bound views keep their bitmap while the last bar date is the same
+    public void refresh() {
+        if (released) return;
+        pending.addAll(bound.values());
+        if (!loading) loadNextBatch();
+    }
+
+    //new bars were imported, bound views load their sparklines again
+    public void clear() {
+        generation++;
+        memory.evictAll();
+        lastDates.clear();
+        for (Map.Entry<ImageView, String> entry : bound.entrySet()) {
+            pending.add(entry.getValue());
+        }
+        if (!loading) loadNextBatch();
+    }
+
+    //stops the loader thread, call from onDestroy
+    public void release() {
+        released = true;
+        pending.clear();
+        executor.shutdownNow();
+    }
+
+    private static String key(String symbol, String lastDate) {
+        return symbol + "|" + lastDate;
+    }
+
+    private Bitmap cached(String symbol) {
+        String lastDate = lastDates.get(symbol);
+        return lastDate != null ? memory.get(key(symbol, lastDate)) : null;
+    }
+
+    private void show(ImageView view, Bitmap bitmap) {
+        view.setImageBitmap(bitmap);
+        if (bitmap != null) {
+            shown.put(view, bitmap);
+        } else {
+            shown.remove(view);
+        }
+    }
+
+    private void loadNextBatch() {
+        if (pending.isEmpty() || released) {
+            loading = false;
+            return;
+        }
+        loading = true;
+        //symbol -> date of the bitmap in memory, null when there is none
+        Map<String, String> batch = new HashMap<>();
+        Iterator<String> iterator = pending.iterator();
+        while (iterator.hasNext() && batch.size() < BATCH) {
+            String symbol = iterator.next();
+            batch.put(symbol, cached(symbol) != null ? lastDates.get(symbol) : null);
+            iterator.remove();
+        }
+        int batchGeneration = generation;
+        executor.execute(() -> {
+            Map<String, Loaded> loaded = new HashMap<>();
+            for (Map.Entry<String, String> entry : batch.entrySet()) {
+                String symbol = entry.getKey();
+                try {
+                    Loaded sparkline = load(symbol, entry.getValue());
+                    if (sparkline != null) loaded.put(symbol, sparkline);
+                } catch (IOException | RuntimeException e) {
+                    AppLog.e(DB_Helper.DB_LOG_TAG, "Error loading the sparkline of " + symbol + ": " + e.getMessage());
+                }
+            }
+            mainHandler.post(() -> onBatchLoaded(batchGeneration, loaded));
+        });
+    }
+
+    private void onBatchLoaded(int batchGeneration, Map<String, Loaded> loaded) {
+        if (released) return;
+        if (batchGeneration != generation) {
+            for (Loaded sparkline : loaded.values()) release(sparkline.bitmap);
+            loadNextBatch();
+            return;
+        }
+        for (Map.Entry<String, Loaded> entry : loaded.entrySet()) {
+            Loaded sparkline = entry.getValue();
+            if (sparkline.bitmap == null) continue;
+            String symbol = entry.getKey();
+            String oldDate = lastDates.put(symbol, sparkline.lastDate);
+            memory.put(key(symbol, sparkline.lastDate), sparkline.bitmap);
+            //a view still showing the old bitmap keeps it until it is replaced below
+            if (oldDate != null && !oldDate.equals(sparkline.lastDate)) memory.remove(key(symbol, oldDate));
+        }
+        for (Map.Entry<ImageView, String> entry : bound.entrySet()) {
+            Loaded sparkline = loaded.get(entry.getValue());
+            if (sparkline != null && sparkline.bitmap != null) show(entry.getKey(), sparkline.bitmap);
+        }
+        loadNextBatch();
+    }
+
+    private static final class Loaded {
+        final String lastDate;
+        //null when the bitmap in memory is still the one of lastDate
+        final Bitmap bitmap;
+
+        Loaded(String lastDate, Bitmap bitmap) {
+            this.lastDate = lastDate;
+            this.bitmap = bitmap;
+        }
+    }
+
+    //loader thread: the cached bitmap of the symbol's last session, drawn when it isn't on disk yet
+    //nothing is decoded or drawn when the last bar date is still cachedDate
+    private Loaded load(String symbol, String cachedDate) throws IOException {
+        StockDataHelper.Session session = stockDataHelper.getLastSession(symbol, TIMEFRAME);
+        if (session == null || session.closes.length < 2) return null;
+        if (session.lastDate.equals(cachedDate)) return new Loaded(session.lastDate, null);
+        File symbolDir = new File(dir, URLEncoder.encode(symbol, "UTF-8"));
+        File file = new File(symbolDir, session.lastDate.replaceAll("[^0-9]", "") + ".png");
+        if (file.isFile()) {
+            Bitmap bitmap = decode(file);
+            if (bitmap != null) return new Loaded(session.lastDate, bitmap);
+        }
+        Bitmap bitmap = draw(session.closes);
+        write(symbolDir, file, bitmap);
+        return new Loaded(session.lastDate, bitmap);
+    }
+
+    private Bitmap decode(File file) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inMutable = true;
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        options.inBitmap = acquire();
+        try {
+            return BitmapFactory.decodeFile(file.getPath(), options);
+        } catch (IllegalArgumentException e) {
+            //the pooled bitmap didn't fit the file, decode into a new one
+            release(options.inBitmap);
+            options.inBitmap = null;
+            return BitmapFactory.decodeFile(file.getPath(), options);
+        }
+    }
+
+    private Bitmap draw(float[] closes) {
+        int count = Sparkline.downsample(closes, 0, closes.length, BUCKETS, downsampled);
+        float pad = paint.getStrokeWidth();
+        Sparkline.toPoints(downsampled, count, width - 2 * pad, height, pad, points);
+        path.reset();
+        path.moveTo(points[0] + pad, points[1]);
+        for (int i = 1; i < count; i++) {
+            path.lineTo(points[2 * i] + pad, points[2 * i + 1]);
+        }
+        paint.setColor(closes[closes.length - 1] >= closes[0] ? UP_COLOR : DOWN_COLOR);
+
+        Bitmap bitmap = acquire();
+        if (bitmap == null) {
+            bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        }
+        bitmap.eraseColor(Color.TRANSPARENT);
+        canvas.setBitmap(bitmap);
+        canvas.drawPath(path, paint);
+        canvas.setBitmap(null);
+        return bitmap;
+    }
+
+    //written to a temp file and renamed so a half written png is never read back
+    private static void write(File symbolDir, File file, Bitmap bitmap) throws IOException {
+        if (!symbolDir.isDirectory() && !symbolDir.mkdirs()) {
+            throw new IOException("can't create " + symbolDir);
+        }
+        File temp = new File(symbolDir, file.getName() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            bitmap.compress(Bitmap.CompressFormat.PNG, 100, out);
+        }
+        if (!temp.renameTo(file)) {
+            throw new IOException("can't rename " + temp);
+        }
+        File[] files = symbolDir.listFiles();
+        if (files == null) return;
+        for (File old : files) {
+            if (!old.equals(file)) old.delete();
+        }
+    }
+
+    private Bitmap acquire() {
+        synchronized (pool) {
+            return pool.poll();
+        }
+    }
+
+    private void release(Bitmap bitmap) {
+        if (bitmap == null) return;
+        synchronized (pool) {
+            if (pool.size() < POOL_SIZE) pool.push(bitmap);
+        }
+    }
+}
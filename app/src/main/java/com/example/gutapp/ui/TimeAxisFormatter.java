@@ -0,0 +1,142 @@
+package com.example.gutapp.ui;
+
+import com.example.gutapp.engine.CivilDate;
+import com.github.mikephil.charting.components.AxisBase;
+import com.github.mikephil.charting.formatter.ValueFormatter;
+
+import java.util.Arrays;
+import java.util.TimeZone;
+
+//x-axis labels for the candle chart
+//labels are computed once per bar index from the series timestamps and memoized, so panning only looks them up.
+//each label is chosen by the biggest calendar boundary crossed since the previous label on the axis:
+//a new day shows the date ("Mar 04"), a new hour the time ("14:35") and a label in the same hour as the previous one
+//only its minutes (":50"). zoomed out to labels hours apart the axis reads dates and times, zoomed in to labels
+//minutes apart it reads ":15 :30 :45" between the hours
+public class TimeAxisFormatter extends ValueFormatter {
+
+    private static final long MINUTE_MS = 60_000L;
+    private static final long HOUR_MS = 3_600_000L;
+    private static final long DAY_MS = 86_400_000L;
+    private static final String[] MONTHS = {"Jan", "Feb", "Mar", "Apr", "May", "Jun",
+            "Jul", "Aug", "Sep", "Oct", "Nov", "Dec"};
+
+    private long[] timestamps;
+    private int count;
+    private final boolean daily;
+    private final TimeZone timeZone = TimeZone.getDefault();
+
+    //memo for the current label step (bars between two axis labels), rebuilt only when the zoom changes the step
+    private int labelStep = -1;
+    private String[] labels;
+
+    public TimeAxisFormatter(long[] timestamps, boolean daily) {
+        this.timestamps = timestamps;
+        this.count = timestamps.length;
+        this.daily = daily;
+    }
+
+    //a bar appended by the live feed
+    public void addTimestamp(long timestamp) {
+        if (count == timestamps.length) {
+            timestamps = Arrays.copyOf(timestamps, Math.max(16, count * 2));
+            if (labels != null) {
+                labels = Arrays.copyOf(labels, timestamps.length);
+            }
+        }
+        timestamps[count++] = timestamp;
+    }
+
+    @Override
+    public String getAxisLabel(float value, AxisBase axis) {
+        int index = (int) value;
+        if (index < 0 || index >= count) {
+            return "";
+        }
+        int step = labelStep(axis);
+        if (step != labelStep) {
+            labelStep = step;
+            labels = new String[timestamps.length];
+        }
+        String label = labels[index];
+        if (label == null) {
+            label = computeLabel(index, step);
+            labels[index] = label;
+        }
+        return label;
+    }
+
+    //bars between two neighbouring labels, read from the entries the axis renderer just computed
+    private static int labelStep(AxisBase axis) {
+        if (axis == null || axis.mEntryCount < 2) {
+            return 1;
+        }
+        return Math.max(1, Math.round(axis.mEntries[1] - axis.mEntries[0]));
+    }
+
+    private String computeLabel(int index, int step) {
+        long local = toLocal(timestamps[index]);
+        long day = Math.floorDiv(local, DAY_MS);
+        if (daily) {
+            return formatDate(day);
+        }
+        int previous = index - step;
+        //the first label and every label that starts a new day shows the date
+        if (previous < 0) {
+            return formatDate(day);
+        }
+        long previousLocal = toLocal(timestamps[previous]);
+        if (Math.floorDiv(previousLocal, DAY_MS) != day) {
+            return formatDate(day);
+        }
+        long minuteOfDay = Math.floorMod(local, DAY_MS) / MINUTE_MS;
+        if (Math.floorDiv(previousLocal, HOUR_MS) != Math.floorDiv(local, HOUR_MS)) {
+            return formatTime(minuteOfDay);
+        }
+        return formatMinute(minuteOfDay);
+    }
+
+    private long toLocal(long timestamp) {
+        return timestamp + timeZone.getOffset(timestamp);
+    }
+
+    //"MMM dd" from days since the epoch
+    static String formatDate(long epochDay) {
+        int date = CivilDate.civilFromDays(epochDay);
+        int dayOfMonth = date % 100;
+        int month = date / 100 % 100;
+
+        char[] chars = new char[6];
+        String name = MONTHS[month - 1];
+        chars[0] = name.charAt(0);
+        chars[1] = name.charAt(1);
+        chars[2] = name.charAt(2);
+        chars[3] = ' ';
+        chars[4] = (char) ('0' + dayOfMonth / 10);
+        chars[5] = (char) ('0' + dayOfMonth % 10);
+        return new String(chars);
+    }
+
+    //"HH:mm" from the minute of the day
+    static String formatTime(long minuteOfDay) {
+        int hour = (int) (minuteOfDay / 60);
+        int minute = (int) (minuteOfDay % 60);
+        char[] chars = new char[5];
+        chars[0] = (char) ('0' + hour / 10);
+        chars[1] = (char) ('0' + hour % 10);
+        chars[2] = ':';
+        chars[3] = (char) ('0' + minute / 10);
+        chars[4] = (char) ('0' + minute % 10);
+        return new String(chars);
+    }
+
+    //":mm" from the minute of the day
+    static String formatMinute(long minuteOfDay) {
+        int minute = (int) (minuteOfDay % 60);
+        char[] chars = new char[3];
+        chars[0] = ':';
+        chars[1] = (char) ('0' + minute / 10);
+        chars[2] = (char) ('0' + minute % 10);
+        return new String(chars);
+    }
+}
@@ -0,0 +1,248 @@
+package com.example.gutapp.ui;
+
+import android.content.Context;
+import android.content.Intent;
+import android.graphics.Color;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.example.gutapp.R;
+import com.example.gutapp.data.log.AppLog;
+import com.example.gutapp.database.DB_Helper;
+import com.example.gutapp.database.StockDataHelper;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+//home page watchlist, rows are recycled and only the bound ones ask for a price and a sparkline (SparklineLoader)
+//a bound row without a price queues its symbol, one batch at a time is read off the main thread and the rows
+//that got a price are rebound with PRICE_PAYLOAD. rows recycled before their batch went out drop out of the queue,
+//so a fling over thousands of symbols only loads what it stops on
+public class WatchlistAdapter extends ListAdapter<WatchlistAdapter.Item, WatchlistAdapter.RowHolder> {
+    private static final Object PRICE_PAYLOAD = new Object();
+    private static final int UP_COLOR = Color.parseColor("#00FF88");
+    private static final int DOWN_COLOR = Color.parseColor("#FF4444");
+
+    public static final class Item {
+        final long id;
+        final String symbol;
+        final String name;
+
+        public Item(String symbol, String name) {
+            this.id = stableId(symbol);
+            this.symbol = symbol;
+            this.name = name;
+        }
+    }
+
+    private static final DiffUtil.ItemCallback<Item> DIFF = new DiffUtil.ItemCallback<Item>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Item oldItem, @NonNull Item newItem) {
+            return oldItem.symbol.equals(newItem.symbol);
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Item oldItem, @NonNull Item newItem) {
+            return oldItem.name.equals(newItem.name);
+        }
+    };
+
+    private final StockDataHelper stockDataHelper;
+    private final SparklineLoader sparklineLoader;
+    private final ExecutorService priceExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    //everything below is only touched on the main thread
+    private final Map<String, float[]> prices = new HashMap<>();
+    private final Set<String> pending = new LinkedHashSet<>();
+    private final Map<String, Integer> positions = new HashMap<>();
+    private boolean loading;
+    //bumped by clearPrices, a batch that was out at the time is thrown away
+    private int priceGeneration;
+    private boolean released;
+
+    public WatchlistAdapter(StockDataHelper stockDataHelper, SparklineLoader sparklineLoader) {
+        super(DIFF);
+        this.stockDataHelper = stockDataHelper;
+        this.sparklineLoader = sparklineLoader;
+        setHasStableIds(true);
+    }
+
+    //submits a new list, the prices already loaded stay
+    public void submitItems(List<Item> items) {
+        submitList(items, () -> {
+            positions.clear();
+            List<Item> current = getCurrentList();
+            for (int i = 0; i < current.size(); i++) {
+                positions.put(current.get(i).symbol, i);
+            }
+        });
+    }
+
+    //forgets the loaded prices (new bars were imported), bound rows load theirs again
+    public void clearPrices() {
+        prices.clear();
+        pending.clear();
+        priceGeneration++;
+        notifyItemRangeChanged(0, getItemCount(), PRICE_PAYLOAD);
+    }
+
+    //stops the price thread, call from onDestroy
+    public void release() {
+        released = true;
+        pending.clear();
+        priceExecutor.shutdownNow();
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return getItem(position).id;
+    }
+
+    @NonNull
+    @Override
+    public RowHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.item_watchlist, parent, false);
+        return new RowHolder(view);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull RowHolder holder, int position) {
+        Item item = getItem(position);
+        holder.item = item;
+        holder.nameView.setText(item.name);
+        holder.symbolView.setText(item.symbol);
+        sparklineLoader.bind(holder.sparklineView, item.symbol);
+        bindPrice(holder, item);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull RowHolder holder, int position, @NonNull List<Object> payloads) {
+        if (payloads.isEmpty()) {
+            onBindViewHolder(holder, position);
+            return;
+        }
+        //only the price changed, the texts are already right
+        bindPrice(holder, getItem(position));
+    }
+
+    @Override
+    public void onViewRecycled(@NonNull RowHolder holder) {
+        if (holder.item != null) {
+            pending.remove(holder.item.symbol);
+            holder.item = null;
+        }
+        sparklineLoader.unbind(holder.sparklineView);
+    }
+
+    private void bindPrice(RowHolder holder, Item item) {
+        float[] price = prices.get(item.symbol);
+        if (price == null) {
+            holder.priceView.setText("");
+            request(item.symbol);
+            return;
+        }
+        holder.priceView.setText(Float.isNaN(price[0]) ? "-" : String.format(Locale.US, "%.2f", price[0]));
+        holder.priceView.setTextColor(price[0] > price[1] ? UP_COLOR : DOWN_COLOR);
+    }
+
+    private void request(String symbol) {
+        if (released || !pending.add(symbol)) return;
+        if (!loading) loadNextBatch();
+    }
+
+    //takes up to one query batch of the queued symbols, the next batch starts when this one is back
+    private void loadNextBatch() {
+        if (pending.isEmpty() || released) {
+            loading = false;
+            return;
+        }
+        loading = true;
+        List<String> batch = new ArrayList<>(StockDataHelper.LATEST_PRICES_BATCH);
+        Iterator<String> iterator = pending.iterator();
+        while (iterator.hasNext() && batch.size() < StockDataHelper.LATEST_PRICES_BATCH) {
+            batch.add(iterator.next());
+            iterator.remove();
+        }
+        int generation = priceGeneration;
+        priceExecutor.execute(() -> {
+            Map<String, float[]> loaded;
+            try {
+                loaded = stockDataHelper.getLatestPrices(batch, StockDataHelper.Timeframe.DAILY);
+            } catch (RuntimeException e) {
+                AppLog.e(DB_Helper.DB_LOG_TAG, "Error loading watchlist prices: " + e.getMessage());
+                loaded = new HashMap<>();
+            }
+            Map<String, float[]> result = loaded;
+            mainHandler.post(() -> onBatchLoaded(generation, batch, result));
+        });
+    }
+
+    private void onBatchLoaded(int generation, List<String> batch, Map<String, float[]> loaded) {
+        if (released) return;
+        if (generation != priceGeneration) {
+            loadNextBatch();
+            return;
+        }
+        for (String symbol : batch) {
+            //symbols without daily bars get a placeholder so they aren't asked for again
+            float[] price = loaded.get(symbol);
+            prices.put(symbol, price != null ? price : new float[]{Float.NaN, Float.NaN});
+            Integer position = positions.get(symbol);
+            if (position != null) notifyItemChanged(position, PRICE_PAYLOAD);
+        }
+        loadNextBatch();
+    }
+
+    //64 bit fnv-1a of the symbol, stays the same when the universe is reloaded and ids shift
+    static long stableId(String symbol) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < symbol.length(); i++) {
+            hash ^= symbol.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    static class RowHolder extends RecyclerView.ViewHolder {
+        final TextView nameView;
+        final TextView symbolView;
+        final TextView priceView;
+        final ImageView sparklineView;
+        Item item;
+
+        RowHolder(@NonNull View itemView) {
+            super(itemView);
+            nameView = itemView.findViewById(R.id.textViewName);
+            symbolView = itemView.findViewById(R.id.textViewSymbol);
+            priceView = itemView.findViewById(R.id.textViewPrice);
+            sparklineView = itemView.findViewById(R.id.imageSparkline);
+            //one listener per row view, it opens whatever item is bound at the time
+            itemView.setOnClickListener(v -> {
+                if (item == null) return;
+                Context context = v.getContext();
+                Intent intent = new Intent(context, ChartActivity.class);
+                intent.putExtra("symbol", item.symbol);
+                intent.putExtra("name", item.name);
+                context.startActivity(intent);
+            });
+        }
+    }
+}
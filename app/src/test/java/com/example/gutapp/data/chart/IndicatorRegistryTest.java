@@ -0,0 +1,253 @@
+package com.example.gutapp.data.chart;
+
+import com.example.gutapp.database.StockDataHelper;
+import com.github.mikephil.charting.charts.CombinedChart;
+import com.github.mikephil.charting.data.Entry;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Concurrency stress tests for the copy-on-write indicator registry used by IndicatorManager.
+ */
+public class IndicatorRegistryTest {
+
+    private static final int WRITERS = 4;
+    private static final int READERS = 4;
+    private static final int OPERATIONS = 2000;
+
+    //minimal indicator, nothing here touches the chart
+    private static class FakeIndicator extends Indicator {
+        volatile int period;
+
+        FakeIndicator(String id, int period) {
+            super(id, Indicators.SMA, StockDataHelper.Timeframe.DAILY, true, "TEST", 0);
+            this.period = period;
+        }
+
+        @Override
+        public String getSpec() {
+            return "SMA:" + period;
+        }
+
+        @Override
+        public ComputeScheduler.Task<List<List<Entry>>> computeTask(StockDataHelper.Timeframe timeframe) {
+            return token -> Collections.emptyList();
+        }
+
+        @Override
+        public void apply(List<List<Entry>> lines, CombinedChart combinedChart) {
+        }
+
+        @Override
+        public void changeSettings(float[] params, CombinedChart combinedChart) {
+            this.period = (int) params[1];
+        }
+
+        @Override
+        public void remove(CombinedChart combinedChart) {
+        }
+
+        @Override
+        public String getParams() {
+            return "0:" + period + ":1.0";
+        }
+    }
+
+    @Test
+    public void snapshot_isImmutableAndUnaffectedByLaterChanges() {
+        IndicatorRegistry registry = new IndicatorRegistry();
+        registry.put(new FakeIndicator("0", 20));
+        IndicatorRegistry.Snapshot before = registry.snapshot();
+
+        registry.put(new FakeIndicator("1", 50));
+        registry.remove("0");
+
+        assertEquals(1, before.size());
+        assertNotNull(before.get("0"));
+        assertNull(before.get("1"));
+        assertTrue(before.getVersion() < registry.snapshot().getVersion());
+        try {
+            before.asMap().put("2", new FakeIndicator("2", 10));
+            fail("snapshot map must be immutable");
+        } catch (UnsupportedOperationException expected) {
+        }
+        try {
+            before.asList().clear();
+            fail("snapshot list must be immutable");
+        } catch (UnsupportedOperationException expected) {
+        }
+    }
+
+    @Test
+    public void update_isVisibleToLaterSnapshots() {
+        IndicatorRegistry registry = new IndicatorRegistry();
+        FakeIndicator indicator = new FakeIndicator("0", 20);
+        registry.put(indicator);
+        long version = registry.snapshot().getVersion();
+
+        assertTrue(registry.update("0", () -> indicator.changeSettings(new float[]{0, 50, 1}, null)));
+        assertFalse(registry.update("missing", () -> fail("must not run for unknown ids")));
+
+        assertEquals(version + 1, registry.snapshot().getVersion());
+        assertEquals("SMA:50", registry.get("0").getSpec());
+    }
+
+    @Test
+    public void concurrentWriters_loseNoChanges() throws Exception {
+        IndicatorRegistry registry = new IndicatorRegistry();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        for (int w = 0; w < WRITERS; w++) {
+            final int writer = w;
+            threads.add(new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < OPERATIONS; i++) {
+                        registry.put(new FakeIndicator(writer + "-" + i, i));
+                    }
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                }
+            }));
+        }
+        runAll(threads, start);
+
+        assertNull(failure.get());
+        IndicatorRegistry.Snapshot snapshot = registry.snapshot();
+        assertEquals(WRITERS * OPERATIONS, snapshot.size());
+        assertEquals(WRITERS * OPERATIONS, snapshot.getVersion());
+    }
+
+    @Test
+    public void readers_alwaysSeeConsistentSnapshotsWhileUiChurns() throws Exception {
+        IndicatorRegistry registry = new IndicatorRegistry();
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>();
+
+        //writers play the ui: add, change settings and remove indicators
+        CountDownLatch writersDone = new CountDownLatch(WRITERS);
+        for (int w = 0; w < WRITERS; w++) {
+            final int writer = w;
+            threads.add(new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < OPERATIONS; i++) {
+                        String id = writer + "-" + (i % 16);
+                        final int newPeriod = i + 1;
+                        FakeIndicator indicator = new FakeIndicator(id, i);
+                        registry.put(indicator);
+                        registry.update(id, () -> indicator.changeSettings(new float[]{0, newPeriod, 1}, null));
+                        if (i % 3 == 0) {
+                            registry.remove(id);
+                        }
+                    }
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                } finally {
+                    writersDone.countDown();
+                }
+            }));
+        }
+
+        //readers play the compute threads: iterate whole snapshots while the writers run
+        for (int r = 0; r < READERS; r++) {
+            threads.add(new Thread(() -> {
+                try {
+                    start.await();
+                    long lastVersion = -1;
+                    while (writing.get()) {
+                        IndicatorRegistry.Snapshot snapshot = registry.snapshot();
+                        assertTrue("versions never go back", snapshot.getVersion() >= lastVersion);
+                        lastVersion = snapshot.getVersion();
+
+                        Map<String, Indicator> map = snapshot.asMap();
+                        List<Indicator> list = snapshot.asList();
+                        assertEquals(map.size(), list.size());
+                        int i = 0;
+                        for (Map.Entry<String, Indicator> entry : map.entrySet()) {
+                            assertSame(entry.getValue(), list.get(i++));
+                            assertEquals(entry.getKey(), entry.getValue().getID());
+                            assertNotNull(entry.getValue().getSpec());
+                        }
+                    }
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                }
+            }));
+        }
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        start.countDown();
+        writersDone.await();
+        writing.set(false);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+        //every writer ends on i = OPERATIONS - 1, ids that were removed on a multiple of 3 stay removed
+        IndicatorRegistry.Snapshot end = registry.snapshot();
+        for (int w = 0; w < WRITERS; w++) {
+            for (int slot = 0; slot < 16; slot++) {
+                int lastWrite = lastIndexFor(slot);
+                Indicator indicator = end.get(w + "-" + slot);
+                if (lastWrite % 3 == 0) {
+                    assertNull(indicator);
+                } else {
+                    assertEquals("SMA:" + (lastWrite + 1), indicator.getSpec());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void iteratingASnapshot_neverThrowsWhileRemoving() throws Exception {
+        IndicatorRegistry registry = new IndicatorRegistry();
+        for (int i = 0; i < 256; i++) {
+            registry.put(new FakeIndicator(Integer.toString(i), i));
+        }
+        IndicatorRegistry.Snapshot snapshot = registry.snapshot();
+        int seen = 0;
+        for (Indicator indicator : snapshot.asList()) {
+            registry.remove(indicator.getID());
+            seen++;
+        }
+        assertEquals(256, seen);
+        assertTrue(registry.snapshot().isEmpty());
+    }
+
+    private static int lastIndexFor(int slot) {
+        int last = OPERATIONS - 1;
+        while (last % 16 != slot) {
+            last--;
+        }
+        return last;
+    }
+
+    private static void runAll(List<Thread> threads, CountDownLatch start) throws InterruptedException {
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+}
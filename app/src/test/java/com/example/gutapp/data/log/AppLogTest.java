@@ -0,0 +1,64 @@
+package com.example.gutapp.data.log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Level filtering and the ring buffer of the logger, logcat is switched off so only the ring is used.
+ */
+public class AppLogTest {
+
+    @Before
+    public void setUp() {
+        AppLog.setLevels(Integer.MAX_VALUE, AppLog.DEBUG);
+        AppLog.clear();
+    }
+
+    @After
+    public void tearDown() {
+        AppLog.setLevels(AppLog.INFO, AppLog.INFO);
+        AppLog.clear();
+    }
+
+    @Test
+    public void belowRingLevel_isNotBuilt() {
+        AppLog.setLevels(Integer.MAX_VALUE, AppLog.INFO);
+        boolean[] built = new boolean[1];
+
+        AppLog.d("test", () -> {
+            built[0] = true;
+            return "debug";
+        });
+
+        assertFalse(AppLog.isLoggable(AppLog.DEBUG));
+        assertFalse(built[0]);
+        assertEquals("", AppLog.dump());
+    }
+
+    @Test
+    public void dump_isOldestFirst() {
+        AppLog.d("test", "first");
+        AppLog.w("test", "second");
+
+        String dump = AppLog.dump();
+
+        assertTrue(dump.contains("D/test: first"));
+        assertTrue(dump.indexOf("first") < dump.indexOf("W/test: second"));
+    }
+
+    @Test
+    public void ring_keepsOnlyTheNewestRecords() {
+        for (int i = 0; i < 2000; i++) {
+            AppLog.i("test", "message " + i);
+        }
+
+        String[] lines = AppLog.dump().split("\n");
+
+        assertEquals(512, lines.length);
+        assertTrue(lines[0].endsWith("message 1488"));
+        assertTrue(lines[511].endsWith("message 1999"));
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.gutapp.data.metrics;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Counters, latency histograms and the json snapshot of the metrics registry.
+ */
+public class MetricsTest {
+
+    @Before
+    public void setUp() {
+        Metrics.get().reset();
+    }
+
+    @Test
+    public void histogram_percentilesAreBucketUpperBounds() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 99; i++) {
+            histogram.record(900_000); //0.9ms, bucket below 1.024ms
+        }
+        histogram.record(50_000_000); //50ms
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(1.024, histogram.getPercentileMillis(50), 1e-9);
+        assertEquals(1.024, histogram.getPercentileMillis(99), 1e-9);
+        assertEquals(50.0, histogram.getPercentileMillis(100), 1e-9);
+        assertEquals(50.0, histogram.getMaxMillis(), 1e-9);
+        assertEquals((99 * 0.9 + 50) / 100, histogram.getMeanMillis(), 1e-9);
+    }
+
+    @Test
+    public void concurrentRecording_losesNothing() throws Exception {
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    Metrics.get().increment(Metrics.INDICATOR_CACHE_HIT);
+                    Metrics.get().recordNanos(Metrics.DB_CANDLES, i);
+                }
+            }));
+        }
+        for (Thread thread : threads) thread.start();
+        for (Thread thread : threads) thread.join();
+
+        assertEquals(40_000, Metrics.get().getCount(Metrics.INDICATOR_CACHE_HIT));
+        assertEquals(40_000, Metrics.get().histogram(Metrics.DB_CANDLES).getCount());
+    }
+
+    @Test
+    public void snapshot_isSortedJson() {
+        Metrics.get().add(Metrics.DB_ROWS_READ, 1200);
+        Metrics.get().increment(Metrics.INDICATOR_CACHE_MISS);
+        Metrics.get().recordNanos(Metrics.CHART_OPEN, 2_000_000);
+
+        String json = Metrics.get().toJson();
+
+        assertTrue(json.startsWith("{\"counters\":{"));
+        assertTrue(json.contains("\"db.rows_read\":1200"));
+        assertTrue(json.indexOf("\"db.rows_read\"") < json.indexOf("\"indicator.cache_miss\""));
+        assertTrue(json.contains("\"chart.open\":{\"count\":1,\"mean_ms\":2.000"));
+        assertTrue(json.endsWith("}}"));
+    }
+}
@@ -0,0 +1,306 @@
+package com.example.gutapp.database;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.example.gutapp.data.chart.CancellationToken;
+import com.example.gutapp.data.chart.IndicatorUtil;
+import com.example.gutapp.data.chart.Indicators;
+import com.example.gutapp.data.chart.PresetEntry;
+import com.example.gutapp.database.indicatorHelpers.BollingerBands_DBHelper;
+import com.example.gutapp.engine.BarSink;
+import com.example.gutapp.engine.CandleSeries;
+import com.example.gutapp.engine.SyntheticMarket;
+import com.github.mikephil.charting.data.CandleEntry;
+import com.github.mikephil.charting.data.Entry;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Database performance regression suite, runs the real helpers on Robolectric's SQLite against
+ * synthetic data. Fails when a hot query gets slower than its budget or stops using an index.
+ * Timings and row counts are written to build/reports/db-performance.csv.
+ * Scale it up with -Ddbperf.symbols=... -Ddbperf.bars=... (5 minute bars per symbol).
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class DatabasePerformanceTest {
+
+    private static final int SYMBOLS = Integer.getInteger("dbperf.symbols", 20);
+    private static final int BARS = Integer.getInteger("dbperf.bars", 10_000);
+    private static final long SEED = SyntheticDataWriter.DEFAULT_SEED;
+    private static final String SYMBOL = "SYN00001";
+
+    //budgets in milliseconds for the default scale, generous enough for a slow ci machine
+    private static final long CANDLES_BUDGET_MS = 1500;
+    private static final long INDICATOR_FETCH_BUDGET_MS = 500;
+    private static final long PRESET_FETCH_BUDGET_MS = 100;
+
+    private static final List<String> REPORT = new ArrayList<>();
+
+    private DB_Helper db_helper;
+
+    @Before
+    public void setUp() {
+        Context context = ApplicationProvider.getApplicationContext();
+        db_helper = new DB_Helper(context);
+        new SyntheticDataWriter(db_helper).writeSymbols(SYMBOLS, BARS, SEED);
+    }
+
+    @After
+    public void tearDown() {
+        db_helper.close();
+    }
+
+    @AfterClass
+    public static void writeReport() throws IOException {
+        File dir = new File("build/reports");
+        if (!dir.exists() && !dir.mkdirs()) return;
+        try (FileWriter writer = new FileWriter(new File(dir, "db-performance.csv"))) {
+            writer.write("measurement,rows,millis\n");
+            for (String line : REPORT) {
+                writer.write(line);
+                writer.write('\n');
+            }
+        }
+    }
+
+    @Test
+    public void cachedStockData_returnsEveryBarWithinBudget() throws Exception {
+        StockDataHelper stockDataHelper = (StockDataHelper) db_helper.getHelper(DB_Index.STOCK_TABLE);
+        int[] expected = expectedRowCounts();
+
+        StockDataHelper.Timeframe[] timeframes = StockDataHelper.Timeframe.values();
+        for (int i = 0; i < timeframes.length; i++) {
+            StockDataHelper.Timeframe timeframe = timeframes[i];
+            long best = Long.MAX_VALUE;
+            int rows = 0;
+            for (int run = 0; run < 3; run++) {
+                long start = System.nanoTime();
+                ArrayList<CandleEntry> candles = stockDataHelper.getCachedStockData(SYMBOL, timeframe);
+                best = Math.min(best, elapsedMillis(start));
+                rows = candles.size();
+            }
+            record("candles_" + timeframe.getValue(), rows, best);
+            assertEquals(expected[i], rows);
+            assertWithinBudget("candles " + timeframe.getValue(), best, CANDLES_BUDGET_MS);
+        }
+    }
+
+    @Test
+    public void indicatorCache_isFetchedWithinBudget() {
+        SQLiteDatabase db = db_helper.getWritableDatabase();
+        IndicatorDBHelper indicatorDBHelper = (IndicatorDBHelper) db_helper.getHelper(DB_Index.INDICATOR_TABLE);
+        BollingerBands_DBHelper bollingerBandsDBHelper = (BollingerBands_DBHelper) db_helper.getHelper(DB_Index.BOLLINGER_BANDS_TABLE);
+
+        //fill the caches of every symbol the way the indicators do on a cache miss
+        List<float[]> prices = null;
+        for (int s = 1; s <= SYMBOLS; s++) {
+            String symbol = String.format(Locale.US, "SYN%05d", s);
+            List<float[]> closes = closes(db, symbol, StockDataHelper.Timeframe.FIVE_MIN);
+            IndicatorUtil.movingAverage(db, closes, 20, symbol, StockDataHelper.Timeframe.FIVE_MIN, "SMA", CancellationToken.NONE);
+            IndicatorUtil.bollingerBands(db, closes, 20, 2f, symbol, StockDataHelper.Timeframe.FIVE_MIN, CancellationToken.NONE);
+            if (symbol.equals(SYMBOL)) prices = closes;
+        }
+        assertNotNull(prices);
+
+        long start = System.nanoTime();
+        List<Entry> sma = indicatorDBHelper.fetchIndicatorData(SYMBOL, 20, StockDataHelper.Timeframe.FIVE_MIN, "SMA");
+        long smaMillis = elapsedMillis(start);
+        record("indicator_sma_5m", sma.size(), smaMillis);
+
+        start = System.nanoTime();
+        List<List<Entry>> bands = bollingerBandsDBHelper.fetchBollingerBands(SYMBOL, 20, 2f, StockDataHelper.Timeframe.FIVE_MIN);
+        long bandsMillis = elapsedMillis(start);
+        record("indicator_bollinger_5m", bands.get(0).size(), bandsMillis);
+
+        assertEquals(prices.size() - 19, sma.size());
+        assertEquals(prices.size() - 19, bands.get(0).size());
+        //the cache comes back in bar order
+        for (int i = 1; i < sma.size(); i++) {
+            assertTrue(sma.get(i).getX() > sma.get(i - 1).getX());
+        }
+        assertWithinBudget("sma fetch", smaMillis, INDICATOR_FETCH_BUDGET_MS);
+        assertWithinBudget("bollinger fetch", bandsMillis, INDICATOR_FETCH_BUDGET_MS);
+    }
+
+    @Test
+    public void presets_areStoredAndFetchedWithinBudget() {
+        ChartPresetHelper presetHelper = (ChartPresetHelper) db_helper.getHelper(DB_Index.CHART_PRESET_TABLE);
+        //a heavy user, many symbols with a few presets each
+        for (int s = 1; s <= SYMBOLS; s++) {
+            List<ChartPresetHelper.Change> changes = new ArrayList<>();
+            for (int preset = 1; preset <= 5; preset++) {
+                for (int indicator = 0; indicator < 10; indicator++) {
+                    changes.add(new ChartPresetHelper.Change(preset, Integer.toString(indicator),
+                            new PresetEntry(Indicators.SMA, "0:" + (indicator + 5) + ":1.0")));
+                }
+            }
+            assertTrue(presetHelper.storeChanges("user", String.format(Locale.US, "SYN%05d", s), changes));
+        }
+
+        long start = System.nanoTime();
+        int rows = 0;
+        try (Cursor cursor = presetHelper.fetchAllPresets("user", SYMBOL)) {
+            while (cursor.moveToNext()) rows++;
+        }
+        long millis = elapsedMillis(start);
+        record("presets_fetch", rows, millis);
+
+        assertEquals(50, rows);
+        assertWithinBudget("preset fetch", millis, PRESET_FETCH_BUDGET_MS);
+    }
+
+    @Test
+    public void columnStore_loadsTheSameCandlesAsSqlite() throws Exception {
+        StockDataHelper stockDataHelper = (StockDataHelper) db_helper.getHelper(DB_Index.STOCK_TABLE);
+        Context context = ApplicationProvider.getApplicationContext();
+        MappedCandleStore store = new MappedCandleStore(db_helper, new File(context.getCacheDir(), "candles"));
+        //the first load copies the series out of stock_data
+        store.getCachedStockData(SYMBOL, StockDataHelper.Timeframe.FIVE_MIN, CancellationToken.NONE);
+
+        long sqliteBest = Long.MAX_VALUE;
+        long mappedBest = Long.MAX_VALUE;
+        ArrayList<CandleEntry> rows = null;
+        ArrayList<CandleEntry> mapped = null;
+        for (int run = 0; run < 3; run++) {
+            long start = System.nanoTime();
+            rows = stockDataHelper.getCachedStockData(SYMBOL, StockDataHelper.Timeframe.FIVE_MIN);
+            sqliteBest = Math.min(sqliteBest, elapsedMillis(start));
+            start = System.nanoTime();
+            mapped = store.getCachedStockData(SYMBOL, StockDataHelper.Timeframe.FIVE_MIN, CancellationToken.NONE);
+            mappedBest = Math.min(mappedBest, elapsedMillis(start));
+        }
+        record("candles_5m_sqlite", rows.size(), sqliteBest);
+        record("candles_5m_mapped", mapped.size(), mappedBest);
+
+        assertEquals(rows.size(), mapped.size());
+        for (int i = 0; i < rows.size(); i++) {
+            assertEquals(rows.get(i).getData(), mapped.get(i).getData());
+            assertEquals(rows.get(i).getClose(), mapped.get(i).getClose(), 0f);
+        }
+        //a range is found through the header index without loading the rest
+        long from = (long) rows.get(100).getData();
+        long to = (long) rows.get(200).getData();
+        assertEquals(100, store.getRange(SYMBOL, StockDataHelper.Timeframe.FIVE_MIN, from, to, CancellationToken.NONE).size());
+        assertWithinBudget("mapped candles", mappedBest, CANDLES_BUDGET_MS);
+    }
+
+    @Test
+    public void hotQueries_useIndexes() {
+        SQLiteDatabase db = db_helper.getReadableDatabase();
+        assertNoFullScan(db, StockDataHelper.CANDLES_QUERY, SYMBOL, "5m");
+        assertNoFullScan(db, IndicatorDBHelper.FETCH_QUERY, SYMBOL, "20", "5m", "SMA");
+        assertNoFullScan(db, BollingerBands_DBHelper.FETCH_QUERY, SYMBOL, "20", "2.0", "5m");
+        assertNoFullScan(db, ChartPresetHelper.FETCH_ALL_QUERY, "user", SYMBOL);
+        assertNoFullScan(db, SymbolsTableHelper.NAME_QUERY, SYMBOL);
+        assertNoFullScan(db, StockDataHelper.LATEST_PRICE_QUERY, SYMBOL, "1d");
+        assertNoFullScan(db, StockDataHelper.RECENT_CLOSES_QUERY, SYMBOL, "5m", "288");
+        assertNoFullScan(db, StockDataHelper.RECENT_BARS_QUERY, SYMBOL, "1d", "252");
+        assertNoFullScan(db, StockDataHelper.TIMESTAMPS_QUERY, SYMBOL, "15m");
+        assertNoFullScan(db, StockDataHelper.SERIES_VERSION_QUERY, SYMBOL, "1d");
+        assertNoFullScan(db, AlertsTableHelper.ACTIVE_ALERTS_QUERY, "user", SYMBOL);
+        assertNoFullScan(db, AlertsTableHelper.FIRED_ALERTS_QUERY, "user", "50");
+    }
+
+    @Test
+    public void latestPrices_areTheLastTwoClosesOfEverySymbol() {
+        StockDataHelper stockDataHelper = (StockDataHelper) db_helper.getHelper(DB_Index.STOCK_TABLE);
+        List<String> symbols = new ArrayList<>();
+        for (int i = 1; i <= SYMBOLS; i++) {
+            symbols.add(String.format(Locale.US, "SYN%05d", i));
+        }
+        symbols.add("MISSING");
+
+        long start = System.nanoTime();
+        Map<String, float[]> prices = stockDataHelper.getLatestPrices(symbols, StockDataHelper.Timeframe.DAILY);
+        record("latest_prices", prices.size(), elapsedMillis(start));
+
+        assertEquals(SYMBOLS, prices.size());
+        assertFalse(prices.containsKey("MISSING"));
+        List<float[]> closes = closes(db_helper.getReadableDatabase(), SYMBOL, StockDataHelper.Timeframe.DAILY);
+        float[] latest = prices.get(SYMBOL);
+        assertEquals(closes.get(closes.size() - 1)[1], latest[0], 0f);
+        assertEquals(closes.get(closes.size() - 2)[1], latest[1], 0f);
+    }
+
+    //a SCAN of the table or a temp b-tree for the ORDER BY means the query no longer uses its index
+    private static void assertNoFullScan(SQLiteDatabase db, String sql, String... args) {
+        List<String> plan = new ArrayList<>();
+        try (Cursor cursor = db.rawQuery("EXPLAIN QUERY PLAN " + sql, args)) {
+            int detail = cursor.getColumnIndexOrThrow("detail");
+            while (cursor.moveToNext()) {
+                plan.add(cursor.getString(detail));
+            }
+        }
+        assertFalse("empty plan for " + sql, plan.isEmpty());
+        for (String step : plan) {
+            assertFalse("full table scan in " + sql + ": " + plan, step.startsWith("SCAN"));
+            assertFalse("sort without index in " + sql + ": " + plan, step.contains("TEMP B-TREE"));
+        }
+    }
+
+    //rows the writer should have produced per timeframe, from the same generator run in memory
+    private static int[] expectedRowCounts() {
+        StockDataHelper.Timeframe[] timeframes = StockDataHelper.Timeframe.values();
+        int[] intervals = new int[timeframes.length];
+        CandleSeries[] series = new CandleSeries[timeframes.length];
+        BarSink[] sinks = new BarSink[timeframes.length];
+        for (int i = 0; i < timeframes.length; i++) {
+            intervals[i] = timeframes[i] == StockDataHelper.Timeframe.DAILY ? SyntheticMarket.SESSION : timeframes[i].getMinutes();
+            series[i] = new CandleSeries(0);
+            sinks[i] = BarSink.into(series[i]);
+        }
+        SyntheticMarket.forSymbol(SEED, SYMBOL).generate(SyntheticDataWriter.DEFAULT_START,
+                StockDataHelper.Timeframe.FIVE_MIN.getMinutes(), BARS, intervals, sinks);
+        int[] counts = new int[timeframes.length];
+        for (int i = 0; i < timeframes.length; i++) {
+            counts[i] = series[i].size();
+        }
+        return counts;
+    }
+
+    //{index, close} pairs, the input IndicatorUtil expects
+    private static List<float[]> closes(SQLiteDatabase db, String symbol, StockDataHelper.Timeframe timeframe) {
+        List<float[]> prices = new ArrayList<>();
+        try (Cursor cursor = db.rawQuery(StockDataHelper.CANDLES_QUERY, new String[]{symbol, timeframe.getValue()})) {
+            while (cursor.moveToNext()) {
+                prices.add(new float[]{prices.size(), cursor.getFloat(4)});
+            }
+        }
+        return prices;
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000L;
+    }
+
+    private static void record(String measurement, int rows, long millis) {
+        String line = measurement + "," + rows + "," + millis;
+        REPORT.add(line);
+        System.out.println("[db-performance] " + line);
+    }
+
+    private static void assertWithinBudget(String what, long millis, long budget) {
+        assertTrue(what + " took " + millis + "ms, budget is " + budget + "ms", millis <= budget);
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.gutapp.ui;
+
+import com.github.mikephil.charting.components.XAxis;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+/**
+ * Day, hour and minute labels of the chart's x axis and their memo per label step.
+ */
+public class TimeAxisFormatterTest {
+
+    //2024-03-04 09:30 utc, a monday
+    private static final long MARCH_4_0930 = 1709544600000L;
+    private static final long MINUTE_MS = 60_000L;
+    private static final long DAY_MS = 86_400_000L;
+    //09:30 to 15:45, the bars of one session
+    private static final int BARS_PER_DAY = 26;
+
+    private TimeZone defaultTimeZone;
+
+    @Before
+    public void setUp() {
+        defaultTimeZone = TimeZone.getDefault();
+        TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
+    }
+
+    @After
+    public void tearDown() {
+        TimeZone.setDefault(defaultTimeZone);
+    }
+
+    //two sessions of 15m bars
+    private static long[] fifteenMinuteBars() {
+        long[] timestamps = new long[2 * BARS_PER_DAY];
+        for (int i = 0; i < timestamps.length; i++) {
+            long day = i / BARS_PER_DAY;
+            timestamps[i] = MARCH_4_0930 + day * DAY_MS + (i % BARS_PER_DAY) * 15 * MINUTE_MS;
+        }
+        return timestamps;
+    }
+
+    //an axis with labels step bars apart, as the renderer leaves it after computing them
+    private static XAxis axis(int step) {
+        XAxis axis = new XAxis();
+        axis.mEntries = new float[]{0, step};
+        axis.mEntryCount = 2;
+        return axis;
+    }
+
+    @Test
+    public void zoomedIn_labelsWithinAnHourShowOnlyTheMinutes() {
+        TimeAxisFormatter formatter = new TimeAxisFormatter(fifteenMinuteBars(), false);
+        XAxis axis = axis(1);
+
+        assertEquals("Mar 04", formatter.getAxisLabel(0, axis));
+        assertEquals(":45", formatter.getAxisLabel(1, axis));
+        assertEquals("10:00", formatter.getAxisLabel(2, axis));
+        assertEquals(":15", formatter.getAxisLabel(3, axis));
+        assertEquals(":45", formatter.getAxisLabel(BARS_PER_DAY - 1, axis));
+        assertEquals("Mar 05", formatter.getAxisLabel(BARS_PER_DAY, axis));
+    }
+
+    @Test
+    public void zoomedOut_everyLabelCrossesAnHourAndShowsTheTime() {
+        TimeAxisFormatter formatter = new TimeAxisFormatter(fifteenMinuteBars(), false);
+        XAxis axis = axis(4);
+
+        assertEquals("Mar 04", formatter.getAxisLabel(0, axis));
+        assertEquals("10:30", formatter.getAxisLabel(4, axis));
+        assertEquals("11:30", formatter.getAxisLabel(8, axis));
+        //four bars back is the previous session
+        assertEquals("Mar 05", formatter.getAxisLabel(BARS_PER_DAY + 2, axis));
+        assertEquals("10:30", formatter.getAxisLabel(BARS_PER_DAY + 4, axis));
+    }
+
+    @Test
+    public void dailyBars_alwaysShowTheDate() {
+        long[] days = {MARCH_4_0930, MARCH_4_0930 + DAY_MS, MARCH_4_0930 + 29 * DAY_MS};
+        TimeAxisFormatter formatter = new TimeAxisFormatter(days, true);
+        XAxis axis = axis(1);
+
+        assertEquals("Mar 04", formatter.getAxisLabel(0, axis));
+        assertEquals("Mar 05", formatter.getAxisLabel(1, axis));
+        assertEquals("Apr 02", formatter.getAxisLabel(2, axis));
+        assertEquals("", formatter.getAxisLabel(3, axis));
+    }
+
+    @Test
+    public void labelsAreMemoizedPerStep_andAppendedBarsGetLabels() {
+        long[] timestamps = fifteenMinuteBars();
+        TimeAxisFormatter formatter = new TimeAxisFormatter(timestamps, false);
+        XAxis zoomedIn = axis(1);
+
+        String label = formatter.getAxisLabel(4, zoomedIn);
+        assertEquals(":30", label);
+        assertSame(label, formatter.getAxisLabel(4, zoomedIn));
+        assertEquals("10:30", formatter.getAxisLabel(4, axis(4)));
+
+        formatter.addTimestamp(timestamps[timestamps.length - 1] + 15 * MINUTE_MS);
+        assertEquals("16:00", formatter.getAxisLabel(timestamps.length, axis(2)));
+    }
+}
@@ -0,0 +1,26 @@
+plugins {
+    `java-library`
+    alias(libs.plugins.jmh)
+}
+
+//pure java indicator engine, no android dependencies so it can be benchmarked and tested on a plain jvm
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+dependencies {
+    testImplementation(libs.junit)
+}
+
+//./gradlew :engine:jmh
+jmh {
+    jmhVersion.set(libs.versions.jmh.get())
+    profilers.add("gc")
+    fork.set(1)
+    warmupIterations.set(3)
+    iterations.set(5)
+    //the 10M bar runs keep four float arrays of 40MB each alive
+    jvmArgs.add("-Xmx2g")
+    resultFormat.set("JSON")
+}
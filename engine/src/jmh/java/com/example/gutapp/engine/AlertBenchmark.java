@@ -0,0 +1,111 @@
+package com.example.gutapp.engine;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+//a round of closed bars, one per symbol, through an alert book holding alerts active alerts spread over the symbols
+//fired alerts are put back after the round so the book stays at its size. the "evaluated" counter is alerts
+//checked per second, a round costs one push per distinct line of a symbol plus a compare per alert
+//run with ./gradlew :engine:jmh -Pjmh.includes=AlertBenchmark
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AlertBenchmark {
+
+    //2024-01-01 00:00 utc
+    private static final long START = 1704067200000L;
+    private static final int BARS = 2_000;
+    private static final int WARMUP_BARS = 200;
+
+    @Param({"10000"})
+    public int alerts;
+
+    @Param({"1000"})
+    public int symbols;
+
+    private String[] names;
+    private float[][] closes;
+    private AlertBook book;
+    private final List<Alert> fired = new ArrayList<>();
+    private final AlertBook.Listener listener = (alert, timestamp, close) -> fired.add(alert);
+    private int bar;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class AlertCounter {
+        public long evaluated;
+        public long firedAlerts;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            evaluated = 0;
+            firedAlerts = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        names = new String[symbols];
+        closes = new float[symbols][];
+        for (int s = 0; s < symbols; s++) {
+            names[s] = "S" + s;
+            closes[s] = SyntheticMarket.forSymbol(42, names[s]).generate(START, 5, BARS).closes();
+        }
+        book = new AlertBook();
+        for (int a = 0; a < alerts; a++) {
+            int s = a % symbols;
+            book.add(alert(a, names[s], a / symbols, closes[s][WARMUP_BARS - 1]));
+        }
+        for (int s = 0; s < symbols; s++) {
+            book.warmUp(names[s], closes[s], WARMUP_BARS);
+        }
+        bar = WARMUP_BARS;
+    }
+
+    //the kinds of alert users set, several per symbol sharing lines
+    private static Alert alert(long id, String symbol, int kind, float lastClose) {
+        switch (kind % 6) {
+            case 0:
+                return new Alert(id, symbol, Alert.CROSSES_ABOVE, Alert.close(), Alert.bollingerUpper(20, 2));
+            case 1:
+                return new Alert(id, symbol, Alert.CROSSES_BELOW, Alert.close(), Alert.bollingerLower(20, 2));
+            case 2:
+                return new Alert(id, symbol, Alert.CROSSES, Alert.sma(20), Alert.sma(50));
+            case 3:
+                return new Alert(id, symbol, Alert.CROSSES_ABOVE, Alert.ema(12), Alert.ema(26));
+            case 4:
+                return new Alert(id, symbol, Alert.CROSSES_ABOVE, Alert.close(), Alert.constant(lastClose * 1.02f));
+            default:
+                return new Alert(id, symbol, Alert.CROSSES_BELOW, Alert.close(), Alert.constant(lastClose * (0.98f - kind * 0.001f)));
+        }
+    }
+
+    @Benchmark
+    public int round(AlertCounter counter) {
+        long timestamp = START + bar * 300_000L;
+        int count = 0;
+        for (int s = 0; s < symbols; s++) {
+            count += book.onBar(names[s], timestamp, closes[s][bar], listener);
+        }
+        counter.evaluated += alerts;
+        counter.firedAlerts += count;
+        for (int i = 0; i < fired.size(); i++) {
+            book.add(fired.get(i));
+        }
+        fired.clear();
+        bar = bar + 1 == BARS ? WARMUP_BARS : bar + 1;
+        return count;
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.gutapp.engine;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+//backtests over 10 years of 5 minute bars, 1,051,200 bars around the clock
+//"cached" runs the series the lines were computed for again, "fresh" alternates two series so every run recomputes
+//its lines into the kept buffers. gc.alloc.rate.norm should be ~0 for both
+//run with ./gradlew :engine:jmh -Pjmh.includes=BacktestBenchmark
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class BacktestBenchmark {
+
+    //2015-01-01 00:00 utc
+    private static final long START = 1420070400000L;
+
+    @Param({"1051200"})
+    public int bars;
+
+    @Param({"smaCross", "bbBounce"})
+    public String strategy;
+
+    private CandleSeries series;
+    private CandleSeries other;
+    private Strategy rules;
+    private final Backtester backtester = new Backtester().withFee(0.0005f).withSlippage(0.0002f);
+    private boolean flip;
+
+    @Setup
+    public void setUp() {
+        series = new SyntheticMarket(42).generate(START, 5, bars);
+        other = new SyntheticMarket(43).generate(START, 5, bars);
+        rules = strategy.equals("smaCross")
+                ? new Strategy("SMA 20/50", Strategy.crossesAbove(Alert.sma(20), Alert.sma(50)),
+                        Strategy.crossesBelow(Alert.sma(20), Alert.sma(50)))
+                : new Strategy("BB bounce", Strategy.lowTouches(Alert.bollingerLower(20, 2)),
+                        Strategy.highTouches(Alert.bollingerUpper(20, 2)));
+    }
+
+    @Benchmark
+    public double cached() {
+        backtester.run(series, rules, Cancellation.NONE);
+        return backtester.getFinalEquity();
+    }
+
+    @Benchmark
+    public double fresh() {
+        flip = !flip;
+        backtester.run(flip ? series : other, rules, Cancellation.NONE);
+        return backtester.getFinalEquity();
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.gutapp.engine;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+//decode throughput of the compressed candle blocks, full series and a single block (random access)
+//the "bars" counter is bars decoded per second, the encoded size against 32 bytes per bar of the column files is
+//printed once per trial. "cents" rounds prices to two decimals like real quotes, "raw" keeps the generator's floats
+//run with ./gradlew :engine:jmh -Pjmh.includes=CompressionBenchmark
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class CompressionBenchmark {
+
+    //2020-01-01 00:00 utc
+    private static final long START = 1577836800000L;
+
+    @Param({"1000000"})
+    public int bars;
+
+    @Param({"raw", "cents"})
+    public String prices;
+
+    private CompressedSeries compressed;
+    private long[][] longs;
+    private float[][] floats;
+    private int block;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class BarCounter {
+        public long decodedBars;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            decodedBars = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        CandleSeries series = new SyntheticMarket(42).generate(START, 5, bars);
+        if (prices.equals("cents")) {
+            CandleSeries rounded = new CandleSeries(bars);
+            for (int i = 0; i < bars; i++) {
+                rounded.add(series.getTimestamp(i), cents(series.getOpen(i)), cents(series.getHigh(i)),
+                        cents(series.getLow(i)), cents(series.getClose(i)), series.getVolume(i));
+            }
+            series = rounded;
+        }
+        byte[] encoded = CompressedSeries.encode(series, CompressedSeries.DEFAULT_BLOCK_SIZE);
+        compressed = CompressedSeries.wrap(encoded);
+        longs = new long[2][CompressedSeries.DEFAULT_BLOCK_SIZE];
+        floats = new float[4][CompressedSeries.DEFAULT_BLOCK_SIZE];
+        System.out.println(String.format(Locale.US, "%n%s prices: %.2f bytes per bar, %.1f%% of the column files",
+                prices, encoded.length / (double) bars, encoded.length * 100.0 / (bars * 32.0)));
+    }
+
+    private static float cents(float price) {
+        return Math.round(price * 100) / 100f;
+    }
+
+    @Benchmark
+    public long decodeAll(BarCounter counter) {
+        long checksum = 0;
+        for (int b = 0; b < compressed.getBlockCount(); b++) {
+            int rows = compressed.decodeBlock(b, longs, floats, 0);
+            checksum += longs[0][rows - 1] + Float.floatToRawIntBits(floats[3][rows - 1]);
+        }
+        counter.decodedBars += bars;
+        return checksum;
+    }
+
+    @Benchmark
+    public long decodeOneBlock(BarCounter counter) {
+        block = (block * 31 + 7) % compressed.getBlockCount();
+        int rows = compressed.decodeBlock(block, longs, floats, 0);
+        counter.decodedBars += rows;
+        return longs[0][rows - 1];
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.gutapp.engine;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+//60 bar correlations between 200 symbols of 2 years of daily bars, 19,900 pairs
+//"load" computes every pair from the series, "update" is the close of one more session for every symbol
+//run with ./gradlew :engine:jmh -Pjmh.includes=CorrelationBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class CorrelationBenchmark {
+
+    //2022-01-03 00:00 utc
+    private static final long START = 1641168000000L;
+    private static final long DAY_MS = 86_400_000L;
+
+    @Param({"200"})
+    public int symbols;
+
+    @Param({"504"})
+    public int bars;
+
+    private CandleSeries[] series;
+    private CorrelationMatrix matrix;
+    private long next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        series = new CandleSeries[symbols];
+        for (int s = 0; s < symbols; s++) {
+            SyntheticMarket market = new SyntheticMarket(s);
+            series[s] = market.generate(START, market.getSessionMinutes(), bars);
+        }
+        matrix = new CorrelationMatrix(ForkJoinPool.commonPool(), 60);
+        matrix.load(series, Cancellation.NONE);
+        next = series[0].getTimestamp(bars - 1) + DAY_MS;
+    }
+
+    @Benchmark
+    public float load() {
+        matrix.load(series, Cancellation.NONE);
+        next = series[0].getTimestamp(bars - 1) + DAY_MS;
+        return matrix.get(0, 1);
+    }
+
+    @Benchmark
+    public float update() {
+        for (int s = 0; s < symbols; s++) {
+            matrix.addBar(s, next, 100 + (s + next / DAY_MS) % 7);
+        }
+        next += DAY_MS;
+        matrix.update(Cancellation.NONE);
+        return matrix.get(0, 1);
+    }
+}
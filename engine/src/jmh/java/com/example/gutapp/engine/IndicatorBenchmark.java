@@ -0,0 +1,99 @@
+package com.example.gutapp.engine;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+//throughput and allocation of every indicator kernel at 1k, 100k and 10M bars
+//run with ./gradlew :engine:jmh, the gc profiler is enabled in engine/build.gradle.kts
+//bars/s comes from the "bars" counter, allocation per bar is gc.alloc.rate.norm divided by the bar count
+//(the array kernels should report ~0, the series versions one float[] per output line)
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class IndicatorBenchmark {
+
+    //2020-01-01 00:00 utc
+    private static final long START = 1577836800000L;
+
+    @Param({"1000", "100000", "10000000"})
+    public int bars;
+
+    @Param({"20", "200"})
+    public int period;
+
+    private CandleSeries series;
+    private float[] middle;
+    private float[] upper;
+    private float[] lower;
+
+    //counts bars processed so the report shows bars per second next to calls per second
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class BarCounter {
+        public long processedBars;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            processedBars = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        //seeded synthetic 5 minute bars, the same data on every run
+        series = new SyntheticMarket(42).generate(START, 5, bars);
+        middle = new float[bars];
+        upper = new float[bars];
+        lower = new float[bars];
+    }
+
+    @Benchmark
+    public float sma(BarCounter counter) {
+        IndicatorKernels.sma(series.closes(), bars, period, middle, Cancellation.NONE);
+        counter.processedBars += bars;
+        return middle[bars - 1];
+    }
+
+    @Benchmark
+    public float ema(BarCounter counter) {
+        IndicatorKernels.ema(series.closes(), bars, period, middle, Cancellation.NONE);
+        counter.processedBars += bars;
+        return middle[bars - 1];
+    }
+
+    @Benchmark
+    public float bollingerBands(BarCounter counter) {
+        IndicatorKernels.bollingerBands(series.closes(), bars, period, 2f, middle, upper, lower, Cancellation.NONE);
+        counter.processedBars += bars;
+        return upper[bars - 1];
+    }
+
+    @Benchmark
+    public void smaSeries(BarCounter counter, Blackhole blackhole) {
+        blackhole.consume(IndicatorKernels.sma(series, period, Cancellation.NONE));
+        counter.processedBars += bars;
+    }
+
+    @Benchmark
+    public void emaSeries(BarCounter counter, Blackhole blackhole) {
+        blackhole.consume(IndicatorKernels.ema(series, period, Cancellation.NONE));
+        counter.processedBars += bars;
+    }
+
+    @Benchmark
+    public void bollingerBandsSeries(BarCounter counter, Blackhole blackhole) {
+        blackhole.consume(IndicatorKernels.bollingerBands(series, period, 2f, Cancellation.NONE));
+        counter.processedBars += bars;
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.gutapp.engine;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+//headless historical replay: bars are stepped out of a stored series one frame at a time into a growing series and
+//the streaming SMA, EMA and bollinger bands, the same work the chart does per replayed bar minus the drawing
+//the "bars" counter is the sustained bars per second, compare it to the replay speeds the ui offers (up to 240)
+//run with ./gradlew :engine:jmh -Pjmh.includes=ReplayBenchmark
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ReplayBenchmark {
+
+    //2020-01-01 00:00 utc
+    private static final long START = 1577836800000L;
+    private static final long FRAME_NANOS = 16_666_667L;
+
+    @Param({"100000"})
+    public int bars;
+
+    //bars stepped per 60Hz frame
+    @Param({"1", "4", "1000"})
+    public int barsPerFrame;
+
+    private CandleSeries history;
+    private CandleSeries chart;
+    private StreamingSma sma;
+    private StreamingEma ema;
+    private StreamingBollingerBands bands;
+    private BarSink step;
+    private float checksum;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class BarCounter {
+        public long processedBars;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            processedBars = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        history = new SyntheticMarket(42).generate(START, 5, bars);
+        chart = new CandleSeries(bars);
+        step = (timestamp, open, high, low, close, volume) -> {
+            chart.add(timestamp, open, high, low, close, volume);
+            checksum += sma.push(close) + ema.push(close);
+            bands.push(close);
+            checksum += bands.getUpper();
+        };
+    }
+
+    @Setup(Level.Invocation)
+    public void reset() {
+        chart.clear();
+        sma = new StreamingSma(20);
+        ema = new StreamingEma(20);
+        bands = new StreamingBollingerBands(20, 2f);
+    }
+
+    @Benchmark
+    public float replay(BarCounter counter) {
+        BarReplay replay = new BarReplay(history, 0, barsPerFrame * 60.0);
+        replay.start(0);
+        long now = 0;
+        while (!replay.isFinished()) {
+            now += FRAME_NANOS;
+            replay.advance(now, barsPerFrame, step);
+        }
+        counter.processedBars += bars;
+        return checksum;
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.gutapp.engine;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+//bollinger bounce swept over periods 5..204 and multipliers 1.0..2.9, 4000 cells on 20 years of daily bars
+//"sweep" shares the prefix sums on the common pool, "kernels" is the same grid run one cell after another with
+//every band computed by IndicatorKernels, what the sweep replaces
+//run with ./gradlew :engine:jmh -Pjmh.includes=SweepBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SweepBenchmark {
+
+    //2005-01-03 00:00 utc
+    private static final long START = 1104710400000L;
+
+    private static final ParameterSweep.Template BOUNCE = (period, multiplier) -> new Strategy("BB bounce",
+            Strategy.lowTouches(Alert.bollingerLower(period, multiplier)), Strategy.highTouches(Alert.bollingerUpper(period, multiplier)));
+
+    @Param({"5040"})
+    public int bars;
+
+    private CandleSeries series;
+    private final int[] periods = new int[200];
+    private final float[] multipliers = new float[20];
+    private final ParameterSweep sweep = new ParameterSweep(ForkJoinPool.commonPool()).withFee(0.0005f);
+
+    @Setup
+    public void setUp() {
+        SyntheticMarket market = new SyntheticMarket(42);
+        //one bar per session
+        series = market.generate(START, market.getSessionMinutes(), bars);
+        for (int i = 0; i < periods.length; i++) periods[i] = 5 + i;
+        for (int i = 0; i < multipliers.length; i++) multipliers[i] = 1 + i * 0.1f;
+    }
+
+    @Benchmark
+    public int sweep() {
+        return sweep.run(series, BOUNCE, periods, multipliers, Cancellation.NONE).best;
+    }
+
+    @Benchmark
+    public double kernels() {
+        Backtester backtester = new Backtester().withFee(0.0005f);
+        double best = -1;
+        for (int period : periods) {
+            for (float multiplier : multipliers) {
+                backtester.run(series, BOUNCE.build(period, multiplier), Cancellation.NONE);
+                best = Math.max(best, backtester.getTotalReturn());
+            }
+        }
+        return best;
+    }
+}
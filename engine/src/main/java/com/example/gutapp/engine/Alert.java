@@ -0,0 +1,208 @@
+package com.example.gutapp.engine;
+
+import java.util.Locale;
+
+//a user alert: two lines of a series crossing on a closed bar
+//lines are the close, streaming indicators and constants, so the alert book moves every indicator of a series once
+//per bar and each alert is a compare of the values before and after it
+//  new Alert(1, "AAPL", Alert.CROSSES_ABOVE, Alert.close(), Alert.bollingerUpper(20, 2))
+//  new Alert(2, "AAPL", Alert.CROSSES_ABOVE, Alert.sma(20), Alert.sma(50))
+//a line is stored as its key ("close", "sma:20", "bbu:20:2.0", "150.0"), see Line.parse
+public final class Alert {
+    public static final int CROSSES_ABOVE = 0;
+    public static final int CROSSES_BELOW = 1;
+    //either direction
+    public static final int CROSSES = 2;
+
+    private static final String[] TYPE_NAMES = {"crosses above", "crosses below", "crosses"};
+
+    public static final class Line {
+        static final int CLOSE = 0;
+        static final int SMA = 1;
+        static final int EMA = 2;
+        static final int BOLLINGER_UPPER = 3;
+        static final int BOLLINGER_MIDDLE = 4;
+        static final int BOLLINGER_LOWER = 5;
+        static final int CONSTANT = 6;
+
+        private static final String[] PREFIXES = {"close", "sma", "ema", "bbu", "bbm", "bbl"};
+        private static final String[] NAMES = {"close", "SMA", "EMA", "BB upper", "BB middle", "BB lower"};
+
+        final int kind;
+        final int period;
+        //the bollinger multiplier or the constant
+        final float value;
+        //same key, same line, a series moves it once per bar however many alerts use it
+        final String key;
+
+        private Line(int kind, int period, float value, String key) {
+            this.kind = kind;
+            this.period = period;
+            this.value = value;
+            this.key = key;
+        }
+
+        boolean isBollinger() {
+            return kind == BOLLINGER_UPPER || kind == BOLLINGER_MIDDLE || kind == BOLLINGER_LOWER;
+        }
+
+        //bars before the first valid value, an ema is given 4 periods to forget its seed
+        int warmup() {
+            switch (kind) {
+                case SMA:
+                case BOLLINGER_UPPER:
+                case BOLLINGER_MIDDLE:
+                case BOLLINGER_LOWER:
+                    return period;
+                case EMA:
+                    return 4 * period;
+                default:
+                    return 1;
+            }
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        //"SMA 20", "BB upper 20/2.0", "150.0"
+        public String getName() {
+            switch (kind) {
+                case CLOSE:
+                    return NAMES[CLOSE];
+                case CONSTANT:
+                    return String.valueOf(value);
+                case SMA:
+                case EMA:
+                    return NAMES[kind] + " " + period;
+                default:
+                    return NAMES[kind] + " " + period + "/" + value;
+            }
+        }
+
+        //inverse of getKey, throws IllegalArgumentException for anything else
+        public static Line parse(String key) {
+            String[] parts = key.split(":");
+            try {
+                switch (parts[0]) {
+                    case "close":
+                        return close();
+                    case "sma":
+                        return sma(Integer.parseInt(parts[1]));
+                    case "ema":
+                        return ema(Integer.parseInt(parts[1]));
+                    case "bbu":
+                        return bollingerUpper(Integer.parseInt(parts[1]), Float.parseFloat(parts[2]));
+                    case "bbm":
+                        return bollingerMiddle(Integer.parseInt(parts[1]), Float.parseFloat(parts[2]));
+                    case "bbl":
+                        return bollingerLower(Integer.parseInt(parts[1]), Float.parseFloat(parts[2]));
+                    default:
+                        return constant(Float.parseFloat(parts[0]));
+                }
+            } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+                throw new IllegalArgumentException("not an alert line: " + key, e);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return key;
+        }
+    }
+
+    private final long id;
+    private final String symbol;
+    private final int type;
+    private final Line first;
+    private final Line second;
+
+    public Alert(long id, String symbol, int type, Line first, Line second) {
+        if (type < CROSSES_ABOVE || type > CROSSES) {
+            throw new IllegalArgumentException("unknown alert type " + type);
+        }
+        if (first.kind == Line.CONSTANT && second.kind == Line.CONSTANT) {
+            throw new IllegalArgumentException("two constants never cross");
+        }
+        this.id = id;
+        this.symbol = symbol;
+        this.type = type;
+        this.first = first;
+        this.second = second;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public int getType() {
+        return type;
+    }
+
+    public Line getFirst() {
+        return first;
+    }
+
+    public Line getSecond() {
+        return second;
+    }
+
+    //"AAPL close crosses above BB upper 20/2.0"
+    public String getDescription() {
+        return symbol + " " + first.getName() + " " + TYPE_NAMES[type] + " " + second.getName();
+    }
+
+    //closed bars the series needs before the alert can fire
+    public int barsNeeded() {
+        //one more for the values before the crossing bar
+        return Math.max(first.warmup(), second.warmup()) + 1;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "Alert{%d %s}", id, getDescription());
+    }
+
+    public static Line close() {
+        return new Line(Line.CLOSE, 1, 0, "close");
+    }
+
+    public static Line sma(int period) {
+        checkPeriod(period);
+        return new Line(Line.SMA, period, 0, "sma:" + period);
+    }
+
+    public static Line ema(int period) {
+        checkPeriod(period);
+        return new Line(Line.EMA, period, 0, "ema:" + period);
+    }
+
+    public static Line bollingerUpper(int period, float stdDevMultiplier) {
+        checkPeriod(period);
+        return new Line(Line.BOLLINGER_UPPER, period, stdDevMultiplier, "bbu:" + period + ":" + stdDevMultiplier);
+    }
+
+    public static Line bollingerMiddle(int period, float stdDevMultiplier) {
+        checkPeriod(period);
+        return new Line(Line.BOLLINGER_MIDDLE, period, stdDevMultiplier, "bbm:" + period + ":" + stdDevMultiplier);
+    }
+
+    public static Line bollingerLower(int period, float stdDevMultiplier) {
+        checkPeriod(period);
+        return new Line(Line.BOLLINGER_LOWER, period, stdDevMultiplier, "bbl:" + period + ":" + stdDevMultiplier);
+    }
+
+    public static Line constant(float value) {
+        return new Line(Line.CONSTANT, 1, value, String.valueOf(value));
+    }
+
+    private static void checkPeriod(int period) {
+        if (period < 1) {
+            throw new IllegalArgumentException("period must be positive: " + period);
+        }
+    }
+}
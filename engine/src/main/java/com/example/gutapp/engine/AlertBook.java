@@ -0,0 +1,245 @@
+package com.example.gutapp.engine;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+//the active alerts of many symbols, evaluated bar by bar
+//each symbol keeps one streaming indicator per distinct line of its alerts (bollinger lines of the same bands share
+//one), with the values before and after the last bar. a closed bar moves every line once and then each alert of the
+//symbol is a compare of four floats, nothing is recomputed from the series and nothing is allocated
+//alerts fire once: a fired alert is removed from the book and handed to the listener
+//not thread safe, feed it from one thread
+public final class AlertBook {
+
+    public interface Listener {
+        void onFired(Alert alert, long timestamp, float close);
+    }
+
+    //one line of a symbol with its value before and after the last bar
+    private static final class Slot {
+        final Alert.Line line;
+        final StreamingSma sma;
+        final StreamingEma ema;
+        final Bands bands;
+        float previous = Float.NaN;
+        float current = Float.NaN;
+
+        Slot(Alert.Line line, Bands bands) {
+            this.line = line;
+            this.sma = line.kind == Alert.Line.SMA ? new StreamingSma(line.period) : null;
+            this.ema = line.kind == Alert.Line.EMA ? new StreamingEma(line.period) : null;
+            this.bands = bands;
+        }
+
+        void push(float close) {
+            previous = current;
+            switch (line.kind) {
+                case Alert.Line.CLOSE:
+                    current = close;
+                    break;
+                case Alert.Line.SMA:
+                    current = sma.push(close);
+                    break;
+                case Alert.Line.EMA:
+                    current = ema.push(close);
+                    break;
+                case Alert.Line.BOLLINGER_UPPER:
+                    current = bands.bands.getUpper();
+                    break;
+                case Alert.Line.BOLLINGER_MIDDLE:
+                    current = bands.bands.getMiddle();
+                    break;
+                case Alert.Line.BOLLINGER_LOWER:
+                    current = bands.bands.getLower();
+                    break;
+                default:
+                    current = line.value;
+            }
+        }
+
+        void reset() {
+            previous = current = Float.NaN;
+            if (sma != null) sma.reset();
+            if (ema != null) ema.reset();
+        }
+    }
+
+    private static final class Bands {
+        final int period;
+        final float stdDevMultiplier;
+        final StreamingBollingerBands bands;
+
+        Bands(int period, float stdDevMultiplier) {
+            this.period = period;
+            this.stdDevMultiplier = stdDevMultiplier;
+            this.bands = new StreamingBollingerBands(period, stdDevMultiplier);
+        }
+    }
+
+    private static final class Series {
+        Slot[] slots = new Slot[2];
+        int slotCount;
+        Bands[] bands = new Bands[1];
+        int bandCount;
+        Alert[] alerts = new Alert[2];
+        //slot indices of each alert's lines
+        int[] firstSlots = new int[2];
+        int[] secondSlots = new int[2];
+        int alertCount;
+
+        int slot(Alert.Line line) {
+            for (int i = 0; i < slotCount; i++) {
+                if (slots[i].line.key.equals(line.key)) return i;
+            }
+            if (slotCount == slots.length) slots = Arrays.copyOf(slots, 2 * slotCount);
+            slots[slotCount] = new Slot(line, line.isBollinger() ? bands(line.period, line.value) : null);
+            return slotCount++;
+        }
+
+        private Bands bands(int period, float stdDevMultiplier) {
+            for (int i = 0; i < bandCount; i++) {
+                if (bands[i].period == period && bands[i].stdDevMultiplier == stdDevMultiplier) return bands[i];
+            }
+            if (bandCount == bands.length) bands = Arrays.copyOf(bands, 2 * bandCount);
+            return bands[bandCount++] = new Bands(period, stdDevMultiplier);
+        }
+
+        void add(Alert alert) {
+            if (alertCount == alerts.length) {
+                alerts = Arrays.copyOf(alerts, 2 * alertCount);
+                firstSlots = Arrays.copyOf(firstSlots, 2 * alertCount);
+                secondSlots = Arrays.copyOf(secondSlots, 2 * alertCount);
+            }
+            alerts[alertCount] = alert;
+            firstSlots[alertCount] = slot(alert.getFirst());
+            secondSlots[alertCount] = slot(alert.getSecond());
+            alertCount++;
+        }
+
+        //the last alert takes the removed one's place, alerts of a symbol aren't ordered
+        void removeAt(int index) {
+            alertCount--;
+            alerts[index] = alerts[alertCount];
+            firstSlots[index] = firstSlots[alertCount];
+            secondSlots[index] = secondSlots[alertCount];
+            alerts[alertCount] = null;
+        }
+
+        void push(float close) {
+            for (int i = 0; i < bandCount; i++) {
+                bands[i].bands.push(close);
+            }
+            for (int i = 0; i < slotCount; i++) {
+                slots[i].push(close);
+            }
+        }
+
+        void reset() {
+            for (int i = 0; i < bandCount; i++) {
+                bands[i].bands.reset();
+            }
+            for (int i = 0; i < slotCount; i++) {
+                slots[i].reset();
+            }
+        }
+    }
+
+    private final Map<String, Series> series = new HashMap<>();
+    private final Map<Long, String> symbols = new HashMap<>();
+
+    //the alert's lines start cold when the symbol didn't have them yet, warm the symbol up again after adding
+    public void add(Alert alert) {
+        if (symbols.putIfAbsent(alert.getId(), alert.getSymbol()) != null) {
+            throw new IllegalArgumentException("alert " + alert.getId() + " is already in the book");
+        }
+        Series symbolSeries = series.get(alert.getSymbol());
+        if (symbolSeries == null) {
+            symbolSeries = new Series();
+            series.put(alert.getSymbol(), symbolSeries);
+        }
+        symbolSeries.add(alert);
+    }
+
+    public boolean remove(long id) {
+        String symbol = symbols.remove(id);
+        if (symbol == null) return false;
+        Series symbolSeries = series.get(symbol);
+        for (int i = 0; i < symbolSeries.alertCount; i++) {
+            if (symbolSeries.alerts[i].getId() == id) {
+                symbolSeries.removeAt(i);
+                break;
+            }
+        }
+        if (symbolSeries.alertCount == 0) series.remove(symbol);
+        return true;
+    }
+
+    //active alerts
+    public int size() {
+        return symbols.size();
+    }
+
+    public boolean hasAlerts(String symbol) {
+        return series.containsKey(symbol);
+    }
+
+    //closed bars warmUp needs for every alert of the symbol to be able to fire on the next bar, 0 without alerts
+    public int barsNeeded(String symbol) {
+        Series symbolSeries = series.get(symbol);
+        if (symbolSeries == null) return 0;
+        int bars = 0;
+        for (int i = 0; i < symbolSeries.alertCount; i++) {
+            bars = Math.max(bars, symbolSeries.alerts[i].barsNeeded());
+        }
+        //the alert needs one bar before the crossing one, which is the next live bar
+        return bars - 1;
+    }
+
+    //restarts the lines of the symbol from its history, the closes oldest first. nothing fires
+    public void warmUp(String symbol, float[] closes, int count) {
+        Series symbolSeries = series.get(symbol);
+        if (symbolSeries == null) return;
+        symbolSeries.reset();
+        for (int i = 0; i < count; i++) {
+            symbolSeries.push(closes[i]);
+        }
+    }
+
+    //a bar of the symbol closed: moves its lines and fires the alerts that crossed, returns how many fired
+    public int onBar(String symbol, long timestamp, float close, Listener listener) {
+        Series symbolSeries = series.get(symbol);
+        if (symbolSeries == null) return 0;
+        symbolSeries.push(close);
+        Slot[] slots = symbolSeries.slots;
+        int fired = 0;
+        int i = 0;
+        while (i < symbolSeries.alertCount) {
+            Alert alert = symbolSeries.alerts[i];
+            if (crossed(alert.getType(), slots[symbolSeries.firstSlots[i]], slots[symbolSeries.secondSlots[i]])) {
+                symbolSeries.removeAt(i);
+                symbols.remove(alert.getId());
+                fired++;
+                if (listener != null) listener.onFired(alert, timestamp, close);
+            } else {
+                i++;
+            }
+        }
+        if (symbolSeries.alertCount == 0) series.remove(symbol);
+        return fired;
+    }
+
+    //comparisons with a NaN (warm up) are false, an alert can't fire before both lines have two values
+    private static boolean crossed(int type, Slot first, Slot second) {
+        boolean above = first.previous <= second.previous && first.current > second.current;
+        boolean below = first.previous >= second.previous && first.current < second.current;
+        switch (type) {
+            case Alert.CROSSES_ABOVE:
+                return above;
+            case Alert.CROSSES_BELOW:
+                return below;
+            default:
+                return above || below;
+        }
+    }
+}
@@ -0,0 +1,359 @@
+package com.example.gutapp.engine;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+//runs a Strategy over a series and keeps the equity curve, drawdown and trade list of the last run
+//signals are taken on a bar's close and filled at the next bar's open moved against the trade by the slippage, the
+//fee is a fraction of every fill. the whole capital is traded (fractional shares) and a position still open at the
+//end is sold at the last close. lines are computed with IndicatorKernels into buffers the backtester keeps, they are
+//reused while the same series is run again (another strategy or costs) and recomputed in place once it changes.
+//after the first run on a series nothing is allocated unless it grows or trades more often than before
+//with prefix sums set (a parameter sweep), sma and bollinger lines come from the shared sums into four scratch
+//buffers instead. only the mean and deviation of the last bollinger period are kept, a sweep runs every multiplier
+//of a period one after another and each of them is then one multiply add per bar
+//not thread safe, one backtester per thread
+public final class Backtester {
+    private double capital = 10_000;
+    private float fee;
+    private float slippage;
+
+    //line buffers keyed by Alert.Line key
+    private static final class CachedLine {
+        float[] values;
+        boolean valid;
+        //middle, upper and lower of a bollinger line's bands, they come out of one pass
+        CachedLine[] bands;
+    }
+
+    private final Map<String, CachedLine> lines = new HashMap<>();
+    private PrefixSums prefixSums;
+    //one per rule line: entry first and second, exit first and second
+    private final float[][] scratch = new float[4][0];
+    private float[] bandMean = new float[0];
+    private float[] bandDeviation = new float[0];
+    private int bandPeriod;
+    private CandleSeries linesSeries;
+    private int linesSize;
+    private long linesLastTimestamp;
+
+    private float[] equity = new float[0];
+    private float[] drawdown = new float[0];
+    private int size;
+    private int[] tradeEntries = new int[16];
+    private int[] tradeExits = new int[16];
+    private float[] tradeEntryPrices = new float[16];
+    private float[] tradeExitPrices = new float[16];
+    private float[] tradeReturns = new float[16];
+    private int tradeCount;
+    private double finalEquity;
+    private float maxDrawdown;
+
+    public Backtester withCapital(double capital) {
+        this.capital = capital;
+        return this;
+    }
+
+    //fraction of the traded value paid on every fill, 0.001 is 10 basis points
+    public Backtester withFee(float fee) {
+        this.fee = fee;
+        return this;
+    }
+
+    //fraction the fill price moves against the trade
+    public Backtester withSlippage(float slippage) {
+        this.slippage = slippage;
+        return this;
+    }
+
+    //sums of the series every following run is over, null to go back to the cached kernel lines
+    public Backtester withPrefixSums(PrefixSums prefixSums) {
+        this.prefixSums = prefixSums;
+        bandPeriod = 0;
+        return this;
+    }
+
+    public void run(CandleSeries series, Strategy strategy, Cancellation cancellation) {
+        int n = series.size();
+        if (prefixSums != null && prefixSums.size() != n) {
+            throw new IllegalArgumentException("prefix sums of " + prefixSums.size() + " bars for a series of " + n);
+        }
+        prepareLines(series);
+        Strategy.Rule entry = strategy.entry();
+        Strategy.Rule exit = strategy.exit();
+        float[] entryFirst = line(entry.first, series, 0, cancellation);
+        float[] entrySecond = entry.second != null ? line(entry.second, series, 1, cancellation) : null;
+        float[] exitFirst = line(exit.first, series, 2, cancellation);
+        float[] exitSecond = exit.second != null ? line(exit.second, series, 3, cancellation) : null;
+        if (equity.length < n) {
+            equity = new float[n];
+            drawdown = new float[n];
+        }
+        size = n;
+        tradeCount = 0;
+        maxDrawdown = 0;
+
+        float[] opens = series.opens();
+        float[] highs = series.highs();
+        float[] lows = series.lows();
+        float[] closes = series.closes();
+        double cash = capital;
+        double shares = 0;
+        double entryValue = 0;
+        double peak = capital;
+        boolean pendingEntry = false;
+        boolean pendingExit = false;
+        for (int i = 0; i < n; i++) {
+            if ((i & Cancellation.CHECK_MASK) == 0) cancellation.throwIfCancelled();
+            if (pendingEntry) {
+                float price = opens[i] * (1 + slippage);
+                entryValue = cash;
+                shares = cash * (1 - fee) / price;
+                cash = 0;
+                openTrade(i, price);
+            } else if (pendingExit) {
+                float price = opens[i] * (1 - slippage);
+                cash = shares * price * (1 - fee);
+                shares = 0;
+                closeTrade(i, price, cash / entryValue - 1);
+            }
+            pendingEntry = pendingExit = false;
+            //a position still open at the end is sold at the last close, its fee is in the last bar's equity and drawdown
+            if (i == n - 1 && shares > 0) {
+                float price = closes[i];
+                cash = shares * price * (1 - fee);
+                shares = 0;
+                closeTrade(i, price, cash / entryValue - 1);
+            }
+
+            double value = cash + shares * closes[i];
+            peak = Math.max(peak, value);
+            equity[i] = (float) value;
+            drawdown[i] = (float) (value / peak - 1);
+            maxDrawdown = Math.min(maxDrawdown, drawdown[i]);
+
+            //a signal on the last bar has no next open to fill at
+            if (i == 0 || i == n - 1) continue;
+            if (shares == 0) {
+                pendingEntry = holds(entry, entryFirst, entrySecond, highs, lows, i);
+            } else {
+                pendingExit = holds(exit, exitFirst, exitSecond, highs, lows, i);
+            }
+        }
+        finalEquity = n > 0 ? cash : capital;
+    }
+
+    //bars of the last run
+    public int size() {
+        return size;
+    }
+
+    //value of the account on every bar's close, valid up to size()
+    public float[] equity() {
+        return equity;
+    }
+
+    //equity below its running peak on every bar, 0 at a new high and -0.25 a quarter under it
+    public float[] drawdown() {
+        return drawdown;
+    }
+
+    public float getMaxDrawdown() {
+        return maxDrawdown;
+    }
+
+    public double getFinalEquity() {
+        return finalEquity;
+    }
+
+    public double getTotalReturn() {
+        return finalEquity / capital - 1;
+    }
+
+    public int getTradeCount() {
+        return tradeCount;
+    }
+
+    //bar the trade was bought on
+    public int getTradeEntry(int trade) {
+        return tradeEntries[trade];
+    }
+
+    //bar the trade was sold on, the last bar for a position still open at the end
+    public int getTradeExit(int trade) {
+        return tradeExits[trade];
+    }
+
+    public float getTradeEntryPrice(int trade) {
+        return tradeEntryPrices[trade];
+    }
+
+    public float getTradeExitPrice(int trade) {
+        return tradeExitPrices[trade];
+    }
+
+    //return of the trade after fees and slippage
+    public float getTradeReturn(int trade) {
+        return tradeReturns[trade];
+    }
+
+    public int getWinningTrades() {
+        int wins = 0;
+        for (int i = 0; i < tradeCount; i++) {
+            if (tradeReturns[i] > 0) wins++;
+        }
+        return wins;
+    }
+
+    private void openTrade(int bar, float price) {
+        if (tradeCount == tradeEntries.length) {
+            int capacity = 2 * tradeCount;
+            tradeEntries = Arrays.copyOf(tradeEntries, capacity);
+            tradeExits = Arrays.copyOf(tradeExits, capacity);
+            tradeEntryPrices = Arrays.copyOf(tradeEntryPrices, capacity);
+            tradeExitPrices = Arrays.copyOf(tradeExitPrices, capacity);
+            tradeReturns = Arrays.copyOf(tradeReturns, capacity);
+        }
+        tradeEntries[tradeCount] = bar;
+        tradeEntryPrices[tradeCount] = price;
+    }
+
+    private void closeTrade(int bar, float price, double tradeReturn) {
+        tradeExits[tradeCount] = bar;
+        tradeExitPrices[tradeCount] = price;
+        tradeReturns[tradeCount] = (float) tradeReturn;
+        tradeCount++;
+    }
+
+    //comparisons with a NaN (warm up) are false
+    private static boolean holds(Strategy.Rule rule, float[] first, float[] second, float[] highs, float[] lows, int i) {
+        switch (rule.type) {
+            case Strategy.Rule.CROSSES_ABOVE:
+                return value(rule.first, first, i - 1) <= value(rule.second, second, i - 1)
+                        && value(rule.first, first, i) > value(rule.second, second, i);
+            case Strategy.Rule.CROSSES_BELOW:
+                return value(rule.first, first, i - 1) >= value(rule.second, second, i - 1)
+                        && value(rule.first, first, i) < value(rule.second, second, i);
+            case Strategy.Rule.LOW_TOUCHES:
+                return lows[i] <= value(rule.first, first, i);
+            case Strategy.Rule.HIGH_TOUCHES:
+                return highs[i] >= value(rule.first, first, i);
+            default:
+                throw new IllegalArgumentException("unknown rule " + rule.type);
+        }
+    }
+
+    private static float value(Alert.Line line, float[] values, int i) {
+        return line.kind == Alert.Line.CONSTANT ? line.value : values[i];
+    }
+
+    //the cached lines stay valid while the series is the same one with the same last bar
+    private void prepareLines(CandleSeries series) {
+        int n = series.size();
+        long last = n > 0 ? series.getTimestamp(n - 1) : Long.MIN_VALUE;
+        if (series == linesSeries && n == linesSize && last == linesLastTimestamp) return;
+        linesSeries = series;
+        linesSize = n;
+        linesLastTimestamp = last;
+        for (CachedLine line : lines.values()) {
+            line.valid = false;
+        }
+    }
+
+    private float[] line(Alert.Line line, CandleSeries series, int slot, Cancellation cancellation) {
+        switch (line.kind) {
+            case Alert.Line.CLOSE:
+                return series.closes();
+            case Alert.Line.CONSTANT:
+                return null;
+        }
+        int n = series.size();
+        if (prefixSums != null) {
+            if (scratch[slot].length < n) scratch[slot] = new float[n];
+            float[] out = scratch[slot];
+            switch (line.kind) {
+                case Alert.Line.SMA:
+                    prefixSums.sma(line.period, out);
+                    break;
+                case Alert.Line.EMA:
+                    //an ema has no window sum, it is run like any other
+                    IndicatorKernels.ema(series.closes(), n, line.period, out, cancellation);
+                    break;
+                default:
+                    bands(line, n, out);
+            }
+            return out;
+        }
+        CachedLine cached = cachedLine(line, n);
+        if (cached.valid) return cached.values;
+        switch (line.kind) {
+            case Alert.Line.SMA:
+                IndicatorKernels.sma(series.closes(), n, line.period, cached.values, cancellation);
+                break;
+            case Alert.Line.EMA:
+                IndicatorKernels.ema(series.closes(), n, line.period, cached.values, cancellation);
+                break;
+            default:
+                CachedLine[] bands = cached.bands;
+                IndicatorKernels.bollingerBands(series.closes(), n, line.period, line.value,
+                        bands[0].values, bands[1].values, bands[2].values, cancellation);
+                bands[0].valid = bands[1].valid = bands[2].valid = true;
+        }
+        cached.valid = true;
+        return cached.values;
+    }
+
+    //bollinger line from the mean and deviation of its period, computed when the period changes
+    private void bands(Alert.Line line, int n, float[] out) {
+        if (bandMean.length < n) {
+            bandMean = new float[n];
+            bandDeviation = new float[n];
+            bandPeriod = 0;
+        }
+        if (bandPeriod != line.period) {
+            prefixSums.deviations(line.period, bandMean, bandDeviation);
+            bandPeriod = line.period;
+        }
+        float offset = line.kind == Alert.Line.BOLLINGER_UPPER ? line.value
+                : line.kind == Alert.Line.BOLLINGER_LOWER ? -line.value : 0;
+        for (int i = 0; i < n; i++) {
+            out[i] = bandMean[i] + offset * bandDeviation[i];
+        }
+    }
+
+    //allocates only the first time a line is used and when the series outgrew its buffer
+    private CachedLine cachedLine(Alert.Line line, int size) {
+        CachedLine cached = lines.get(line.key);
+        if (cached == null) {
+            if (line.isBollinger()) {
+                CachedLine[] bands = {
+                        buffer(Alert.bollingerMiddle(line.period, line.value).key),
+                        buffer(Alert.bollingerUpper(line.period, line.value).key),
+                        buffer(Alert.bollingerLower(line.period, line.value).key)
+                };
+                for (CachedLine band : bands) {
+                    band.bands = bands;
+                }
+            }
+            cached = buffer(line.key);
+        }
+        if (cached.values == null || cached.values.length < size) {
+            CachedLine[] group = cached.bands != null ? cached.bands : new CachedLine[]{cached};
+            for (CachedLine member : group) {
+                member.values = new float[size];
+                member.valid = false;
+            }
+        }
+        return cached;
+    }
+
+    private CachedLine buffer(String key) {
+        CachedLine cached = lines.get(key);
+        if (cached == null) {
+            cached = new CachedLine();
+            lines.put(key, cached);
+        }
+        return cached;
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.gutapp.engine;
+
+//rolls finer bars up into coarser ones (5m into 15m, 1h or one bar per session)
+//buckets are bucketMillis long and aligned to alignMillis, so hourly bars can start at the session open
+//an aggregated bar carries the timestamp of its first input bar
+public class BarAggregator implements BarSink {
+    private final long bucketMillis;
+    private final long alignMillis;
+    private final BarSink downstream;
+
+    private boolean open;
+    private long bucket;
+    private long timestamp;
+    private float first;
+    private float high;
+    private float low;
+    private float last;
+    private long volume;
+
+    public BarAggregator(long bucketMillis, long alignMillis, BarSink downstream) {
+        if (bucketMillis <= 0) {
+            throw new IllegalArgumentException("bucket must be positive: " + bucketMillis);
+        }
+        this.bucketMillis = bucketMillis;
+        this.alignMillis = alignMillis;
+        this.downstream = downstream;
+    }
+
+    @Override
+    public void bar(long timestamp, float open, float high, float low, float close, long volume) {
+        long bucket = Math.floorDiv(timestamp - alignMillis, bucketMillis);
+        if (this.open && bucket != this.bucket) {
+            emit();
+        }
+        if (!this.open) {
+            this.open = true;
+            this.bucket = bucket;
+            this.timestamp = timestamp;
+            this.first = open;
+            this.high = high;
+            this.low = low;
+            this.volume = 0;
+        }
+        this.high = Math.max(this.high, high);
+        this.low = Math.min(this.low, low);
+        this.last = close;
+        this.volume += volume;
+    }
+
+    @Override
+    public void finish() {
+        if (open) {
+            emit();
+        }
+        downstream.finish();
+    }
+
+    private void emit() {
+        downstream.bar(timestamp, first, high, low, last, volume);
+        open = false;
+    }
+}
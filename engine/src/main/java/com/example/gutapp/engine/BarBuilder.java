@@ -0,0 +1,120 @@
+package com.example.gutapp.engine;
+
+import java.util.Arrays;
+
+//builds the forming bar of several intervals at once from ticks, O(1) per tick and interval and allocation free
+//bars are aligned to multiples of their interval since alignMillis and carry the start of their bucket as timestamp.
+//when a tick falls into a new bucket the old bar is handed to that interval's sink and a new one is started,
+//the forming bars are read with the getters (the chart only needs their latest state once per frame)
+public class BarBuilder implements TickSource.Listener {
+    private final long[] intervalMillis;
+    private final long alignMillis;
+    private final BarSink[] closed;
+
+    private final boolean[] forming;
+    private final long[] buckets;
+    private final long[] timestamps;
+    private final float[] opens;
+    private final float[] highs;
+    private final float[] lows;
+    private final float[] closes;
+    private final long[] volumes;
+
+    public BarBuilder(long[] intervalMillis, long alignMillis, BarSink[] closed) {
+        if (intervalMillis.length != closed.length) {
+            throw new IllegalArgumentException("one sink per interval");
+        }
+        for (long interval : intervalMillis) {
+            if (interval <= 0) {
+                throw new IllegalArgumentException("interval must be positive: " + interval);
+            }
+        }
+        int n = intervalMillis.length;
+        this.intervalMillis = intervalMillis.clone();
+        this.alignMillis = alignMillis;
+        this.closed = closed.clone();
+        this.forming = new boolean[n];
+        this.buckets = new long[n];
+        this.timestamps = new long[n];
+        this.opens = new float[n];
+        this.highs = new float[n];
+        this.lows = new float[n];
+        this.closes = new float[n];
+        this.volumes = new long[n];
+    }
+
+    @Override
+    public void onTick(long timestamp, float price, long size) {
+        for (int i = 0; i < intervalMillis.length; i++) {
+            long bucket = Math.floorDiv(timestamp - alignMillis, intervalMillis[i]);
+            //a late tick of an already closed bucket is counted in the forming bar
+            if (forming[i] && bucket > buckets[i]) {
+                close(i);
+            }
+            if (!forming[i]) {
+                forming[i] = true;
+                buckets[i] = bucket;
+                timestamps[i] = alignMillis + bucket * intervalMillis[i];
+                opens[i] = price;
+                highs[i] = price;
+                lows[i] = price;
+                volumes[i] = 0;
+            } else {
+                if (price > highs[i]) highs[i] = price;
+                if (price < lows[i]) lows[i] = price;
+            }
+            closes[i] = price;
+            volumes[i] += size;
+        }
+    }
+
+    //closes every forming bar, for the end of a replay. a live feed keeps its forming bars open
+    public void finish() {
+        for (int i = 0; i < intervalMillis.length; i++) {
+            if (forming[i]) close(i);
+            closed[i].finish();
+        }
+    }
+
+    //drops the forming bars without closing them
+    public void reset() {
+        Arrays.fill(forming, false);
+    }
+
+    private void close(int i) {
+        forming[i] = false;
+        closed[i].bar(timestamps[i], opens[i], highs[i], lows[i], closes[i], volumes[i]);
+    }
+
+    public int getIntervalCount() {
+        return intervalMillis.length;
+    }
+
+    public boolean isForming(int interval) {
+        return forming[interval];
+    }
+
+    public long getTimestamp(int interval) {
+        return timestamps[interval];
+    }
+
+    public float getOpen(int interval) {
+        return opens[interval];
+    }
+
+    public float getHigh(int interval) {
+        return highs[interval];
+    }
+
+    public float getLow(int interval) {
+        return lows[interval];
+    }
+
+    public float getClose(int interval) {
+        return closes[interval];
+    }
+
+    public long getVolume(int interval) {
+        return volumes[interval];
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.gutapp.engine;
+
+//plays a stored series back bar by bar at a fixed rate, driven by the caller's clock (a frame callback or a
+//benchmark loop) so it needs no thread of its own. every call hands the bars that became due to a sink
+public class BarReplay {
+    private final CandleSeries series;
+    private final double barsPerSecond;
+    private int position;
+    //the rate is measured from here, moved forward when the replay drops a backlog
+    private long startNanos;
+    private int startPosition;
+
+    //from is the index of the first bar to replay, the bars before it are history already on screen
+    public BarReplay(CandleSeries series, int from, double barsPerSecond) {
+        if (barsPerSecond <= 0) {
+            throw new IllegalArgumentException("rate must be positive: " + barsPerSecond);
+        }
+        if (from < 0 || from > series.size()) {
+            throw new IndexOutOfBoundsException("from " + from + " of " + series.size());
+        }
+        this.series = series;
+        this.barsPerSecond = barsPerSecond;
+        this.position = from;
+        this.startPosition = from;
+    }
+
+    public void start(long nowNanos) {
+        startNanos = nowNanos;
+        startPosition = position;
+    }
+
+    //emits the bars due by nowNanos, at most maxBars of them, and returns how many
+    //when the caller falls more than maxBars behind the backlog is skipped in time (not in bars), so a stalled
+    //frame slows the replay down for a moment instead of making it burst afterwards
+    public int advance(long nowNanos, int maxBars, BarSink sink) {
+        long due = startPosition + (long) ((nowNanos - startNanos) * barsPerSecond / 1e9);
+        if (due > series.size()) due = series.size();
+        int count = (int) Math.max(0, Math.min(due - position, maxBars));
+        for (int i = 0; i < count; i++) {
+            int p = position++;
+            sink.bar(series.getTimestamp(p), series.getOpen(p), series.getHigh(p), series.getLow(p),
+                    series.getClose(p), series.getVolume(p));
+        }
+        if (due > position) {
+            start(nowNanos);
+        }
+        return count;
+    }
+
+    public boolean isFinished() {
+        return position == series.size();
+    }
+
+    //index of the next bar to replay
+    public int getPosition() {
+        return position;
+    }
+}
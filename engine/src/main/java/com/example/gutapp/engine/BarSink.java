@@ -0,0 +1,15 @@
+package com.example.gutapp.engine;
+
+//receives bars one at a time in ascending time order, lets producers stream without building a series
+public interface BarSink {
+    void bar(long timestamp, float open, float high, float low, float close, long volume);
+
+    //called once after the last bar
+    default void finish() {
+    }
+
+    //collects the bars into a series
+    static BarSink into(CandleSeries series) {
+        return series::add;
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.gutapp.engine;
+
+import java.nio.ByteBuffer;
+
+//reads a BitWriter stream from a big endian buffer, start must be word aligned and the stream padded to whole words
+final class BitReader {
+    private final ByteBuffer data;
+    private int start;
+    private long position;
+
+    BitReader(ByteBuffer data) {
+        this.data = data;
+    }
+
+    void reset(int startByte) {
+        this.start = startByte;
+        this.position = 0;
+    }
+
+    //next count bits as the low bits of the result, count 1..64
+    long read(int count) {
+        int used = (int) (position & 63);
+        long word = data.getLong(start + (int) (position >>> 6) * 8);
+        int available = 64 - used;
+        position += count;
+        if (count <= available) {
+            return (word << used) >>> (64 - count);
+        }
+        int rest = count - available;
+        long high = word & ((1L << available) - 1);
+        long low = data.getLong(start + (int) (((position - count) >>> 6) + 1) * 8) >>> (64 - rest);
+        return (high << rest) | low;
+    }
+
+    boolean readBit() {
+        return read(1) != 0;
+    }
+}
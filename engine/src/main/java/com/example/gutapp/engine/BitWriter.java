@@ -0,0 +1,47 @@
+package com.example.gutapp.engine;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+//msb first bit stream into 64 bit words, used by CompressedSeries
+final class BitWriter {
+    private long[] words = new long[64];
+    private long bits;
+
+    //writes the low count bits of value, count 1..64
+    void write(long value, int count) {
+        if (count < 64) value &= (1L << count) - 1;
+        int word = (int) (bits >>> 6);
+        int free = 64 - (int) (bits & 63);
+        if (word + 1 >= words.length) words = Arrays.copyOf(words, words.length * 2);
+        if (count <= free) {
+            words[word] |= value << (free - count);
+        } else {
+            int rest = count - free;
+            words[word] |= value >>> rest;
+            words[word + 1] |= value << (64 - rest);
+        }
+        bits += count;
+    }
+
+    void writeBit(boolean bit) {
+        write(bit ? 1 : 0, 1);
+    }
+
+    //pads the stream to a whole word so BitReader can always read full words
+    void alignToWord() {
+        bits = (bits + 63) & ~63L;
+    }
+
+    //bytes of the whole words written so far
+    int byteCount() {
+        return (int) ((bits + 63) >>> 6) * 8;
+    }
+
+    void writeTo(ByteBuffer out) {
+        int count = (int) ((bits + 63) >>> 6);
+        for (int i = 0; i < count; i++) {
+            out.putLong(words[i]);
+        }
+    }
+}
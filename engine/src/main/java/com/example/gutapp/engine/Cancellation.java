@@ -0,0 +1,20 @@
+package com.example.gutapp.engine;
+
+import java.util.concurrent.CancellationException;
+
+//cooperative cancellation seen by the kernels, the app's CancellationToken implements it
+//kernels call throwIfCancelled every CHECK_MASK + 1 bars so superseded work stops early
+public interface Cancellation {
+    int CHECK_MASK = 1023;
+
+    //never cancelled, for benchmarks, tests and synchronous callers
+    Cancellation NONE = () -> false;
+
+    boolean isCancelled();
+
+    default void throwIfCancelled() {
+        if (isCancelled()) {
+            throw new CancellationException("superseded by a newer request");
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.gutapp.engine;
+
+import java.nio.FloatBuffer;
+import java.nio.LongBuffer;
+
+//zero copy view of a range of bars in a ColumnarCandleFile, reads go straight to the mapped pages of the column files
+//index 0 is the first bar of the range
+public final class CandleColumns {
+    private final LongBuffer timestamps;
+    private final FloatBuffer open;
+    private final FloatBuffer high;
+    private final FloatBuffer low;
+    private final FloatBuffer close;
+    private final LongBuffer volume;
+    private final int first;
+    private final int size;
+
+    CandleColumns(LongBuffer timestamps, FloatBuffer open, FloatBuffer high, FloatBuffer low, FloatBuffer close,
+                  LongBuffer volume, int first, int size) {
+        this.timestamps = timestamps;
+        this.open = open;
+        this.high = high;
+        this.low = low;
+        this.close = close;
+        this.volume = volume;
+        this.first = first;
+        this.size = size;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    //position of the range's first bar in the whole file
+    public int getFirstIndex() {
+        return first;
+    }
+
+    public long getTimestamp(int index) {
+        return timestamps.get(index);
+    }
+
+    public float getOpen(int index) {
+        return open.get(index);
+    }
+
+    public float getHigh(int index) {
+        return high.get(index);
+    }
+
+    public float getLow(int index) {
+        return low.get(index);
+    }
+
+    public float getClose(int index) {
+        return close.get(index);
+    }
+
+    public long getVolume(int index) {
+        return volume.get(index);
+    }
+
+    //copies the range into the primitive arrays the kernels take
+    public CandleSeries toSeries() {
+        CandleSeries series = new CandleSeries(size);
+        for (int i = 0; i < size; i++) {
+            series.add(timestamps.get(i), open.get(i), high.get(i), low.get(i), close.get(i), volume.get(i));
+        }
+        return series;
+    }
+}
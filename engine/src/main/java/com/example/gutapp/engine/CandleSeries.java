@@ -0,0 +1,106 @@
+package com.example.gutapp.engine;
+
+import java.util.Arrays;
+
+//columnar candle series, one primitive array per field instead of one object per bar
+//the arrays are exposed directly to the kernels, only the first size() slots are valid
+public class CandleSeries {
+    private long[] timestamps;
+    private float[] open;
+    private float[] high;
+    private float[] low;
+    private float[] close;
+    private long[] volume;
+    private int size;
+
+    public CandleSeries(int capacity) {
+        capacity = Math.max(capacity, 16);
+        this.timestamps = new long[capacity];
+        this.open = new float[capacity];
+        this.high = new float[capacity];
+        this.low = new float[capacity];
+        this.close = new float[capacity];
+        this.volume = new long[capacity];
+    }
+
+    //timestamps are epoch millis and must be appended in ascending order
+    public void add(long timestamp, float open, float high, float low, float close, long volume) {
+        if (size == timestamps.length) {
+            grow();
+        }
+        this.timestamps[size] = timestamp;
+        this.open[size] = open;
+        this.high[size] = high;
+        this.low[size] = low;
+        this.close[size] = close;
+        this.volume[size] = volume;
+        size++;
+    }
+
+    private void grow() {
+        int capacity = timestamps.length + (timestamps.length >> 1);
+        timestamps = Arrays.copyOf(timestamps, capacity);
+        open = Arrays.copyOf(open, capacity);
+        high = Arrays.copyOf(high, capacity);
+        low = Arrays.copyOf(low, capacity);
+        close = Arrays.copyOf(close, capacity);
+        volume = Arrays.copyOf(volume, capacity);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public long getTimestamp(int index) {
+        return timestamps[index];
+    }
+
+    public float getOpen(int index) {
+        return open[index];
+    }
+
+    public float getHigh(int index) {
+        return high[index];
+    }
+
+    public float getLow(int index) {
+        return low[index];
+    }
+
+    public float getClose(int index) {
+        return close[index];
+    }
+
+    public long getVolume(int index) {
+        return volume[index];
+    }
+
+    //backing arrays, valid up to size()
+    public long[] timestamps() {
+        return timestamps;
+    }
+
+    public float[] opens() {
+        return open;
+    }
+
+    public float[] highs() {
+        return high;
+    }
+
+    public float[] lows() {
+        return low;
+    }
+
+    public float[] closes() {
+        return close;
+    }
+
+    public long[] volumes() {
+        return volume;
+    }
+}
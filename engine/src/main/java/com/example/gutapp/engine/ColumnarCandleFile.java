@@ -0,0 +1,272 @@
+package com.example.gutapp.engine;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+//append-only columnar store of one candle series on disk
+//every field is its own file of little endian primitives (timestamp and volume 8 bytes, ohlc 4 bytes), a bar takes 32
+//bytes and a scan of one field touches only its column. the header file holds the committed bar count and every
+//INDEX_STRIDE-th timestamp, a range lookup binary searches that index and then one stride of the mapped timestamps.
+//ranges are handed out as mapped views (CandleColumns), nothing is copied on load
+//appended bars are buffered and become visible to reads on flush. the count is written after the columns, a crash
+//mid flush loses that flush and the torn tail is cut off on the next open
+public class ColumnarCandleFile implements Closeable {
+    static final int INDEX_STRIDE = 1024;
+    private static final int MAGIC = 0x47435346;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+    private static final int WRITE_BATCH = 4096;
+
+    private static final int TIMESTAMP = 0;
+    private static final int OPEN = 1;
+    private static final int HIGH = 2;
+    private static final int LOW = 3;
+    private static final int CLOSE = 4;
+    private static final int VOLUME = 5;
+    private static final String[] COLUMN_FILES = {"timestamp.col", "open.col", "high.col", "low.col", "close.col", "volume.col"};
+    private static final int[] WIDTHS = {8, 4, 4, 4, 4, 8};
+
+    private final FileChannel header;
+    private final FileChannel[] columns = new FileChannel[COLUMN_FILES.length];
+    private final ByteBuffer[] pending = new ByteBuffer[COLUMN_FILES.length];
+    private int pendingCount;
+    private int size;
+    private long lastTimestamp = Long.MIN_VALUE;
+
+    private long[] index = new long[16];
+    private int indexSize;
+    private int indexWritten;
+
+    //timestamp column mapped for lookups, remapped once the file grew
+    private LongBuffer mappedTimestamps;
+    private int mappedSize = -1;
+
+    private ColumnarCandleFile(File dir) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("can't create " + dir);
+        }
+        header = FileChannel.open(new File(dir, "header").toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        for (int column = 0; column < COLUMN_FILES.length; column++) {
+            columns[column] = FileChannel.open(new File(dir, COLUMN_FILES[column]).toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            pending[column] = ByteBuffer.allocate(WRITE_BATCH * WIDTHS[column]).order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+
+    //opens the series stored in dir, an empty one when the directory doesn't exist yet
+    public static ColumnarCandleFile open(File dir) throws IOException {
+        ColumnarCandleFile file = new ColumnarCandleFile(dir);
+        try {
+            file.load();
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+        return file;
+    }
+
+    private void load() throws IOException {
+        ByteBuffer fixed = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        if (header.size() < HEADER_BYTES) {
+            fixed.putInt(MAGIC).putInt(VERSION).putLong(0).flip();
+            writeFully(header, fixed, 0);
+            header.truncate(HEADER_BYTES);
+            for (FileChannel column : columns) column.truncate(0);
+            return;
+        }
+        readFully(header, fixed, 0);
+        if (fixed.getInt(0) != MAGIC || fixed.getInt(4) != VERSION) {
+            throw new IOException("not a candle column file");
+        }
+        long count = fixed.getLong(8);
+        //columns shorter than the count can only mean a damaged file, a longer tail is an unfinished flush
+        for (int column = 0; column < columns.length; column++) {
+            if (columns[column].size() < count * WIDTHS[column]) {
+                throw new IOException(COLUMN_FILES[column] + " is shorter than the header count");
+            }
+            columns[column].truncate(count * WIDTHS[column]);
+        }
+        size = (int) count;
+
+        int entries = (size + INDEX_STRIDE - 1) / INDEX_STRIDE;
+        ByteBuffer stored = ByteBuffer.allocate(entries * 8).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(header, stored, HEADER_BYTES);
+        header.truncate(HEADER_BYTES + entries * 8L);
+        index = new long[Math.max(16, entries)];
+        for (int i = 0; i < entries; i++) {
+            index[i] = stored.getLong(i * 8);
+        }
+        indexSize = entries;
+        indexWritten = entries;
+        if (size > 0) {
+            lastTimestamp = timestamps().get(size - 1);
+        }
+    }
+
+    //timestamps must be ascending, bars at or before the last one are rejected
+    public synchronized void append(long timestamp, float open, float high, float low, float close, long volume) throws IOException {
+        if (timestamp <= lastTimestamp) {
+            throw new IllegalArgumentException("bar at " + timestamp + " is not after the last bar at " + lastTimestamp);
+        }
+        int position = size + pendingCount;
+        if (position % INDEX_STRIDE == 0) {
+            if (indexSize == index.length) index = Arrays.copyOf(index, indexSize * 2);
+            index[indexSize++] = timestamp;
+        }
+        pending[TIMESTAMP].putLong(timestamp);
+        pending[OPEN].putFloat(open);
+        pending[HIGH].putFloat(high);
+        pending[LOW].putFloat(low);
+        pending[CLOSE].putFloat(close);
+        pending[VOLUME].putLong(volume);
+        lastTimestamp = timestamp;
+        if (++pendingCount == WRITE_BATCH) {
+            writePending();
+        }
+    }
+
+    public synchronized void append(CandleSeries series) throws IOException {
+        for (int i = 0; i < series.size(); i++) {
+            append(series.getTimestamp(i), series.getOpen(i), series.getHigh(i), series.getLow(i), series.getClose(i), series.getVolume(i));
+        }
+    }
+
+    //makes the appended bars visible to reads
+    public synchronized void flush() throws IOException {
+        if (pendingCount > 0) {
+            writePending();
+        }
+    }
+
+    private void writePending() throws IOException {
+        for (int column = 0; column < columns.length; column++) {
+            ByteBuffer buffer = pending[column];
+            buffer.flip();
+            writeFully(columns[column], buffer, (long) size * WIDTHS[column]);
+            buffer.clear();
+        }
+        if (indexWritten < indexSize) {
+            ByteBuffer entries = ByteBuffer.allocate((indexSize - indexWritten) * 8).order(ByteOrder.LITTLE_ENDIAN);
+            for (int i = indexWritten; i < indexSize; i++) entries.putLong(index[i]);
+            entries.flip();
+            writeFully(header, entries, HEADER_BYTES + indexWritten * 8L);
+            indexWritten = indexSize;
+        }
+        size += pendingCount;
+        pendingCount = 0;
+        ByteBuffer count = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN).putLong(0, size);
+        writeFully(header, count, 8);
+    }
+
+    //committed bars
+    public synchronized int size() {
+        return size;
+    }
+
+    //timestamp of the last appended bar, flushed or not, Long.MIN_VALUE when there is none
+    public synchronized long getLastTimestamp() {
+        return lastTimestamp;
+    }
+
+    //index of the first committed bar at or after timestamp, size() when there is none
+    public synchronized int indexOf(long timestamp) throws IOException {
+        if (size == 0) return 0;
+        //index entries of committed bars only, the last ones may belong to unflushed bars
+        int entries = (size + INDEX_STRIDE - 1) / INDEX_STRIDE;
+        int block = Arrays.binarySearch(index, 0, entries, timestamp);
+        if (block >= 0) return block * INDEX_STRIDE;
+        block = -block - 2;
+        if (block < 0) return 0;
+        LongBuffer timestamps = timestamps();
+        int low = block * INDEX_STRIDE;
+        int high = Math.min(size, low + INDEX_STRIDE);
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (timestamps.get(middle) < timestamp) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    //bars from <= i < to as mapped views
+    public synchronized CandleColumns read(int from, int to) throws IOException {
+        if (from < 0 || to > size || from > to) {
+            throw new IndexOutOfBoundsException("range " + from + ".." + to + " of " + size + " bars");
+        }
+        int count = to - from;
+        return new CandleColumns(
+                map(TIMESTAMP, from, count).asLongBuffer(),
+                map(OPEN, from, count).asFloatBuffer(),
+                map(HIGH, from, count).asFloatBuffer(),
+                map(LOW, from, count).asFloatBuffer(),
+                map(CLOSE, from, count).asFloatBuffer(),
+                map(VOLUME, from, count).asLongBuffer(),
+                from, count);
+    }
+
+    //bars with fromMillis <= timestamp < toMillis
+    public synchronized CandleColumns readRange(long fromMillis, long toMillis) throws IOException {
+        int from = indexOf(fromMillis);
+        int to = Math.max(from, indexOf(toMillis));
+        return read(from, to);
+    }
+
+    public synchronized CandleColumns readAll() throws IOException {
+        return read(0, size);
+    }
+
+    private LongBuffer timestamps() throws IOException {
+        if (mappedSize != size) {
+            mappedTimestamps = map(TIMESTAMP, 0, size).asLongBuffer();
+            mappedSize = size;
+        }
+        return mappedTimestamps;
+    }
+
+    private ByteBuffer map(int column, int from, int count) throws IOException {
+        if (count == 0) {
+            return ByteBuffer.allocate(0).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        int width = WIDTHS[column];
+        return columns[column].map(FileChannel.MapMode.READ_ONLY, (long) from * width, (long) count * width)
+                .order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    //flushes what is pending, the mapped views handed out stay readable after close
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            header.close();
+            for (FileChannel column : columns) {
+                column.close();
+            }
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) throw new IOException("unexpected end of " + channel);
+            position += read;
+        }
+        buffer.flip();
+    }
+}
@@ -0,0 +1,316 @@
+package com.example.gutapp.engine;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+//compressed block format for candle history and cached indicator lines
+//rows are cut into blocks of blockSize, every block is encoded on its own so any block decodes without the ones before
+//it. inside a block each column is one run of bits: long columns (timestamps, volume) as delta of delta in gorilla's
+//variable width buckets, float columns (prices, indicator values) as the xor of their bits with the previous value,
+//storing only the meaningful bits between the leading and trailing zeros. a directory of block offsets and the first
+//value of long column 0 (the timestamp) finds a block by row or by timestamp
+//layout, big endian: header, directory (int offset, long first key per block), word aligned block payloads
+public final class CompressedSeries {
+    public static final int DEFAULT_BLOCK_SIZE = 1024;
+
+    private static final int MAGIC = 0x47435331;
+    private static final int HEADER_BYTES = 20;
+    private static final int DIRECTORY_ENTRY_BYTES = 12;
+
+    private final ByteBuffer data;
+    private final int longColumns;
+    private final int floatColumns;
+    private final int size;
+    private final int blockSize;
+    private final int blockCount;
+    private final BitReader reader;
+
+    private CompressedSeries(ByteBuffer data) {
+        this.data = data.duplicate().order(ByteOrder.BIG_ENDIAN);
+        if (this.data.getInt(0) != MAGIC) {
+            throw new IllegalArgumentException("not a compressed series");
+        }
+        this.longColumns = this.data.get(4);
+        this.floatColumns = this.data.get(5);
+        this.size = this.data.getInt(8);
+        this.blockSize = this.data.getInt(12);
+        this.blockCount = this.data.getInt(16);
+        this.reader = new BitReader(this.data);
+    }
+
+    //reads a series written by encode, the buffer is used in place (it may be a mapped file)
+    public static CompressedSeries wrap(ByteBuffer data) {
+        return new CompressedSeries(data);
+    }
+
+    public static CompressedSeries wrap(byte[] data) {
+        return new CompressedSeries(ByteBuffer.wrap(data));
+    }
+
+    //candles as longs {timestamp, volume} and floats {open, high, low, close}
+    public static byte[] encode(CandleSeries series, int blockSize) {
+        return encode(new long[][]{series.timestamps(), series.volumes()},
+                new float[][]{series.opens(), series.highs(), series.lows(), series.closes()}, series.size(), blockSize);
+    }
+
+    //an indicator line as floats {value}, warm up NaNs included, rows are found by bar index
+    public static byte[] encode(LineSeries line, int blockSize) {
+        return encode(new long[0][], new float[][]{line.values()}, line.size(), blockSize);
+    }
+
+    //the first size rows of every column, long column 0 should ascend when blocks are looked up by it
+    public static byte[] encode(long[][] longs, float[][] floats, int size, int blockSize) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("block size must be positive: " + blockSize);
+        }
+        if (longs.length > 127 || floats.length > 127) {
+            throw new IllegalArgumentException("too many columns");
+        }
+        int blockCount = (size + blockSize - 1) / blockSize;
+        int payloadStart = align(HEADER_BYTES + blockCount * DIRECTORY_ENTRY_BYTES);
+
+        //encode the blocks first, the directory needs their offsets
+        BitWriter[] blocks = new BitWriter[blockCount];
+        int[] offsets = new int[blockCount];
+        int offset = payloadStart;
+        for (int block = 0; block < blockCount; block++) {
+            int from = block * blockSize;
+            int to = Math.min(size, from + blockSize);
+            BitWriter writer = new BitWriter();
+            for (long[] column : longs) {
+                encodeLongs(writer, column, from, to);
+            }
+            for (float[] column : floats) {
+                encodeFloats(writer, column, from, to);
+            }
+            writer.alignToWord();
+            blocks[block] = writer;
+            offsets[block] = offset;
+            offset += writer.byteCount();
+        }
+
+        ByteBuffer out = ByteBuffer.allocate(offset).order(ByteOrder.BIG_ENDIAN);
+        out.putInt(MAGIC).put((byte) longs.length).put((byte) floats.length).putShort((short) 0)
+                .putInt(size).putInt(blockSize).putInt(blockCount);
+        for (int block = 0; block < blockCount; block++) {
+            out.putInt(offsets[block]);
+            out.putLong(longs.length > 0 ? longs[0][block * blockSize] : (long) block * blockSize);
+        }
+        out.position(payloadStart);
+        for (BitWriter writer : blocks) {
+            writer.writeTo(out);
+        }
+        return out.array();
+    }
+
+    private static int align(int bytes) {
+        return (bytes + 7) & ~7;
+    }
+
+    private static void encodeLongs(BitWriter writer, long[] column, int from, int to) {
+        long previous = column[from];
+        long previousDelta = 0;
+        writer.write(previous, 64);
+        for (int i = from + 1; i < to; i++) {
+            long delta = column[i] - previous;
+            long deltaOfDelta = delta - previousDelta;
+            //zigzag, small negative and positive values both get few bits
+            long zigzag = (deltaOfDelta << 1) ^ (deltaOfDelta >> 63);
+            if (zigzag == 0) {
+                writer.write(0b0, 1);
+            } else if (zigzag >>> 7 == 0) {
+                writer.write(0b10, 2);
+                writer.write(zigzag, 7);
+            } else if (zigzag >>> 9 == 0) {
+                writer.write(0b110, 3);
+                writer.write(zigzag, 9);
+            } else if (zigzag >>> 12 == 0) {
+                writer.write(0b1110, 4);
+                writer.write(zigzag, 12);
+            } else {
+                writer.write(0b1111, 4);
+                writer.write(zigzag, 64);
+            }
+            previous = column[i];
+            previousDelta = delta;
+        }
+    }
+
+    private static void encodeFloats(BitWriter writer, float[] column, int from, int to) {
+        int previous = Float.floatToRawIntBits(column[from]);
+        int previousLeading = -1;
+        int previousTrailing = 0;
+        writer.write(previous, 32);
+        for (int i = from + 1; i < to; i++) {
+            int bits = Float.floatToRawIntBits(column[i]);
+            int xor = bits ^ previous;
+            previous = bits;
+            if (xor == 0) {
+                writer.write(0b0, 1);
+                continue;
+            }
+            int leading = Integer.numberOfLeadingZeros(xor);
+            int trailing = Integer.numberOfTrailingZeros(xor);
+            if (previousLeading >= 0 && leading >= previousLeading && trailing >= previousTrailing) {
+                //fits the window of the previous value, only the bits are written
+                writer.write(0b10, 2);
+                writer.write(xor >>> previousTrailing, 32 - previousLeading - previousTrailing);
+            } else {
+                int length = 32 - leading - trailing;
+                writer.write(0b11, 2);
+                writer.write(leading, 5);
+                writer.write(length - 1, 5);
+                writer.write(xor >>> trailing, length);
+                previousLeading = leading;
+                previousTrailing = trailing;
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    public int getBlockCount() {
+        return blockCount;
+    }
+
+    public int getLongColumnCount() {
+        return longColumns;
+    }
+
+    public int getFloatColumnCount() {
+        return floatColumns;
+    }
+
+    //encoded size in bytes
+    public int byteSize() {
+        return data.capacity();
+    }
+
+    //block holding the last row whose long column 0 is <= key, 0 when key is before the first row
+    public int blockOf(long key) {
+        int low = 0;
+        int high = blockCount - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (firstKey(middle) <= key) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    //first row whose long column 0 is >= key, size() when there is none. decodes one block's key column
+    public synchronized int indexOf(long key) {
+        if (size == 0) return 0;
+        int block = blockOf(key);
+        int from = block * blockSize;
+        int to = Math.min(size, from + blockSize);
+        reader.reset(data.getInt(HEADER_BYTES + block * DIRECTORY_ENTRY_BYTES));
+        long[] keys = new long[to - from];
+        decodeLongs(reader, keys, 0, to - from);
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] >= key) return from + i;
+        }
+        return to;
+    }
+
+    private long firstKey(int block) {
+        return data.getLong(HEADER_BYTES + block * DIRECTORY_ENTRY_BYTES + 4);
+    }
+
+    //decodes a block into the columns starting at offset, returns the number of rows
+    //the arrays need longColumnCount and floatColumnCount columns with room for blockSize rows
+    public synchronized int decodeBlock(int block, long[][] longs, float[][] floats, int offset) {
+        int rows = Math.min(blockSize, size - block * blockSize);
+        reader.reset(data.getInt(HEADER_BYTES + block * DIRECTORY_ENTRY_BYTES));
+        for (int column = 0; column < longColumns; column++) {
+            decodeLongs(reader, longs[column], offset, rows);
+        }
+        for (int column = 0; column < floatColumns; column++) {
+            decodeFloats(reader, floats[column], offset, rows);
+        }
+        return rows;
+    }
+
+    private static void decodeLongs(BitReader reader, long[] out, int offset, int rows) {
+        long value = reader.read(64);
+        long delta = 0;
+        out[offset] = value;
+        for (int i = 1; i < rows; i++) {
+            long zigzag;
+            if (!reader.readBit()) {
+                zigzag = 0;
+            } else if (!reader.readBit()) {
+                zigzag = reader.read(7);
+            } else if (!reader.readBit()) {
+                zigzag = reader.read(9);
+            } else if (!reader.readBit()) {
+                zigzag = reader.read(12);
+            } else {
+                zigzag = reader.read(64);
+            }
+            delta += (zigzag >>> 1) ^ -(zigzag & 1);
+            value += delta;
+            out[offset + i] = value;
+        }
+    }
+
+    private static void decodeFloats(BitReader reader, float[] out, int offset, int rows) {
+        int bits = (int) reader.read(32);
+        int leading = 0;
+        int trailing = 0;
+        out[offset] = Float.intBitsToFloat(bits);
+        for (int i = 1; i < rows; i++) {
+            if (reader.readBit()) {
+                if (reader.readBit()) {
+                    leading = (int) reader.read(5);
+                    int length = (int) reader.read(5) + 1;
+                    trailing = 32 - leading - length;
+                }
+                bits ^= (int) reader.read(32 - leading - trailing) << trailing;
+            }
+            out[offset + i] = Float.intBitsToFloat(bits);
+        }
+    }
+
+    //candle rows from <= i < to of a series written by encode(CandleSeries, int)
+    public CandleSeries decodeCandles(int from, int to) {
+        if (longColumns != 2 || floatColumns != 4) {
+            throw new IllegalStateException("not a candle series");
+        }
+        long[][] longs = new long[2][blockSize];
+        float[][] floats = new float[4][blockSize];
+        CandleSeries series = new CandleSeries(to - from);
+        for (int block = from / blockSize; block * blockSize < to; block++) {
+            int first = block * blockSize;
+            int rows = decodeBlock(block, longs, floats, 0);
+            for (int i = Math.max(0, from - first); i < rows && first + i < to; i++) {
+                series.add(longs[0][i], floats[0][i], floats[1][i], floats[2][i], floats[3][i], longs[1][i]);
+            }
+        }
+        return series;
+    }
+
+    //the whole line of a series written by encode(LineSeries, int), start is its first value that isn't NaN
+    public LineSeries decodeLine() {
+        if (longColumns != 0 || floatColumns != 1) {
+            throw new IllegalStateException("not an indicator line");
+        }
+        float[] values = new float[blockCount * blockSize];
+        float[][] column = {values};
+        for (int block = 0; block < blockCount; block++) {
+            decodeBlock(block, null, column, block * blockSize);
+        }
+        int start = 0;
+        while (start < size && Float.isNaN(values[start])) start++;
+        return new LineSeries(values, size, start);
+    }
+}
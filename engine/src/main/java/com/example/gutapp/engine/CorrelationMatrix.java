@@ -0,0 +1,325 @@
+package com.example.gutapp.engine;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+//rolling correlation of close to close returns between every pair of a set of symbols
+//a pair's returns are taken between the timestamps both symbols have a bar at, found by a merge join of the two
+//sorted series, so symbols trading in other sessions or with gaps only count the bars they share. every pair keeps
+//running sums over its last window returns and where that window starts and ends in both series, a new bar moves a
+//pair's window forward by merge joining from its end instead of going over the history again
+//a zero or missing close makes no return, the pair's window then holds the finite returns around it
+//pairs are worked on in square tiles of symbols on a fork join pool, a tile only touches its own pairs' state
+//not thread safe, load, addBar and update are called from one thread at a time
+public class CorrelationMatrix {
+    private static final int TILE = 32;
+    private static final int LEAF_TILES = 2;
+
+    private final ForkJoinPool pool;
+    private final int window;
+
+    //per symbol
+    private long[][] timestamps = new long[0][];
+    private float[][] closes = new float[0][];
+    private int[] sizes = new int[0];
+    private boolean[] dirty = new boolean[0];
+    //the symbol's last bar was replaced since the last update
+    private boolean[] replaced = new boolean[0];
+    private int symbols;
+
+    //per pair (i < j) at pair(i, j), head is the common bar the oldest return of the window starts at and tail the
+    //last common bar, -1 before the pair's first one
+    private int[] headA;
+    private int[] headB;
+    private int[] tailA;
+    private int[] tailB;
+    private int[] counts;
+    private double[] sumA;
+    private double[] sumB;
+    private double[] sumAA;
+    private double[] sumBB;
+    private double[] sumAB;
+
+    private int[] tileRows = new int[0];
+    private int[] tileColumns = new int[0];
+
+    public CorrelationMatrix(ForkJoinPool pool, int window) {
+        if (window < 2) {
+            throw new IllegalArgumentException("window must be at least 2 returns: " + window);
+        }
+        this.pool = pool;
+        this.window = window;
+    }
+
+    public int getWindow() {
+        return window;
+    }
+
+    public int size() {
+        return symbols;
+    }
+
+    //starts over with one series per symbol (only timestamps and closes are kept), blocks until every pair was
+    //computed and throws CancellationException once cancellation reads cancelled
+    public void load(CandleSeries[] series, Cancellation cancellation) {
+        int count = series.length;
+        symbols = count;
+        timestamps = new long[count][];
+        closes = new float[count][];
+        sizes = new int[count];
+        dirty = new boolean[count];
+        replaced = new boolean[count];
+        for (int i = 0; i < count; i++) {
+            int size = series[i] != null ? series[i].size() : 0;
+            timestamps[i] = Arrays.copyOf(series[i] != null ? series[i].timestamps() : new long[0], Math.max(size, 16));
+            closes[i] = Arrays.copyOf(series[i] != null ? series[i].closes() : new float[0], Math.max(size, 16));
+            sizes[i] = size;
+        }
+        int pairs = count * (count - 1) / 2;
+        headA = new int[pairs];
+        headB = new int[pairs];
+        tailA = new int[pairs];
+        tailB = new int[pairs];
+        Arrays.fill(headA, -1);
+        Arrays.fill(headB, -1);
+        Arrays.fill(tailA, -1);
+        Arrays.fill(tailB, -1);
+        counts = new int[pairs];
+        sumA = new double[pairs];
+        sumB = new double[pairs];
+        sumAA = new double[pairs];
+        sumBB = new double[pairs];
+        sumAB = new double[pairs];
+
+        int blocks = (count + TILE - 1) / TILE;
+        tileRows = new int[blocks * (blocks + 1) / 2];
+        tileColumns = new int[tileRows.length];
+        int tile = 0;
+        for (int row = 0; row < blocks; row++) {
+            for (int column = row; column < blocks; column++) {
+                tileRows[tile] = row;
+                tileColumns[tile] = column;
+                tile++;
+            }
+        }
+        run(false, cancellation);
+    }
+
+    //appends a bar to a symbol, a bar at the time of its last bar replaces that one (a live bar still forming)
+    //returns false (and keeps nothing) for an older bar. the pairs see it on the next update
+    public boolean addBar(int symbol, long timestamp, float close) {
+        int size = sizes[symbol];
+        if (size > 0 && timestamp == timestamps[symbol][size - 1]) {
+            //an update that reads the last stored bar again changes nothing
+            if (closes[symbol][size - 1] != close) {
+                closes[symbol][size - 1] = close;
+                dirty[symbol] = true;
+                replaced[symbol] = true;
+            }
+            return true;
+        }
+        if (size > 0 && timestamp < timestamps[symbol][size - 1]) return false;
+        if (size == timestamps[symbol].length) {
+            int capacity = size + (size >> 1);
+            timestamps[symbol] = Arrays.copyOf(timestamps[symbol], capacity);
+            closes[symbol] = Arrays.copyOf(closes[symbol], capacity);
+        }
+        timestamps[symbol][size] = timestamp;
+        closes[symbol][size] = close;
+        sizes[symbol] = size + 1;
+        dirty[symbol] = true;
+        return true;
+    }
+
+    //moves the windows of every pair with a symbol that got bars since the last update
+    public void update(Cancellation cancellation) {
+        run(true, cancellation);
+        Arrays.fill(dirty, false);
+        Arrays.fill(replaced, false);
+    }
+
+    //timestamp of a symbol's last bar, Long.MIN_VALUE when it has none
+    public long getLastTimestamp(int symbol) {
+        int size = sizes[symbol];
+        return size > 0 ? timestamps[symbol][size - 1] : Long.MIN_VALUE;
+    }
+
+    //pearson correlation of the pair's last window returns (fewer while the pair has less shared history),
+    //1 on the diagonal and NaN with under 2 returns or a flat symbol
+    public float get(int a, int b) {
+        if (a == b) return 1;
+        int p = a < b ? pair(a, b) : pair(b, a);
+        int n = counts[p];
+        if (n < 2) return Float.NaN;
+        double covariance = n * sumAB[p] - sumA[p] * sumB[p];
+        double varianceA = n * sumAA[p] - sumA[p] * sumA[p];
+        double varianceB = n * sumBB[p] - sumB[p] * sumB[p];
+        if (varianceA <= 0 || varianceB <= 0) return Float.NaN;
+        return (float) Math.max(-1, Math.min(1, covariance / Math.sqrt(varianceA * varianceB)));
+    }
+
+    //returns in the pair's window
+    public int getCount(int a, int b) {
+        if (a == b) return 0;
+        return counts[a < b ? pair(a, b) : pair(b, a)];
+    }
+
+    //the whole matrix row major into out, which holds size() * size() values
+    public void copyTo(float[] out) {
+        for (int a = 0; a < symbols; a++) {
+            out[a * symbols + a] = 1;
+            for (int b = a + 1; b < symbols; b++) {
+                float value = get(a, b);
+                out[a * symbols + b] = value;
+                out[b * symbols + a] = value;
+            }
+        }
+    }
+
+    private int pair(int a, int b) {
+        return a * (2 * symbols - a - 1) / 2 + (b - a - 1);
+    }
+
+    private void run(boolean onlyDirty, Cancellation cancellation) {
+        if (tileRows.length == 0) return;
+        pool.invoke(new Tiles(onlyDirty, cancellation, 0, tileRows.length));
+    }
+
+    private final class Tiles extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final boolean onlyDirty;
+        private final Cancellation cancellation;
+        private final int from;
+        private final int to;
+
+        Tiles(boolean onlyDirty, Cancellation cancellation, int from, int to) {
+            this.onlyDirty = onlyDirty;
+            this.cancellation = cancellation;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > LEAF_TILES) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Tiles(onlyDirty, cancellation, from, middle), new Tiles(onlyDirty, cancellation, middle, to));
+                return;
+            }
+            for (int tile = from; tile < to; tile++) {
+                int rowEnd = Math.min(symbols, (tileRows[tile] + 1) * TILE);
+                int columnStart = tileColumns[tile] * TILE;
+                int columnEnd = Math.min(symbols, columnStart + TILE);
+                for (int a = tileRows[tile] * TILE; a < rowEnd; a++) {
+                    cancellation.throwIfCancelled();
+                    for (int b = Math.max(a + 1, columnStart); b < columnEnd; b++) {
+                        if (onlyDirty && !dirty[a] && !dirty[b]) continue;
+                        int p = pair(a, b);
+                        if ((replaced[a] && tailA[p] == sizes[a] - 1) || (replaced[b] && tailB[p] == sizes[b] - 1)) {
+                            recount(a, b, p);
+                        }
+                        advance(a, b, p);
+                    }
+                }
+            }
+        }
+    }
+
+    //merge joins both series from the pair's last common bar on, every further common bar adds a return
+    private void advance(int a, int b, int p) {
+        long[] timesA = timestamps[a];
+        long[] timesB = timestamps[b];
+        int sizeA = sizes[a];
+        int sizeB = sizes[b];
+        int i = tailA[p] + 1;
+        int j = tailB[p] + 1;
+        while (i < sizeA && j < sizeB) {
+            long timeA = timesA[i];
+            long timeB = timesB[j];
+            if (timeA < timeB) {
+                i++;
+            } else if (timeB < timeA) {
+                j++;
+            } else {
+                common(a, b, p, i, j);
+                i++;
+                j++;
+            }
+        }
+    }
+
+    private void common(int a, int b, int p, int i, int j) {
+        if (tailA[p] < 0) {
+            headA[p] = i;
+            headB[p] = j;
+        } else if (add(a, b, p, tailA[p], tailB[p], i, j, 1) && counts[p] > window) {
+            dropOldest(a, b, p);
+        }
+        tailA[p] = i;
+        tailB[p] = j;
+    }
+
+    //the window's second common bar is the next one both series have after its head, returns that weren't counted
+    //are passed over until a counted one is taken out
+    private void dropOldest(int a, int b, int p) {
+        long[] timesA = timestamps[a];
+        long[] timesB = timestamps[b];
+        boolean dropped = false;
+        while (!dropped) {
+            int i = headA[p] + 1;
+            int j = headB[p] + 1;
+            while (timesA[i] != timesB[j]) {
+                if (timesA[i] < timesB[j]) i++;
+                else j++;
+            }
+            dropped = add(a, b, p, headA[p], headB[p], i, j, -1);
+            headA[p] = i;
+            headB[p] = j;
+        }
+    }
+
+    //sums the window again from its head after the close of the pair's last common bar changed
+    private void recount(int a, int b, int p) {
+        long[] timesA = timestamps[a];
+        long[] timesB = timestamps[b];
+        counts[p] = 0;
+        sumA[p] = sumB[p] = sumAA[p] = sumBB[p] = sumAB[p] = 0;
+        int fromA = headA[p];
+        int fromB = headB[p];
+        int i = fromA + 1;
+        int j = fromB + 1;
+        while (i <= tailA[p] && j <= tailB[p]) {
+            if (timesA[i] < timesB[j]) {
+                i++;
+            } else if (timesB[j] < timesA[i]) {
+                j++;
+            } else {
+                add(a, b, p, fromA, fromB, i, j, 1);
+                fromA = i++;
+                fromB = j++;
+            }
+        }
+        //the last return may have become finite
+        if (counts[p] > window) dropOldest(a, b, p);
+    }
+
+    //adds (or with sign -1 removes) the returns from one common bar to another, false when either isn't finite
+    private boolean add(int a, int b, int p, int fromA, int fromB, int toA, int toB, int sign) {
+        double x = (double) closes[a][toA] / closes[a][fromA] - 1;
+        double y = (double) closes[b][toB] / closes[b][fromB] - 1;
+        if (!Double.isFinite(x) || !Double.isFinite(y)) return false;
+        add(p, x, y, sign);
+        return true;
+    }
+
+    private void add(int p, double x, double y, int sign) {
+        counts[p] += sign;
+        sumA[p] += sign * x;
+        sumB[p] += sign * y;
+        sumAA[p] += sign * x * x;
+        sumBB[p] += sign * y * y;
+        sumAB[p] += sign * x * y;
+    }
+}
@@ -0,0 +1,371 @@
+package com.example.gutapp.engine;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+//streaming ohlcv csv parser for files of millions of rows
+//the file is read through one byte buffer and numbers and timestamps are parsed straight from the bytes, so no
+//String is made per field. symbol and timeframe repeat on every row, their String is only made again when the bytes
+//change. rows that don't parse are skipped and counted instead of failing the whole file
+public class CsvBarReader {
+    private static final int MAX_COLUMNS = 64;
+    private static final long MINUTE_MS = 60_000L;
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+    //compiled timestamp pattern parts
+    private static final byte LITERAL = 0;
+    private static final byte YEAR = 1;
+    private static final byte MONTH = 2;
+    private static final byte DAY = 3;
+    private static final byte HOUR = 4;
+    private static final byte MINUTE = 5;
+    private static final byte SECOND = 6;
+
+    public interface RowSink {
+        //symbol and timeframe are null when the file has no column for them
+        void row(String symbol, String timeframe, long timestamp, float open, float high, float low, float close, long volume);
+    }
+
+    private final CsvFormat format;
+    private final int bufferSize;
+    private final byte delimiter;
+    private final long epochScale;
+    private final byte[] patternKinds;
+    private final byte[] patternWidths;
+    private final byte[] patternLiterals;
+    private final long utcOffsetMillis;
+
+    private final int[] starts = new int[MAX_COLUMNS];
+    private final int[] ends = new int[MAX_COLUMNS];
+    private final Token symbol = new Token();
+    private final Token timeframe = new Token();
+    private int[] columns;
+    private boolean firstLine;
+    private long rows;
+    private long skipped;
+
+    public CsvBarReader(CsvFormat format) {
+        this(format, 1 << 16);
+    }
+
+    CsvBarReader(CsvFormat format, int bufferSize) {
+        this.format = format;
+        this.bufferSize = bufferSize;
+        this.delimiter = format.getDelimiter();
+        this.utcOffsetMillis = format.getUtcOffsetMinutes() * MINUTE_MS;
+
+        String pattern = format.getTimestampPattern();
+        if (CsvFormat.EPOCH_SECONDS.equals(pattern)) {
+            epochScale = 1000;
+        } else if (CsvFormat.EPOCH_MILLIS.equals(pattern)) {
+            epochScale = 1;
+        } else {
+            epochScale = 0;
+        }
+        byte[] kinds = new byte[pattern.length()];
+        byte[] widths = new byte[pattern.length()];
+        byte[] literals = new byte[pattern.length()];
+        int parts = 0;
+        for (int i = 0; epochScale == 0 && i < pattern.length(); ) {
+            char c = pattern.charAt(i);
+            byte kind = kindOf(c);
+            int run = 1;
+            if (kind != LITERAL) {
+                while (i + run < pattern.length() && pattern.charAt(i + run) == c) run++;
+            }
+            kinds[parts] = kind;
+            widths[parts] = (byte) run;
+            literals[parts] = (byte) c;
+            parts++;
+            i += run;
+        }
+        this.patternKinds = Arrays.copyOf(kinds, parts);
+        this.patternWidths = Arrays.copyOf(widths, parts);
+        this.patternLiterals = Arrays.copyOf(literals, parts);
+    }
+
+    private static byte kindOf(char c) {
+        switch (c) {
+            case 'y': return YEAR;
+            case 'M': return MONTH;
+            case 'd': return DAY;
+            case 'H': return HOUR;
+            case 'm': return MINUTE;
+            case 's': return SECOND;
+            default: return LITERAL;
+        }
+    }
+
+    //parses the whole stream into the sink and returns the number of rows handed to it
+    public long read(InputStream in, RowSink sink) throws IOException {
+        byte[] buf = new byte[bufferSize];
+        int start = 0;
+        int end = 0;
+        int scan = 0;
+        boolean eof = false;
+        columns = format.hasHeader() ? null : format.resolveColumns(null);
+        firstLine = true;
+        rows = 0;
+        skipped = 0;
+
+        while (true) {
+            int newline = indexOf(buf, scan, end, (byte) '\n');
+            if (newline < 0) {
+                if (eof) {
+                    if (start < end) line(buf, start, end, sink);
+                    return rows;
+                }
+                if (start > 0) {
+                    //move the partial line to the front and refill behind it
+                    System.arraycopy(buf, start, buf, 0, end - start);
+                    end -= start;
+                    start = 0;
+                } else if (end == buf.length) {
+                    //a single line longer than the buffer
+                    buf = Arrays.copyOf(buf, buf.length * 2);
+                }
+                scan = end;
+                int read = in.read(buf, end, buf.length - end);
+                if (read < 0) {
+                    eof = true;
+                } else {
+                    end += read;
+                }
+                continue;
+            }
+            int lineEnd = newline > start && buf[newline - 1] == '\r' ? newline - 1 : newline;
+            line(buf, start, lineEnd, sink);
+            start = newline + 1;
+            scan = start;
+        }
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public long getSkipped() {
+        return skipped;
+    }
+
+    private static int indexOf(byte[] buf, int from, int to, byte value) {
+        for (int i = from; i < to; i++) {
+            if (buf[i] == value) return i;
+        }
+        return -1;
+    }
+
+    private void line(byte[] buf, int start, int end, RowSink sink) {
+        if (firstLine) {
+            firstLine = false;
+            //utf-8 byte order mark
+            if (end - start >= 3 && buf[start] == (byte) 0xEF && buf[start + 1] == (byte) 0xBB && buf[start + 2] == (byte) 0xBF) {
+                start += 3;
+            }
+            if (columns == null) {
+                int count = split(buf, start, end);
+                String[] names = new String[count];
+                for (int i = 0; i < count; i++) {
+                    names[i] = new String(buf, starts[i], ends[i] - starts[i], StandardCharsets.UTF_8);
+                }
+                columns = format.resolveColumns(names);
+                return;
+            }
+        }
+        if (start == end) return;
+        int count = split(buf, start, end);
+
+        int dateColumn = columns[CsvFormat.DATE];
+        long timestamp = dateColumn < count ? parseTimestamp(buf, starts[dateColumn], ends[dateColumn]) : Long.MIN_VALUE;
+        float open = (float) number(buf, count, CsvFormat.OPEN);
+        float high = (float) number(buf, count, CsvFormat.HIGH);
+        float low = (float) number(buf, count, CsvFormat.LOW);
+        float close = (float) number(buf, count, CsvFormat.CLOSE);
+        double volume = columns[CsvFormat.VOLUME] < 0 ? 0 : number(buf, count, CsvFormat.VOLUME);
+        if (timestamp == Long.MIN_VALUE || Float.isNaN(open) || Float.isNaN(high) || Float.isNaN(low)
+                || Float.isNaN(close) || Double.isNaN(volume)) {
+            skipped++;
+            return;
+        }
+        sink.row(token(symbol, buf, count, CsvFormat.SYMBOL), token(timeframe, buf, count, CsvFormat.TIMEFRAME),
+                timestamp, open, high, low, close, (long) volume);
+        rows++;
+    }
+
+    //splits a line into starts/ends, a field in double quotes loses its quotes (escaped quotes aren't supported)
+    private int split(byte[] buf, int start, int end) {
+        int count = 0;
+        int p = start;
+        while (count < MAX_COLUMNS) {
+            if (p < end && buf[p] == '"') {
+                int quote = p + 1;
+                while (quote < end && buf[quote] != '"') quote++;
+                starts[count] = p + 1;
+                ends[count] = quote;
+                p = quote;
+                while (p < end && buf[p] != delimiter) p++;
+            } else {
+                starts[count] = p;
+                while (p < end && buf[p] != delimiter) p++;
+                ends[count] = p;
+            }
+            count++;
+            if (p >= end) break;
+            p++;
+        }
+        return count;
+    }
+
+    private double number(byte[] buf, int count, int field) {
+        int column = columns[field];
+        return column < count ? parseNumber(buf, starts[column], ends[column]) : Double.NaN;
+    }
+
+    private String token(Token token, byte[] buf, int count, int field) {
+        int column = columns[field];
+        if (column < 0 || column >= count) return null;
+        return token.get(buf, starts[column], ends[column]);
+    }
+
+    //decimal number with optional sign, fraction and exponent, NaN when the bytes aren't one
+    static double parseNumber(byte[] buf, int start, int end) {
+        while (start < end && buf[start] == ' ') start++;
+        while (end > start && buf[end - 1] == ' ') end--;
+        if (start == end) return Double.NaN;
+        boolean negative = false;
+        if (buf[start] == '-' || buf[start] == '+') {
+            negative = buf[start] == '-';
+            start++;
+        }
+        long mantissa = 0;
+        int exponent = 0;
+        int digits = 0;
+        int p = start;
+        for (; p < end && buf[p] >= '0' && buf[p] <= '9'; p++, digits++) {
+            //past 18 digits the long would overflow, the extra digits only scale
+            if (mantissa < 100_000_000_000_000_000L) {
+                mantissa = mantissa * 10 + (buf[p] - '0');
+            } else {
+                exponent++;
+            }
+        }
+        if (p < end && buf[p] == '.') {
+            for (p++; p < end && buf[p] >= '0' && buf[p] <= '9'; p++, digits++) {
+                if (mantissa < 100_000_000_000_000_000L) {
+                    mantissa = mantissa * 10 + (buf[p] - '0');
+                    exponent--;
+                }
+            }
+        }
+        if (digits == 0) return Double.NaN;
+        if (p < end && (buf[p] == 'e' || buf[p] == 'E')) {
+            p++;
+            boolean negativeExponent = false;
+            if (p < end && (buf[p] == '-' || buf[p] == '+')) {
+                negativeExponent = buf[p] == '-';
+                p++;
+            }
+            int value = 0;
+            int exponentDigits = 0;
+            for (; p < end && buf[p] >= '0' && buf[p] <= '9'; p++, exponentDigits++) {
+                value = Math.min(value * 10 + (buf[p] - '0'), 1000);
+            }
+            if (exponentDigits == 0) return Double.NaN;
+            exponent += negativeExponent ? -value : value;
+        }
+        if (p != end) return Double.NaN;
+        double result;
+        if (exponent >= 0) {
+            result = exponent < POWERS_OF_TEN.length ? mantissa * POWERS_OF_TEN[exponent] : mantissa * Math.pow(10, exponent);
+        } else {
+            result = -exponent < POWERS_OF_TEN.length ? mantissa / POWERS_OF_TEN[-exponent] : mantissa / Math.pow(10, -exponent);
+        }
+        return negative ? -result : result;
+    }
+
+    //epoch millis of a timestamp under the compiled pattern, Long.MIN_VALUE when it doesn't match
+    long parseTimestamp(byte[] buf, int start, int end) {
+        while (start < end && buf[start] == ' ') start++;
+        while (end > start && buf[end - 1] == ' ') end--;
+        if (start == end) return Long.MIN_VALUE;
+        if (epochScale != 0) {
+            double value = parseNumber(buf, start, end);
+            return Double.isNaN(value) ? Long.MIN_VALUE : (long) value * epochScale;
+        }
+        int year = 1970;
+        int month = 1;
+        int day = 1;
+        int hour = 0;
+        int minute = 0;
+        int second = 0;
+        int p = start;
+        for (int part = 0; part < patternKinds.length; part++) {
+            //a value may stop after any complete part ("2024-03-04" under "yyyy-MM-dd HH:mm:ss")
+            if (p >= end) break;
+            if (patternKinds[part] == LITERAL) {
+                byte literal = patternLiterals[part];
+                if (buf[p] != literal && !(isDateTimeSeparator(literal) && isDateTimeSeparator(buf[p]))) {
+                    return Long.MIN_VALUE;
+                }
+                p++;
+                continue;
+            }
+            int value = 0;
+            for (int i = 0; i < patternWidths[part]; i++, p++) {
+                if (p >= end || buf[p] < '0' || buf[p] > '9') return Long.MIN_VALUE;
+                value = value * 10 + (buf[p] - '0');
+            }
+            switch (patternKinds[part]) {
+                case YEAR: year = value; break;
+                case MONTH: month = value; break;
+                case DAY: day = value; break;
+                case HOUR: hour = value; break;
+                case MINUTE: minute = value; break;
+                default: second = value; break;
+            }
+        }
+        //fractions of a second are ignored
+        if (p < end && buf[p] != '.') return Long.MIN_VALUE;
+        if (month < 1 || month > 12 || day < 1 || day > 31 || hour > 23 || minute > 59 || second > 60) {
+            return Long.MIN_VALUE;
+        }
+        long minutes = (CivilDate.daysFromCivil(year, month, day) * 24 + hour) * 60 + minute;
+        return minutes * MINUTE_MS + second * 1000L - utcOffsetMillis;
+    }
+
+    //iso files use 'T' between date and time, others a space
+    private static boolean isDateTimeSeparator(byte b) {
+        return b == ' ' || b == 'T';
+    }
+
+    //last value of a repeating column, a new String is only made when the bytes change
+    private static final class Token {
+        private byte[] bytes = new byte[16];
+        private int length = -1;
+        private String value;
+
+        String get(byte[] buf, int start, int end) {
+            while (start < end && buf[start] == ' ') start++;
+            while (end > start && buf[end - 1] == ' ') end--;
+            int n = end - start;
+            if (n == 0) return null;
+            if (n == length && equals(buf, start)) return value;
+            if (bytes.length < n) bytes = new byte[n];
+            System.arraycopy(buf, start, bytes, 0, n);
+            length = n;
+            value = new String(bytes, 0, n, StandardCharsets.UTF_8);
+            return value;
+        }
+
+        private boolean equals(byte[] buf, int start) {
+            for (int i = 0; i < length; i++) {
+                if (bytes[i] != buf[start + i]) return false;
+            }
+            return true;
+        }
+    }
+}
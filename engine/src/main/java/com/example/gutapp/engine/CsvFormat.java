@@ -0,0 +1,121 @@
+package com.example.gutapp.engine;
+
+import java.util.Locale;
+
+//layout of an ohlcv csv file: delimiter, which column holds which field and how timestamps are written
+//columns are zero based, -1 leaves a field out. when a file has a header and no columns were set, the columns
+//are found by their header names (symbol/ticker, timeframe/interval, date/time/timestamp/datetime, open, high,
+//low, close, volume)
+public class CsvFormat {
+    //timestamp patterns besides the y M d H m s ones
+    public static final String EPOCH_SECONDS = "epoch_s";
+    public static final String EPOCH_MILLIS = "epoch_ms";
+
+    static final int SYMBOL = 0;
+    static final int TIMEFRAME = 1;
+    static final int DATE = 2;
+    static final int OPEN = 3;
+    static final int HIGH = 4;
+    static final int LOW = 5;
+    static final int CLOSE = 6;
+    static final int VOLUME = 7;
+    static final int FIELDS = 8;
+
+    private static final String[][] HEADER_NAMES = {
+            {"symbol", "ticker"},
+            {"timeframe", "interval"},
+            {"date", "time", "timestamp", "datetime"},
+            {"open", "o"},
+            {"high", "h"},
+            {"low", "l"},
+            {"close", "c", "adj close"},
+            {"volume", "vol", "v"}
+    };
+
+    private byte delimiter = ',';
+    private boolean header = true;
+    private final int[] columns = {-1, -1, -1, -1, -1, -1, -1, -1};
+    private boolean columnsSet;
+    private String timestampPattern = "yyyy-MM-dd HH:mm:ss";
+    private int utcOffsetMinutes;
+
+    public CsvFormat withDelimiter(char delimiter) {
+        if (delimiter > 127) {
+            throw new IllegalArgumentException("delimiter must be ascii: " + delimiter);
+        }
+        this.delimiter = (byte) delimiter;
+        return this;
+    }
+
+    //whether the first line is a header, it is skipped either way
+    public CsvFormat withHeader(boolean header) {
+        this.header = header;
+        return this;
+    }
+
+    //fixed column positions, symbol, timeframe and volume may be -1 (the importer's defaults are used)
+    public CsvFormat withColumns(int symbol, int timeframe, int date, int open, int high, int low, int close, int volume) {
+        int[] positions = {symbol, timeframe, date, open, high, low, close, volume};
+        for (int field = DATE; field <= CLOSE; field++) {
+            if (positions[field] < 0) {
+                throw new IllegalArgumentException("date, open, high, low and close need a column");
+            }
+        }
+        System.arraycopy(positions, 0, columns, 0, FIELDS);
+        columnsSet = true;
+        return this;
+    }
+
+    //y M d H m s with literal separators ("yyyy-MM-dd HH:mm:ss", "yyyyMMdd", "dd/MM/yyyy HH:mm"), or EPOCH_SECONDS
+    //or EPOCH_MILLIS. a value may stop early, "2024-03-04" under the default pattern is midnight
+    public CsvFormat withTimestampPattern(String pattern) {
+        this.timestampPattern = pattern;
+        return this;
+    }
+
+    //offset of the file's local time from utc, ignored for epoch timestamps
+    public CsvFormat withUtcOffsetMinutes(int utcOffsetMinutes) {
+        this.utcOffsetMinutes = utcOffsetMinutes;
+        return this;
+    }
+
+    byte getDelimiter() {
+        return delimiter;
+    }
+
+    boolean hasHeader() {
+        return header;
+    }
+
+    String getTimestampPattern() {
+        return timestampPattern;
+    }
+
+    int getUtcOffsetMinutes() {
+        return utcOffsetMinutes;
+    }
+
+    //resolves the columns, from the header names when none were set
+    int[] resolveColumns(String[] headerNames) {
+        if (columnsSet || headerNames == null) {
+            return columns.clone();
+        }
+        int[] resolved = {-1, -1, -1, -1, -1, -1, -1, -1};
+        for (int column = 0; column < headerNames.length; column++) {
+            String name = headerNames[column].trim().toLowerCase(Locale.US);
+            for (int field = 0; field < FIELDS; field++) {
+                for (String candidate : HEADER_NAMES[field]) {
+                    if (resolved[field] < 0 && candidate.equals(name)) {
+                        resolved[field] = column;
+                    }
+                }
+            }
+        }
+        for (int field = DATE; field <= CLOSE; field++) {
+            if (resolved[field] < 0) {
+                throw new IllegalArgumentException("header has no column for " + HEADER_NAMES[field][0]);
+            }
+        }
+        return resolved;
+    }
+}
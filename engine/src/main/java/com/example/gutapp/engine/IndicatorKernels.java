@@ -0,0 +1,143 @@
+package com.example.gutapp.engine;
+
+import java.util.Arrays;
+
+//indicator maths over primitive arrays, no android, no database, no chart types
+//the array kernels write into caller owned output arrays and allocate nothing, they return the index of the
+//first valid output (warm up slots are filled with NaN) or count when the input is shorter than the period
+public final class IndicatorKernels {
+
+    private IndicatorKernels() {
+    }
+
+    //simple moving average with a running sum, O(n) regardless of the period
+    public static int sma(float[] src, int count, int period, float[] out, Cancellation cancellation) {
+        checkArgs(src, count, period, out);
+        int start = period - 1;
+        if (count < period) {
+            Arrays.fill(out, 0, count, Float.NaN);
+            return count;
+        }
+        Arrays.fill(out, 0, start, Float.NaN);
+        //double accumulator so long series don't drift
+        double sum = 0;
+        for (int i = 0; i < period; i++) {
+            sum += src[i];
+        }
+        out[start] = (float) (sum / period);
+        for (int i = period; i < count; i++) {
+            if ((i & Cancellation.CHECK_MASK) == 0) cancellation.throwIfCancelled();
+            sum += src[i] - src[i - period];
+            out[i] = (float) (sum / period);
+        }
+        return start;
+    }
+
+    //exponential moving average seeded with the simple average of the first period bars
+    public static int ema(float[] src, int count, int period, float[] out, Cancellation cancellation) {
+        checkArgs(src, count, period, out);
+        int start = period - 1;
+        if (count < period) {
+            Arrays.fill(out, 0, count, Float.NaN);
+            return count;
+        }
+        Arrays.fill(out, 0, start, Float.NaN);
+        double seed = 0;
+        for (int i = 0; i < period; i++) {
+            seed += src[i];
+        }
+        double multiplier = 2.0 / (period + 1);
+        double ema = seed / period;
+        out[start] = (float) ema;
+        for (int i = period; i < count; i++) {
+            if ((i & Cancellation.CHECK_MASK) == 0) cancellation.throwIfCancelled();
+            ema += (src[i] - ema) * multiplier;
+            out[i] = (float) ema;
+        }
+        return start;
+    }
+
+    //bollinger bands, the window mean and variance are slid one bar at a time instead of re-summed
+    //uses the population standard deviation like the original implementation
+    public static int bollingerBands(float[] src, int count, int period, float stdDevMultiplier,
+                                     float[] middle, float[] upper, float[] lower, Cancellation cancellation) {
+        checkArgs(src, count, period, middle);
+        checkArgs(src, count, period, upper);
+        checkArgs(src, count, period, lower);
+        int start = period - 1;
+        if (count < period) {
+            Arrays.fill(middle, 0, count, Float.NaN);
+            Arrays.fill(upper, 0, count, Float.NaN);
+            Arrays.fill(lower, 0, count, Float.NaN);
+            return count;
+        }
+        Arrays.fill(middle, 0, start, Float.NaN);
+        Arrays.fill(upper, 0, start, Float.NaN);
+        Arrays.fill(lower, 0, start, Float.NaN);
+
+        //welford over the first window
+        double mean = 0;
+        double m2 = 0;
+        for (int i = 0; i < period; i++) {
+            double delta = src[i] - mean;
+            mean += delta / (i + 1);
+            m2 += delta * (src[i] - mean);
+        }
+        writeBands(start, mean, m2, period, stdDevMultiplier, middle, upper, lower);
+        for (int i = period; i < count; i++) {
+            if ((i & Cancellation.CHECK_MASK) == 0) cancellation.throwIfCancelled();
+            double added = src[i];
+            double removed = src[i - period];
+            double newMean = mean + (added - removed) / period;
+            m2 += (added - removed) * (added - newMean + removed - mean);
+            mean = newMean;
+            writeBands(i, mean, m2, period, stdDevMultiplier, middle, upper, lower);
+        }
+        return start;
+    }
+
+    private static void writeBands(int i, double mean, double m2, int period, float stdDevMultiplier,
+                                   float[] middle, float[] upper, float[] lower) {
+        //rounding can push m2 slightly below zero on flat windows
+        double deviation = Math.sqrt(Math.max(m2, 0) / period) * stdDevMultiplier;
+        middle[i] = (float) mean;
+        upper[i] = (float) (mean + deviation);
+        lower[i] = (float) (mean - deviation);
+    }
+
+    //series versions, allocate the output line(s) and run the array kernels on the close prices
+    public static LineSeries sma(CandleSeries series, int period, Cancellation cancellation) {
+        float[] out = new float[series.size()];
+        int start = sma(series.closes(), series.size(), period, out, cancellation);
+        return new LineSeries(out, series.size(), start);
+    }
+
+    public static LineSeries ema(CandleSeries series, int period, Cancellation cancellation) {
+        float[] out = new float[series.size()];
+        int start = ema(series.closes(), series.size(), period, out, cancellation);
+        return new LineSeries(out, series.size(), start);
+    }
+
+    //returns the middle, upper and lower band in this order
+    public static LineSeries[] bollingerBands(CandleSeries series, int period, float stdDevMultiplier, Cancellation cancellation) {
+        int size = series.size();
+        float[] middle = new float[size];
+        float[] upper = new float[size];
+        float[] lower = new float[size];
+        int start = bollingerBands(series.closes(), size, period, stdDevMultiplier, middle, upper, lower, cancellation);
+        return new LineSeries[]{
+                new LineSeries(middle, size, start),
+                new LineSeries(upper, size, start),
+                new LineSeries(lower, size, start)
+        };
+    }
+
+    private static void checkArgs(float[] src, int count, int period, float[] out) {
+        if (period < 1) {
+            throw new IllegalArgumentException("period must be positive: " + period);
+        }
+        if (count < 0 || count > src.length || count > out.length) {
+            throw new IllegalArgumentException("count " + count + " out of bounds");
+        }
+    }
+}
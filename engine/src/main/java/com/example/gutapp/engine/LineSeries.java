@@ -0,0 +1,37 @@
+package com.example.gutapp.engine;
+
+//output line of an indicator, aligned bar for bar with the series it was computed from
+//values before start() are warm up bars and hold NaN
+public class LineSeries {
+    private final float[] values;
+    private final int size;
+    private final int start;
+
+    public LineSeries(float[] values, int size, int start) {
+        this.values = values;
+        this.size = size;
+        this.start = start;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    //index of the first valid value, equals size() when the series was too short
+    public int start() {
+        return start;
+    }
+
+    public boolean isEmpty() {
+        return start >= size;
+    }
+
+    public float get(int index) {
+        return values[index];
+    }
+
+    //backing array, valid up to size()
+    public float[] values() {
+        return values;
+    }
+}
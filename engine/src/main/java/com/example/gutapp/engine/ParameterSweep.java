@@ -0,0 +1,142 @@
+package com.example.gutapp.engine;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+//backtests a strategy template over a grid of periods and bollinger multipliers on a fork join pool
+//the prefix sums of the series are built once and shared by every cell, so the sma and band lines of a cell are a
+//subtraction per bar whatever the period. rows of the grid (one period each) are halved down to LEAF_ROWS and idle
+//workers steal the other halves, a leaf runs its cells through its own Backtester into the result arrays
+public class ParameterSweep {
+    private static final int LEAF_ROWS = 4;
+
+    public interface Template {
+        //the strategy of one cell of the grid, called from several pool threads at once
+        Strategy build(int period, float stdDevMultiplier);
+    }
+
+    public static final class Result {
+        public final int[] periods;
+        public final float[] stdDevMultipliers;
+        //row major, the cell of periods[row] and stdDevMultipliers[column] is at row * stdDevMultipliers.length + column
+        public final float[] returns;
+        public final float[] maxDrawdowns;
+        public final int[] trades;
+        //cell with the highest return
+        public final int best;
+        public final long nanos;
+
+        Result(int[] periods, float[] stdDevMultipliers, float[] returns, float[] maxDrawdowns, int[] trades, long nanos) {
+            this.periods = periods;
+            this.stdDevMultipliers = stdDevMultipliers;
+            this.returns = returns;
+            this.maxDrawdowns = maxDrawdowns;
+            this.trades = trades;
+            int best = 0;
+            for (int i = 1; i < returns.length; i++) {
+                if (returns[i] > returns[best]) best = i;
+            }
+            this.best = best;
+            this.nanos = nanos;
+        }
+
+        public int getPeriod(int cell) {
+            return periods[cell / stdDevMultipliers.length];
+        }
+
+        public float getStdDevMultiplier(int cell) {
+            return stdDevMultipliers[cell % stdDevMultipliers.length];
+        }
+    }
+
+    private final ForkJoinPool pool;
+    private float fee;
+    private float slippage;
+
+    public ParameterSweep(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    //same meaning as Backtester.withFee
+    public ParameterSweep withFee(float fee) {
+        this.fee = fee;
+        return this;
+    }
+
+    public ParameterSweep withSlippage(float slippage) {
+        this.slippage = slippage;
+        return this;
+    }
+
+    //blocks until every cell was backtested, throws CancellationException once cancellation reads cancelled
+    public Result run(CandleSeries series, Template template, int[] periods, float[] stdDevMultipliers, Cancellation cancellation) {
+        long begin = System.nanoTime();
+        int cells = periods.length * stdDevMultipliers.length;
+        Grid grid = new Grid(series, new PrefixSums(series.closes(), series.size()), template, periods, stdDevMultipliers,
+                cancellation, new float[cells], new float[cells], new int[cells]);
+        pool.invoke(new Rows(grid, 0, periods.length));
+        return new Result(periods.clone(), stdDevMultipliers.clone(), grid.returns, grid.maxDrawdowns, grid.trades,
+                System.nanoTime() - begin);
+    }
+
+    private static final class Grid {
+        final CandleSeries series;
+        final PrefixSums prefixSums;
+        final Template template;
+        final int[] periods;
+        final float[] stdDevMultipliers;
+        final Cancellation cancellation;
+        final float[] returns;
+        final float[] maxDrawdowns;
+        final int[] trades;
+
+        Grid(CandleSeries series, PrefixSums prefixSums, Template template, int[] periods, float[] stdDevMultipliers,
+             Cancellation cancellation, float[] returns, float[] maxDrawdowns, int[] trades) {
+            this.series = series;
+            this.prefixSums = prefixSums;
+            this.template = template;
+            this.periods = periods;
+            this.stdDevMultipliers = stdDevMultipliers;
+            this.cancellation = cancellation;
+            this.returns = returns;
+            this.maxDrawdowns = maxDrawdowns;
+            this.trades = trades;
+        }
+    }
+
+    private final class Rows extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Grid grid;
+        private final int from;
+        private final int to;
+
+        Rows(Grid grid, int from, int to) {
+            this.grid = grid;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > LEAF_ROWS) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Rows(grid, from, middle), new Rows(grid, middle, to));
+                return;
+            }
+            Backtester backtester = new Backtester().withFee(fee).withSlippage(slippage).withPrefixSums(grid.prefixSums);
+            int columns = grid.stdDevMultipliers.length;
+            for (int row = from; row < to; row++) {
+                for (int column = 0; column < columns; column++) {
+                    grid.cancellation.throwIfCancelled();
+                    Strategy strategy = grid.template.build(grid.periods[row], grid.stdDevMultipliers[column]);
+                    backtester.run(grid.series, strategy, grid.cancellation);
+                    int cell = row * columns + column;
+                    grid.returns[cell] = (float) backtester.getTotalReturn();
+                    grid.maxDrawdowns[cell] = backtester.getMaxDrawdown();
+                    grid.trades[cell] = backtester.getTradeCount();
+                }
+            }
+        }
+    }
+}
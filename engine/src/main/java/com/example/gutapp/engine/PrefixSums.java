@@ -0,0 +1,62 @@
+package com.example.gutapp.engine;
+
+//running sums of the closes and their squares, built once per series and shared read only by every period
+//the sum over any window is a difference of two entries, so an SMA or bollinger line of any period is O(n) without
+//running state and a sweep over hundreds of periods doesn't re-add the same closes for each of them
+//closes are shifted by the first close before summing, that keeps the squares small and the variance difference exact
+public final class PrefixSums {
+    private final int size;
+    private final double shift;
+    //sums[i] is the sum of the first i shifted closes
+    private final double[] sums;
+    private final double[] squares;
+
+    public PrefixSums(float[] closes, int count) {
+        this.size = count;
+        this.shift = count > 0 ? closes[0] : 0;
+        this.sums = new double[count + 1];
+        this.squares = new double[count + 1];
+        for (int i = 0; i < count; i++) {
+            double value = closes[i] - shift;
+            sums[i + 1] = sums[i] + value;
+            squares[i + 1] = squares[i] + value * value;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    //same output as IndicatorKernels.sma
+    public void sma(int period, float[] out) {
+        int start = warmup(period, out, null);
+        for (int i = start; i < size; i++) {
+            out[i] = (float) (shift + (sums[i + 1] - sums[i + 1 - period]) / period);
+        }
+    }
+
+    //mean and population standard deviation of every window, the bollinger bands of any multiplier are
+    //mean +- multiplier * deviation so a sweep computes these once per period
+    public void deviations(int period, float[] mean, float[] deviation) {
+        int start = warmup(period, mean, deviation);
+        for (int i = start; i < size; i++) {
+            double average = (sums[i + 1] - sums[i + 1 - period]) / period;
+            double variance = (squares[i + 1] - squares[i + 1 - period]) / period - average * average;
+            mean[i] = (float) (shift + average);
+            deviation[i] = (float) Math.sqrt(Math.max(variance, 0));
+        }
+    }
+
+    //fills the warm up slots of the given lines with NaN, returns the first valid index
+    private int warmup(int period, float[] first, float[] second) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("period must be positive: " + period);
+        }
+        int start = Math.min(period - 1, size);
+        for (int i = 0; i < start; i++) {
+            if (first != null) first[i] = Float.NaN;
+            if (second != null) second[i] = Float.NaN;
+        }
+        return start;
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.gutapp.engine;
+
+import java.util.Locale;
+
+//declarative screen: a named list of conditions a symbol's latest bars must all meet
+//conditions compare operands (the close, indicator lines, constants) over the last few bars only, so the
+//screener loads and computes just the tail they look at. they're checked in order and a symbol stops at the first
+//one it fails, put the cheap and selective ones first
+//  new Screen("Golden cross today", Screen.crossedAbove(Screen.sma(50), Screen.sma(200)))
+//  new Screen("Squeeze", Screen.atLowest(Screen.bollingerWidth(20, 2), 126))
+public final class Screen {
+
+    public static final class Operand {
+        static final int CLOSE = 0;
+        static final int SMA = 1;
+        static final int EMA = 2;
+        static final int BOLLINGER_WIDTH = 3;
+        static final int CONSTANT = 4;
+
+        //an ema over a tail of 4 periods is within float noise of the one over the whole history
+        private static final int EMA_WARMUP_PERIODS = 4;
+
+        final int kind;
+        final int period;
+        final float value;
+        //same key, same line, computed once per symbol however many conditions use it
+        final String key;
+
+        private Operand(int kind, int period, float value, String key) {
+            this.kind = kind;
+            this.period = period;
+            this.value = value;
+            this.key = key;
+        }
+
+        //bars needed before the first valid value
+        int warmup() {
+            switch (kind) {
+                case SMA:
+                case BOLLINGER_WIDTH:
+                    return period - 1;
+                case EMA:
+                    return EMA_WARMUP_PERIODS * period;
+                default:
+                    return 0;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return key;
+        }
+    }
+
+    public static final class Condition {
+        static final int ABOVE = 0;
+        static final int BELOW = 1;
+        static final int CROSSED_ABOVE = 2;
+        static final int CROSSED_BELOW = 3;
+        static final int AT_LOWEST = 4;
+        static final int AT_HIGHEST = 5;
+
+        final int type;
+        final Operand first;
+        final Operand second;
+        //latest bars the condition looks at
+        final int bars;
+
+        private Condition(int type, Operand first, Operand second, int bars) {
+            if (bars < 1) {
+                throw new IllegalArgumentException("bars must be positive: " + bars);
+            }
+            this.type = type;
+            this.first = first;
+            this.second = second;
+            this.bars = bars;
+        }
+    }
+
+    private final String name;
+    private final Condition[] conditions;
+
+    public Screen(String name, Condition... conditions) {
+        if (conditions.length == 0) {
+            throw new IllegalArgumentException("a screen needs at least one condition");
+        }
+        this.name = name;
+        this.conditions = conditions.clone();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    Condition[] conditions() {
+        return conditions;
+    }
+
+    //bars a symbol needs for every condition to see valid values
+    public int barsNeeded() {
+        int bars = 1;
+        for (Condition condition : conditions) {
+            bars = Math.max(bars, condition.bars + condition.first.warmup());
+            if (condition.second != null) {
+                bars = Math.max(bars, condition.bars + condition.second.warmup());
+            }
+        }
+        return bars;
+    }
+
+    public static Operand close() {
+        return new Operand(Operand.CLOSE, 1, 0, "close");
+    }
+
+    public static Operand sma(int period) {
+        checkPeriod(period);
+        return new Operand(Operand.SMA, period, 0, "sma" + period);
+    }
+
+    public static Operand ema(int period) {
+        checkPeriod(period);
+        return new Operand(Operand.EMA, period, 0, "ema" + period);
+    }
+
+    //(upper - lower) / middle of the bollinger bands
+    public static Operand bollingerWidth(int period, float stdDevMultiplier) {
+        checkPeriod(period);
+        return new Operand(Operand.BOLLINGER_WIDTH, period, stdDevMultiplier,
+                String.format(Locale.US, "bbw%d/%s", period, stdDevMultiplier));
+    }
+
+    public static Operand constant(float value) {
+        return new Operand(Operand.CONSTANT, 1, value, String.valueOf(value));
+    }
+
+    //first > second on the last bar
+    public static Condition above(Operand first, Operand second) {
+        return new Condition(Condition.ABOVE, first, second, 1);
+    }
+
+    public static Condition below(Operand first, Operand second) {
+        return new Condition(Condition.BELOW, first, second, 1);
+    }
+
+    //first was at or below second on the bar before and is above it on the last bar
+    public static Condition crossedAbove(Operand first, Operand second) {
+        return new Condition(Condition.CROSSED_ABOVE, first, second, 2);
+    }
+
+    public static Condition crossedBelow(Operand first, Operand second) {
+        return new Condition(Condition.CROSSED_BELOW, first, second, 2);
+    }
+
+    //the last value is the lowest of the last bars values
+    public static Condition atLowest(Operand operand, int bars) {
+        return new Condition(Condition.AT_LOWEST, operand, null, bars);
+    }
+
+    public static Condition atHighest(Operand operand, int bars) {
+        return new Condition(Condition.AT_HIGHEST, operand, null, bars);
+    }
+
+    private static void checkPeriod(int period) {
+        if (period < 1) {
+            throw new IllegalArgumentException("period must be positive: " + period);
+        }
+    }
+}
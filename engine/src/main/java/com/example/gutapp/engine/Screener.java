@@ -0,0 +1,232 @@
+package com.example.gutapp.engine;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//runs a Screen over a universe of symbols on a fork join pool
+//the symbol range is halved down to LEAF_SYMBOLS and idle workers steal the other halves, a few slow loads don't hold
+//up the rest. a symbol loads only the tail the screen looks at (Screen.barsNeeded) and stops at the first condition it
+//fails. indicator lines are cached by (symbol, last bar, operand) across runs, so running a screen again or one
+//sharing its operands reuses them until new bars arrive
+public class Screener {
+    private static final int LEAF_SYMBOLS = 4;
+    private static final int MAX_CACHED_LINES = 100_000;
+
+    public interface SeriesSource {
+        //the last bars bars of symbol oldest first, fewer when there is less history, null when there is none
+        //called from several pool threads at once
+        CandleSeries load(String symbol, int bars) throws Exception;
+    }
+
+    public interface ProgressListener {
+        //called from pool threads about every percent of the universe, and once with done == total
+        void onProgress(int done, int total, int matches);
+    }
+
+    public static final class Result {
+        //indices into the symbols that were screened, ascending
+        public final int[] matches;
+        public final int screened;
+        //symbols whose series failed to load
+        public final int failed;
+        public final long nanos;
+
+        Result(int[] matches, int screened, int failed, long nanos) {
+            this.matches = matches;
+            this.screened = screened;
+            this.failed = failed;
+            this.nanos = nanos;
+        }
+    }
+
+    private final ForkJoinPool pool;
+    private final SeriesSource source;
+    private final ConcurrentHashMap<String, float[]> lines = new ConcurrentHashMap<>();
+
+    public Screener(ForkJoinPool pool, SeriesSource source) {
+        this.pool = pool;
+        this.source = source;
+    }
+
+    //blocks until every symbol was screened, throws CancellationException once cancellation reads cancelled
+    public Result run(String[] symbols, Screen screen, ProgressListener listener, Cancellation cancellation) {
+        long begin = System.nanoTime();
+        Run run = new Run(symbols, screen, listener, cancellation);
+        pool.invoke(new Slice(run, 0, symbols.length));
+        int[] matches = new int[run.matches.get()];
+        int count = 0;
+        for (int i = 0; i < symbols.length; i++) {
+            if (run.matched[i]) matches[count++] = i;
+        }
+        return new Result(matches, symbols.length, run.failed.get(), System.nanoTime() - begin);
+    }
+
+    //drops the cached lines
+    public void clearCache() {
+        lines.clear();
+    }
+
+    private static final class Run {
+        final String[] symbols;
+        final Screen screen;
+        final int bars;
+        final ProgressListener listener;
+        final Cancellation cancellation;
+        final int progressStep;
+        final boolean[] matched;
+        final AtomicInteger done = new AtomicInteger();
+        final AtomicInteger matches = new AtomicInteger();
+        final AtomicInteger failed = new AtomicInteger();
+
+        Run(String[] symbols, Screen screen, ProgressListener listener, Cancellation cancellation) {
+            this.symbols = symbols;
+            this.screen = screen;
+            this.bars = screen.barsNeeded();
+            this.listener = listener;
+            this.cancellation = cancellation;
+            this.progressStep = Math.max(1, symbols.length / 100);
+            this.matched = new boolean[symbols.length];
+        }
+    }
+
+    private final class Slice extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Run run;
+        private final int from;
+        private final int to;
+
+        Slice(Run run, int from, int to) {
+            this.run = run;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > LEAF_SYMBOLS) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Slice(run, from, middle), new Slice(run, middle, to));
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                run.cancellation.throwIfCancelled();
+                if (matches(run, run.symbols[i])) {
+                    run.matched[i] = true;
+                    run.matches.incrementAndGet();
+                }
+                int done = run.done.incrementAndGet();
+                if (run.listener != null && (done % run.progressStep == 0 || done == run.symbols.length)) {
+                    run.listener.onProgress(done, run.symbols.length, run.matches.get());
+                }
+            }
+        }
+    }
+
+    private boolean matches(Run run, String symbol) {
+        CandleSeries series;
+        try {
+            series = source.load(symbol, run.bars);
+        } catch (CancellationException e) {
+            throw e;
+        } catch (Exception e) {
+            run.failed.incrementAndGet();
+            return false;
+        }
+        if (series == null || series.size() == 0) return false;
+        //lines of this symbol, so conditions sharing an operand don't go through the shared cache twice
+        Map<String, float[]> symbolLines = new HashMap<>(4);
+        String prefix = symbol + '\u0000' + series.getTimestamp(series.size() - 1) + '\u0000' + series.size() + '\u0000';
+        for (Screen.Condition condition : run.screen.conditions()) {
+            float[] first = line(condition.first, series, prefix, symbolLines, run.cancellation);
+            float[] second = condition.second != null ? line(condition.second, series, prefix, symbolLines, run.cancellation) : null;
+            if (!holds(condition, series.size(), first, second)) return false;
+        }
+        return true;
+    }
+
+    private float[] line(Screen.Operand operand, CandleSeries series, String prefix, Map<String, float[]> symbolLines,
+                         Cancellation cancellation) {
+        switch (operand.kind) {
+            case Screen.Operand.CLOSE:
+                return series.closes();
+            case Screen.Operand.CONSTANT:
+                return null;
+        }
+        float[] line = symbolLines.get(operand.key);
+        if (line != null) return line;
+        String key = prefix + operand.key;
+        line = lines.get(key);
+        if (line == null) {
+            line = compute(operand, series, cancellation);
+            if (lines.size() >= MAX_CACHED_LINES) lines.clear();
+            lines.put(key, line);
+        }
+        symbolLines.put(operand.key, line);
+        return line;
+    }
+
+    private static float[] compute(Screen.Operand operand, CandleSeries series, Cancellation cancellation) {
+        int size = series.size();
+        float[] out = new float[size];
+        switch (operand.kind) {
+            case Screen.Operand.SMA:
+                IndicatorKernels.sma(series.closes(), size, operand.period, out, cancellation);
+                break;
+            case Screen.Operand.EMA:
+                IndicatorKernels.ema(series.closes(), size, operand.period, out, cancellation);
+                break;
+            case Screen.Operand.BOLLINGER_WIDTH:
+                float[] upper = new float[size];
+                float[] lower = new float[size];
+                IndicatorKernels.bollingerBands(series.closes(), size, operand.period, operand.value, out, upper, lower, cancellation);
+                for (int i = 0; i < size; i++) {
+                    out[i] = (upper[i] - lower[i]) / out[i];
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("no line for " + operand);
+        }
+        return out;
+    }
+
+    //comparisons with a NaN (warm up, too little history) are false, so such a symbol fails the condition
+    static boolean holds(Screen.Condition condition, int size, float[] first, float[] second) {
+        if (size < condition.bars) return false;
+        int last = size - 1;
+        switch (condition.type) {
+            case Screen.Condition.ABOVE:
+                return value(condition.first, first, last) > value(condition.second, second, last);
+            case Screen.Condition.BELOW:
+                return value(condition.first, first, last) < value(condition.second, second, last);
+            case Screen.Condition.CROSSED_ABOVE:
+                return value(condition.first, first, last - 1) <= value(condition.second, second, last - 1)
+                        && value(condition.first, first, last) > value(condition.second, second, last);
+            case Screen.Condition.CROSSED_BELOW:
+                return value(condition.first, first, last - 1) >= value(condition.second, second, last - 1)
+                        && value(condition.first, first, last) < value(condition.second, second, last);
+            case Screen.Condition.AT_LOWEST:
+            case Screen.Condition.AT_HIGHEST: {
+                boolean lowest = condition.type == Screen.Condition.AT_LOWEST;
+                float latest = value(condition.first, first, last);
+                if (Float.isNaN(latest)) return false;
+                for (int i = size - condition.bars; i < last; i++) {
+                    float v = value(condition.first, first, i);
+                    if (!(lowest ? v >= latest : v <= latest)) return false;
+                }
+                return true;
+            }
+            default:
+                throw new IllegalArgumentException("unknown condition " + condition.type);
+        }
+    }
+
+    private static float value(Screen.Operand operand, float[] line, int index) {
+        return operand.kind == Screen.Operand.CONSTANT ? operand.value : line[index];
+    }
+}
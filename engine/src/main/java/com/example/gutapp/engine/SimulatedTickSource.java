@@ -0,0 +1,121 @@
+package com.example.gutapp.engine;
+
+import java.util.Random;
+import java.util.concurrent.locks.LockSupport;
+
+//local tick feed for development and testing, a seeded random walk with no network behind it
+//ticks are tickMillis apart in market time and are delivered at ticksPerSecond of wall time, so an hour of
+//market can be played in seconds. the same seed and settings always produce the same ticks
+public class SimulatedTickSource implements TickSource {
+    private static final double YEAR_MS = 365.0 * 86_400_000L;
+
+    private final Random random;
+    private long timestamp;
+    private float price;
+    private long tickMillis = 1_000;
+    private double ticksPerSecond = 20;
+    private double volatility = 0.25;
+    //log return sigma of one tick
+    private double tickVolatility;
+    private long baseSize = 100;
+
+    private volatile boolean running;
+    private Thread thread;
+
+    public SimulatedTickSource(long seed, long startMillis, float startPrice) {
+        this.random = new Random(seed);
+        this.timestamp = startMillis;
+        this.price = startPrice;
+        updateTickVolatility();
+    }
+
+    //market time between two ticks
+    public SimulatedTickSource withTickMillis(long tickMillis) {
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("tick spacing must be positive: " + tickMillis);
+        }
+        this.tickMillis = tickMillis;
+        updateTickVolatility();
+        return this;
+    }
+
+    //wall clock rate of the feed, 0 delivers ticks as fast as the listener takes them
+    public SimulatedTickSource withRate(double ticksPerSecond) {
+        this.ticksPerSecond = ticksPerSecond;
+        return this;
+    }
+
+    //annualised volatility of the walk
+    public SimulatedTickSource withVolatility(double volatility) {
+        this.volatility = volatility;
+        updateTickVolatility();
+        return this;
+    }
+
+    private void updateTickVolatility() {
+        tickVolatility = volatility * Math.sqrt(tickMillis / YEAR_MS);
+    }
+
+    public SimulatedTickSource withBaseSize(long baseSize) {
+        this.baseSize = baseSize;
+        return this;
+    }
+
+    @Override
+    public synchronized void start(Listener listener) {
+        if (running) {
+            throw new IllegalStateException("already started");
+        }
+        running = true;
+        thread = new Thread(() -> run(listener), "simulated-ticks");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void stop() {
+        Thread thread;
+        synchronized (this) {
+            running = false;
+            thread = this.thread;
+            this.thread = null;
+        }
+        if (thread != null && thread != Thread.currentThread()) {
+            LockSupport.unpark(thread);
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    //delivers count ticks on the calling thread, for tests and headless runs
+    public void emit(int count, Listener listener) {
+        for (int i = 0; i < count; i++) {
+            next(listener);
+        }
+    }
+
+    private void run(Listener listener) {
+        long begin = System.nanoTime();
+        long sent = 0;
+        while (running) {
+            next(listener);
+            sent++;
+            if (ticksPerSecond > 0) {
+                long due = begin + (long) (sent * 1e9 / ticksPerSecond);
+                long wait = due - System.nanoTime();
+                if (wait > 0) LockSupport.parkNanos(wait);
+            }
+        }
+    }
+
+    private void next(Listener listener) {
+        timestamp += tickMillis;
+        price = (float) (price * Math.exp(tickVolatility * random.nextGaussian()));
+        //sizes are skewed, most trades are small and a few are large
+        long size = 1 + (long) (baseSize * -Math.log(1 - random.nextDouble()));
+        listener.onTick(timestamp, price, size);
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.gutapp.engine;
+
+//thumbnail line of a price series
+//the series is cut into equal buckets and each keeps its lowest and highest value in the order they happened, so a
+//spike survives even a heavy downsampling. the result is then scaled into a width x height box, ready for a path
+public final class Sparkline {
+
+    private Sparkline() {
+    }
+
+    //min and max of each of buckets slices of values[from, to), writes at most 2 * buckets values into out and
+    //returns how many. a range with no more than 2 * buckets values is copied as it is
+    public static int downsample(float[] values, int from, int to, int buckets, float[] out) {
+        int count = to - from;
+        if (count <= 2 * buckets) {
+            System.arraycopy(values, from, out, 0, count);
+            return count;
+        }
+        int written = 0;
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            int start = from + (int) ((long) bucket * count / buckets);
+            int end = from + (int) ((long) (bucket + 1) * count / buckets);
+            int low = start;
+            int high = start;
+            for (int i = start + 1; i < end; i++) {
+                if (values[i] < values[low]) low = i;
+                if (values[i] > values[high]) high = i;
+            }
+            if (low == high) {
+                out[written++] = values[low];
+            } else {
+                out[written++] = values[Math.min(low, high)];
+                out[written++] = values[Math.max(low, high)];
+            }
+        }
+        return written;
+    }
+
+    //x, y pairs of the first count values spread over width, the highest value at y = pad and the lowest at
+    //height - pad. a flat line sits in the middle
+    public static void toPoints(float[] values, int count, float width, float height, float pad, float[] xy) {
+        float min = Float.POSITIVE_INFINITY;
+        float max = Float.NEGATIVE_INFINITY;
+        for (int i = 0; i < count; i++) {
+            min = Math.min(min, values[i]);
+            max = Math.max(max, values[i]);
+        }
+        float range = max - min;
+        float step = count > 1 ? width / (count - 1) : 0;
+        float span = height - 2 * pad;
+        for (int i = 0; i < count; i++) {
+            xy[2 * i] = i * step;
+            xy[2 * i + 1] = range > 0 ? pad + (max - values[i]) / range * span : height / 2;
+        }
+    }
+}
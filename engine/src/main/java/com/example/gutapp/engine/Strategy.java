@@ -0,0 +1,68 @@
+package com.example.gutapp.engine;
+
+//a long only rule based strategy over the lines alerts use (close, sma, ema, bollinger bands, constants)
+//the entry rule is checked on the close of every bar while flat and the exit rule while in the market, a signal is
+//filled at the next bar's open
+//  new Strategy("SMA 20/50 cross", Strategy.crossesAbove(Alert.sma(20), Alert.sma(50)),
+//          Strategy.crossesBelow(Alert.sma(20), Alert.sma(50)))
+//  new Strategy("BB bounce", Strategy.lowTouches(Alert.bollingerLower(20, 2)), Strategy.highTouches(Alert.bollingerUpper(20, 2)))
+public final class Strategy {
+
+    public static final class Rule {
+        static final int CROSSES_ABOVE = 0;
+        static final int CROSSES_BELOW = 1;
+        //the bar's low reached the line
+        static final int LOW_TOUCHES = 2;
+        //the bar's high reached the line
+        static final int HIGH_TOUCHES = 3;
+
+        final int type;
+        final Alert.Line first;
+        //null for the touches
+        final Alert.Line second;
+
+        private Rule(int type, Alert.Line first, Alert.Line second) {
+            this.type = type;
+            this.first = first;
+            this.second = second;
+        }
+    }
+
+    private final String name;
+    private final Rule entry;
+    private final Rule exit;
+
+    public Strategy(String name, Rule entry, Rule exit) {
+        this.name = name;
+        this.entry = entry;
+        this.exit = exit;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    Rule entry() {
+        return entry;
+    }
+
+    Rule exit() {
+        return exit;
+    }
+
+    public static Rule crossesAbove(Alert.Line first, Alert.Line second) {
+        return new Rule(Rule.CROSSES_ABOVE, first, second);
+    }
+
+    public static Rule crossesBelow(Alert.Line first, Alert.Line second) {
+        return new Rule(Rule.CROSSES_BELOW, first, second);
+    }
+
+    public static Rule lowTouches(Alert.Line line) {
+        return new Rule(Rule.LOW_TOUCHES, line, null);
+    }
+
+    public static Rule highTouches(Alert.Line line) {
+        return new Rule(Rule.HIGH_TOUCHES, line, null);
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.gutapp.engine;
+
+//bollinger bands over a stream of closes, the window mean and variance are slid the same way IndicatorKernels does
+//push() adds a closed bar and peek() previews a forming one, both leave the bands in getMiddle/getUpper/getLower
+public final class StreamingBollingerBands {
+    private final int period;
+    private final float stdDevMultiplier;
+    private final float[] window;
+    private int count;
+    private int next;
+    private double mean;
+    private double m2;
+
+    private float middle = Float.NaN;
+    private float upper = Float.NaN;
+    private float lower = Float.NaN;
+
+    public StreamingBollingerBands(int period, float stdDevMultiplier) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("period must be positive: " + period);
+        }
+        this.period = period;
+        this.stdDevMultiplier = stdDevMultiplier;
+        this.window = new float[period];
+    }
+
+    //returns false while warming up (the bands are NaN)
+    public boolean push(float close) {
+        if (count < period) {
+            //welford over the first window
+            count++;
+            double delta = close - mean;
+            mean += delta / count;
+            m2 += delta * (close - mean);
+        } else {
+            double removed = window[next];
+            double newMean = mean + (close - removed) / period;
+            m2 += (close - removed) * (close - newMean + removed - mean);
+            mean = newMean;
+        }
+        window[next] = close;
+        next = next + 1 == period ? 0 : next + 1;
+        return bands(mean, m2, count == period);
+    }
+
+    //bands including a forming bar at the given close, the window is not changed
+    public boolean peek(float close) {
+        if (count + 1 < period) return bands(0, 0, false);
+        double peekMean;
+        double peekM2;
+        if (count < period) {
+            double delta = close - mean;
+            peekMean = mean + delta / period;
+            peekM2 = m2 + delta * (close - peekMean);
+        } else {
+            double removed = window[next];
+            peekMean = mean + (close - removed) / period;
+            peekM2 = m2 + (close - removed) * (close - peekMean + removed - mean);
+        }
+        return bands(peekMean, peekM2, true);
+    }
+
+    private boolean bands(double mean, double m2, boolean valid) {
+        if (!valid) {
+            middle = upper = lower = Float.NaN;
+            return false;
+        }
+        //rounding can push m2 slightly below zero on flat windows
+        double deviation = Math.sqrt(Math.max(m2, 0) / period) * stdDevMultiplier;
+        middle = (float) mean;
+        upper = (float) (mean + deviation);
+        lower = (float) (mean - deviation);
+        return true;
+    }
+
+    public float getMiddle() {
+        return middle;
+    }
+
+    public float getUpper() {
+        return upper;
+    }
+
+    public float getLower() {
+        return lower;
+    }
+
+    public void reset() {
+        count = 0;
+        next = 0;
+        mean = 0;
+        m2 = 0;
+        bands(0, 0, false);
+    }
+}
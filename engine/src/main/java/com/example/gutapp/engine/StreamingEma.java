@@ -0,0 +1,45 @@
+package com.example.gutapp.engine;
+
+//exponential moving average over a stream of closes, seeded like IndicatorKernels.ema with the simple average
+//of the first period bars. push() adds a closed bar, peek() previews a forming one without changing the state
+public final class StreamingEma {
+    private final int period;
+    private final double multiplier;
+    private int count;
+    private double seed;
+    private double ema;
+
+    public StreamingEma(int period) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("period must be positive: " + period);
+        }
+        this.period = period;
+        this.multiplier = 2.0 / (period + 1);
+    }
+
+    public float push(float close) {
+        if (count < period) {
+            seed += close;
+            if (++count == period) ema = seed / period;
+        } else {
+            ema += (close - ema) * multiplier;
+        }
+        return value();
+    }
+
+    public float value() {
+        return count < period ? Float.NaN : (float) ema;
+    }
+
+    public float peek(float close) {
+        if (count + 1 < period) return Float.NaN;
+        if (count + 1 == period) return (float) ((seed + close) / period);
+        return (float) (ema + (close - ema) * multiplier);
+    }
+
+    public void reset() {
+        count = 0;
+        seed = 0;
+        ema = 0;
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.gutapp.engine;
+
+//simple moving average over a stream of closes, O(1) per bar
+//push() adds a closed bar, peek() is the value the average would have if the forming bar closed at the given price,
+//so a live chart only recomputes its last point on every tick
+public final class StreamingSma {
+    private final int period;
+    private final float[] window;
+    private int count;
+    private int next;
+    private double sum;
+
+    public StreamingSma(int period) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("period must be positive: " + period);
+        }
+        this.period = period;
+        this.window = new float[period];
+    }
+
+    public float push(float close) {
+        if (count == period) {
+            sum -= window[next];
+        } else {
+            count++;
+        }
+        window[next] = close;
+        sum += close;
+        next = next + 1 == period ? 0 : next + 1;
+        return value();
+    }
+
+    //average of the last closed bars, NaN while warming up
+    public float value() {
+        return count < period ? Float.NaN : (float) (sum / period);
+    }
+
+    //value including a forming bar at the given close, the state is not changed
+    public float peek(float close) {
+        if (count + 1 < period) return Float.NaN;
+        double removed = count == period ? window[next] : 0;
+        return (float) ((sum - removed + close) / period);
+    }
+
+    public void reset() {
+        count = 0;
+        next = 0;
+        sum = 0;
+    }
+}
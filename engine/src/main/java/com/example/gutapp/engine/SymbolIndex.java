@@ -0,0 +1,167 @@
+package com.example.gutapp.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+//as-you-type search over a universe of symbols, built once and then read only
+//two tries, one over the symbols and one over the words of the names. results come in rank order: the exact symbol,
+//symbols starting with the query, names with a word starting with every query word, then (for queries of 3+ letters)
+//symbols and name words within one typo of the query. inside a rank results are alphabetical
+//ids are positions in the arrays the index was built from. search isn't thread safe, it reuses its scratch arrays
+public class SymbolIndex {
+    private static final int MIN_FUZZY_LENGTH = 3;
+
+    private final String[] symbols;
+    private final String[] names;
+    private final String[][] nameWords;
+    private final SymbolTrie symbolTrie = new SymbolTrie();
+    private final SymbolTrie wordTrie = new SymbolTrie();
+
+    //ids already in the current result, stamped with the search number instead of cleared
+    private final int[] seen;
+    private int stamp;
+
+    public SymbolIndex(String[] symbols, String[] names) {
+        if (symbols.length != names.length) {
+            throw new IllegalArgumentException("symbols and names differ in length");
+        }
+        this.symbols = symbols;
+        this.names = names;
+        this.nameWords = new String[symbols.length][];
+        this.seen = new int[symbols.length];
+        for (int id = 0; id < symbols.length; id++) {
+            symbolTrie.add(normalize(symbols[id]), id);
+            nameWords[id] = words(names[id]);
+            for (String word : nameWords[id]) {
+                wordTrie.add(word, id);
+            }
+        }
+        symbolTrie.build();
+        wordTrie.build();
+    }
+
+    public int size() {
+        return symbols.length;
+    }
+
+    public String getSymbol(int id) {
+        return symbols[id];
+    }
+
+    public String getName(int id) {
+        return names[id];
+    }
+
+    public int[] search(String query, int limit) {
+        int[] out = new int[limit];
+        int count = search(query, limit, out);
+        return count == limit ? out : Arrays.copyOf(out, count);
+    }
+
+    //writes up to limit ids into out and returns how many
+    public int search(String query, int limit, int[] out) {
+        String symbolQuery = normalize(query);
+        String[] queryWords = words(query);
+        if (symbolQuery.isEmpty() || limit <= 0) return 0;
+        if (++stamp == 0) {
+            Arrays.fill(seen, 0);
+            stamp = 1;
+        }
+        int count = 0;
+
+        int node = symbolTrie.find(symbolQuery);
+        if (node >= 0) {
+            count = take(symbolTrie, symbolTrie.ownStart(node), symbolTrie.ownEnd(node), out, count, limit);
+            count = take(symbolTrie, symbolTrie.ownStart(node), symbolTrie.subtreeEnd(node), out, count, limit);
+        }
+        if (count < limit && queryWords.length > 0) {
+            count = nameMatches(queryWords, out, count, limit);
+        }
+        if (count < limit && symbolQuery.length() >= MIN_FUZZY_LENGTH) {
+            count = fuzzy(symbolTrie, symbolQuery, out, count, limit);
+        }
+        if (count < limit && queryWords.length == 1 && queryWords[0].length() >= MIN_FUZZY_LENGTH) {
+            count = fuzzy(wordTrie, queryWords[0], out, count, limit);
+        }
+        return count;
+    }
+
+    //ids with a name word starting with every query word, candidates come from the longest query word
+    private int nameMatches(String[] queryWords, int[] out, int count, int limit) {
+        String longest = queryWords[0];
+        for (String word : queryWords) {
+            if (word.length() > longest.length()) longest = word;
+        }
+        int node = wordTrie.find(longest);
+        if (node < 0) return count;
+        int[] postings = wordTrie.postings();
+        for (int i = wordTrie.ownStart(node); i < wordTrie.subtreeEnd(node) && count < limit; i++) {
+            int id = postings[i];
+            if (seen[id] == stamp || !allWordsMatch(queryWords, nameWords[id])) continue;
+            seen[id] = stamp;
+            out[count++] = id;
+        }
+        return count;
+    }
+
+    private static boolean allWordsMatch(String[] queryWords, String[] words) {
+        for (String queryWord : queryWords) {
+            boolean found = false;
+            for (String word : words) {
+                if (word.startsWith(queryWord)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) return false;
+        }
+        return true;
+    }
+
+    private int fuzzy(SymbolTrie trie, String query, int[] out, int count, int limit) {
+        int[] result = {count};
+        trie.fuzzyPrefix(query, 1, (node, distance) ->
+                result[0] = take(trie, trie.ownStart(node), trie.subtreeEnd(node), out, result[0], limit));
+        return result[0];
+    }
+
+    private int take(SymbolTrie trie, int from, int to, int[] out, int count, int limit) {
+        int[] postings = trie.postings();
+        for (int i = from; i < to && count < limit; i++) {
+            int id = postings[i];
+            if (seen[id] == stamp) continue;
+            seen[id] = stamp;
+            out[count++] = id;
+        }
+        return count;
+    }
+
+    //symbols are matched as typed, uppercase without spaces ("^GSPC", "AD.AS")
+    static String normalize(String symbol) {
+        StringBuilder builder = new StringBuilder(symbol.length());
+        for (int i = 0; i < symbol.length(); i++) {
+            char c = symbol.charAt(i);
+            if (!Character.isWhitespace(c)) builder.append(Character.toUpperCase(c));
+        }
+        return builder.toString();
+    }
+
+    //uppercase runs of letters and digits
+    static String[] words(String text) {
+        if (text == null) return new String[0];
+        List<String> words = new ArrayList<>(4);
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean letter = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (letter && start < 0) {
+                start = i;
+            } else if (!letter && start >= 0) {
+                words.add(text.substring(start, i).toUpperCase(Locale.US));
+                start = -1;
+            }
+        }
+        return words.toArray(new String[0]);
+    }
+}
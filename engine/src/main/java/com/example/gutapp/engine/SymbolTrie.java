@@ -0,0 +1,193 @@
+package com.example.gutapp.engine;
+
+import java.util.Arrays;
+
+//compact prefix trie of uppercase keys, each key carries an id
+//nodes live in parallel arrays and children are kept in label order. after build() the ids are laid out in depth first
+//order, so all ids under a prefix are one contiguous, alphabetical slice of the postings array
+final class SymbolTrie {
+    private char[] labels = new char[64];
+    private int[] firstChild = new int[64];
+    private int[] nextSibling = new int[64];
+    private int nodeCount = 1;
+
+    //while building: ids per node as linked lists
+    private int[] head = new int[64];
+    private int[] entryIds = new int[64];
+    private int[] entryNext = new int[64];
+    private int entryCount;
+
+    //after build: postings in depth first order, a node owns [ownStart, ownEnd) and its subtree [ownStart, subtreeEnd)
+    private int[] postings;
+    private int[] ownStart;
+    private int[] ownEnd;
+    private int[] subtreeEnd;
+    private int maxDepth;
+
+    SymbolTrie() {
+        firstChild[0] = -1;
+        nextSibling[0] = -1;
+        head[0] = -1;
+    }
+
+    void add(CharSequence key, int id) {
+        int node = 0;
+        for (int i = 0; i < key.length(); i++) {
+            node = child(node, key.charAt(i), true);
+        }
+        if (entryCount == entryIds.length) {
+            entryIds = Arrays.copyOf(entryIds, entryCount * 2);
+            entryNext = Arrays.copyOf(entryNext, entryCount * 2);
+        }
+        entryIds[entryCount] = id;
+        entryNext[entryCount] = head[node];
+        head[node] = entryCount++;
+    }
+
+    private int child(int node, char label, boolean create) {
+        int previous = -1;
+        int child = firstChild[node];
+        while (child >= 0 && labels[child] < label) {
+            previous = child;
+            child = nextSibling[child];
+        }
+        if (child >= 0 && labels[child] == label) return child;
+        if (!create) return -1;
+        if (nodeCount == labels.length) grow();
+        int created = nodeCount++;
+        labels[created] = label;
+        firstChild[created] = -1;
+        head[created] = -1;
+        nextSibling[created] = child;
+        if (previous < 0) {
+            firstChild[node] = created;
+        } else {
+            nextSibling[previous] = created;
+        }
+        return created;
+    }
+
+    private void grow() {
+        int capacity = labels.length * 2;
+        labels = Arrays.copyOf(labels, capacity);
+        firstChild = Arrays.copyOf(firstChild, capacity);
+        nextSibling = Arrays.copyOf(nextSibling, capacity);
+        head = Arrays.copyOf(head, capacity);
+    }
+
+    void build() {
+        postings = new int[entryCount];
+        ownStart = new int[nodeCount];
+        ownEnd = new int[nodeCount];
+        subtreeEnd = new int[nodeCount];
+        //iterative depth first walk, a long name can't overflow the stack
+        int[] stack = new int[nodeCount];
+        boolean[] closing = new boolean[nodeCount];
+        int depth = 0;
+        int next = 0;
+        stack[depth++] = 0;
+        while (depth > 0) {
+            int node = stack[--depth];
+            if (closing[node]) {
+                subtreeEnd[node] = next;
+                continue;
+            }
+            ownStart[node] = next;
+            //ids of a node were prepended, write them back in insertion order
+            int count = 0;
+            for (int entry = head[node]; entry >= 0; entry = entryNext[entry]) count++;
+            int position = next + count;
+            for (int entry = head[node]; entry >= 0; entry = entryNext[entry]) postings[--position] = entryIds[entry];
+            next += count;
+            ownEnd[node] = next;
+            closing[node] = true;
+            stack[depth++] = node;
+            //children go on the stack last to first so they come off in label order
+            int children = depth;
+            for (int child = firstChild[node]; child >= 0; child = nextSibling[child]) stack[depth++] = child;
+            reverse(stack, children, depth);
+        }
+        head = null;
+        entryIds = null;
+        entryNext = null;
+
+        //children are always created after their parent
+        int[] depths = new int[nodeCount];
+        for (int node = 0; node < nodeCount; node++) {
+            for (int child = firstChild[node]; child >= 0; child = nextSibling[child]) {
+                depths[child] = depths[node] + 1;
+                maxDepth = Math.max(maxDepth, depths[child]);
+            }
+        }
+    }
+
+    private static void reverse(int[] array, int from, int to) {
+        for (int i = from, j = to - 1; i < j; i++, j--) {
+            int swap = array[i];
+            array[i] = array[j];
+            array[j] = swap;
+        }
+    }
+
+    //node of the key, -1 when no key starts with it
+    int find(CharSequence key) {
+        int node = 0;
+        for (int i = 0; i < key.length() && node >= 0; i++) {
+            node = child(node, key.charAt(i), false);
+        }
+        return node;
+    }
+
+    int[] postings() {
+        return postings;
+    }
+
+    int ownStart(int node) {
+        return ownStart[node];
+    }
+
+    int ownEnd(int node) {
+        return ownEnd[node];
+    }
+
+    int subtreeEnd(int node) {
+        return subtreeEnd[node];
+    }
+
+    //nodes whose key starts with something within maxDistance edits of query (levenshtein over the trie paths)
+    //visitor gets each such node once, the outermost match of a path only since its subtree covers the rest
+    void fuzzyPrefix(CharSequence query, int maxDistance, NodeVisitor visitor) {
+        int columns = query.length() + 1;
+        int[] rows = new int[(maxDepth + 1) * columns];
+        for (int i = 0; i < columns; i++) rows[i] = i;
+        for (int child = firstChild[0]; child >= 0; child = nextSibling[child]) {
+            fuzzy(child, 1, query, maxDistance, rows, columns, visitor);
+        }
+    }
+
+    interface NodeVisitor {
+        void visit(int node, int distance);
+    }
+
+    private void fuzzy(int node, int depth, CharSequence query, int maxDistance, int[] rows, int columns, NodeVisitor visitor) {
+        int previous = (depth - 1) * columns;
+        int row = depth * columns;
+        rows[row] = depth;
+        int best = depth;
+        char label = labels[node];
+        for (int i = 1; i < columns; i++) {
+            int cost = query.charAt(i - 1) == label ? 0 : 1;
+            int value = Math.min(Math.min(rows[row + i - 1] + 1, rows[previous + i] + 1), rows[previous + i - 1] + cost);
+            rows[row + i] = value;
+            best = Math.min(best, value);
+        }
+        if (rows[row + columns - 1] <= maxDistance) {
+            visitor.visit(node, rows[row + columns - 1]);
+            return;
+        }
+        if (best > maxDistance) return;
+        for (int child = firstChild[node]; child >= 0; child = nextSibling[child]) {
+            fuzzy(child, depth + 1, query, maxDistance, rows, columns, visitor);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.example.gutapp.engine;
+
+import java.util.Random;
+
+//deterministic synthetic market data for scale and load testing
+//prices follow a geometric brownian motion whose volatility switches between a calm and a turbulent regime,
+//bars only exist inside the trading session on weekdays and every session may open with a gap
+//the same seed and settings always produce the same bars, on the jvm and on android
+public class SyntheticMarket {
+    //interval value for one bar per trading session (daily bars)
+    public static final int SESSION = 0;
+
+    private static final long MINUTE_MS = 60_000L;
+    private static final long DAY_MS = 86_400_000L;
+    private static final int TRADING_DAYS_PER_YEAR = 252;
+
+    private final long seed;
+    private float startPrice = 100f;
+    private double drift = 0.05;
+    private double volatility = 0.25;
+    private double turbulentMultiplier = 3.0;
+    private double regimeSwitchProbability = 0.002;
+    private double gapProbability = 0.3;
+    private double gapVolatility = 0.01;
+    private long baseVolume = 10_000;
+    //new york cash session, fixed offset (no daylight saving)
+    private int sessionOpenMinute = 9 * 60 + 30;
+    private int sessionCloseMinute = 16 * 60;
+    private int utcOffsetMinutes = -5 * 60;
+
+    public SyntheticMarket(long seed) {
+        this.seed = seed;
+    }
+
+    //a stable seed per symbol so every symbol of a load test gets its own but repeatable path
+    public static SyntheticMarket forSymbol(long seed, String symbol) {
+        return new SyntheticMarket(seed * 31 + symbol.hashCode());
+    }
+
+    public SyntheticMarket withStartPrice(float startPrice) {
+        this.startPrice = startPrice;
+        return this;
+    }
+
+    //annualised drift and volatility of the calm regime
+    public SyntheticMarket withGbm(double drift, double volatility) {
+        this.drift = drift;
+        this.volatility = volatility;
+        return this;
+    }
+
+    //the turbulent regime multiplies the volatility, switchProbability is the chance per bar to change regime
+    public SyntheticMarket withRegimes(double turbulentMultiplier, double switchProbability) {
+        this.turbulentMultiplier = turbulentMultiplier;
+        this.regimeSwitchProbability = switchProbability;
+        return this;
+    }
+
+    //chance that a session opens away from the previous close, and the size of such a gap (log return sigma)
+    public SyntheticMarket withGaps(double probability, double volatility) {
+        this.gapProbability = probability;
+        this.gapVolatility = volatility;
+        return this;
+    }
+
+    public SyntheticMarket withBaseVolume(long baseVolume) {
+        this.baseVolume = baseVolume;
+        return this;
+    }
+
+    //session in minutes of the local day, utcOffsetMinutes converts local exchange time to utc
+    public SyntheticMarket withSession(int openMinute, int closeMinute, int utcOffsetMinutes) {
+        if (openMinute < 0 || closeMinute > 24 * 60 || openMinute >= closeMinute) {
+            throw new IllegalArgumentException("invalid session " + openMinute + "-" + closeMinute);
+        }
+        this.sessionOpenMinute = openMinute;
+        this.sessionCloseMinute = closeMinute;
+        this.utcOffsetMinutes = utcOffsetMinutes;
+        return this;
+    }
+
+    public int getSessionMinutes() {
+        return sessionCloseMinute - sessionOpenMinute;
+    }
+
+    //generates bars of barMinutes starting at the first session on or after startMillis and streams them to the sink
+    public void generate(long startMillis, int barMinutes, int bars, BarSink sink) {
+        if (barMinutes <= 0 || barMinutes > getSessionMinutes()) {
+            throw new IllegalArgumentException("bar size must fit in the session: " + barMinutes);
+        }
+        Random random = new Random(seed);
+        double price = startPrice;
+        boolean turbulent = false;
+        //fraction of a trading year one bar covers
+        double dt = (double) barMinutes / ((double) TRADING_DAYS_PER_YEAR * getSessionMinutes());
+        double sqrtDt = Math.sqrt(dt);
+        long offsetMs = utcOffsetMinutes * MINUTE_MS;
+        long localDay = Math.floorDiv(startMillis + offsetMs, DAY_MS);
+        int emitted = 0;
+        boolean firstSession = true;
+
+        while (emitted < bars) {
+            //1970-01-01 was a thursday, 0 = monday
+            int dayOfWeek = Math.floorMod(localDay + 3, 7);
+            if (dayOfWeek < 5) {
+                long sessionStart = localDay * DAY_MS + sessionOpenMinute * MINUTE_MS - offsetMs;
+                if (!firstSession && random.nextDouble() < gapProbability) {
+                    price *= Math.exp(gapVolatility * random.nextGaussian());
+                }
+                for (int minute = 0; minute + barMinutes <= getSessionMinutes() && emitted < bars; minute += barMinutes) {
+                    long timestamp = sessionStart + minute * MINUTE_MS;
+                    if (timestamp < startMillis) continue;
+                    firstSession = false;
+                    if (random.nextDouble() < regimeSwitchProbability) {
+                        turbulent = !turbulent;
+                    }
+                    double sigma = turbulent ? volatility * turbulentMultiplier : volatility;
+                    double shock = random.nextGaussian();
+                    double open = price;
+                    double close = open * Math.exp((drift - 0.5 * sigma * sigma) * dt + sigma * sqrtDt * shock);
+                    //wicks reach a random part of one bar's standard deviation beyond the body
+                    double range = sigma * sqrtDt;
+                    double high = Math.max(open, close) * (1 + Math.abs(random.nextGaussian()) * range * 0.5);
+                    double low = Math.min(open, close) * (1 - Math.abs(random.nextGaussian()) * range * 0.5);
+                    //volume rises with the size of the move and in the turbulent regime
+                    long volume = (long) (baseVolume * (0.5 + Math.abs(shock)) * (turbulent ? turbulentMultiplier : 1.0));
+                    sink.bar(timestamp, (float) open, (float) high, (float) low, (float) close, volume);
+                    price = close;
+                    emitted++;
+                }
+            }
+            localDay++;
+        }
+        sink.finish();
+    }
+
+    public CandleSeries generate(long startMillis, int barMinutes, int bars) {
+        CandleSeries series = new CandleSeries(bars);
+        generate(startMillis, barMinutes, bars, BarSink.into(series));
+        return series;
+    }
+
+    //generates baseBars of baseBarMinutes once and aggregates them into every requested interval
+    //(minutes or SESSION), so all timeframes of a symbol describe the same price path
+    public void generate(long startMillis, int baseBarMinutes, int baseBars, int[] intervalMinutes, BarSink[] sinks) {
+        if (intervalMinutes.length != sinks.length) {
+            throw new IllegalArgumentException("one sink per interval");
+        }
+        BarSink[] targets = new BarSink[sinks.length];
+        for (int i = 0; i < sinks.length; i++) {
+            targets[i] = aggregatorFor(intervalMinutes[i], baseBarMinutes, sinks[i]);
+        }
+        generate(startMillis, baseBarMinutes, baseBars, new BarSink() {
+            @Override
+            public void bar(long timestamp, float open, float high, float low, float close, long volume) {
+                for (BarSink target : targets) {
+                    target.bar(timestamp, open, high, low, close, volume);
+                }
+            }
+
+            @Override
+            public void finish() {
+                for (BarSink target : targets) {
+                    target.finish();
+                }
+            }
+        });
+    }
+
+    private BarSink aggregatorFor(int interval, int baseBarMinutes, BarSink sink) {
+        if (interval == baseBarMinutes) {
+            return sink;
+        }
+        //buckets start at the session open, a whole day bucket holds exactly one session
+        long align = sessionOpenMinute * MINUTE_MS - utcOffsetMinutes * MINUTE_MS;
+        if (interval == SESSION) {
+            return new BarAggregator(DAY_MS, align, sink);
+        }
+        if (interval < baseBarMinutes || interval % baseBarMinutes != 0) {
+            throw new IllegalArgumentException(interval + "m can't be built from " + baseBarMinutes + "m bars");
+        }
+        return new BarAggregator(interval * MINUTE_MS, align, sink);
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.gutapp.engine;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+//lock free single producer single consumer queue of ticks, stored in primitive arrays so nothing is allocated per tick
+//the feed thread offers, one consumer thread drains. when the consumer falls a whole buffer behind
+//new ticks are dropped and counted instead of blocking the feed
+public final class TickRingBuffer {
+    private final int capacity;
+    private final int mask;
+    private final long[] timestamps;
+    private final float[] prices;
+    private final long[] sizes;
+
+    //next slot to write, only the producer moves it
+    private final AtomicLong head = new AtomicLong();
+    //next slot to read, only the consumer moves it
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    //producer side copy of tail, re-read only when the buffer looks full
+    private long cachedTail;
+
+    public TickRingBuffer(int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity must be a power of two: " + capacity);
+        }
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.timestamps = new long[capacity];
+        this.prices = new float[capacity];
+        this.sizes = new long[capacity];
+    }
+
+    //producer side, false when the buffer is full and the tick was dropped
+    public boolean offer(long timestamp, float price, long size) {
+        long h = head.get();
+        if (h - cachedTail >= capacity) {
+            cachedTail = tail.get();
+            if (h - cachedTail >= capacity) {
+                dropped.incrementAndGet();
+                return false;
+            }
+        }
+        int slot = (int) (h & mask);
+        timestamps[slot] = timestamp;
+        prices[slot] = price;
+        sizes[slot] = size;
+        //publishes the slot, the consumer's read of head sees the writes above
+        head.lazySet(h + 1);
+        return true;
+    }
+
+    //consumer side, hands at most max ticks to the listener in order and returns how many
+    public int drain(TickSource.Listener listener, int max) {
+        long t = tail.get();
+        int count = (int) Math.min(head.get() - t, max);
+        for (int i = 0; i < count; i++) {
+            int slot = (int) ((t + i) & mask);
+            listener.onTick(timestamps[slot], prices[slot], sizes[slot]);
+        }
+        //frees the slots for the producer
+        tail.lazySet(t + count);
+        return count;
+    }
+
+    public int size() {
+        return (int) (head.get() - tail.get());
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.gutapp.engine;
+
+//a live feed of trades, the listener is called from the source's own thread until the source is stopped
+public interface TickSource {
+
+    interface Listener {
+        void onTick(long timestamp, float price, long size);
+    }
+
+    void start(Listener listener);
+
+    //stops the feed, no tick is delivered after it returns
+    void stop();
+}
@@ -0,0 +1,54 @@
+package com.example.gutapp.engine;
+
+//puts another series onto the bars of a base series by timestamp, for overlays that share the base's x axis
+//both series are sorted, so one merge join pass over the two is enough and nothing is searched per bar
+public final class TimeAlignment {
+
+    private TimeAlignment() {
+    }
+
+    //out[i] is the other series' value at the base's i-th timestamp: its last value at or before that time (as of),
+    //so a symbol that trades in another session or skipped the bar shows where it last was. NaN before its first
+    //value and where its last value is older than maxStaleMillis (a gap in its data, or after it ends)
+    //returns how many bars got a value
+    public static int asOf(long[] timestamps, int count, long[] otherTimestamps, float[] otherValues, int otherCount,
+                           long maxStaleMillis, float[] out) {
+        int aligned = 0;
+        int j = -1;
+        for (int i = 0; i < count; i++) {
+            long time = timestamps[i];
+            while (j + 1 < otherCount && otherTimestamps[j + 1] <= time) j++;
+            if (j >= 0 && time - otherTimestamps[j] <= maxStaleMillis) {
+                out[i] = otherValues[j];
+                aligned++;
+            } else {
+                out[i] = Float.NaN;
+            }
+        }
+        return aligned;
+    }
+
+    //out[i] is the index of the higher timeframe bar the i-th lower timeframe bar falls in, the last one starting at
+    //or before it, and -1 before the first. a line of the higher timeframe is then shown on the lower one's bars as
+    //steps by reading its value at out[i], without searching per bar
+    public static void barIndices(long[] timestamps, int count, long[] higherTimestamps, int higherCount, int[] out) {
+        int j = -1;
+        for (int i = 0; i < count; i++) {
+            long time = timestamps[i];
+            while (j + 1 < higherCount && higherTimestamps[j + 1] <= time) j++;
+            out[i] = j;
+        }
+    }
+
+    //percent change of every value from the first value at or after start, so lines of different prices start
+    //together at 0. NaN stays NaN, and all of out is NaN when nothing from start on has a value
+    public static void percentChange(float[] values, int count, int start, float[] out) {
+        float base = Float.NaN;
+        for (int i = Math.max(start, 0); i < count && Float.isNaN(base); i++) {
+            base = values[i];
+        }
+        for (int i = 0; i < count; i++) {
+            out[i] = (values[i] / base - 1) * 100;
+        }
+    }
+}
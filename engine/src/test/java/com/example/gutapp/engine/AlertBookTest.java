@@ -0,0 +1,134 @@
+package com.example.gutapp.engine;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Alerts fire once, on the first bar the batch kernels show the lines crossing, and the book's bookkeeping.
+ */
+public class AlertBookTest {
+
+    //2024-01-01 00:00 utc
+    private static final long START = 1704067200000L;
+    private static final int BARS = 3_000;
+
+    //first bar after from where first crossed second in the direction of type, -1 when it never does
+    private static int firstCross(int type, float[] first, float[] second, int from) {
+        for (int i = from; i < BARS; i++) {
+            boolean above = first[i - 1] <= second[i - 1] && first[i] > second[i];
+            boolean below = first[i - 1] >= second[i - 1] && first[i] < second[i];
+            if (type == Alert.CROSSES_ABOVE ? above : type == Alert.CROSSES_BELOW ? below : above || below) return i;
+        }
+        return -1;
+    }
+
+    private static float[] constant(float value) {
+        float[] line = new float[BARS];
+        Arrays.fill(line, value);
+        return line;
+    }
+
+    @Test
+    public void alerts_fireOnTheFirstCrossOfTheKernelLines() {
+        CandleSeries series = SyntheticMarket.forSymbol(7, "AAA").generate(START, 5, BARS);
+        float[] closes = series.closes();
+        float[] sma20 = IndicatorKernels.sma(series, 20, Cancellation.NONE).values();
+        float[] sma50 = IndicatorKernels.sma(series, 50, Cancellation.NONE).values();
+        LineSeries[] bands = IndicatorKernels.bollingerBands(series, 20, 2, Cancellation.NONE);
+        float level = closes[BARS / 2] * 1.01f;
+
+        List<Alert> alerts = new ArrayList<>();
+        alerts.add(new Alert(1, "AAA", Alert.CROSSES_ABOVE, Alert.sma(20), Alert.sma(50)));
+        alerts.add(new Alert(2, "AAA", Alert.CROSSES_BELOW, Alert.sma(20), Alert.sma(50)));
+        alerts.add(new Alert(3, "AAA", Alert.CROSSES_ABOVE, Alert.close(), Alert.bollingerUpper(20, 2)));
+        alerts.add(new Alert(4, "AAA", Alert.CROSSES_BELOW, Alert.close(), Alert.bollingerLower(20, 2)));
+        alerts.add(new Alert(5, "AAA", Alert.CROSSES, Alert.close(), Alert.constant(level)));
+        float[][][] lines = {
+                {sma20, sma50}, {sma20, sma50}, {closes, bands[1].values()}, {closes, bands[2].values()}, {closes, constant(level)}
+        };
+
+        AlertBook book = new AlertBook();
+        for (Alert alert : alerts) book.add(alert);
+        int warmup = book.barsNeeded("AAA");
+        assertEquals(50, warmup);
+        book.warmUp("AAA", closes, warmup);
+
+        Map<Long, Integer> firedAt = new HashMap<>();
+        for (int i = warmup; i < BARS; i++) {
+            int bar = i;
+            book.onBar("AAA", series.getTimestamp(i), closes[i], (alert, timestamp, close) -> {
+                assertNull("an alert fires once", firedAt.put(alert.getId(), bar));
+                assertEquals(series.getTimestamp(bar), timestamp);
+            });
+        }
+
+        for (int a = 0; a < alerts.size(); a++) {
+            Alert alert = alerts.get(a);
+            int expected = firstCross(alert.getType(), lines[a][0], lines[a][1], warmup);
+            assertTrue(alert + " should cross in the series", expected > 0);
+            assertEquals(alert.toString(), Integer.valueOf(expected), firedAt.get(alert.getId()));
+        }
+        assertEquals(0, book.size());
+        assertFalse(book.hasAlerts("AAA"));
+    }
+
+    @Test
+    public void warmUp_restartsTheLines_andNeverFires() {
+        AlertBook book = new AlertBook();
+        book.add(new Alert(1, "AAA", Alert.CROSSES_ABOVE, Alert.close(), Alert.sma(3)));
+        float[] falling = {10, 9, 8, 7, 6};
+        book.warmUp("AAA", new float[]{1, 2, 30, 1}, 4);
+        book.warmUp("AAA", falling, falling.length);
+        //sma(3) of 8, 7, 6 is 7, the close was below it
+        assertEquals(0, book.onBar("AAA", START, 6.5f, null));
+        assertEquals(1, book.onBar("AAA", START + 1, 9, null));
+        assertEquals(0, book.size());
+    }
+
+    @Test
+    public void addAndRemove_keepTheOtherAlertsOfTheSymbol() {
+        AlertBook book = new AlertBook();
+        book.add(new Alert(1, "AAA", Alert.CROSSES_ABOVE, Alert.close(), Alert.constant(10)));
+        book.add(new Alert(2, "AAA", Alert.CROSSES_BELOW, Alert.close(), Alert.constant(10)));
+        book.add(new Alert(3, "BBB", Alert.CROSSES_ABOVE, Alert.close(), Alert.constant(10)));
+        try {
+            book.add(new Alert(3, "CCC", Alert.CROSSES_ABOVE, Alert.close(), Alert.constant(10)));
+            fail("ids are unique");
+        } catch (IllegalArgumentException expected) {
+        }
+
+        assertTrue(book.remove(1));
+        assertFalse(book.remove(1));
+        assertEquals(2, book.size());
+        book.onBar("AAA", START, 11, null);
+        List<Long> fired = new ArrayList<>();
+        book.onBar("AAA", START + 1, 9, (alert, timestamp, close) -> fired.add(alert.getId()));
+        assertEquals(Collections.singletonList(2L), fired);
+        assertFalse(book.hasAlerts("AAA"));
+        assertTrue(book.hasAlerts("BBB"));
+    }
+
+    @Test
+    public void lineKeys_parseBack() {
+        Alert.Line[] lines = {Alert.close(), Alert.sma(20), Alert.ema(12), Alert.bollingerUpper(20, 2),
+                Alert.bollingerMiddle(20, 2.5f), Alert.bollingerLower(10, 1), Alert.constant(-151.25f)};
+        for (Alert.Line line : lines) {
+            assertEquals(line.getKey(), Alert.Line.parse(line.getKey()).getKey());
+        }
+        assertEquals("AAA close crosses above BB upper 20/2.0",
+                new Alert(1, "AAA", Alert.CROSSES_ABOVE, Alert.close(), Alert.bollingerUpper(20, 2)).getDescription());
+        try {
+            Alert.Line.parse("sma");
+            fail("sma needs a period");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.gutapp.engine;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.*;
+
+/**
+ * Fills, costs, equity and drawdown of a backtest, and runs that reuse the cached lines without allocating.
+ */
+public class BacktesterTest {
+
+    //2024-01-01 00:00 utc
+    private static final long START = 1704067200000L;
+
+    private static CandleSeries bars(float[] opens, float[] closes) {
+        CandleSeries series = new CandleSeries(closes.length);
+        for (int i = 0; i < closes.length; i++) {
+            series.add(START + i * 60_000L, opens[i], Math.max(opens[i], closes[i]), Math.min(opens[i], closes[i]), closes[i], 1);
+        }
+        return series;
+    }
+
+    @Test
+    public void signals_fillAtTheNextOpen_withFeesAndSlippage() {
+        //close crosses above 10 on bar 2 and back below on bar 4
+        float[] opens = {9, 9, 9.5f, 12, 11, 8, 8};
+        float[] closes = {9, 9, 11, 11, 9, 8, 8};
+        Strategy strategy = new Strategy("level",
+                Strategy.crossesAbove(Alert.close(), Alert.constant(10)), Strategy.crossesBelow(Alert.close(), Alert.constant(10)));
+        Backtester backtester = new Backtester().withCapital(1000).withFee(0.01f).withSlippage(0.02f);
+
+        backtester.run(bars(opens, closes), strategy, Cancellation.NONE);
+
+        assertEquals(1, backtester.getTradeCount());
+        assertEquals(3, backtester.getTradeEntry(0));
+        assertEquals(5, backtester.getTradeExit(0));
+        float buy = 12 * 1.02f;
+        float sell = 8 * 0.98f;
+        assertEquals(buy, backtester.getTradeEntryPrice(0), 1e-5f);
+        assertEquals(sell, backtester.getTradeExitPrice(0), 1e-5f);
+        double shares = 1000 * 0.99 / buy;
+        double end = shares * sell * 0.99;
+        assertEquals(end, backtester.getFinalEquity(), 1e-3);
+        assertEquals(end / 1000 - 1, backtester.getTradeReturn(0), 1e-5);
+        assertEquals(0, backtester.getWinningTrades());
+        //marked at the close while holding, flat afterwards
+        assertEquals(shares * 11, backtester.equity()[3], 1e-2);
+        assertEquals(shares * 9, backtester.equity()[4], 1e-2);
+        assertEquals(end, backtester.equity()[6], 1e-2);
+        assertEquals((float) (end / 1000 - 1), backtester.getMaxDrawdown(), 1e-5f);
+    }
+
+    @Test
+    public void openPositionAtTheEnd_paysTheFeeInTheLastBarsDrawdown() {
+        //bought on bar 2 and still held on the last bar, whose close is a new high only before the fee
+        float[] opens = {9, 9, 11, 12, 14};
+        float[] closes = {9, 11, 11, 14, 14.1f};
+        Strategy strategy = new Strategy("level",
+                Strategy.crossesAbove(Alert.close(), Alert.constant(10)), Strategy.crossesBelow(Alert.close(), Alert.constant(10)));
+        Backtester backtester = new Backtester().withCapital(1000).withFee(0.01f);
+
+        backtester.run(bars(opens, closes), strategy, Cancellation.NONE);
+
+        assertEquals(1, backtester.getTradeCount());
+        assertEquals(4, backtester.getTradeExit(0));
+        double shares = 1000 * 0.99 / 11;
+        double end = shares * 14.1f * 0.99;
+        assertEquals(end, backtester.equity()[4], 1e-2);
+        //the peak stays at bar 3's close
+        assertEquals((float) (end / (shares * 14) - 1), backtester.drawdown()[4], 1e-5f);
+        //the entry fee on bar 2 is the deepest
+        assertEquals(-0.01f, backtester.getMaxDrawdown(), 1e-5f);
+    }
+
+    @Test
+    public void equityAndDrawdown_agreeWithTheTrades() {
+        CandleSeries series = new SyntheticMarket(11).generate(START, 5, 20_000);
+        Strategy strategy = new Strategy("BB bounce",
+                Strategy.lowTouches(Alert.bollingerLower(20, 2)), Strategy.highTouches(Alert.bollingerUpper(20, 2)));
+        Backtester backtester = new Backtester().withFee(0.0005f).withSlippage(0.0002f);
+
+        backtester.run(series, strategy, Cancellation.NONE);
+
+        assertTrue(backtester.getTradeCount() > 10);
+        double compounded = 10_000;
+        for (int t = 0; t < backtester.getTradeCount(); t++) {
+            assertTrue(backtester.getTradeExit(t) > backtester.getTradeEntry(t));
+            if (t > 0) assertTrue(backtester.getTradeEntry(t) > backtester.getTradeExit(t - 1));
+            compounded *= 1 + backtester.getTradeReturn(t);
+        }
+        assertEquals(compounded, backtester.getFinalEquity(), 1e-3 * compounded);
+        assertEquals(backtester.getFinalEquity(), backtester.equity()[series.size() - 1], 1e-3 * compounded);
+
+        float[] equity = backtester.equity();
+        float peak = 10_000;
+        float worst = 0;
+        for (int i = 0; i < series.size(); i++) {
+            peak = Math.max(peak, equity[i]);
+            assertEquals(equity[i] / peak - 1, backtester.drawdown()[i], 1e-5f);
+            worst = Math.min(worst, equity[i] / peak - 1);
+        }
+        assertEquals(worst, backtester.getMaxDrawdown(), 1e-5f);
+    }
+
+    @Test
+    public void rerunningASeriesOfTheSameLength_allocatesNothing() {
+        CandleSeries series = new SyntheticMarket(3).generate(START, 5, 50_000);
+        //another symbol of the same length, its lines are recomputed into the same buffers
+        CandleSeries other = new SyntheticMarket(4).generate(START, 5, 50_000);
+        Strategy cross = new Strategy("cross",
+                Strategy.crossesAbove(Alert.sma(20), Alert.sma(50)), Strategy.crossesBelow(Alert.sma(20), Alert.sma(50)));
+        Strategy bands = new Strategy("bands",
+                Strategy.lowTouches(Alert.bollingerLower(20, 2)), Strategy.crossesAbove(Alert.close(), Alert.bollingerMiddle(20, 2)));
+        Backtester backtester = new Backtester();
+        backtester.run(other, bands, Cancellation.NONE);
+        backtester.run(series, cross, Cancellation.NONE);
+        backtester.run(series, bands, Cancellation.NONE);
+        int trades = backtester.getTradeCount();
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < 5; i++) {
+            backtester.run(other, bands, Cancellation.NONE);
+            backtester.run(series, cross, Cancellation.NONE);
+            backtester.run(series, bands, Cancellation.NONE);
+        }
+        long allocated = threads.getThreadAllocatedBytes(thread) - before;
+
+        assertEquals(trades, backtester.getTradeCount());
+        assertTrue("allocated " + allocated + " bytes", allocated < 1024);
+    }
+}
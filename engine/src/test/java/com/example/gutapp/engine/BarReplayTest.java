@@ -0,0 +1,53 @@
+package com.example.gutapp.engine;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pacing of the bar replay against a fake clock.
+ */
+public class BarReplayTest {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    private static CandleSeries series(int bars) {
+        return new SyntheticMarket(5).generate(1704067200000L, 5, bars);
+    }
+
+    @Test
+    public void emitsBarsAtTheRate() {
+        CandleSeries series = series(1_000);
+        CandleSeries replayed = new CandleSeries(0);
+        BarReplay replay = new BarReplay(series, 100, 60);
+        replay.start(0);
+
+        assertEquals(0, replay.advance(SECOND / 100, 1000, BarSink.into(replayed)));
+        assertEquals(30, replay.advance(SECOND / 2, 1000, BarSink.into(replayed)));
+        assertEquals(30, replay.advance(SECOND, 1000, BarSink.into(replayed)));
+
+        assertEquals(160, replay.getPosition());
+        assertEquals(series.getTimestamp(100), replayed.getTimestamp(0));
+        assertEquals(series.getClose(159), replayed.getClose(59), 0f);
+    }
+
+    @Test
+    public void stalledFrame_skipsTheBacklogInTime() {
+        BarReplay replay = new BarReplay(series(1_000), 0, 60);
+        replay.start(0);
+
+        //a two second stall would owe 120 bars, only 10 are taken and the rest is not made up later
+        assertEquals(10, replay.advance(2 * SECOND, 10, (t, o, h, l, c, v) -> {}));
+        assertEquals(6, replay.advance(2 * SECOND + SECOND / 10, 100, (t, o, h, l, c, v) -> {}));
+    }
+
+    @Test
+    public void stopsAtTheEnd() {
+        BarReplay replay = new BarReplay(series(50), 40, 1000);
+        replay.start(0);
+
+        assertEquals(10, replay.advance(SECOND, 100, (t, o, h, l, c, v) -> {}));
+        assertTrue(replay.isFinished());
+        assertEquals(0, replay.advance(2 * SECOND, 100, (t, o, h, l, c, v) -> {}));
+    }
+}
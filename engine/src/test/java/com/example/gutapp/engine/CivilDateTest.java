@@ -0,0 +1,24 @@
+package com.example.gutapp.engine;
+
+import org.junit.Test;
+
+import java.time.LocalDate;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Day numbers of dates against java.time, both directions.
+ */
+public class CivilDateTest {
+
+    @Test
+    public void daysFromCivil_matchesEpochDayAcrossLeapYearsAndCenturies() {
+        for (long epochDay = LocalDate.of(1899, 12, 1).toEpochDay(); epochDay <= LocalDate.of(2101, 3, 1).toEpochDay(); epochDay++) {
+            LocalDate date = LocalDate.ofEpochDay(epochDay);
+            assertEquals(date.toString(), epochDay,
+                    CivilDate.daysFromCivil(date.getYear(), date.getMonthValue(), date.getDayOfMonth()));
+            assertEquals(date.toString(), date.getYear() * 10000 + date.getMonthValue() * 100 + date.getDayOfMonth(),
+                    CivilDate.civilFromDays(epochDay));
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.gutapp.engine;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.*;
+
+/**
+ * Append, reopen and range reads of the memory mapped column files.
+ */
+public class ColumnarCandleFileTest {
+
+    private static final long START = 1704067200000L;
+    private static final long FIVE_MIN = 5 * 60_000L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static CandleSeries series(int bars) {
+        return new SyntheticMarket(11).generate(START, 5, bars);
+    }
+
+    private static void assertSameBars(CandleSeries expected, int offset, CandleColumns actual) {
+        for (int i = 0; i < actual.size(); i++) {
+            assertEquals(expected.getTimestamp(offset + i), actual.getTimestamp(i));
+            assertEquals(expected.getOpen(offset + i), actual.getOpen(i), 0f);
+            assertEquals(expected.getHigh(offset + i), actual.getHigh(i), 0f);
+            assertEquals(expected.getLow(offset + i), actual.getLow(i), 0f);
+            assertEquals(expected.getClose(offset + i), actual.getClose(i), 0f);
+            assertEquals(expected.getVolume(offset + i), actual.getVolume(i));
+        }
+    }
+
+    @Test
+    public void appendedBars_surviveReopen() throws IOException {
+        File dir = new File(folder.getRoot(), "AAPL/5m");
+        CandleSeries series = series(10_000);
+        try (ColumnarCandleFile file = ColumnarCandleFile.open(dir)) {
+            file.append(series);
+            file.flush();
+            assertEquals(10_000, file.size());
+        }
+
+        try (ColumnarCandleFile file = ColumnarCandleFile.open(dir)) {
+            assertEquals(10_000, file.size());
+            assertEquals(series.getTimestamp(9_999), file.getLastTimestamp());
+            CandleColumns all = file.readAll();
+            assertEquals(10_000, all.size());
+            assertSameBars(series, 0, all);
+        }
+    }
+
+    @Test
+    public void unflushedBars_areNotVisible() throws IOException {
+        try (ColumnarCandleFile file = ColumnarCandleFile.open(folder.getRoot())) {
+            file.append(START, 1, 2, 0.5f, 1.5f, 10);
+            assertEquals(0, file.size());
+            assertEquals(START, file.getLastTimestamp());
+            file.flush();
+            assertEquals(1, file.size());
+        }
+    }
+
+    @Test
+    public void rangeRead_findsBoundsThroughTheIndex() throws IOException {
+        CandleSeries series = series(5_000);
+        try (ColumnarCandleFile file = ColumnarCandleFile.open(folder.getRoot())) {
+            file.append(series);
+            file.flush();
+
+            //bounds inside a stride, on an index entry and between bars
+            int from = ColumnarCandleFile.INDEX_STRIDE + 17;
+            CandleColumns range = file.readRange(series.getTimestamp(from), series.getTimestamp(3_000));
+            assertEquals(from, range.getFirstIndex());
+            assertEquals(3_000 - from, range.size());
+            assertSameBars(series, from, range);
+
+            assertEquals(2 * ColumnarCandleFile.INDEX_STRIDE, file.indexOf(series.getTimestamp(2 * ColumnarCandleFile.INDEX_STRIDE)));
+            assertEquals(101, file.indexOf(series.getTimestamp(100) + 1));
+            assertEquals(0, file.indexOf(START - FIVE_MIN));
+            assertEquals(5_000, file.indexOf(series.getTimestamp(4_999) + 1));
+            assertEquals(0, file.readRange(series.getTimestamp(4_999) + 1, Long.MAX_VALUE).size());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void outOfOrderBar_isRejected() throws IOException {
+        try (ColumnarCandleFile file = ColumnarCandleFile.open(folder.getRoot())) {
+            file.append(START, 1, 1, 1, 1, 1);
+            file.append(START, 1, 1, 1, 1, 1);
+        }
+    }
+
+    @Test
+    public void tornTail_isCutOffOnOpen() throws IOException {
+        File dir = folder.getRoot();
+        CandleSeries series = series(100);
+        try (ColumnarCandleFile file = ColumnarCandleFile.open(dir)) {
+            file.append(series);
+        }
+        //a flush that died after writing part of a column
+        try (RandomAccessFile close = new RandomAccessFile(new File(dir, "close.col"), "rw")) {
+            close.setLength(close.length() + 6);
+        }
+
+        try (ColumnarCandleFile file = ColumnarCandleFile.open(dir)) {
+            assertEquals(100, file.size());
+            file.append(series.getTimestamp(99) + FIVE_MIN, 9, 9, 9, 9, 9);
+            file.flush();
+            assertEquals(9f, file.readAll().getClose(100), 0f);
+        }
+    }
+}
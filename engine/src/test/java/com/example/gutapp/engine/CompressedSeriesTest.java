@@ -0,0 +1,115 @@
+package com.example.gutapp.engine;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Round trips and random access of the delta of delta / xor block format.
+ */
+public class CompressedSeriesTest {
+
+    private static final long START = 1704067200000L;
+
+    private static void assertSameCandles(CandleSeries expected, int offset, CandleSeries actual) {
+        for (int i = 0; i < actual.size(); i++) {
+            assertEquals(expected.getTimestamp(offset + i), actual.getTimestamp(i));
+            assertEquals(expected.getOpen(offset + i), actual.getOpen(i), 0f);
+            assertEquals(expected.getHigh(offset + i), actual.getHigh(i), 0f);
+            assertEquals(expected.getLow(offset + i), actual.getLow(i), 0f);
+            assertEquals(expected.getClose(offset + i), actual.getClose(i), 0f);
+            assertEquals(expected.getVolume(offset + i), actual.getVolume(i));
+        }
+    }
+
+    @Test
+    public void candles_roundTripAndShrink() {
+        CandleSeries series = new SyntheticMarket(7).generate(START, 5, 10_000);
+        byte[] encoded = CompressedSeries.encode(series, CompressedSeries.DEFAULT_BLOCK_SIZE);
+        CompressedSeries compressed = CompressedSeries.wrap(encoded);
+
+        assertEquals(10_000, compressed.size());
+        assertEquals(10, compressed.getBlockCount());
+        CandleSeries decoded = compressed.decodeCandles(0, 10_000);
+        assertEquals(10_000, decoded.size());
+        assertSameCandles(series, 0, decoded);
+        //32 bytes per bar uncompressed
+        assertTrue("encoded to " + encoded.length + " bytes", encoded.length < 10_000 * 32 * 3 / 4);
+    }
+
+    @Test
+    public void rangeDecode_startsInsideABlock() {
+        CandleSeries series = new SyntheticMarket(7).generate(START, 5, 3_000);
+        CompressedSeries compressed = CompressedSeries.wrap(CompressedSeries.encode(series, 256));
+
+        CandleSeries range = compressed.decodeCandles(300, 1_000);
+        assertEquals(700, range.size());
+        assertSameCandles(series, 300, range);
+
+        assertEquals(1, compressed.blockOf(series.getTimestamp(300)));
+        assertEquals(300, compressed.indexOf(series.getTimestamp(300)));
+        assertEquals(301, compressed.indexOf(series.getTimestamp(300) + 1));
+        assertEquals(0, compressed.indexOf(START - 1));
+        assertEquals(3_000, compressed.indexOf(series.getTimestamp(2_999) + 1));
+    }
+
+    @Test
+    public void extremeValues_roundTrip() {
+        //gaps, repeats, NaN, infinities and values that need the widest buckets
+        long[] timestamps = {Long.MIN_VALUE / 2, 0, 1, 1, 2, 1_000_000, 5, Long.MAX_VALUE / 2, -7};
+        long[] volumes = {0, Long.MAX_VALUE, 0, -1, 3, 3, 3, Long.MIN_VALUE, 9};
+        float[] values = {1.5f, Float.NaN, Float.POSITIVE_INFINITY, -0f, 0f, Float.MIN_VALUE, Float.MAX_VALUE, 1.5f, 1.5000001f};
+        CompressedSeries compressed = CompressedSeries.wrap(CompressedSeries.encode(
+                new long[][]{timestamps, volumes}, new float[][]{values}, values.length, 4));
+
+        long[][] longs = new long[2][4];
+        float[][] floats = new float[1][4];
+        for (int block = 0; block < compressed.getBlockCount(); block++) {
+            int rows = compressed.decodeBlock(block, longs, floats, 0);
+            for (int i = 0; i < rows; i++) {
+                int row = block * 4 + i;
+                assertEquals(timestamps[row], longs[0][i]);
+                assertEquals(volumes[row], longs[1][i]);
+                assertEquals(Float.floatToRawIntBits(values[row]), Float.floatToRawIntBits(floats[0][i]));
+            }
+        }
+    }
+
+    @Test
+    public void indicatorLine_roundTripsWithWarmUp() {
+        CandleSeries series = new SyntheticMarket(3).generate(START, 5, 5_000);
+        LineSeries sma = IndicatorKernels.sma(series, 20, Cancellation.NONE);
+        CompressedSeries compressed = CompressedSeries.wrap(CompressedSeries.encode(sma, 512));
+
+        LineSeries decoded = compressed.decodeLine();
+        assertEquals(sma.size(), decoded.size());
+        assertEquals(sma.start(), decoded.start());
+        for (int i = 0; i < sma.size(); i++) {
+            assertEquals(Float.floatToRawIntBits(sma.get(i)), Float.floatToRawIntBits(decoded.get(i)));
+        }
+    }
+
+    @Test
+    public void randomColumns_roundTrip() {
+        Random random = new Random(5);
+        int size = 4_321;
+        long[] longs = new long[size];
+        float[] floats = new float[size];
+        for (int i = 0; i < size; i++) {
+            longs[i] = random.nextLong() >> random.nextInt(64);
+            floats[i] = Float.intBitsToFloat(random.nextInt());
+        }
+        CompressedSeries compressed = CompressedSeries.wrap(CompressedSeries.encode(new long[][]{longs}, new float[][]{floats}, size, 1000));
+        long[][] outLongs = new long[1][size + 1000];
+        float[][] outFloats = new float[1][size + 1000];
+        for (int block = 0; block < compressed.getBlockCount(); block++) {
+            compressed.decodeBlock(block, outLongs, outFloats, block * 1000);
+        }
+        for (int i = 0; i < size; i++) {
+            assertEquals(longs[i], outLongs[0][i]);
+            assertEquals(Float.floatToRawIntBits(floats[i]), Float.floatToRawIntBits(outFloats[0][i]));
+        }
+    }
+}
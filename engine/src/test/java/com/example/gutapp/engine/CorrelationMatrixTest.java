@@ -0,0 +1,193 @@
+package com.example.gutapp.engine;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+/**
+ * Correlations over the bars two symbols share, against a direct computation, and bars added one by one (or a last
+ * bar replaced) against a load of the whole history.
+ */
+public class CorrelationMatrixTest {
+
+    //2024-01-01 00:00 utc
+    private static final long START = 1704067200000L;
+    private static final int WINDOW = 30;
+
+    //a synthetic symbol with about a tenth of its bars missing
+    private static CandleSeries withGaps(long seed, int bars) {
+        CandleSeries full = new SyntheticMarket(seed).generate(START, 60, bars);
+        Random random = new Random(seed);
+        CandleSeries series = new CandleSeries(bars);
+        for (int i = 0; i < full.size(); i++) {
+            if (random.nextInt(10) == 0) continue;
+            series.add(full.getTimestamp(i), full.getOpen(i), full.getHigh(i), full.getLow(i), full.getClose(i), full.getVolume(i));
+        }
+        return series;
+    }
+
+    private static CandleSeries[] universe() {
+        CandleSeries[] series = new CandleSeries[40];
+        for (int s = 0; s < series.length; s++) {
+            series[s] = withGaps(s + 1, 300);
+        }
+        //the same moves at twice the price
+        CandleSeries first = series[0];
+        CandleSeries doubled = new CandleSeries(first.size());
+        for (int i = 0; i < first.size(); i++) {
+            doubled.add(first.getTimestamp(i), 0, 0, 0, 2 * first.getClose(i), 0);
+        }
+        series[1] = doubled;
+        return series;
+    }
+
+    //pearson correlation of the last WINDOW finite returns between the timestamps both series have
+    private static double direct(CandleSeries a, CandleSeries b) {
+        double[] closesA = new double[a.size()];
+        double[] closesB = new double[a.size()];
+        int common = 0;
+        for (int i = 0, j = 0; i < a.size() && j < b.size(); ) {
+            if (a.getTimestamp(i) < b.getTimestamp(j)) i++;
+            else if (b.getTimestamp(j) < a.getTimestamp(i)) j++;
+            else {
+                closesA[common] = a.getClose(i++);
+                closesB[common++] = b.getClose(j++);
+            }
+        }
+        double[] returnsA = new double[Math.max(common, 1)];
+        double[] returnsB = new double[returnsA.length];
+        int returns = 0;
+        for (int at = 1; at < common; at++) {
+            double x = closesA[at] / closesA[at - 1] - 1;
+            double y = closesB[at] / closesB[at - 1] - 1;
+            if (!Double.isFinite(x) || !Double.isFinite(y)) continue;
+            returnsA[returns] = x;
+            returnsB[returns++] = y;
+        }
+        int n = Math.min(WINDOW, returns);
+        double meanA = 0, meanB = 0;
+        double[] x = new double[n];
+        double[] y = new double[n];
+        for (int k = 0; k < n; k++) {
+            x[k] = returnsA[returns - n + k];
+            y[k] = returnsB[returns - n + k];
+            meanA += x[k] / n;
+            meanB += y[k] / n;
+        }
+        double covariance = 0, varianceA = 0, varianceB = 0;
+        for (int k = 0; k < n; k++) {
+            covariance += (x[k] - meanA) * (y[k] - meanB);
+            varianceA += (x[k] - meanA) * (x[k] - meanA);
+            varianceB += (y[k] - meanB) * (y[k] - meanB);
+        }
+        return covariance / Math.sqrt(varianceA * varianceB);
+    }
+
+    @Test
+    public void load_matchesADirectComputationOverTheSharedBars() {
+        CandleSeries[] series = universe();
+        CorrelationMatrix matrix = new CorrelationMatrix(new ForkJoinPool(4), WINDOW);
+        matrix.load(series, Cancellation.NONE);
+
+        assertEquals(1, matrix.get(0, 1), 1e-5f);
+        float[] values = new float[series.length * series.length];
+        matrix.copyTo(values);
+        for (int a = 0; a < series.length; a++) {
+            assertEquals(1, values[a * series.length + a], 0f);
+            for (int b = a + 1; b < series.length; b++) {
+                assertEquals(WINDOW, matrix.getCount(a, b));
+                assertEquals(a + "/" + b, direct(series[a], series[b]), matrix.get(a, b), 1e-4);
+                assertEquals(matrix.get(a, b), values[b * series.length + a], 0f);
+            }
+        }
+    }
+
+    @Test
+    public void barsAddedLater_endWhereALoadOfTheWholeHistoryDoes() {
+        CandleSeries[] series = universe();
+        CandleSeries[] heads = new CandleSeries[series.length];
+        for (int s = 0; s < series.length; s++) {
+            heads[s] = new CandleSeries(series[s].size());
+            for (int i = 0; i < series[s].size() / 2; i++) {
+                heads[s].add(series[s].getTimestamp(i), 0, 0, 0, series[s].getClose(i), 0);
+            }
+        }
+        CorrelationMatrix incremental = new CorrelationMatrix(new ForkJoinPool(4), WINDOW);
+        incremental.load(heads, Cancellation.NONE);
+        //the rest in a few batches, each symbol's bars arriving in order
+        for (int batch = 1; batch <= 4; batch++) {
+            for (int s = 0; s < series.length; s++) {
+                int to = series[s].size() / 2 + batch * (series[s].size() - series[s].size() / 2) / 4;
+                for (int i = heads[s].size(); i < to; i++) {
+                    assertTrue(incremental.addBar(s, series[s].getTimestamp(i), series[s].getClose(i)));
+                    heads[s].add(series[s].getTimestamp(i), 0, 0, 0, series[s].getClose(i), 0);
+                }
+            }
+            incremental.update(Cancellation.NONE);
+        }
+        assertFalse(incremental.addBar(0, series[0].getTimestamp(0), 1));
+
+        CorrelationMatrix loaded = new CorrelationMatrix(new ForkJoinPool(4), WINDOW);
+        loaded.load(series, Cancellation.NONE);
+        for (int a = 0; a < series.length; a++) {
+            assertEquals(series[a].getTimestamp(series[a].size() - 1), incremental.getLastTimestamp(a));
+            for (int b = a + 1; b < series.length; b++) {
+                assertEquals(loaded.getCount(a, b), incremental.getCount(a, b));
+                assertEquals(loaded.get(a, b), incremental.get(a, b), 0f);
+            }
+        }
+    }
+
+    @Test
+    public void zeroCloses_areLeftOutOfTheReturns() {
+        CandleSeries a = withGaps(1, 300);
+        CandleSeries b = withGaps(2, 300);
+        CandleSeries broken = new CandleSeries(b.size());
+        for (int i = 0; i < b.size(); i++) {
+            //one missing close early on and one inside the last window
+            boolean zero = i == 40 || i == b.size() - 10;
+            broken.add(b.getTimestamp(i), 0, 0, 0, zero ? 0 : b.getClose(i), 0);
+        }
+        CorrelationMatrix matrix = new CorrelationMatrix(new ForkJoinPool(2), WINDOW);
+        matrix.load(new CandleSeries[]{a, broken}, Cancellation.NONE);
+
+        assertEquals(WINDOW, matrix.getCount(0, 1));
+        assertFalse(Float.isNaN(matrix.get(0, 1)));
+        assertEquals(direct(a, broken), matrix.get(0, 1), 1e-4);
+    }
+
+    @Test
+    public void aBarAtTheLastTimestamp_replacesTheLastBar() {
+        CandleSeries[] series = universe();
+        CorrelationMatrix incremental = new CorrelationMatrix(new ForkJoinPool(4), WINDOW);
+        incremental.load(series, Cancellation.NONE);
+        CandleSeries[] changed = new CandleSeries[series.length];
+        for (int s = 0; s < series.length; s++) {
+            int last = series[s].size() - 1;
+            changed[s] = new CandleSeries(series[s].size());
+            for (int i = 0; i < last; i++) {
+                changed[s].add(series[s].getTimestamp(i), 0, 0, 0, series[s].getClose(i), 0);
+            }
+            //every other symbol's forming bar ticks twice before the update
+            if (s % 2 == 0) {
+                assertTrue(incremental.addBar(s, series[s].getTimestamp(last), series[s].getClose(last) * 1.01f));
+                assertTrue(incremental.addBar(s, series[s].getTimestamp(last), series[s].getClose(last) * 1.02f));
+            }
+            changed[s].add(series[s].getTimestamp(last), 0, 0, 0, series[s].getClose(last) * (s % 2 == 0 ? 1.02f : 1), 0);
+        }
+        incremental.update(Cancellation.NONE);
+
+        CorrelationMatrix loaded = new CorrelationMatrix(new ForkJoinPool(4), WINDOW);
+        loaded.load(changed, Cancellation.NONE);
+        for (int a = 0; a < series.length; a++) {
+            assertEquals(changed[a].getTimestamp(changed[a].size() - 1), incremental.getLastTimestamp(a));
+            for (int b = a + 1; b < series.length; b++) {
+                assertEquals(loaded.getCount(a, b), incremental.getCount(a, b));
+                assertEquals(a + "/" + b, loaded.get(a, b), incremental.get(a, b), 1e-5f);
+            }
+        }
+    }
+}
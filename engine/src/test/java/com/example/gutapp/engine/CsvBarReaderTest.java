@@ -0,0 +1,133 @@
+package com.example.gutapp.engine;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Parsing of csv files through the byte buffer reader.
+ */
+public class CsvBarReaderTest {
+
+    private static final long MARCH_4_2024 = 1709510400000L;
+
+    private static final class Row {
+        String symbol;
+        String timeframe;
+        long timestamp;
+        float open, high, low, close;
+        long volume;
+    }
+
+    private static List<Row> read(CsvBarReader reader, String csv) throws IOException {
+        List<Row> rows = new ArrayList<>();
+        reader.read(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), (symbol, timeframe, timestamp, open, high, low, close, volume) -> {
+            Row row = new Row();
+            row.symbol = symbol;
+            row.timeframe = timeframe;
+            row.timestamp = timestamp;
+            row.open = open;
+            row.high = high;
+            row.low = low;
+            row.close = close;
+            row.volume = volume;
+            rows.add(row);
+        });
+        return rows;
+    }
+
+    @Test
+    public void mapsColumnsByHeaderName() throws IOException {
+        CsvBarReader reader = new CsvBarReader(new CsvFormat());
+        List<Row> rows = read(reader, "Date,Open,High,Low,Close,Volume,Ticker\r\n" +
+                "2024-03-04 09:30:00,10.5,11.25,10,11,1200,AAPL\r\n" +
+                "2024-03-04 09:35:00,11,12,10.75,-1.5e1,0,AAPL\r\n");
+
+        assertEquals(2, rows.size());
+        Row first = rows.get(0);
+        assertEquals("AAPL", first.symbol);
+        assertNull(first.timeframe);
+        assertEquals(MARCH_4_2024 + (9 * 60 + 30) * 60_000L, first.timestamp);
+        assertEquals(10.5f, first.open, 0f);
+        assertEquals(11.25f, first.high, 0f);
+        assertEquals(10f, first.low, 0f);
+        assertEquals(11f, first.close, 0f);
+        assertEquals(1200, first.volume);
+        assertEquals(-15f, rows.get(1).close, 0f);
+        //the repeated symbol is the same String
+        assertSame(first.symbol, rows.get(1).symbol);
+    }
+
+    @Test
+    public void fixedColumnsAndPatterns() throws IOException {
+        CsvFormat format = new CsvFormat().withHeader(false).withDelimiter(';')
+                .withColumns(0, 1, 2, 3, 4, 5, 6, -1)
+                .withTimestampPattern("dd/MM/yyyy HH:mm")
+                .withUtcOffsetMinutes(120);
+        List<Row> rows = read(new CsvBarReader(format), "\"MSFT\";1d;04/03/2024 02:00;1;2;0.5;1.5\n" +
+                "MSFT;1d;04/03/2024;1;2;0.5;1.5");
+
+        assertEquals(2, rows.size());
+        assertEquals("MSFT", rows.get(0).symbol);
+        assertEquals("1d", rows.get(0).timeframe);
+        assertEquals(MARCH_4_2024, rows.get(0).timestamp);
+        //a date without its time is local midnight
+        assertEquals(MARCH_4_2024 - 120 * 60_000L, rows.get(1).timestamp);
+        assertEquals(0, rows.get(1).volume);
+    }
+
+    @Test
+    public void isoAndEpochTimestamps() throws IOException {
+        List<Row> iso = read(new CsvBarReader(new CsvFormat()), "time,open,high,low,close\n2024-03-04T00:00:01.500,1,1,1,1\n");
+        assertEquals(MARCH_4_2024 + 1000, iso.get(0).timestamp);
+
+        CsvFormat seconds = new CsvFormat().withTimestampPattern(CsvFormat.EPOCH_SECONDS);
+        assertEquals(MARCH_4_2024, read(new CsvBarReader(seconds), "timestamp,o,h,l,c\n1709510400,1,1,1,1\n").get(0).timestamp);
+        CsvFormat millis = new CsvFormat().withTimestampPattern(CsvFormat.EPOCH_MILLIS);
+        assertEquals(MARCH_4_2024, read(new CsvBarReader(millis), "timestamp,o,h,l,c\n1709510400000,1,1,1,1\n").get(0).timestamp);
+    }
+
+    @Test
+    public void skipsMalformedRows() throws IOException {
+        CsvBarReader reader = new CsvBarReader(new CsvFormat());
+        List<Row> rows = read(reader, "date,open,high,low,close\n" +
+                "2024-03-04,1,2,0.5,1.5\n" +
+                "2024-13-04,1,2,0.5,1.5\n" +
+                "2024-03-05,1,two,0.5,1.5\n" +
+                "2024-03-06,1,2,0.5\n" +
+                "\n" +
+                "2024-03-07,1,2,0.5,1.5\n");
+
+        assertEquals(2, rows.size());
+        assertEquals(2, reader.getRows());
+        assertEquals(3, reader.getSkipped());
+    }
+
+    @Test
+    public void linesAcrossBufferRefills() throws IOException {
+        StringBuilder csv = new StringBuilder("symbol,date,open,high,low,close,volume\n");
+        for (int i = 0; i < 500; i++) {
+            csv.append("SYM").append(i % 3).append(",2024-03-04 00:").append(String.format("%02d", i % 60))
+                    .append(":00,").append(i).append(".25,").append(i + 1).append(",").append(i).append(",")
+                    .append(i).append(".5,").append(i * 10).append('\n');
+        }
+        //a buffer smaller than one line makes the reader grow it as well as compact it
+        List<Row> rows = read(new CsvBarReader(new CsvFormat(), 16), csv.toString());
+
+        assertEquals(500, rows.size());
+        for (int i = 0; i < 500; i++) {
+            Row row = rows.get(i);
+            assertEquals("SYM" + (i % 3), row.symbol);
+            assertEquals(MARCH_4_2024 + (i % 60) * 60_000L, row.timestamp);
+            assertEquals(i + 0.25f, row.open, 0f);
+            assertEquals(i + 0.5f, row.close, 0f);
+            assertEquals(i * 10L, row.volume);
+        }
+    }
+}
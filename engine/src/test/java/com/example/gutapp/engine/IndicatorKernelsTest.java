@@ -0,0 +1,96 @@
+package com.example.gutapp.engine;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the sliding kernels against straightforward per-window recomputation.
+ */
+public class IndicatorKernelsTest {
+
+    private static final float TOLERANCE = 1e-3f;
+
+    private static float[] randomWalk(int count) {
+        Random random = new Random(7);
+        float[] prices = new float[count];
+        float price = 100f;
+        for (int i = 0; i < count; i++) {
+            price = Math.max(1f, price + (float) random.nextGaussian());
+            prices[i] = price;
+        }
+        return prices;
+    }
+
+    @Test
+    public void sma_matchesWindowAverage() {
+        float[] prices = randomWalk(5000);
+        float[] out = new float[prices.length];
+        int start = IndicatorKernels.sma(prices, prices.length, 20, out, Cancellation.NONE);
+
+        assertEquals(19, start);
+        assertTrue(Float.isNaN(out[18]));
+        for (int i = start; i < prices.length; i++) {
+            double sum = 0;
+            for (int j = i - 19; j <= i; j++) sum += prices[j];
+            assertEquals(sum / 20, out[i], TOLERANCE);
+        }
+    }
+
+    @Test
+    public void ema_isSeededWithTheFirstAverage() {
+        float[] prices = {1, 2, 3, 4, 5, 6};
+        float[] out = new float[prices.length];
+        int start = IndicatorKernels.ema(prices, prices.length, 3, out, Cancellation.NONE);
+
+        assertEquals(2, start);
+        assertEquals(2f, out[2], TOLERANCE);
+        assertEquals(3f, out[3], TOLERANCE);
+        assertEquals(4f, out[4], TOLERANCE);
+        assertEquals(5f, out[5], TOLERANCE);
+    }
+
+    @Test
+    public void bollingerBands_matchPopulationDeviation() {
+        float[] prices = randomWalk(5000);
+        int n = prices.length;
+        float[] middle = new float[n];
+        float[] upper = new float[n];
+        float[] lower = new float[n];
+        int start = IndicatorKernels.bollingerBands(prices, n, 20, 2f, middle, upper, lower, Cancellation.NONE);
+
+        assertEquals(19, start);
+        for (int i = start; i < n; i++) {
+            double sum = 0;
+            for (int j = i - 19; j <= i; j++) sum += prices[j];
+            double mean = sum / 20;
+            double variance = 0;
+            for (int j = i - 19; j <= i; j++) variance += (prices[j] - mean) * (prices[j] - mean);
+            double deviation = Math.sqrt(variance / 20) * 2;
+            assertEquals(mean, middle[i], TOLERANCE);
+            assertEquals(mean + deviation, upper[i], TOLERANCE);
+            assertEquals(mean - deviation, lower[i], TOLERANCE);
+        }
+    }
+
+    @Test
+    public void shortInput_hasNoValidValues() {
+        CandleSeries series = new CandleSeries(4);
+        series.add(0, 1, 1, 1, 1, 0);
+        series.add(1, 2, 2, 2, 2, 0);
+
+        LineSeries line = IndicatorKernels.sma(series, 5, Cancellation.NONE);
+        assertTrue(line.isEmpty());
+        assertEquals(2, line.size());
+        assertTrue(Float.isNaN(line.get(1)));
+    }
+
+    @Test(expected = CancellationException.class)
+    public void cancelledKernel_stops() {
+        float[] prices = randomWalk(10_000);
+        IndicatorKernels.sma(prices, prices.length, 20, new float[prices.length], () -> true);
+    }
+}
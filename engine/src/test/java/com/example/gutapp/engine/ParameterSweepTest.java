@@ -0,0 +1,101 @@
+package com.example.gutapp.engine;
+
+import org.junit.Test;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Prefix sum lines against the kernels, and a parallel sweep against the same cells backtested one by one.
+ */
+public class ParameterSweepTest {
+
+    //2024-01-01 00:00 utc
+    private static final long START = 1704067200000L;
+
+    private static final ParameterSweep.Template BOUNCE = (period, multiplier) -> new Strategy("bounce",
+            Strategy.lowTouches(Alert.bollingerLower(period, multiplier)), Strategy.highTouches(Alert.bollingerUpper(period, multiplier)));
+
+    private static int[] periods(int from, int count) {
+        int[] periods = new int[count];
+        for (int i = 0; i < count; i++) periods[i] = from + i;
+        return periods;
+    }
+
+    private static float[] multipliers(float from, float step, int count) {
+        float[] multipliers = new float[count];
+        for (int i = 0; i < count; i++) multipliers[i] = from + i * step;
+        return multipliers;
+    }
+
+    @Test
+    public void prefixSumLines_matchTheKernels() {
+        CandleSeries series = new SyntheticMarket(5).generate(START, 5, 20_000);
+        int n = series.size();
+        PrefixSums sums = new PrefixSums(series.closes(), n);
+        float[] expected = new float[n];
+        float[] actual = new float[n];
+        float[] expectedUpper = new float[n];
+        float[] expectedLower = new float[n];
+        float[] deviation = new float[n];
+        for (int period : new int[]{1, 2, 20, 200}) {
+            IndicatorKernels.sma(series.closes(), n, period, expected, Cancellation.NONE);
+            sums.sma(period, actual);
+            for (int i = 0; i < n; i++) {
+                assertEquals("sma " + period + " at " + i, expected[i], actual[i], 1e-3f);
+            }
+            IndicatorKernels.bollingerBands(series.closes(), n, period, 2f, expected, expectedUpper, expectedLower, Cancellation.NONE);
+            sums.deviations(period, actual, deviation);
+            for (int i = 0; i < n; i++) {
+                assertEquals(expected[i], actual[i], 1e-3f);
+                assertEquals("upper " + period + " at " + i, expectedUpper[i], actual[i] + 2 * deviation[i], 1e-3f);
+                assertEquals(expectedLower[i], actual[i] - 2 * deviation[i], 1e-3f);
+            }
+        }
+    }
+
+    @Test
+    public void sweep_matchesTheCellsRunOneByOne() {
+        CandleSeries series = new SyntheticMarket(9).generate(START, 5, 3_000);
+        int[] periods = periods(10, 13);
+        float[] multipliers = multipliers(1, 0.25f, 5);
+        ParameterSweep.Result result = new ParameterSweep(new ForkJoinPool(4)).withFee(0.001f)
+                .run(series, BOUNCE, periods, multipliers, Cancellation.NONE);
+
+        Backtester backtester = new Backtester().withFee(0.001f).withPrefixSums(new PrefixSums(series.closes(), series.size()));
+        int best = 0;
+        for (int row = 0; row < periods.length; row++) {
+            for (int column = 0; column < multipliers.length; column++) {
+                backtester.run(series, BOUNCE.build(periods[row], multipliers[column]), Cancellation.NONE);
+                int cell = row * multipliers.length + column;
+                assertEquals((float) backtester.getTotalReturn(), result.returns[cell], 0f);
+                assertEquals(backtester.getMaxDrawdown(), result.maxDrawdowns[cell], 0f);
+                assertEquals(backtester.getTradeCount(), result.trades[cell]);
+                assertEquals(periods[row], result.getPeriod(cell));
+                assertEquals(multipliers[column], result.getStdDevMultiplier(cell), 0f);
+                if (result.returns[cell] > result.returns[best]) best = cell;
+            }
+        }
+        assertEquals(best, result.best);
+    }
+
+    @Test
+    public void cancel_stopsTheSweep() {
+        CandleSeries series = new SyntheticMarket(9).generate(START, 5, 3_000);
+        AtomicInteger built = new AtomicInteger();
+        ParameterSweep.Template counting = (period, multiplier) -> {
+            built.incrementAndGet();
+            return BOUNCE.build(period, multiplier);
+        };
+        try {
+            new ParameterSweep(new ForkJoinPool(2)).run(series, counting, periods(5, 200), multipliers(1, 0.1f, 20),
+                    () -> built.get() >= 50);
+            fail("the sweep should have been cancelled");
+        } catch (CancellationException expected) {
+            assertTrue(built.get() < 200 * 20);
+        }
+    }
+}
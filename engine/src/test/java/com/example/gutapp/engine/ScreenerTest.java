@@ -0,0 +1,126 @@
+package com.example.gutapp.engine;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Screen results against a brute force scan of the full history, progress and cancellation.
+ */
+public class ScreenerTest {
+
+    //2024-01-01 00:00 utc
+    private static final long START = 1704067200000L;
+    private static final int SYMBOLS = 300;
+    private static final int BARS = 600;
+
+    private static Map<String, CandleSeries> universe(String[] symbols) {
+        Map<String, CandleSeries> series = new HashMap<>();
+        for (int i = 0; i < symbols.length; i++) {
+            symbols[i] = "S" + i;
+            series.put(symbols[i], SyntheticMarket.forSymbol(7, symbols[i]).generate(START, 5, BARS));
+        }
+        return series;
+    }
+
+    //the last bars of the series, like a database query with a limit
+    private static Screener.SeriesSource tails(Map<String, CandleSeries> universe, AtomicInteger loads) {
+        return (symbol, bars) -> {
+            loads.incrementAndGet();
+            CandleSeries full = universe.get(symbol);
+            if (full == null) return null;
+            CandleSeries tail = new CandleSeries(bars);
+            for (int i = Math.max(0, full.size() - bars); i < full.size(); i++) {
+                tail.add(full.getTimestamp(i), full.getOpen(i), full.getHigh(i), full.getLow(i), full.getClose(i), full.getVolume(i));
+            }
+            return tail;
+        };
+    }
+
+    @Test
+    public void matches_areTheSymbolsABruteForceScanFinds() {
+        String[] symbols = new String[SYMBOLS];
+        Map<String, CandleSeries> universe = universe(symbols);
+        Screen screen = new Screen("above sma and squeezed",
+                Screen.above(Screen.close(), Screen.sma(50)),
+                Screen.atLowest(Screen.bollingerWidth(20, 2), 10));
+        Screener screener = new Screener(new ForkJoinPool(4), tails(universe, new AtomicInteger()));
+
+        Screener.Result result = screener.run(symbols, screen, null, Cancellation.NONE);
+
+        int expected = 0;
+        for (int s = 0; s < SYMBOLS; s++) {
+            CandleSeries series = universe.get(symbols[s]);
+            int last = series.size() - 1;
+            LineSeries sma = IndicatorKernels.sma(series, 50, Cancellation.NONE);
+            LineSeries[] bands = IndicatorKernels.bollingerBands(series, 20, 2, Cancellation.NONE);
+            boolean match = series.getClose(last) > sma.get(last);
+            float width = (bands[1].get(last) - bands[2].get(last)) / bands[0].get(last);
+            for (int i = last - 9; i < last && match; i++) {
+                match = (bands[1].get(i) - bands[2].get(i)) / bands[0].get(i) >= width - 1e-6f;
+            }
+            boolean found = Arrays.binarySearch(result.matches, s) >= 0;
+            assertEquals(symbols[s], match, found);
+            if (match) expected++;
+        }
+        assertTrue("the screen should match some symbols", expected > 0);
+        assertEquals(expected, result.matches.length);
+        assertEquals(SYMBOLS, result.screened);
+    }
+
+    @Test
+    public void crossedAbove_onlyMatchesTheLastBar() {
+        CandleSeries series = new CandleSeries(5);
+        float[] closes = {10, 9, 8, 7, 12};
+        for (int i = 0; i < closes.length; i++) {
+            series.add(START + i, closes[i], closes[i], closes[i], closes[i], 1);
+        }
+        Map<String, CandleSeries> universe = new HashMap<>();
+        universe.put("UP", series);
+        Screener screener = new Screener(ForkJoinPool.commonPool(), tails(universe, new AtomicInteger()));
+        String[] symbols = {"UP", "NONE"};
+
+        assertArrayEquals(new int[]{0}, screener.run(symbols,
+                new Screen("cross", Screen.crossedAbove(Screen.close(), Screen.sma(3))), null, Cancellation.NONE).matches);
+        assertArrayEquals(new int[0], screener.run(symbols,
+                new Screen("cross", Screen.crossedBelow(Screen.close(), Screen.sma(3))), null, Cancellation.NONE).matches);
+        assertArrayEquals(new int[]{0}, screener.run(symbols,
+                new Screen("constant", Screen.above(Screen.close(), Screen.constant(11))), null, Cancellation.NONE).matches);
+    }
+
+    @Test
+    public void progress_reachesTheTotal_andCancelStopsTheRun() {
+        String[] symbols = new String[SYMBOLS];
+        Map<String, CandleSeries> universe = universe(symbols);
+        AtomicInteger loads = new AtomicInteger();
+        Screener screener = new Screener(new ForkJoinPool(4), tails(universe, loads));
+        Screen screen = new Screen("ema", Screen.above(Screen.ema(20), Screen.sma(50)));
+
+        AtomicInteger last = new AtomicInteger();
+        AtomicInteger calls = new AtomicInteger();
+        screener.run(symbols, screen, (done, total, matches) -> {
+            calls.incrementAndGet();
+            last.accumulateAndGet(done, Math::max);
+            assertEquals(SYMBOLS, total);
+        }, Cancellation.NONE);
+        assertEquals(SYMBOLS, last.get());
+        assertTrue(calls.get() <= 101);
+
+        loads.set(0);
+        AtomicBoolean cancelled = new AtomicBoolean();
+        try {
+            screener.run(symbols, screen, (done, total, matches) -> cancelled.set(true), cancelled::get);
+            fail("the run should have been cancelled");
+        } catch (CancellationException expected) {
+            assertTrue(loads.get() < SYMBOLS);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.gutapp.engine;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Min/max downsampling and scaling of the home screen sparklines.
+ */
+public class SparklineTest {
+
+    @Test
+    public void downsample_keepsSpikesInTimeOrder() {
+        float[] values = new float[100];
+        for (int i = 0; i < values.length; i++) values[i] = 10;
+        values[37] = 50;
+        values[38] = 2;
+        float[] out = new float[20];
+
+        int count = Sparkline.downsample(values, 0, values.length, 10, out);
+
+        //bucket 3 holds both spikes, the high one came first
+        assertEquals(11, count);
+        assertEquals(10, out[0], 0f);
+        assertEquals(50, out[3], 0f);
+        assertEquals(2, out[4], 0f);
+        assertEquals(10, out[count - 1], 0f);
+    }
+
+    @Test
+    public void downsample_copiesShortRanges() {
+        float[] values = {1, 2, 3, 4, 5, 6};
+        float[] out = new float[8];
+        assertEquals(4, Sparkline.downsample(values, 1, 5, 2, out));
+        assertArrayEquals(new float[]{2, 3, 4, 5}, Arrays.copyOf(out, 4), 0f);
+    }
+
+    @Test
+    public void toPoints_scalesIntoTheBox() {
+        float[] xy = new float[6];
+        Sparkline.toPoints(new float[]{1, 3, 2}, 3, 100, 20, 2, xy);
+        assertArrayEquals(new float[]{0, 18, 50, 2, 100, 10}, xy, 1e-4f);
+
+        Sparkline.toPoints(new float[]{7, 7}, 2, 100, 20, 2, xy);
+        assertEquals(10, xy[1], 0f);
+        assertEquals(10, xy[3], 0f);
+    }
+}
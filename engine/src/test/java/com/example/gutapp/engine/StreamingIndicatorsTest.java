@@ -0,0 +1,78 @@
+package com.example.gutapp.engine;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * The streaming indicators match the batch kernels bar for bar, and peek previews the next push.
+ */
+public class StreamingIndicatorsTest {
+
+    private static final int BARS = 5_000;
+
+    private static CandleSeries series() {
+        return new SyntheticMarket(7).generate(1704067200000L, 5, BARS);
+    }
+
+    @Test
+    public void sma_matchesKernel() {
+        CandleSeries series = series();
+        LineSeries expected = IndicatorKernels.sma(series, 20, Cancellation.NONE);
+        StreamingSma sma = new StreamingSma(20);
+
+        for (int i = 0; i < series.size(); i++) {
+            float peeked = sma.peek(series.getClose(i));
+            float pushed = sma.push(series.getClose(i));
+            assertEquals(pushed, peeked, 0f);
+            assertEquals(expected.get(i), pushed, 1e-3f);
+        }
+    }
+
+    @Test
+    public void ema_matchesKernel() {
+        CandleSeries series = series();
+        LineSeries expected = IndicatorKernels.ema(series, 12, Cancellation.NONE);
+        StreamingEma ema = new StreamingEma(12);
+
+        for (int i = 0; i < series.size(); i++) {
+            float peeked = ema.peek(series.getClose(i));
+            float pushed = ema.push(series.getClose(i));
+            assertEquals(pushed, peeked, 0f);
+            assertEquals(expected.get(i), pushed, 1e-4f);
+        }
+    }
+
+    @Test
+    public void bollingerBands_matchKernel() {
+        CandleSeries series = series();
+        int n = series.size();
+        float[] middle = new float[n];
+        float[] upper = new float[n];
+        float[] lower = new float[n];
+        IndicatorKernels.bollingerBands(series.closes(), n, 20, 2f, middle, upper, lower, Cancellation.NONE);
+        StreamingBollingerBands bands = new StreamingBollingerBands(20, 2f);
+
+        for (int i = 0; i < n; i++) {
+            bands.peek(series.getClose(i));
+            float peekedUpper = bands.getUpper();
+            bands.push(series.getClose(i));
+            assertEquals(bands.getUpper(), peekedUpper, 1e-4f);
+            assertEquals(middle[i], bands.getMiddle(), 1e-4f);
+            assertEquals(upper[i], bands.getUpper(), 1e-4f);
+            assertEquals(lower[i], bands.getLower(), 1e-4f);
+        }
+    }
+
+    @Test
+    public void warmUp_isNaN() {
+        StreamingSma sma = new StreamingSma(3);
+        assertTrue(Float.isNaN(sma.push(1f)));
+        assertTrue(Float.isNaN(sma.peek(2f)));
+        assertTrue(Float.isNaN(sma.push(2f)));
+        assertEquals(2f, sma.peek(3f), 0f);
+
+        sma.reset();
+        assertTrue(Float.isNaN(sma.value()));
+    }
+}
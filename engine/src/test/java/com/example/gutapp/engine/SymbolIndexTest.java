@@ -0,0 +1,81 @@
+package com.example.gutapp.engine;
+
+import org.junit.Test;
+
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+/**
+ * Ranking, prefix and typo matching of the symbol search.
+ */
+public class SymbolIndexTest {
+
+    private static final String[] SYMBOLS = {"AAPL", "AD.AS", "AMZN", "AP", "APP", "GOOG", "IBM", "TSLA", "^GSPC"};
+    private static final String[] NAMES = {"Apple Inc.", "Ahold Delhaize", "Amazon.com, Inc.", "Ampco-Pittsburgh",
+            "AppLovin Corp", "Alphabet Inc.", "International Business Machines", "Tesla, Inc.", "S&P 500"};
+
+    private static String[] symbols(SymbolIndex index, int[] ids) {
+        String[] symbols = new String[ids.length];
+        for (int i = 0; i < ids.length; i++) symbols[i] = index.getSymbol(ids[i]);
+        return symbols;
+    }
+
+    @Test
+    public void exactSymbol_comesBeforePrefixesAndNames() {
+        SymbolIndex index = new SymbolIndex(SYMBOLS, NAMES);
+        //AP itself, symbols starting with AP, then "Apple" and "AppLovin" by name
+        assertArrayEquals(new String[]{"AP", "APP"}, symbols(index, index.search("ap", 2)));
+        assertArrayEquals(new String[]{"AP", "APP", "AAPL"}, symbols(index, index.search(" Ap ", 3)));
+    }
+
+    @Test
+    public void nameWords_mustAllMatch() {
+        SymbolIndex index = new SymbolIndex(SYMBOLS, NAMES);
+        assertArrayEquals(new String[]{"IBM"}, symbols(index, index.search("business mach", 10)));
+        //the exact word matches, then "International" one typo away from "inc"
+        assertArrayEquals(new String[]{"AAPL", "AMZN", "GOOG", "TSLA", "IBM"}, symbols(index, index.search("inc", 10)));
+        assertArrayEquals(new String[]{"^GSPC"}, symbols(index, index.search("s&p 5", 10)));
+        assertArrayEquals(new String[]{"AD.AS"}, symbols(index, index.search("ad.a", 10)));
+    }
+
+    @Test
+    public void typos_matchAfterExactResults() {
+        SymbolIndex index = new SymbolIndex(SYMBOLS, NAMES);
+        assertArrayEquals(new String[]{"TSLA"}, symbols(index, index.search("tesal", 10)));
+        assertArrayEquals(new String[]{"AMZN"}, symbols(index, index.search("amazn", 10)));
+        assertArrayEquals(new String[]{"GOOG"}, symbols(index, index.search("gogg", 10)));
+        //short queries aren't fuzzy matched, everything is one edit from two letters
+        assertEquals(0, index.search("zz", 10).length);
+        assertEquals(0, index.search("", 10).length);
+    }
+
+    @Test
+    public void largeUniverse_searchesQuickly() {
+        int size = 50_000;
+        String[] symbols = new String[size];
+        String[] names = new String[size];
+        for (int i = 0; i < size; i++) {
+            symbols[i] = String.format(Locale.US, "S%05d", i);
+            names[i] = "Company " + Integer.toString(i, 36) + " Holdings";
+        }
+        SymbolIndex index = new SymbolIndex(symbols, names);
+        assertEquals(50, index.search("s0", 50).length);
+        assertArrayEquals(new int[]{12_345}, index.search("S12345", 1));
+        assertEquals("S12345", index.getSymbol(index.search("company 9ix", 1)[0]));
+
+        String[] queries = {"s1", "s123", "comp", "company 1", "hold", "s9999", "compnay", "x"};
+        int[] out = new int[50];
+        for (int i = 0; i < 2_000; i++) {
+            index.search(queries[i % queries.length], 50, out);
+        }
+        long start = System.nanoTime();
+        int runs = 10_000;
+        for (int i = 0; i < runs; i++) {
+            index.search(queries[i % queries.length], 50, out);
+        }
+        long micros = (System.nanoTime() - start) / 1000 / runs;
+        //the target is well under a millisecond per keystroke, the budget leaves room for a slow ci machine
+        assertTrue("search took " + micros + " us", micros < 2_000);
+    }
+}
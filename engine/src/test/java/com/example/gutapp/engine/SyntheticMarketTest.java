@@ -0,0 +1,72 @@
+package com.example.gutapp.engine;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Determinism and shape checks for the synthetic market data generator.
+ */
+public class SyntheticMarketTest {
+
+    //2024-01-01 00:00 utc, a monday
+    private static final long START = 1704067200000L;
+    private static final long MINUTE_MS = 60_000L;
+
+    @Test
+    public void sameSeed_generatesSameBars() {
+        CandleSeries first = new SyntheticMarket(1).generate(START, 5, 10_000);
+        CandleSeries second = new SyntheticMarket(1).generate(START, 5, 10_000);
+        CandleSeries other = new SyntheticMarket(2).generate(START, 5, 10_000);
+
+        assertEquals(10_000, first.size());
+        boolean differs = false;
+        for (int i = 0; i < first.size(); i++) {
+            assertEquals(first.getTimestamp(i), second.getTimestamp(i));
+            assertEquals(first.getClose(i), second.getClose(i), 0f);
+            assertEquals(first.getVolume(i), second.getVolume(i));
+            differs |= first.getClose(i) != other.getClose(i);
+        }
+        assertTrue(differs);
+    }
+
+    @Test
+    public void bars_areValidAndInsideWeekdaySessions() {
+        SyntheticMarket market = new SyntheticMarket(3).withSession(570, 960, -300);
+        CandleSeries series = market.generate(START, 5, 20_000);
+
+        for (int i = 0; i < series.size(); i++) {
+            assertTrue(series.getHigh(i) >= Math.max(series.getOpen(i), series.getClose(i)));
+            assertTrue(series.getLow(i) <= Math.min(series.getOpen(i), series.getClose(i)));
+            assertTrue(series.getLow(i) > 0);
+            if (i > 0) assertTrue(series.getTimestamp(i) > series.getTimestamp(i - 1));
+
+            long local = series.getTimestamp(i) - 300 * MINUTE_MS;
+            long minuteOfDay = Math.floorMod(local, 86_400_000L) / MINUTE_MS;
+            int dayOfWeek = Math.floorMod(Math.floorDiv(local, 86_400_000L) + 3, 7);
+            assertTrue(minuteOfDay >= 570 && minuteOfDay + 5 <= 960);
+            assertTrue(dayOfWeek < 5);
+        }
+    }
+
+    @Test
+    public void aggregatedTimeframes_describeTheSamePath() {
+        SyntheticMarket market = new SyntheticMarket(4);
+        CandleSeries fiveMinutes = new CandleSeries(0);
+        CandleSeries hourly = new CandleSeries(0);
+        CandleSeries daily = new CandleSeries(0);
+        int barsPerSession = market.getSessionMinutes() / 5;
+        market.generate(START, 5, barsPerSession * 10, new int[]{5, 60, SyntheticMarket.SESSION},
+                new BarSink[]{BarSink.into(fiveMinutes), BarSink.into(hourly), BarSink.into(daily)});
+
+        assertEquals(10, daily.size());
+        //6.5 hour session, the last hour holds 30 minutes
+        assertEquals(70, hourly.size());
+        long volume = 0;
+        for (int i = 0; i < barsPerSession; i++) volume += fiveMinutes.getVolume(i);
+        assertEquals(volume, daily.getVolume(0));
+        assertEquals(fiveMinutes.getOpen(0), daily.getOpen(0), 0f);
+        assertEquals(fiveMinutes.getClose(barsPerSession - 1), daily.getClose(0), 0f);
+        assertEquals(fiveMinutes.getClose(fiveMinutes.size() - 1), hourly.getClose(hourly.size() - 1), 0f);
+    }
+}
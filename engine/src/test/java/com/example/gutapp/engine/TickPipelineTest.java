@@ -0,0 +1,100 @@
+package com.example.gutapp.engine;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Ticks through the ring buffer and into bars.
+ */
+public class TickPipelineTest {
+
+    //2024-01-01 00:00 utc
+    private static final long START = 1704067200000L;
+    private static final long MINUTE_MS = 60_000L;
+
+    @Test
+    public void ringBuffer_deliversInOrderAcrossThreads() throws Exception {
+        TickRingBuffer ring = new TickRingBuffer(1024);
+        int total = 200_000;
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < total; i++) {
+                while (!ring.offer(i, i, i)) {
+                    Thread.yield();
+                }
+            }
+        });
+        long[] expected = new long[1];
+        producer.start();
+        while (expected[0] < total) {
+            ring.drain((timestamp, price, size) -> {
+                assertEquals(expected[0], timestamp);
+                assertEquals(expected[0], size);
+                expected[0]++;
+            }, 256);
+        }
+        producer.join();
+        assertEquals(0, ring.size());
+    }
+
+    @Test
+    public void ringBuffer_dropsWhenFull() {
+        TickRingBuffer ring = new TickRingBuffer(4);
+        for (int i = 0; i < 6; i++) {
+            ring.offer(i, i, 1);
+        }
+        assertEquals(4, ring.size());
+        assertEquals(2, ring.getDropped());
+        assertEquals(4, ring.drain((timestamp, price, size) -> {}, 100));
+        assertTrue(ring.offer(6, 6, 1));
+    }
+
+    @Test
+    public void barBuilder_matchesAggregatedBars() {
+        //one minute ticks rolled into 5m and 15m bars live, and the 5m bars rolled into 15m by the aggregator
+        List<long[]> fifteen = new ArrayList<>();
+        List<long[]> rolledUp = new ArrayList<>();
+        BarSink collect15 = (timestamp, open, high, low, close, volume) -> fifteen.add(new long[]{timestamp, (long) high, volume});
+        BarSink aggregate = new BarAggregator(15 * MINUTE_MS, 0,
+                (timestamp, open, high, low, close, volume) -> rolledUp.add(new long[]{timestamp, (long) high, volume}));
+        BarBuilder builder = new BarBuilder(new long[]{5 * MINUTE_MS, 15 * MINUTE_MS}, 0, new BarSink[]{aggregate, collect15});
+
+        new SimulatedTickSource(3, START - MINUTE_MS, 1000f).withTickMillis(MINUTE_MS).emit(300, builder);
+        builder.finish();
+
+        assertEquals(20, fifteen.size());
+        assertEquals(fifteen.size(), rolledUp.size());
+        for (int i = 0; i < fifteen.size(); i++) {
+            assertEquals(START + i * 15 * MINUTE_MS, fifteen.get(i)[0]);
+            assertArrayEquals(fifteen.get(i), rolledUp.get(i));
+        }
+    }
+
+    @Test
+    public void barBuilder_updatesTheFormingBar() {
+        List<Long> closed = new ArrayList<>();
+        BarBuilder builder = new BarBuilder(new long[]{5 * MINUTE_MS}, 0,
+                new BarSink[]{(timestamp, open, high, low, close, volume) -> closed.add(timestamp)});
+
+        builder.onTick(START + 1_000, 10f, 1);
+        builder.onTick(START + 2_000, 12f, 2);
+        builder.onTick(START + 3_000, 9f, 3);
+
+        assertTrue(closed.isEmpty());
+        assertTrue(builder.isForming(0));
+        assertEquals(START, builder.getTimestamp(0));
+        assertEquals(10f, builder.getOpen(0), 0f);
+        assertEquals(12f, builder.getHigh(0), 0f);
+        assertEquals(9f, builder.getLow(0), 0f);
+        assertEquals(9f, builder.getClose(0), 0f);
+        assertEquals(6, builder.getVolume(0));
+
+        builder.onTick(START + 5 * MINUTE_MS, 11f, 1);
+        assertEquals(1, closed.size());
+        assertEquals(START + 5 * MINUTE_MS, builder.getTimestamp(0));
+        assertEquals(11f, builder.getOpen(0), 0f);
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.gutapp.engine;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * As of alignment of a series with other sessions and gaps onto base bars, lower to higher timeframe bar indices and
+ * the percent change from a start bar.
+ */
+public class TimeAlignmentTest {
+
+    private static final long HOUR_MS = 3_600_000L;
+    private static final long DAY_MS = 86_400_000L;
+
+    @Test
+    public void asOf_carriesTheLastValueAcrossOtherSessionsButNotAcrossGaps() {
+        //base bars every hour, the other symbol's session closes earlier and misses a stretch
+        long[] base = {10 * HOUR_MS, 11 * HOUR_MS, 12 * HOUR_MS, 13 * HOUR_MS, 14 * HOUR_MS, DAY_MS * 6 + 10 * HOUR_MS};
+        long[] other = {9 * HOUR_MS, 11 * HOUR_MS, 11 * HOUR_MS + 30 * 60_000L, DAY_MS * 6 + 9 * HOUR_MS};
+        float[] otherCloses = {1, 2, 3, 4};
+        float[] out = new float[base.length];
+
+        int aligned = TimeAlignment.asOf(base, base.length, other, otherCloses, other.length, 2 * HOUR_MS, out);
+
+        assertArrayEquals(new float[]{1, 2, 3, 3, Float.NaN, 4}, out, 0f);
+        assertEquals(5, aligned);
+        //nothing before the other series starts
+        TimeAlignment.asOf(base, 2, new long[]{11 * HOUR_MS}, new float[]{7}, 1, DAY_MS, out);
+        assertTrue(Float.isNaN(out[0]));
+        assertEquals(7, out[1], 0f);
+    }
+
+    @Test
+    public void barIndices_mapEveryLowerBarToTheHigherBarItFallsIn() {
+        CandleSeries lower = new SyntheticMarket(7).generate(1704067200000L, 15, 26 * 30);
+        CandleSeries daily = new CandleSeries(64);
+        for (int i = 0; i < lower.size(); i++) {
+            long day = Math.floorDiv(lower.getTimestamp(i), DAY_MS) * DAY_MS;
+            if (daily.size() == 0 || daily.getTimestamp(daily.size() - 1) != day) daily.add(day, 0, 0, 0, 0, 0);
+        }
+        int[] indices = new int[lower.size() + 1];
+        long[] withEarlyBar = new long[lower.size() + 1];
+        withEarlyBar[0] = daily.getTimestamp(0) - 1;
+        System.arraycopy(lower.timestamps(), 0, withEarlyBar, 1, lower.size());
+
+        TimeAlignment.barIndices(withEarlyBar, withEarlyBar.length, daily.timestamps(), daily.size(), indices);
+
+        assertEquals(-1, indices[0]);
+        for (int i = 1; i < indices.length; i++) {
+            assertEquals(Math.floorDiv(withEarlyBar[i], DAY_MS) * DAY_MS, daily.getTimestamp(indices[i]));
+        }
+        assertEquals(daily.size() - 1, indices[indices.length - 1]);
+    }
+
+    @Test
+    public void percentChange_startsAtZeroOnTheFirstValueFromStart() {
+        float[] values = {50, Float.NaN, Float.NaN, 80, 100, 120};
+        float[] out = new float[values.length];
+
+        TimeAlignment.percentChange(values, values.length, 1, out);
+
+        assertEquals(-37.5f, out[0], 1e-4f);
+        assertTrue(Float.isNaN(out[1]));
+        assertEquals(0, out[3], 0f);
+        assertEquals(25, out[4], 1e-4f);
+        assertEquals(50, out[5], 1e-4f);
+        TimeAlignment.percentChange(new float[]{1, Float.NaN}, 2, 1, out);
+        assertTrue(Float.isNaN(out[0]));
+    }
+}
@@ -25,3 +25,4 @@ dependencyResolutionManagement {
 
 rootProject.name = "GutApp"
 include(":app")
+include(":engine")